@@ -0,0 +1,52 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.lang.annotation.*;
+
+/**
+ * An annotation that marks a {@link JobListener}, {@link TriggerListener} or
+ * {@link SchedulerListener} class as one whose notifications may be delivered
+ * asynchronously, by the scheduler's listener dispatch threads, rather than
+ * on the thread that fires the job or the scheduler thread.
+ *
+ * <p>
+ * This suits listeners that are slow but have no say in what the scheduler
+ * does, such as audit loggers or metrics publishers. The notifications of a
+ * listener are delivered one at a time and in order, but after the fact:
+ * <code>jobToBeExecuted()</code> may well be called once the job has
+ * started, or finished. <code>TriggerListener.triggerFired()</code> and
+ * <code>vetoJobExecution()</code> are always called synchronously, since the
+ * scheduler waits for the veto. An exception thrown by an asynchronous
+ * notification is logged, and not seen by the scheduler.
+ * </p>
+ *
+ * <p>
+ * The number of dispatch threads, the size of their queues and what happens
+ * when a queue is full are set with the
+ * <code>org.quartz.scheduler.listenerDispatch.*</code> properties.
+ * </p>
+ *
+ * 标记可异步通知的监听器
+ *
+ * @see org.quartz.core.ListenerDispatcher
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface AsyncListener {
+
+}
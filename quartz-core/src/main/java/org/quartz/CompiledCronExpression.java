@@ -0,0 +1,765 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.quartz;
+
+import java.util.Calendar;
+import java.util.SortedSet;
+import java.util.TimeZone;
+
+/**
+ * The fields of a parsed <code>{@link CronExpression}</code> compiled to bit
+ * masks, and the computation of <code>getTimeAfter</code> on them.
+ *
+ * <p>
+ * The search is the same as <code>CronExpression</code>'s own, step for step,
+ * so that it finds the same times, daylight saving quirks included; but the
+ * <code>TreeSet</code> lookups are replaced by bit scans, and the
+ * <code>java.util.Calendar</code> by a <code>{@link WallClock}</code> that
+ * resolves local times the way a lenient <code>GregorianCalendar</code> does,
+ * using only primitive date arithmetic and <code>TimeZone.getOffset(long)</code>.
+ * Apart from the returned <code>Date</code> nothing is allocated.
+ * </p>
+ *
+ * <p>
+ * Only used for the time zones the JDK itself creates, and for dates after
+ * 1600 (<code>GregorianCalendar</code> uses the Julian calendar before 1582);
+ * <code>CronExpression</code> keeps using a <code>Calendar</code> otherwise.
+ * </p>
+ *
+ * 编译后的 cron 表达式, 用位运算代替 TreeSet 和 Calendar.
+ */
+final class CompiledCronExpression {
+
+    /** January 1st 1600, 00:00 UTC. */
+    static final long MIN_TIME = -11676096000000L;
+
+    /** Returned by <code>getTimeAfter</code> when there is no later time; times before 1970 are negative. */
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final Class<?> JDK_ZONE_CLASS = TimeZone.getTimeZone("UTC").getClass();
+
+    private static final ThreadLocal<WallClock> CLOCKS = new ThreadLocal<WallClock>() {
+        @Override
+        protected WallClock initialValue() {
+            return new WallClock();
+        }
+    };
+
+    private final long seconds;
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final long daysOfWeek;
+    private final int yearBase;
+    private final long[] years;
+
+    private final boolean dayOfMonthSpecified;
+    private final boolean dayOfWeekSpecified;
+    private final boolean lastdayOfWeek;
+    private final int nthdayOfWeek;
+    private final boolean lastdayOfMonth;
+    private final boolean nearestWeekday;
+    private final int lastdayOffset;
+
+    CompiledCronExpression(CronExpression expression) {
+        seconds = mask(expression.seconds, 59);
+        minutes = mask(expression.minutes, 59);
+        hours = mask(expression.hours, 23);
+        daysOfMonth = mask(expression.daysOfMonth, 31);
+        months = mask(expression.months, 12);
+        daysOfWeek = mask(expression.daysOfWeek, 7);
+
+        yearBase = expression.years.isEmpty() ? 0 : expression.years.first();
+        int span = expression.years.isEmpty() ? 0 : expression.years.last() - yearBase + 1;
+        years = new long[(span + 63) >>> 6];
+        for (Integer year : expression.years) {
+            int bit = year - yearBase;
+            years[bit >>> 6] |= 1L << bit;
+        }
+
+        dayOfMonthSpecified = !expression.daysOfMonth.contains(CronExpression.NO_SPEC);
+        dayOfWeekSpecified = !expression.daysOfWeek.contains(CronExpression.NO_SPEC);
+        lastdayOfWeek = expression.lastdayOfWeek;
+        nthdayOfWeek = expression.nthdayOfWeek;
+        lastdayOfMonth = expression.lastdayOfMonth;
+        nearestWeekday = expression.nearestWeekday;
+        lastdayOffset = expression.lastdayOffset;
+    }
+
+    /**
+     * Whether the fields this engine reads are all usable; the few
+     * expressions for which <code>CronExpression</code> would fail with a
+     * <code>NoSuchElementException</code> are left to it.
+     */
+    boolean isComplete() {
+        return seconds != 0 && minutes != 0 && hours != 0 && months != 0
+                && (!dayOfMonthSpecified || daysOfMonth != 0)
+                && (!dayOfWeekSpecified || daysOfWeek != 0);
+    }
+
+    static boolean supports(TimeZone zone, long afterTime) {
+        return zone.getClass() == JDK_ZONE_CLASS && afterTime >= MIN_TIME;
+    }
+
+    private static long mask(SortedSet<Integer> values, int max) {
+        long mask = 0;
+        for (Integer value : values) {
+            // leaves out the ALL_SPEC / NO_SPEC markers
+            if (value >= 0 && value <= max) {
+                mask |= 1L << value;
+            }
+        }
+        return mask;
+    }
+
+    /** The lowest value of the mask no lower than <code>from</code>, -1 if none. */
+    private static int next(long mask, int from) {
+        if (from > 63) {
+            return -1;
+        }
+        long m = mask & (-1L << Math.max(from, 0));
+        return m == 0 ? -1 : Long.numberOfTrailingZeros(m);
+    }
+
+    private static int first(long mask) {
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    private int nextYear(int from) {
+        int bit = Math.max(from - yearBase, 0);
+        int word = bit >>> 6;
+        if (word >= years.length) {
+            return -1;
+        }
+        long m = years[word] & (-1L << bit);
+        while (m == 0) {
+            if (++word == years.length) {
+                return -1;
+            }
+            m = years[word];
+        }
+        return yearBase + (word << 6) + Long.numberOfTrailingZeros(m);
+    }
+
+    /**
+     * The equivalent of <code>CronExpression.getTimeAfter</code>, in
+     * milliseconds; <code>NONE</code> if there is no such time.
+     */
+    long getTimeAfter(long afterTime, TimeZone zone) {
+        WallClock cl = CLOCKS.get();
+        cl.zone = zone;
+
+        // move ahead one second, since we're computing the time *after* the
+        // given time
+        afterTime += 1000;
+        // CronTrigger does not deal with milliseconds
+        cl.setTime(afterTime);
+
+        while (true) {
+
+            if (cl.year() > 2999) { // prevent endless loop...
+                return NONE;
+            }
+
+            int t;
+
+            int sec = cl.second();
+            int min = cl.minute();
+
+            // get second.................................................
+            int st = next(seconds, sec);
+            if (st >= 0) {
+                sec = st;
+            } else {
+                sec = first(seconds);
+                min++;
+                cl.setMinute(min);
+            }
+            cl.setSecond(sec);
+
+            min = cl.minute();
+            int hr = cl.hour();
+            t = -1;
+
+            // get minute.................................................
+            st = next(minutes, min);
+            if (st >= 0) {
+                t = min;
+                min = st;
+            } else {
+                min = first(minutes);
+                hr++;
+            }
+            if (min != t) {
+                cl.setSecond(0);
+                cl.setMinute(min);
+                cl.setHourWithDstAdjustment(hr);
+                continue;
+            }
+            cl.setMinute(min);
+
+            hr = cl.hour();
+            int day = cl.day();
+            t = -1;
+
+            // get hour...................................................
+            st = next(hours, hr);
+            if (st >= 0) {
+                t = hr;
+                hr = st;
+            } else {
+                hr = first(hours);
+                day++;
+            }
+            if (hr != t) {
+                cl.setSecond(0);
+                cl.setMinute(0);
+                cl.setDay(day);
+                cl.setHourWithDstAdjustment(hr);
+                continue;
+            }
+            cl.setHour(hr);
+
+            day = cl.day();
+            int mon = cl.month() + 1;
+            t = -1;
+            int tmon = mon;
+
+            // get day...................................................
+            if (dayOfMonthSpecified && !dayOfWeekSpecified) { // get day by day of month rule
+                st = next(daysOfMonth, day);
+                if (lastdayOfMonth) {
+                    if (!nearestWeekday) {
+                        t = day;
+                        day = lastDayOfMonth(mon, cl.year());
+                        day -= lastdayOffset;
+                        if (t > day) {
+                            mon++;
+                            if (mon > 12) {
+                                mon = 1;
+                                tmon = 3333; // ensure test of mon != tmon further below fails
+                                cl.addYear(1);
+                            }
+                            day = 1;
+                        }
+                    } else {
+                        t = day;
+                        day = lastDayOfMonth(mon, cl.year());
+                        day -= lastdayOffset;
+
+                        int year = cl.year();
+                        int ldom = lastDayOfMonth(mon, year);
+                        int dow = cl.dayOfWeekOf(year, mon - 1, day);
+
+                        if (dow == Calendar.SATURDAY && day == 1) {
+                            day += 2;
+                        } else if (dow == Calendar.SATURDAY) {
+                            day -= 1;
+                        } else if (dow == Calendar.SUNDAY && day == ldom) {
+                            day -= 2;
+                        } else if (dow == Calendar.SUNDAY) {
+                            day += 1;
+                        }
+
+                        if (cl.timeOf(year, mon - 1, day, hr, min, sec) < afterTime) {
+                            day = 1;
+                            mon++;
+                        }
+                    }
+                } else if (nearestWeekday) {
+                    t = day;
+                    day = first(daysOfMonth);
+
+                    int year = cl.year();
+                    int ldom = lastDayOfMonth(mon, year);
+                    int dow = cl.dayOfWeekOf(year, mon - 1, day);
+
+                    if (dow == Calendar.SATURDAY && day == 1) {
+                        day += 2;
+                    } else if (dow == Calendar.SATURDAY) {
+                        day -= 1;
+                    } else if (dow == Calendar.SUNDAY && day == ldom) {
+                        day -= 2;
+                    } else if (dow == Calendar.SUNDAY) {
+                        day += 1;
+                    }
+
+                    if (cl.timeOf(year, mon - 1, day, hr, min, sec) < afterTime) {
+                        day = first(daysOfMonth);
+                        mon++;
+                    }
+                } else if (st >= 0) {
+                    t = day;
+                    day = st;
+                    // make sure we don't over-run a short month, such as february
+                    int lastDay = lastDayOfMonth(mon, cl.year());
+                    if (day > lastDay) {
+                        day = first(daysOfMonth);
+                        mon++;
+                    }
+                } else {
+                    day = first(daysOfMonth);
+                    mon++;
+                }
+
+                if (day != t || mon != tmon) {
+                    cl.setSecond(0);
+                    cl.setMinute(0);
+                    cl.setHour(0);
+                    cl.setDay(day);
+                    cl.setMonth(mon - 1);
+                    continue;
+                }
+            } else if (dayOfWeekSpecified && !dayOfMonthSpecified) { // get day by day of week rule
+                if (lastdayOfWeek) { // are we looking for the last XXX day of the month?
+                    int dow = first(daysOfWeek); // desired d-o-w
+                    int cDow = cl.dayOfWeek(); // current d-o-w
+                    int daysToAdd = 0;
+                    if (cDow < dow) {
+                        daysToAdd = dow - cDow;
+                    }
+                    if (cDow > dow) {
+                        daysToAdd = dow + (7 - cDow);
+                    }
+
+                    int lDay = lastDayOfMonth(mon, cl.year());
+
+                    if (day + daysToAdd > lDay) { // did we already miss the last one?
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(1);
+                        cl.setMonth(mon);
+                        // no '- 1' here because we are promoting the month
+                        continue;
+                    }
+
+                    // find date of last occurrence of this day in this month...
+                    while ((day + daysToAdd + 7) <= lDay) {
+                        daysToAdd += 7;
+                    }
+
+                    day += daysToAdd;
+
+                    if (daysToAdd > 0) {
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(day);
+                        cl.setMonth(mon - 1);
+                        continue;
+                    }
+
+                } else if (nthdayOfWeek != 0) {
+                    // are we looking for the Nth XXX day in the month?
+                    int dow = first(daysOfWeek); // desired d-o-w
+                    int cDow = cl.dayOfWeek(); // current d-o-w
+                    int daysToAdd = 0;
+                    if (cDow < dow) {
+                        daysToAdd = dow - cDow;
+                    } else if (cDow > dow) {
+                        daysToAdd = dow + (7 - cDow);
+                    }
+
+                    boolean dayShifted = daysToAdd > 0;
+
+                    day += daysToAdd;
+                    int weekOfMonth = day / 7;
+                    if (day % 7 > 0) {
+                        weekOfMonth++;
+                    }
+
+                    daysToAdd = (nthdayOfWeek - weekOfMonth) * 7;
+                    day += daysToAdd;
+                    if (daysToAdd < 0 || day > lastDayOfMonth(mon, cl.year())) {
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(1);
+                        cl.setMonth(mon);
+                        // no '- 1' here because we are promoting the month
+                        continue;
+                    } else if (daysToAdd > 0 || dayShifted) {
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(day);
+                        cl.setMonth(mon - 1);
+                        continue;
+                    }
+                } else {
+                    int cDow = cl.dayOfWeek(); // current d-o-w
+                    int dow = first(daysOfWeek); // desired d-o-w
+                    st = next(daysOfWeek, cDow);
+                    if (st >= 0) {
+                        dow = st;
+                    }
+
+                    int daysToAdd = 0;
+                    if (cDow < dow) {
+                        daysToAdd = dow - cDow;
+                    }
+                    if (cDow > dow) {
+                        daysToAdd = dow + (7 - cDow);
+                    }
+
+                    int lDay = lastDayOfMonth(mon, cl.year());
+
+                    if (day + daysToAdd > lDay) { // will we pass the end of the month?
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(1);
+                        cl.setMonth(mon);
+                        // no '- 1' here because we are promoting the month
+                        continue;
+                    } else if (daysToAdd > 0) { // are we switching days?
+                        cl.setSecond(0);
+                        cl.setMinute(0);
+                        cl.setHour(0);
+                        cl.setDay(day + daysToAdd);
+                        cl.setMonth(mon - 1);
+                        continue;
+                    }
+                }
+            } else { // dayOfWSpec && !dayOfMSpec
+                throw new UnsupportedOperationException(
+                        "Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.");
+            }
+            cl.setDay(day);
+
+            mon = cl.month() + 1;
+            int year = cl.year();
+            t = -1;
+
+            // test for expressions that never generate a valid fire date,
+            // but keep looping...
+            if (year > CronExpression.MAX_YEAR) {
+                return NONE;
+            }
+
+            // get month...................................................
+            st = next(months, mon);
+            if (st >= 0) {
+                t = mon;
+                mon = st;
+            } else {
+                mon = first(months);
+                year++;
+            }
+            if (mon != t) {
+                cl.setSecond(0);
+                cl.setMinute(0);
+                cl.setHour(0);
+                cl.setDay(1);
+                cl.setMonth(mon - 1);
+                cl.setYear(year);
+                continue;
+            }
+            cl.setMonth(mon - 1);
+
+            year = cl.year();
+            t = -1;
+
+            // get year...................................................
+            st = nextYear(year);
+            if (st >= 0) {
+                t = year;
+                year = st;
+            } else {
+                return NONE; // ran out of years...
+            }
+
+            if (year != t) {
+                cl.setSecond(0);
+                cl.setMinute(0);
+                cl.setHour(0);
+                cl.setDay(1);
+                cl.setMonth(0);
+                cl.setYear(year);
+                continue;
+            }
+            cl.setYear(year);
+
+            return cl.time();
+        }
+    }
+
+    static boolean isLeapYear(int year) {
+        return ((year % 4 == 0 && year % 100 != 0) || (year % 400 == 0));
+    }
+
+    static int lastDayOfMonth(int monthNum, int year) {
+        switch (monthNum) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            case 1:
+            case 3:
+            case 5:
+            case 7:
+            case 8:
+            case 10:
+            case 12:
+                return 31;
+            default:
+                throw new IllegalArgumentException("Illegal month number: " + monthNum);
+        }
+    }
+
+    /**
+     * <p>
+     * The subset of a lenient <code>GregorianCalendar</code> that the cron
+     * search uses, without its allocations: fields can be set out of range,
+     * and are normalized, through the time they designate, when next read.
+     * </p>
+     *
+     * <p>
+     * Like <code>GregorianCalendar</code> with the JDK time zones, a local
+     * time skipped by a daylight saving transition is read with the offset
+     * in effect before the transition, and a repeated local time designates
+     * its second occurrence.
+     * </p>
+     */
+    static final class WallClock {
+
+        private static final long MILLIS_PER_DAY = 86400000L;
+
+        // wide enough to hold any one offset transition
+        private static final long PROBE_WINDOW = 6 * 3600000L;
+
+        TimeZone zone;
+
+        private long time;
+        private boolean dirty;
+
+        private int year;
+        private int month; // 0-based, as in Calendar
+        private int day;
+        private int hour;
+        private int minute;
+        private int second;
+        private int dayOfWeek;
+
+        /**
+         * Like <code>setTime</code> followed by <code>set(MILLISECOND, 0)</code>.
+         */
+        void setTime(long millis) {
+            computeFields(millis);
+            // the milliseconds were set: the time is taken back from the fields
+            dirty = true;
+        }
+
+        long time() {
+            complete();
+            return time;
+        }
+
+        int year() {
+            complete();
+            return year;
+        }
+
+        int month() {
+            complete();
+            return month;
+        }
+
+        int day() {
+            complete();
+            return day;
+        }
+
+        int hour() {
+            complete();
+            return hour;
+        }
+
+        int minute() {
+            complete();
+            return minute;
+        }
+
+        int second() {
+            complete();
+            return second;
+        }
+
+        int dayOfWeek() {
+            complete();
+            return dayOfWeek;
+        }
+
+        void setYear(int year) {
+            this.year = year;
+            dirty = true;
+        }
+
+        void setMonth(int month) {
+            this.month = month;
+            dirty = true;
+        }
+
+        void setDay(int day) {
+            this.day = day;
+            dirty = true;
+        }
+
+        void setHour(int hour) {
+            this.hour = hour;
+            dirty = true;
+        }
+
+        void setMinute(int minute) {
+            this.minute = minute;
+            dirty = true;
+        }
+
+        void setSecond(int second) {
+            this.second = second;
+            dirty = true;
+        }
+
+        /**
+         * <code>CronExpression.setCalendarHour</code>: if the hour does not
+         * exist that day, move to the next one.
+         */
+        void setHourWithDstAdjustment(int hour) {
+            setHour(hour);
+            if (hour() != hour && hour != 24) {
+                setHour(hour + 1);
+            }
+        }
+
+        /**
+         * <code>add(Calendar.YEAR, amount)</code>, with the day pinned to the
+         * length of the month.
+         */
+        void addYear(int amount) {
+            complete();
+            year += amount;
+            int monthLength = lastDayOfMonth(month + 1, year);
+            if (day > monthLength) {
+                day = monthLength;
+            }
+            dirty = true;
+        }
+
+        /**
+         * The time designated by the given (possibly out of range) local
+         * fields.
+         */
+        long timeOf(int year, int month, int day, int hour, int minute, int second) {
+            long wall = localMillis(year, month, day, hour, minute, second);
+            return wall - wallOffset(wall);
+        }
+
+        /**
+         * The day of week (<code>Calendar.SUNDAY</code> to
+         * <code>Calendar.SATURDAY</code>) at midnight of the given local date.
+         */
+        int dayOfWeekOf(int year, int month, int day) {
+            long t = timeOf(year, month, day, 0, 0, 0);
+            return dayOfWeek(Math.floorDiv(t + zone.getOffset(t), MILLIS_PER_DAY));
+        }
+
+        private void complete() {
+            if (dirty) {
+                computeFields(timeOf(year, month, day, hour, minute, second));
+            }
+        }
+
+        private void computeFields(long millis) {
+            long local = Math.floorDiv(millis + zone.getOffset(millis), 1000L);
+            time = millis - Math.floorMod(millis, 1000L);
+            dirty = false;
+
+            long epochDay = Math.floorDiv(local, 86400L);
+            int secondOfDay = (int) Math.floorMod(local, 86400L);
+            hour = secondOfDay / 3600;
+            minute = (secondOfDay / 60) % 60;
+            second = secondOfDay % 60;
+            dayOfWeek = dayOfWeek(epochDay);
+
+            // civil date from days, see java.time.LocalDate.ofEpochDay
+            long zeroDay = epochDay + 719528L - 60L;
+            long yearEst = (400 * zeroDay + 591) / 146097;
+            long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+            if (doyEst < 0) {
+                yearEst--;
+                doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+            }
+            int marchDoy0 = (int) doyEst;
+            int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+            month = (marchMonth0 + 2) % 12;
+            day = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+            year = (int) (yearEst + marchMonth0 / 10);
+        }
+
+        /**
+         * The offset of the given local time: the one in effect after the
+         * nearest transition if the local time is at or after the end of
+         * that transition, the one in effect before otherwise.
+         */
+        private int wallOffset(long wall) {
+            long approx = wall - zone.getOffset(wall - zone.getRawOffset());
+            int before = zone.getOffset(approx - PROBE_WINDOW);
+            int after = zone.getOffset(approx + PROBE_WINDOW);
+            if (before == after) {
+                return before;
+            }
+            return zone.getOffset(wall - after) == after ? after : before;
+        }
+
+        private static int dayOfWeek(long epochDay) {
+            // 1970-01-01 was a Thursday
+            return (int) Math.floorMod(epochDay + 4, 7L) + 1;
+        }
+
+        private static long localMillis(int year, int month, int day, int hour, int minute, int second) {
+            year += Math.floorDiv(month, 12);
+            month = Math.floorMod(month, 12);
+            return (epochDay(year, month + 1) + day - 1) * MILLIS_PER_DAY
+                    + ((hour * 60L + minute) * 60L + second) * 1000L;
+        }
+
+        /** The epoch day of the first of the month, see java.time.LocalDate.toEpochDay. */
+        private static long epochDay(int year, int month) {
+            long y = year;
+            long total = 365 * y;
+            if (y >= 0) {
+                total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+            } else {
+                total -= y / -4 - y / -100 + y / -400;
+            }
+            total += ((367 * month - 362) / 12);
+            if (month > 2) {
+                total--;
+                if (!isLeapYear(year)) {
+                    total--;
+                }
+            }
+            return total - 719528L;
+        }
+    }
+}
@@ -266,6 +266,7 @@ public final class CronExpression implements Serializable, Cloneable {
     protected transient boolean nearestWeekday = false;
     protected transient int lastdayOffset = 0;
     protected transient boolean expressionParsed = false;
+    private transient volatile CompiledCronExpression compiled;
     
     public static final int MAX_YEAR = Calendar.getInstance().get(Calendar.YEAR) + 100;
 
@@ -1198,6 +1199,26 @@ public final class CronExpression implements Serializable, Cloneable {
     ////////////////////////////////////////////////////////////////////////////
 
     public Date getTimeAfter(Date afterTime) {
+        TimeZone zone = getTimeZone();
+        if (CompiledCronExpression.supports(zone, afterTime.getTime())) {
+            CompiledCronExpression c = compiled;
+            if (c == null) {
+                compiled = c = new CompiledCronExpression(this);
+            }
+            if (c.isComplete()) {
+                long time = c.getTimeAfter(afterTime.getTime(), zone);
+                return time == CompiledCronExpression.NONE ? null : new Date(time);
+            }
+        }
+        return getTimeAfterWithCalendar(afterTime);
+    }
+
+    /**
+     * The computation of <code>{@link #getTimeAfter(Date)}</code> with a
+     * <code>java.util.Calendar</code>, for the time zones and dates that
+     * <code>{@link CompiledCronExpression}</code> does not handle.
+     */
+    Date getTimeAfterWithCalendar(Date afterTime) {
 
         // Computation is based on Gregorian year only.
         Calendar cl = new java.util.GregorianCalendar(getTimeZone()); 
@@ -0,0 +1,70 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.lang.annotation.*;
+
+/**
+ * An annotation that marks a {@link Job} class whose instances may be used
+ * for more than one execution, so that the <code>JobFactory</code> need not
+ * create one for every firing. This pays for jobs that are expensive to
+ * construct, such as jobs that hold clients or compiled templates.
+ *
+ * <p>
+ * By default one instance is kept per {@link JobDetail} (see
+ * {@link #scope()}), and it is used by concurrent executions at the same
+ * time, so the class must be thread-safe; if it is not, set
+ * {@link #threadSafe()} to <code>false</code>: an instance is then only
+ * kept for the jobs marked with {@link DisallowConcurrentExecution}, whose
+ * executions do not overlap. An instance is dropped when the job it was
+ * created for is deleted, or replaced by a different definition (other
+ * class, description or <code>JobDataMap</code>).
+ * </p>
+ *
+ * <p>
+ * <code>PropertySettingJobFactory</code> creates a new instance for the
+ * firings that set bean properties of the job, rather than change the
+ * instance that is kept.
+ * </p>
+ *
+ * 标记可复用实例的 Job 类
+ *
+ * @see org.quartz.simpl.SimpleJobFactory
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ReusableJobInstance {
+
+    /**
+     * What the instances are shared by.
+     */
+    enum Scope {
+        /** One instance for each <code>JobDetail</code>, by key. */
+        JOB,
+        /** One instance for every <code>JobDetail</code> of the class. */
+        CLASS
+    }
+
+    Scope scope() default Scope.JOB;
+
+    /**
+     * Whether one instance may be executed by several threads at once;
+     * if not, instances are only kept for the scope {@link Scope#JOB} and
+     * the jobs that disallow concurrent execution.
+     */
+    boolean threadSafe() default true;
+}
@@ -0,0 +1,155 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the batches of triggers the scheduler threads acquire.
+ *
+ * <p>
+ * When disabled, the batches are sized as configured
+ * (<code>maxBatchSize</code> and <code>batchTimeWindow</code>). When
+ * enabled, those are the smallest batches: after {@link #GROW_AFTER}
+ * acquisitions in a row that filled a batch, the batch size and the time
+ * window are doubled, up to their limits; when the jobs start later than
+ * the lateness threshold on average, they are halved back.
+ * </p>
+ *
+ * 根据获取结果与触发延迟自适应调整批量获取的大小与时间窗口
+ */
+class AdaptiveBatchController {
+
+    /** The number of full batches in a row after which batches grow. */
+    static final int GROW_AFTER = 3;
+
+    /** The weight of a new lateness sample. */
+    static final double ALPHA = 0.1;
+
+    private final boolean enabled;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long minTimeWindow;
+
+    private final long maxTimeWindow;
+
+    private final long latenessThresholdNanos;
+
+    private int batchSize;
+
+    private long timeWindow;
+
+    private int fullBatches;
+
+    private double latenessNanos;
+
+    private long growCount;
+
+    private long shrinkCount;
+
+    private long nextFireTimeWaitCount;
+
+    AdaptiveBatchController(QuartzSchedulerResources resources) {
+        this(resources.isAdaptiveAcquisition(), resources.getMaxBatchSize(), resources.getBatchTimeWindow(),
+                resources.getAdaptiveAcquisitionMaxBatchSize(), resources.getAdaptiveAcquisitionMaxTimeWindow(),
+                resources.getAdaptiveAcquisitionLatenessThreshold());
+    }
+
+    AdaptiveBatchController(boolean enabled, int batchSize, long timeWindow,
+            int maxBatchSize, long maxTimeWindow, long latenessThreshold) {
+        this.enabled = enabled;
+        this.minBatchSize = batchSize;
+        this.minTimeWindow = timeWindow;
+        this.maxBatchSize = Math.max(batchSize, maxBatchSize);
+        this.maxTimeWindow = Math.max(timeWindow, maxTimeWindow);
+        this.latenessThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latenessThreshold);
+        this.batchSize = batchSize;
+        this.timeWindow = timeWindow;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    synchronized long getTimeWindow() {
+        return timeWindow;
+    }
+
+    /**
+     * An acquisition of at most <code>maxCount</code> triggers returned
+     * <code>acquired</code> of them.
+     */
+    synchronized void acquired(int maxCount, int acquired) {
+        if (!enabled) {
+            return;
+        }
+        if (latenessNanos > latenessThresholdNanos) {
+            if (batchSize > minBatchSize || timeWindow > minTimeWindow) {
+                batchSize = Math.max(minBatchSize, batchSize / 2);
+                timeWindow = Math.max(minTimeWindow, timeWindow / 2);
+                shrinkCount++;
+            }
+            // wait for the lateness of the smaller batches
+            latenessNanos = 0;
+            fullBatches = 0;
+        } else if (maxCount == batchSize && acquired >= maxCount) {
+            // a batch cut short by the available threads tells nothing
+            if (++fullBatches >= GROW_AFTER) {
+                fullBatches = 0;
+                if (batchSize < maxBatchSize || timeWindow < maxTimeWindow) {
+                    batchSize = (int) Math.min(maxBatchSize, batchSize * 2L);
+                    timeWindow = Math.min(maxTimeWindow, timeWindow == 0 ? 1 : timeWindow * 2);
+                    growCount++;
+                }
+            }
+        } else if (acquired < maxCount) {
+            fullBatches = 0;
+        }
+    }
+
+    /**
+     * A job started <code>nanos</code> after its scheduled fire time.
+     */
+    synchronized void fired(long nanos) {
+        if (enabled) {
+            latenessNanos += ALPHA * (Math.max(nanos, 0) - latenessNanos);
+        }
+    }
+
+    synchronized long getGrowCount() {
+        return growCount;
+    }
+
+    synchronized long getShrinkCount() {
+        return shrinkCount;
+    }
+
+    /** An idle scheduler thread waits until the next fire time of the job store. */
+    synchronized void waitingUntilNextFireTime() {
+        nextFireTimeWaitCount++;
+    }
+
+    synchronized long getNextFireTimeWaitCount() {
+        return nextFireTimeWaitCount;
+    }
+}
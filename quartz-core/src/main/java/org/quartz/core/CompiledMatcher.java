@@ -0,0 +1,109 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.quartz.Matcher;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.StringMatcher.StringOperatorName;
+import org.quartz.utils.Key;
+
+/**
+ * The matchers of a listener, compiled so that the usual ones are evaluated
+ * without calling them: a listener with an <code>EverythingMatcher</code>
+ * (or <code>anyGroup()</code>) matches every key, and the group names of the
+ * <code>groupEquals</code> matchers are looked up in a set. Any other
+ * matcher is called as usual.
+ *
+ * <p>
+ * A key matches if any of the matchers matches it, as before.
+ * </p>
+ */
+final class CompiledMatcher<K extends Key<?>> {
+
+    private static final CompiledMatcher<?> EVERYTHING = new CompiledMatcher<Key<?>>(true, null, null);
+
+    private final boolean everything;
+
+    private final Set<String> groups;
+
+    private final Matcher<K>[] others;
+
+    private CompiledMatcher(boolean everything, Set<String> groups, Matcher<K>[] others) {
+        this.everything = everything;
+        this.groups = groups;
+        this.others = others;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Key<?>> CompiledMatcher<K> everything() {
+        return (CompiledMatcher<K>) EVERYTHING;
+    }
+
+    /**
+     * Compile the given matchers; no matchers at all match every key, as for
+     * the listeners the <code>ListenerManager</code> has none for.
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Key<?>> CompiledMatcher<K> compile(List<Matcher<K>> matchers) {
+        if (matchers == null) {
+            return everything();
+        }
+        Set<String> groups = null;
+        List<Matcher<K>> others = new ArrayList<Matcher<K>>();
+        for (Matcher<K> matcher : matchers) {
+            // only the exact classes: subclasses may have overridden isMatch()
+            if (matcher.getClass() == EverythingMatcher.class) {
+                return everything();
+            }
+            if (matcher.getClass() == GroupMatcher.class) {
+                GroupMatcher<K> groupMatcher = (GroupMatcher<K>) matcher;
+                if (groupMatcher.getCompareWithOperator() == StringOperatorName.ANYTHING) {
+                    return everything();
+                }
+                if (groupMatcher.getCompareWithOperator() == StringOperatorName.EQUALS) {
+                    if (groups == null) {
+                        groups = new HashSet<String>();
+                    }
+                    groups.add(groupMatcher.getCompareToValue());
+                    continue;
+                }
+            }
+            others.add(matcher);
+        }
+        return new CompiledMatcher<K>(false, groups, (Matcher<K>[]) others.toArray(new Matcher<?>[others.size()]));
+    }
+
+    boolean isMatch(K key) {
+        if (everything) {
+            return true;
+        }
+        if (groups != null && groups.contains(key.getGroup())) {
+            return true;
+        }
+        for (Matcher<K> matcher : others) {
+            if (matcher.isMatch(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps the fire times of triggers, in milliseconds of the wall clock, to
+ * <code>System.nanoTime()</code>, so that they can be waited for and
+ * measured against with a precision below a millisecond.
+ *
+ * <p>
+ * <code>System.currentTimeMillis()</code> is read at the moment it ticks
+ * over to the next millisecond, and that moment is taken from
+ * <code>System.nanoTime()</code>. As the two clocks drift apart (the wall
+ * clock is adjusted by NTP, for one), the mapping is redone every
+ * {@link #RECALIBRATE_INTERVAL} by the scheduler threads.
+ * </p>
+ *
+ * 将触发时间（毫秒）换算为System.nanoTime()，以便亚毫秒精度的等待与测量
+ */
+class FireClock {
+
+    static final long RECALIBRATE_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private static final class Calibration {
+        final long millis;
+
+        final long nanos;
+
+        Calibration(long millis, long nanos) {
+            this.millis = millis;
+            this.nanos = nanos;
+        }
+    }
+
+    private volatile Calibration calibration;
+
+    /**
+     * The <code>System.nanoTime()</code> at which the wall clock shows the
+     * given time.
+     */
+    long nanosOf(long epochMillis) {
+        Calibration c = calibration;
+        if (c == null) {
+            c = calibrate();
+        }
+        return c.nanos + TimeUnit.MILLISECONDS.toNanos(epochMillis - c.millis);
+    }
+
+    /**
+     * Redo the mapping, if it was last done more than
+     * {@link #RECALIBRATE_INTERVAL} ago. Spins for up to a tick of the wall
+     * clock, so is only called by the scheduler threads.
+     */
+    void calibrateIfStale() {
+        Calibration c = calibration;
+        if (c == null || System.nanoTime() - c.nanos > RECALIBRATE_INTERVAL) {
+            calibrate();
+        }
+    }
+
+    private Calibration calibrate() {
+        long start = System.currentTimeMillis();
+        long millis;
+        long nanos;
+        do {
+            nanos = System.nanoTime();
+            millis = System.currentTimeMillis();
+        } while (millis == start);
+        Calibration c = new Calibration(millis, nanos);
+        calibration = c;
+        return c;
+    }
+}
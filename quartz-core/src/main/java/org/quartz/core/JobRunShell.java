@@ -103,10 +103,11 @@ public class JobRunShell extends SchedulerListenerSupport implements Runnable {
 
     @Override
     public void run() {
-        qs.addInternalSchedulerListener(this);
+        qs.addRunningShell(this);
         try {
             OperableTrigger trigger = (OperableTrigger) jec.getTrigger();
             JobDetail jobDetail = jec.getJobDetail();
+            boolean firstExecution = true;
             do {
                 JobExecutionException jobExEx = null;
                 Job job = jec.getJobInstance();
@@ -144,6 +145,11 @@ public class JobRunShell extends SchedulerListenerSupport implements Runnable {
                     break;
                 }
 
+                if (firstExecution) {
+                    qs.recordFireLateness(jec);
+                    firstExecution = false;
+                }
+
                 long startTime = System.currentTimeMillis();
                 long endTime = startTime;
 
@@ -222,7 +228,7 @@ public class JobRunShell extends SchedulerListenerSupport implements Runnable {
             } while (true);
 
         } finally {
-            qs.removeInternalSchedulerListener(this);
+            qs.removeRunningShell(this);
         }
     }
 
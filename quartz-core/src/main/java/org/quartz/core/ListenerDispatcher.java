@@ -0,0 +1,612 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.quartz.AsyncListener;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.SchedulerException;
+import org.quartz.SchedulerListener;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the notifications of the listeners marked with
+ * <code>{@link AsyncListener}</code> on its own threads, so that a slow
+ * listener does not hold up the jobs or the scheduler thread.
+ *
+ * <p>
+ * Each dispatch thread has a bounded, lock-free queue of notifications, and
+ * each listener is given to one of the threads, so that its notifications are
+ * delivered one at a time and in the order they were made. A thread that has
+ * been woken up runs up to <code>batchSize</code> notifications before it
+ * looks at anything else. When a queue is full, the {@link OverflowPolicy}
+ * decides what becomes of the notification. The threads are started with the
+ * first asynchronous notification, and once the dispatcher is shut down the
+ * notifications are delivered on the caller's thread. Callers queue under
+ * the read lock of a read-write lock whose write lock shutting down takes, so
+ * nothing is queued after the dispatch threads made their last pass.
+ * </p>
+ *
+ * <p>
+ * <code>QuartzScheduler</code> wraps the marked listeners as it builds its
+ * listener snapshots (see the <code>decorate</code> methods), so the
+ * <code>notify...</code> methods need not know about any of this.
+ * </p>
+ *
+ * 监听器的异步分发: 有界无锁队列, 按批处理, 可配置的溢出策略
+ */
+public class ListenerDispatcher {
+
+    /**
+     * What to do with a notification when the queue of its dispatch thread
+     * is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until there is room in the queue. */
+        BLOCK,
+        /** Log and forget the notification. */
+        DROP,
+        /** Deliver the notification on the calling thread. */
+        CALLER_RUNS
+    }
+
+    public static final int DEFAULT_THREAD_COUNT = 1;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** How long an idle dispatch thread, or a blocked caller, parks before looking again. */
+    private static final long PARK_NANOS = 100L * 1000L * 1000L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Lane[] lanes;
+
+    private final int queueSize;
+
+    private final int batchSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean started;
+
+    private volatile boolean shutdown;
+
+    /** Read-held while a notification is queued, write-held to shut down. */
+    private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+
+    final ListenerSnapshot.Decorator<JobListener> jobListenerDecorator = new ListenerSnapshot.Decorator<JobListener>() {
+        public JobListener decorate(JobListener listener) {
+            return ListenerDispatcher.this.decorate(listener);
+        }
+    };
+
+    final ListenerSnapshot.Decorator<TriggerListener> triggerListenerDecorator = new ListenerSnapshot.Decorator<TriggerListener>() {
+        public TriggerListener decorate(TriggerListener listener) {
+            return ListenerDispatcher.this.decorate(listener);
+        }
+    };
+
+    public ListenerDispatcher(String name, int threadCount, int queueSize, int batchSize,
+            OverflowPolicy overflowPolicy, boolean makeThreadsDaemons) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Listener dispatch thread count must be > 0");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Listener dispatch queue size must be > 0");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Listener dispatch batch size must be > 0");
+        }
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.BLOCK : overflowPolicy;
+        this.lanes = new Lane[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            lanes[i] = new Lane(name + "_ListenerDispatcher-" + i);
+            lanes[i].setDaemon(makeThreadsDaemons);
+        }
+    }
+
+    /**
+     * Whether the notifications of the given listener are to be delivered
+     * asynchronously.
+     */
+    public static boolean isAsync(Object listener) {
+        return listener.getClass().isAnnotationPresent(AsyncListener.class);
+    }
+
+    /**
+     * The listener itself, or one that dispatches its notifications, if it
+     * is marked with <code>{@link AsyncListener}</code>.
+     */
+    public JobListener decorate(final JobListener listener) {
+        if (!isAsync(listener)) {
+            return listener;
+        }
+        return new JobListener() {
+            public String getName() {
+                return listener.getName();
+            }
+
+            public void jobToBeExecuted(final JobExecutionContext context) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobToBeExecuted(context);
+                    }
+                });
+            }
+
+            public void jobExecutionVetoed(final JobExecutionContext context) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobExecutionVetoed(context);
+                    }
+                });
+            }
+
+            public void jobWasExecuted(final JobExecutionContext context, final JobExecutionException jobException) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobWasExecuted(context, jobException);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * The listener itself, or one that dispatches its notifications, if it
+     * is marked with <code>{@link AsyncListener}</code>;
+     * <code>triggerFired()</code> and <code>vetoJobExecution()</code> are
+     * still called directly, since the scheduler waits for the veto.
+     */
+    public TriggerListener decorate(final TriggerListener listener) {
+        if (!isAsync(listener)) {
+            return listener;
+        }
+        return new TriggerListener() {
+            public String getName() {
+                return listener.getName();
+            }
+
+            public void triggerFired(Trigger trigger, JobExecutionContext context) {
+                listener.triggerFired(trigger, context);
+            }
+
+            public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+                return listener.vetoJobExecution(trigger, context);
+            }
+
+            public void triggerMisfired(final Trigger trigger) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggerMisfired(trigger);
+                    }
+                });
+            }
+
+            public void triggerComplete(final Trigger trigger, final JobExecutionContext context,
+                    final CompletedExecutionInstruction triggerInstructionCode) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggerComplete(trigger, context, triggerInstructionCode);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * The listener itself, or one that dispatches its notifications, if it
+     * is marked with <code>{@link AsyncListener}</code>.
+     */
+    public SchedulerListener decorate(final SchedulerListener listener) {
+        if (!isAsync(listener)) {
+            return listener;
+        }
+        return new SchedulerListener() {
+            public void jobScheduled(final Trigger trigger) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobScheduled(trigger);
+                    }
+                });
+            }
+
+            public void jobUnscheduled(final TriggerKey triggerKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobUnscheduled(triggerKey);
+                    }
+                });
+            }
+
+            public void triggerFinalized(final Trigger trigger) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggerFinalized(trigger);
+                    }
+                });
+            }
+
+            public void triggerPaused(final TriggerKey triggerKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggerPaused(triggerKey);
+                    }
+                });
+            }
+
+            public void triggersPaused(final String triggerGroup) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggersPaused(triggerGroup);
+                    }
+                });
+            }
+
+            public void triggerResumed(final TriggerKey triggerKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggerResumed(triggerKey);
+                    }
+                });
+            }
+
+            public void triggersResumed(final String triggerGroup) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.triggersResumed(triggerGroup);
+                    }
+                });
+            }
+
+            public void jobAdded(final JobDetail jobDetail) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobAdded(jobDetail);
+                    }
+                });
+            }
+
+            public void jobDeleted(final JobKey jobKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobDeleted(jobKey);
+                    }
+                });
+            }
+
+            public void jobPaused(final JobKey jobKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobPaused(jobKey);
+                    }
+                });
+            }
+
+            public void jobsPaused(final String jobGroup) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobsPaused(jobGroup);
+                    }
+                });
+            }
+
+            public void jobResumed(final JobKey jobKey) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobResumed(jobKey);
+                    }
+                });
+            }
+
+            public void jobsResumed(final String jobGroup) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.jobsResumed(jobGroup);
+                    }
+                });
+            }
+
+            public void schedulerError(final String msg, final SchedulerException cause) {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerError(msg, cause);
+                    }
+                });
+            }
+
+            public void schedulerInStandbyMode() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerInStandbyMode();
+                    }
+                });
+            }
+
+            public void schedulerStarted() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerStarted();
+                    }
+                });
+            }
+
+            public void schedulerStarting() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerStarting();
+                    }
+                });
+            }
+
+            public void schedulerShutdown() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerShutdown();
+                    }
+                });
+            }
+
+            public void schedulerShuttingdown() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulerShuttingdown();
+                    }
+                });
+            }
+
+            public void schedulingDataCleared() {
+                dispatch(listener, new Runnable() {
+                    public void run() {
+                        listener.schedulingDataCleared();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Queue a notification of the given listener, or deal with it as the
+     * overflow policy says if its queue is full.
+     */
+    void dispatch(Object listener, Runnable notification) {
+        if (shutdown) {
+            deliver(notification);
+            return;
+        }
+        if (!started) {
+            start();
+        }
+        Lane lane = lanes[(System.identityHashCode(listener) & Integer.MAX_VALUE) % lanes.length];
+        for (;;) {
+            // under the read lock, so that shutdown() cannot miss it
+            shutdownLock.readLock().lock();
+            try {
+                if (shutdown) {
+                    break;
+                }
+                if (lane.offer(notification)) {
+                    return;
+                }
+            } finally {
+                shutdownLock.readLock().unlock();
+            }
+            switch (overflowPolicy) {
+                case DROP:
+                    long dropped = droppedCount.incrementAndGet();
+                    if (dropped == 1 || dropped % 1000 == 0) {
+                        log.warn("Listener dispatch queue full, " + dropped
+                                + " notification(s) dropped so far.");
+                    }
+                    return;
+                case CALLER_RUNS:
+                    deliver(notification);
+                    return;
+                default:
+                    lane.awaitRoom();
+            }
+        }
+        deliver(notification);
+    }
+
+    private synchronized void start() {
+        if (started || shutdown) {
+            return;
+        }
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+        started = true;
+    }
+
+    /**
+     * Deliver the notifications still queued, and stop the dispatch threads;
+     * later notifications are delivered on the caller's thread.
+     */
+    public void shutdown() {
+        // waits for the notifications being queued, later ones see the flag
+        shutdownLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                shutdown = true;
+            }
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        if (started) {
+            for (Lane lane : lanes) {
+                LockSupport.unpark(lane);
+            }
+            for (Lane lane : lanes) {
+                try {
+                    lane.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        // anything queued as the threads were stopping
+        for (Lane lane : lanes) {
+            lane.drain(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * The number of notifications dropped for want of room in the queues,
+     * with the <code>DROP</code> policy.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /** The number of notifications queued and not yet delivered. */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.size.get();
+        }
+        return queued;
+    }
+
+    public int getThreadCount() {
+        return lanes.length;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private void deliver(Runnable notification) {
+        try {
+            notification.run();
+        } catch (Throwable t) {
+            log.error("Listener threw an exception while being notified asynchronously.", t);
+        }
+    }
+
+    /**
+     * A dispatch thread with its queue. The queue is a
+     * <code>ConcurrentLinkedQueue</code> bounded by a separate count: a
+     * caller first claims a place by incrementing the count, and the thread
+     * gives it back once it has taken the notification off the queue.
+     */
+    private class Lane extends Thread {
+
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+
+        final AtomicInteger size = new AtomicInteger();
+
+        // callers blocked on a full queue
+        private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+        private volatile boolean parked;
+
+        Lane(String name) {
+            super(name);
+        }
+
+        boolean offer(Runnable notification) {
+            for (;;) {
+                int n = size.get();
+                if (n >= queueSize) {
+                    return false;
+                }
+                if (size.compareAndSet(n, n + 1)) {
+                    break;
+                }
+            }
+            queue.offer(notification);
+            if (parked) {
+                LockSupport.unpark(this);
+            }
+            return true;
+        }
+
+        void awaitRoom() {
+            Thread current = Thread.currentThread();
+            waiters.offer(current);
+            // the thread may have made room before seeing us
+            if (size.get() >= queueSize && !shutdown) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waiters.remove(current);
+        }
+
+        /** Deliver up to <code>max</code> notifications; returns how many. */
+        int drain(int max) {
+            int count = 0;
+            Runnable notification;
+            while (count < max && (notification = queue.poll()) != null) {
+                size.decrementAndGet();
+                count++;
+                deliver(notification);
+            }
+            if (count > 0) {
+                for (Thread waiter : waiters) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                if (drain(batchSize) > 0) {
+                    continue;
+                }
+                if (shutdown) {
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                parked = true;
+                if (queue.isEmpty() && !shutdown) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+}
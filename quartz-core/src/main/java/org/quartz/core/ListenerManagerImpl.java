@@ -17,6 +17,15 @@ public class ListenerManagerImpl implements ListenerManager {
 
     private ArrayList<SchedulerListener> schedulerListeners = new ArrayList<SchedulerListener>(10);
 
+    // immutable copies of the above, republished on every change, which the
+    // scheduler reads when notifying without taking any lock
+
+    private volatile ListenerSnapshot<JobListener, JobKey> jobListenerSnapshot = ListenerSnapshot.empty();
+
+    private volatile ListenerSnapshot<TriggerListener, TriggerKey> triggerListenerSnapshot = ListenerSnapshot.empty();
+
+    private volatile List<SchedulerListener> schedulerListenerSnapshot = Collections.emptyList();
+
 
     @Override
     public void addJobListener(JobListener jobListener, Matcher<JobKey>... matchers) {
@@ -39,6 +48,7 @@ public class ListenerManagerImpl implements ListenerManager {
                 matchersL.add(EverythingMatcher.allJobs());
 
             globalJobListenersMatchers.put(jobListener.getName(), matchersL);
+            publishJobListeners();
         }
     }
 
@@ -64,6 +74,7 @@ public class ListenerManagerImpl implements ListenerManager {
                 matchersL.add(EverythingMatcher.allJobs());
 
             globalJobListenersMatchers.put(jobListener.getName(), matchersL);
+            publishJobListeners();
         }
     }
 
@@ -78,6 +89,7 @@ public class ListenerManagerImpl implements ListenerManager {
             if (matchers == null)
                 return false;
             matchers.add(matcher);
+            publishJobListeners();
             return true;
         }
     }
@@ -90,7 +102,9 @@ public class ListenerManagerImpl implements ListenerManager {
             List<Matcher<JobKey>> matchers = globalJobListenersMatchers.get(listenerName);
             if (matchers == null)
                 return false;
-            return matchers.remove(matcher);
+            boolean removed = matchers.remove(matcher);
+            publishJobListeners();
+            return removed;
         }
     }
 
@@ -113,6 +127,7 @@ public class ListenerManagerImpl implements ListenerManager {
             if (oldMatchers == null)
                 return false;
             globalJobListenersMatchers.put(listenerName, matchers);
+            publishJobListeners();
             return true;
         }
     }
@@ -121,15 +136,15 @@ public class ListenerManagerImpl implements ListenerManager {
     @Override
     public boolean removeJobListener(String name) {
         synchronized (globalJobListeners) {
-            return (globalJobListeners.remove(name) != null);
+            boolean removed = globalJobListeners.remove(name) != null;
+            publishJobListeners();
+            return removed;
         }
     }
 
     @Override
     public List<JobListener> getJobListeners() {
-        synchronized (globalJobListeners) {
-            return java.util.Collections.unmodifiableList(new LinkedList<JobListener>(globalJobListeners.values()));
-        }
+        return jobListenerSnapshot.getListeners();
     }
 
     public JobListener getJobListener(String name) {
@@ -160,6 +175,7 @@ public class ListenerManagerImpl implements ListenerManager {
                 matchersL.add(EverythingMatcher.allTriggers());
 
             globalTriggerListenersMatchers.put(triggerListener.getName(), matchersL);
+            publishTriggerListeners();
         }
     }
 
@@ -184,6 +200,7 @@ public class ListenerManagerImpl implements ListenerManager {
             List<Matcher<TriggerKey>> matchers = new LinkedList<Matcher<TriggerKey>>();
             matchers.add(matcher);
             globalTriggerListenersMatchers.put(triggerListener.getName(), matchers);
+            publishTriggerListeners();
         }
     }
 
@@ -197,6 +214,7 @@ public class ListenerManagerImpl implements ListenerManager {
             if (matchers == null)
                 return false;
             matchers.add(matcher);
+            publishTriggerListeners();
             return true;
         }
     }
@@ -209,7 +227,9 @@ public class ListenerManagerImpl implements ListenerManager {
             List<Matcher<TriggerKey>> matchers = globalTriggerListenersMatchers.get(listenerName);
             if (matchers == null)
                 return false;
-            return matchers.remove(matcher);
+            boolean removed = matchers.remove(matcher);
+            publishTriggerListeners();
+            return removed;
         }
     }
 
@@ -232,6 +252,7 @@ public class ListenerManagerImpl implements ListenerManager {
             if (oldMatchers == null)
                 return false;
             globalTriggerListenersMatchers.put(listenerName, matchers);
+            publishTriggerListeners();
             return true;
         }
     }
@@ -239,16 +260,16 @@ public class ListenerManagerImpl implements ListenerManager {
     @Override
     public boolean removeTriggerListener(String name) {
         synchronized (globalTriggerListeners) {
-            return (globalTriggerListeners.remove(name) != null);
+            boolean removed = globalTriggerListeners.remove(name) != null;
+            publishTriggerListeners();
+            return removed;
         }
     }
 
 
     @Override
     public List<TriggerListener> getTriggerListeners() {
-        synchronized (globalTriggerListeners) {
-            return java.util.Collections.unmodifiableList(new LinkedList<TriggerListener>(globalTriggerListeners.values()));
-        }
+        return triggerListenerSnapshot.getListeners();
     }
 
     public TriggerListener getTriggerListener(String name) {
@@ -262,20 +283,47 @@ public class ListenerManagerImpl implements ListenerManager {
     public void addSchedulerListener(SchedulerListener schedulerListener) {
         synchronized (schedulerListeners) {
             schedulerListeners.add(schedulerListener);
+            publishSchedulerListeners();
         }
     }
 
     @Override
     public boolean removeSchedulerListener(SchedulerListener schedulerListener) {
         synchronized (schedulerListeners) {
-            return schedulerListeners.remove(schedulerListener);
+            boolean removed = schedulerListeners.remove(schedulerListener);
+            publishSchedulerListeners();
+            return removed;
         }
     }
 
     @Override
     public List<SchedulerListener> getSchedulerListeners() {
-        synchronized (schedulerListeners) {
-            return java.util.Collections.unmodifiableList(new ArrayList<SchedulerListener>(schedulerListeners));
-        }
+        return schedulerListenerSnapshot;
+    }
+
+    ListenerSnapshot<JobListener, JobKey> getJobListenerSnapshot() {
+        return jobListenerSnapshot;
+    }
+
+    ListenerSnapshot<TriggerListener, TriggerKey> getTriggerListenerSnapshot() {
+        return triggerListenerSnapshot;
+    }
+
+    List<SchedulerListener> getSchedulerListenerSnapshot() {
+        return schedulerListenerSnapshot;
+    }
+
+    // called holding the lock of the listener map
+
+    private void publishJobListeners() {
+        jobListenerSnapshot = ListenerSnapshot.of(globalJobListeners, globalJobListenersMatchers);
+    }
+
+    private void publishTriggerListeners() {
+        triggerListenerSnapshot = ListenerSnapshot.of(globalTriggerListeners, globalTriggerListenersMatchers);
+    }
+
+    private void publishSchedulerListeners() {
+        schedulerListenerSnapshot = Collections.unmodifiableList(new ArrayList<SchedulerListener>(schedulerListeners));
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.quartz.Matcher;
+import org.quartz.utils.Key;
+
+/**
+ * An immutable copy of a set of job or trigger listeners with their compiled
+ * matchers, which the <code>notify...</code> methods of
+ * <code>QuartzScheduler</code> iterate by index, without locking or
+ * allocating anything.
+ *
+ * <p>
+ * <code>ListenerManagerImpl</code> publishes a new one through a volatile
+ * field whenever its listeners or their matchers change, and
+ * <code>QuartzScheduler</code> keeps one that also holds its internal
+ * listeners, rebuilt when either changes.
+ * </p>
+ *
+ * 监听器的不可变快照, 通知时无锁、无分配地遍历
+ */
+final class ListenerSnapshot<L, K extends Key<?>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final ListenerSnapshot EMPTY = new ListenerSnapshot<Object, Key<?>>(
+            Collections.emptyList(), Collections.<CompiledMatcher<Key<?>>>emptyList(),
+            Collections.<String, CompiledMatcher<Key<?>>>emptyMap(), null);
+
+    private final List<L> listeners;
+
+    private final List<CompiledMatcher<K>> matchers;
+
+    /** By listener name, for the internal listeners (see withInternal). */
+    private final Map<String, CompiledMatcher<K>> matchersByName;
+
+    /** The snapshot of the ListenerManager this one was combined from, if any. */
+    final ListenerSnapshot<L, K> source;
+
+    private ListenerSnapshot(List<L> listeners, List<CompiledMatcher<K>> matchers,
+            Map<String, CompiledMatcher<K>> matchersByName, ListenerSnapshot<L, K> source) {
+        this.listeners = Collections.unmodifiableList(listeners);
+        this.matchers = matchers;
+        this.matchersByName = matchersByName;
+        this.source = source;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <L, K extends Key<?>> ListenerSnapshot<L, K> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Snapshot the listeners of a <code>ListenerManager</code>, by name, and
+     * the matchers it has for each name.
+     */
+    static <L, K extends Key<?>> ListenerSnapshot<L, K> of(Map<String, L> listeners,
+            Map<String, List<Matcher<K>>> matchers) {
+        Map<String, CompiledMatcher<K>> byName = new HashMap<String, CompiledMatcher<K>>();
+        for (Entry<String, List<Matcher<K>>> entry : matchers.entrySet()) {
+            byName.put(entry.getKey(), CompiledMatcher.compile(entry.getValue()));
+        }
+        List<L> ls = new ArrayList<L>(listeners.size());
+        List<CompiledMatcher<K>> ms = new ArrayList<CompiledMatcher<K>>(listeners.size());
+        for (Entry<String, L> entry : listeners.entrySet()) {
+            ls.add(entry.getValue());
+            CompiledMatcher<K> matcher = byName.get(entry.getKey());
+            ms.add(matcher != null ? matcher : CompiledMatcher.<K>everything());
+        }
+        return new ListenerSnapshot<L, K>(ls, ms, byName, null);
+    }
+
+    /**
+     * This snapshot followed by the given internal listeners, each of them
+     * as the decorator returns it. As before, an internal listener uses the
+     * matchers the <code>ListenerManager</code> has for its name, if any, and
+     * matches everything otherwise.
+     */
+    ListenerSnapshot<L, K> withInternal(Map<String, L> internal, Decorator<L> decorator) {
+        List<L> ls = new ArrayList<L>(listeners.size() + internal.size());
+        List<CompiledMatcher<K>> ms = new ArrayList<CompiledMatcher<K>>(listeners.size() + internal.size());
+        for (L listener : listeners) {
+            ls.add(decorator.decorate(listener));
+        }
+        ms.addAll(matchers);
+        for (Entry<String, L> entry : internal.entrySet()) {
+            ls.add(decorator.decorate(entry.getValue()));
+            CompiledMatcher<K> matcher = matchersByName.get(entry.getKey());
+            ms.add(matcher != null ? matcher : CompiledMatcher.<K>everything());
+        }
+        return new ListenerSnapshot<L, K>(ls, ms, matchersByName, this);
+    }
+
+    /**
+     * Stands in for a listener in the snapshot, as for the listeners whose
+     * notifications the <code>ListenerDispatcher</code> delivers.
+     */
+    interface Decorator<L> {
+        L decorate(L listener);
+    }
+
+    int size() {
+        return listeners.size();
+    }
+
+    L listener(int i) {
+        return listeners.get(i);
+    }
+
+    boolean isMatch(int i, K key) {
+        return matchers.get(i).isMatch(key);
+    }
+
+    /** The listeners, as an unmodifiable list. */
+    List<L> getListeners() {
+        return listeners;
+    }
+}
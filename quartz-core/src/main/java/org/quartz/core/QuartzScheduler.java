@@ -10,6 +10,8 @@ import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.listeners.SchedulerListenerSupport;
 import org.quartz.simpl.PropertySettingJobFactory;
 import org.quartz.spi.*;
+import org.quartz.utils.LatencyHistogram;
+import org.quartz.utils.TriggerPartitions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +25,9 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.quartz.TriggerBuilder.newTrigger;
 
@@ -91,11 +95,21 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     private QuartzSchedulerThread schedThread;
 
+    private QuartzSchedulerThread[] schedThreads;
+
+    private final ReleaseCostEstimator releaseCostEstimator;
+
+    private final AdaptiveBatchController batchController;
+
+    private final FireClock fireClock = new FireClock();
+
+    private final LatencyHistogram fireLateness = new LatencyHistogram();
+
     private ThreadGroup threadGroup;
 
     private SchedulerContext context = new SchedulerContext();
 
-    private ListenerManager listenerManager = new ListenerManagerImpl();
+    private final ListenerManagerImpl listenerManager = new ListenerManagerImpl();
 
     private HashMap<String, JobListener> internalJobListeners = new HashMap<String, JobListener>(10);
 
@@ -103,6 +117,25 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     private ArrayList<SchedulerListener> internalSchedulerListeners = new ArrayList<SchedulerListener>(10);
 
+    // the listeners of the ListenerManager followed by the internal ones, as
+    // immutable snapshots for the notify... methods; rebuilt when the internal
+    // listeners change, or when the ListenerManager publishes a new snapshot
+
+    private volatile ListenerSnapshot<JobListener, JobKey> jobListenerSnapshot = ListenerSnapshot.empty();
+
+    private volatile ListenerSnapshot<TriggerListener, TriggerKey> triggerListenerSnapshot = ListenerSnapshot.empty();
+
+    private volatile SchedulerListenerSnapshot schedulerListenerSnapshot = new SchedulerListenerSnapshot(
+            null, Collections.<SchedulerListener>emptyList());
+
+    // delivers the notifications of the listeners marked @AsyncListener
+    private final ListenerDispatcher listenerDispatcher;
+
+    // the JobRunShells currently running, told to stop when the scheduler
+    // shuts down; kept apart from the listeners so that firing a job does
+    // not have to lock and update the listener list
+    private final Set<JobRunShell> runningShells = ConcurrentHashMap.<JobRunShell>newKeySet();
+
     private JobFactory jobFactory = new PropertySettingJobFactory();
 
     ExecutingJobsManager jobMgr = null;
@@ -113,6 +146,15 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     private Random random = new Random();
 
+    private final AtomicLong ephemeralTriggerCount = new AtomicLong();
+
+    /**
+     * The ephemeral triggers whose jobs have not completed yet; by identity,
+     * as a stored trigger could have the same key.
+     */
+    private final Set<OperableTrigger> ephemeralTriggers = Collections.newSetFromMap(
+            Collections.synchronizedMap(new IdentityHashMap<OperableTrigger, Boolean>()));
+
     private ArrayList<Object> holdToPreventGC = new ArrayList<Object>(5);
 
     private boolean signalOnSchedulingChange = true;
@@ -138,21 +180,40 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
     public QuartzScheduler(QuartzSchedulerResources resources, long idleWaitTime, @Deprecated long dbRetryInterval)
             throws SchedulerException {
         this.resources = resources;
+        this.listenerDispatcher = new ListenerDispatcher(resources.getName(),
+                resources.getListenerDispatchThreadCount(), resources.getListenerDispatchQueueSize(),
+                resources.getListenerDispatchBatchSize(), resources.getListenerDispatchOverflowPolicy(),
+                resources.getMakeSchedulerThreadDaemon());
         if (resources.getJobStore() instanceof JobListener) {
             addInternalJobListener((JobListener) resources.getJobStore());
         }
 
-        this.schedThread = new QuartzSchedulerThread(this, resources);
+        this.releaseCostEstimator = new ReleaseCostEstimator(
+                resources.getJobStore().getEstimatedTimeToReleaseAndAcquireTrigger());
+        this.batchController = new AdaptiveBatchController(resources);
+        int schedThreadCount = resources.getSchedulerThreadCount();
+        if (schedThreadCount > 1 && !(resources.getJobStore() instanceof PartitionedJobStore)) {
+            getLog().warn("JobStore " + resources.getJobStore().getClass().getName()
+                    + " can not partition its triggers, using a single scheduler thread.");
+            schedThreadCount = 1;
+        }
+        this.schedThreads = new QuartzSchedulerThread[schedThreadCount];
         ThreadExecutor schedThreadExecutor = resources.getThreadExecutor();
-        schedThreadExecutor.execute(this.schedThread);
-        if (idleWaitTime > 0) {
-            this.schedThread.setIdleWaitTime(idleWaitTime);
+        for (int i = 0; i < schedThreadCount; i++) {
+            schedThreads[i] = schedThreadCount == 1
+                    ? new QuartzSchedulerThread(this, resources)
+                    : new QuartzSchedulerThread(this, resources, i, schedThreadCount);
+            schedThreadExecutor.execute(schedThreads[i]);
+            if (idleWaitTime > 0) {
+                schedThreads[i].setIdleWaitTime(idleWaitTime);
+            }
         }
+        this.schedThread = schedThreads[0];
         jobMgr = new ExecutingJobsManager();
         addInternalJobListener(jobMgr);
         errLogger = new ErrorLogger();
         addInternalSchedulerListener(errLogger);
-        signaler = new SchedulerSignalerImpl(this, this.schedThread);
+        signaler = new SchedulerSignalerImpl(this, this.schedThreads);
         getLog().info("Quartz Scheduler v." + getVersion() + " created.");
     }
 
@@ -477,7 +538,9 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         } else {
             resources.getJobStore().schedulerResumed();
         }
-        schedThread.togglePause(false);
+        for (QuartzSchedulerThread thread : schedThreads) {
+            thread.togglePause(false);
+        }
         getLog().info(
                 "Scheduler " + resources.getUniqueIdentifier() + " started.");
         notifySchedulerListenersStarted();
@@ -524,7 +587,9 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
     @Override
     public void standby() {
         resources.getJobStore().schedulerPaused();
-        schedThread.togglePause(true);
+        for (QuartzSchedulerThread thread : schedThreads) {
+            thread.togglePause(true);
+        }
         getLog().info(
                 "Scheduler " + resources.getUniqueIdentifier() + " paused.");
         notifySchedulerListenersInStandbyMode();
@@ -578,6 +643,109 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         return resources.getThreadPool().getPoolSize();
     }
 
+    /**
+     * <p>
+     * How long (in milliseconds) the scheduler threads estimate it takes to
+     * release the triggers they acquired and acquire new ones, as measured
+     * against the <code>JobStore</code>.
+     * </p>
+     */
+    public long getEstimatedTimeToReleaseAndAcquireTrigger() {
+        return releaseCostEstimator.getEstimatedTimeToReleaseAndAcquireTrigger();
+    }
+
+    /**
+     * <p>
+     * The number of times the scheduler threads released the triggers they
+     * acquired, because triggers that fire earlier were scheduled.
+     * </p>
+     */
+    public long getAcquiredTriggersReleaseCount() {
+        return releaseCostEstimator.getReleaseCount();
+    }
+
+    ReleaseCostEstimator getReleaseCostEstimator() {
+        return releaseCostEstimator;
+    }
+
+    /**
+     * <p>
+     * How late the jobs started executing, from the scheduled fire times of
+     * their triggers; the jobs of recovered triggers are not counted.
+     * </p>
+     */
+    public LatencyHistogram getFireLateness() {
+        return fireLateness;
+    }
+
+    FireClock getFireClock() {
+        return fireClock;
+    }
+
+    void recordFireLateness(JobExecutionContext context) {
+        Date scheduledFireTime = context.getScheduledFireTime();
+        if (scheduledFireTime == null || context.isRecovering()) {
+            return;
+        }
+        long lateness = System.nanoTime() - fireClock.nanosOf(scheduledFireTime.getTime());
+        fireLateness.record(lateness);
+        batchController.fired(lateness);
+    }
+
+    AdaptiveBatchController getBatchController() {
+        return batchController;
+    }
+
+    /**
+     * <p>
+     * The number of triggers the scheduler threads acquire at most at a
+     * time, as last adjusted if <code>adaptiveAcquisition</code> is on.
+     * </p>
+     */
+    public int getAcquisitionBatchSize() {
+        return batchController.getBatchSize();
+    }
+
+    /**
+     * <p>
+     * The time window (in milliseconds) of the batches of triggers the
+     * scheduler threads acquire, as last adjusted if
+     * <code>adaptiveAcquisition</code> is on.
+     * </p>
+     */
+    public long getAcquisitionBatchTimeWindow() {
+        return batchController.getTimeWindow();
+    }
+
+    /**
+     * <p>
+     * The number of times the batches grew, after full batches in a row.
+     * </p>
+     */
+    public long getAcquisitionBatchGrowCount() {
+        return batchController.getGrowCount();
+    }
+
+    /**
+     * <p>
+     * The number of times the batches shrank, as the jobs started late.
+     * </p>
+     */
+    public long getAcquisitionBatchShrinkCount() {
+        return batchController.getShrinkCount();
+    }
+
+    /**
+     * <p>
+     * The number of times an idle scheduler thread waited until the next
+     * fire time the <code>JobStore</code> reported, rather than the idle
+     * wait time.
+     * </p>
+     */
+    public long getNextFireTimeWaitCount() {
+        return batchController.getNextFireTimeWaitCount();
+    }
+
     /**
      * <p>
      * Halts the <code>QuartzScheduler</code>'s firing of <code>{@link org.quartz.Trigger}s</code>,
@@ -650,7 +818,19 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
         standby();
 
-        schedThread.halt(waitForJobsToComplete);
+        // signal every thread before waiting for any of them
+        for (QuartzSchedulerThread thread : schedThreads) {
+            thread.halt(false);
+        }
+        if (waitForJobsToComplete) {
+            for (QuartzSchedulerThread thread : schedThreads) {
+                thread.halt(true);
+            }
+        }
+
+        for (JobRunShell shell : runningShells) {
+            shell.requestShutdown();
+        }
 
         notifySchedulerListenersShuttingdown();
 
@@ -692,6 +872,9 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
         notifySchedulerListenersShutdown();
 
+        // deliver what the asynchronous listeners have not been told yet
+        listenerDispatcher.shutdown();
+
         SchedulerRepository.getInstance().remove(resources.getName());
 
         holdToPreventGC.clear();
@@ -813,7 +996,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
         resources.getJobStore().storeJobAndTrigger(jobDetail, trig);
         notifySchedulerListenersJobAdded(jobDetail);
-        notifySchedulerThread(trigger.getNextFireTime().getTime());
+        notifySchedulerThread(trigger.getKey(), trigger.getNextFireTime().getTime());
         notifySchedulerListenersSchduled(trigger);
 
         return ft;
@@ -857,7 +1040,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         }
 
         resources.getJobStore().storeTrigger(trig, false);
-        notifySchedulerThread(trigger.getNextFireTime().getTime());
+        notifySchedulerThread(trigger.getKey(), trigger.getNextFireTime().getTime());
         notifySchedulerListenersSchduled(trigger);
 
         return ft;
@@ -1076,7 +1259,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         }
 
         if (resources.getJobStore().replaceTrigger(triggerKey, trig)) {
-            notifySchedulerThread(newTrigger.getNextFireTime().getTime());
+            notifySchedulerThread(newTrigger.getKey(), newTrigger.getNextFireTime().getTime());
             notifySchedulerListenersUnscheduled(triggerKey);
             notifySchedulerListenersSchduled(newTrigger);
         } else {
@@ -1108,6 +1291,10 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
     public void triggerJob(JobKey jobKey, JobDataMap data) throws SchedulerException {
         validateState();
 
+        if (resources.isEphemeralTriggerJob() && fireEphemeral(jobKey, data)) {
+            return;
+        }
+
         OperableTrigger trig = (OperableTrigger) newTrigger().withIdentity(newTriggerId(), Scheduler.DEFAULT_GROUP).forJob(jobKey).build();
         trig.computeFirstFireTime(null);
         if (data != null) {
@@ -1124,10 +1311,86 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
             }
         }
 
-        notifySchedulerThread(trig.getNextFireTime().getTime());
+        notifySchedulerThread(trig.getKey(), trig.getNextFireTime().getTime());
         notifySchedulerListenersSchduled(trig);
     }
 
+    /**
+     * <p>
+     * Run the job in the thread pool right away, with a trigger that is not
+     * stored in the <code>JobStore</code>, for
+     * <code>org.quartz.scheduler.ephemeralTriggerJob</code>.
+     * </p>
+     *
+     * <p>
+     * The listeners are told of the trigger and its firing as usual, but if
+     * the scheduler stops before the job completes, it does not run again.
+     * The job goes through the <code>JobStore</code> as usual, and
+     * <code>false</code> is returned, if it does not exist, requests
+     * recovery, disallows concurrent execution or persists its data after
+     * execution (the job store tracks those), or if the scheduler is in
+     * standby, or the default trigger group or the job's group is paused (a
+     * stored trigger would wait).
+     * </p>
+     *
+     * <p>
+     * The job is handed to the thread pool by the calling thread, which
+     * waits while all the threads of the pool are busy, as the scheduler
+     * thread would. The thread it takes may be one the scheduler thread
+     * counted on for the triggers it acquired; the last of those then waits
+     * for a thread to be free, as when a job runs longer than expected.
+     * </p>
+     */
+    private boolean fireEphemeral(JobKey jobKey, JobDataMap data) throws SchedulerException {
+        if (isInStandbyMode()) {
+            return false;
+        }
+        JobStore jobStore = resources.getJobStore();
+        JobDetail job = jobStore.retrieveJob(jobKey);
+        if (job == null || job.requestsRecovery() || job.isConcurrentExectionDisallowed()
+                || job.isPersistJobDataAfterExecution()) {
+            return false;
+        }
+        Set<String> pausedGroups = jobStore.getPausedTriggerGroups();
+        if (pausedGroups.contains(Scheduler.DEFAULT_GROUP)
+                || pausedGroups.contains(PausedGroupsJobStore.ALL_GROUPS_PAUSED)) {
+            return false;
+        }
+        if (jobStore instanceof PausedGroupsJobStore
+                && ((PausedGroupsJobStore) jobStore).getPausedJobGroups().contains(jobKey.getGroup())) {
+            return false;
+        }
+
+        // unique within this scheduler, which is all an unstored trigger needs
+        String name = "ET_" + Long.toString(ephemeralTriggerCount.incrementAndGet(), Character.MAX_RADIX);
+        OperableTrigger trig = (OperableTrigger) newTrigger().withIdentity(name, Scheduler.DEFAULT_GROUP).forJob(jobKey).build();
+        trig.computeFirstFireTime(null);
+        if (data != null) {
+            trig.setJobDataMap(data);
+        }
+        notifySchedulerListenersSchduled(trig);
+
+        Date scheduledFireTime = trig.getNextFireTime();
+        trig.setFireInstanceId(name);
+        trig.triggered(null);
+        TriggerFiredBundle bndle = new TriggerFiredBundle(job, trig, null, false, new Date(),
+                scheduledFireTime, null, trig.getNextFireTime());
+        JobRunShell shell = resources.getJobRunShellFactory().createJobRunShell(bndle);
+        try {
+            shell.initialize(this);
+        } catch (SchedulerException se) {
+            // as when a stored trigger fires
+            jobStore.triggeredJobComplete(trig, job, CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
+            throw se;
+        }
+        ephemeralTriggers.add(trig);
+        if (!resources.getThreadPool().runInThread(shell)) {
+            ephemeralTriggers.remove(trig);
+            throw new SchedulerException("ThreadPool.runInThread() return false!");
+        }
+        return true;
+    }
+
     /**
      * <p>
      * Store and schedule the identified <code>{@link org.quartz.spi.OperableTrigger}</code>
@@ -1149,7 +1412,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
             }
         }
 
-        notifySchedulerThread(trig.getNextFireTime().getTime());
+        notifySchedulerThread(trig.getKey(), trig.getNextFireTime().getTime());
         notifySchedulerListenersSchduled(trig);
     }
 
@@ -1598,6 +1861,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         }
         synchronized (internalJobListeners) {
             internalJobListeners.put(jobListener.getName(), jobListener);
+            jobListenerSnapshot = listenerManager.getJobListenerSnapshot().withInternal(internalJobListeners, listenerDispatcher.jobListenerDecorator);
         }
     }
 
@@ -1612,7 +1876,9 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
      */
     public boolean removeInternalJobListener(String name) {
         synchronized (internalJobListeners) {
-            return (internalJobListeners.remove(name) != null);
+            boolean removed = internalJobListeners.remove(name) != null;
+            jobListenerSnapshot = listenerManager.getJobListenerSnapshot().withInternal(internalJobListeners, listenerDispatcher.jobListenerDecorator);
+            return removed;
         }
     }
 
@@ -1655,6 +1921,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
         synchronized (internalTriggerListeners) {
             internalTriggerListeners.put(triggerListener.getName(), triggerListener);
+            triggerListenerSnapshot = listenerManager.getTriggerListenerSnapshot().withInternal(internalTriggerListeners, listenerDispatcher.triggerListenerDecorator);
         }
     }
 
@@ -1669,7 +1936,9 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
      */
     public boolean removeinternalTriggerListener(String name) {
         synchronized (internalTriggerListeners) {
-            return (internalTriggerListeners.remove(name) != null);
+            boolean removed = internalTriggerListeners.remove(name) != null;
+            triggerListenerSnapshot = listenerManager.getTriggerListenerSnapshot().withInternal(internalTriggerListeners, listenerDispatcher.triggerListenerDecorator);
+            return removed;
         }
     }
 
@@ -1706,6 +1975,7 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
     public void addInternalSchedulerListener(SchedulerListener schedulerListener) {
         synchronized (internalSchedulerListeners) {
             internalSchedulerListeners.add(schedulerListener);
+            schedulerListenerSnapshot = buildSchedulerListenerSnapshot(listenerManager.getSchedulerListenerSnapshot());
         }
     }
 
@@ -1720,10 +1990,30 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
      */
     public boolean removeInternalSchedulerListener(SchedulerListener schedulerListener) {
         synchronized (internalSchedulerListeners) {
-            return internalSchedulerListeners.remove(schedulerListener);
+            boolean removed = internalSchedulerListeners.remove(schedulerListener);
+            schedulerListenerSnapshot = buildSchedulerListenerSnapshot(listenerManager.getSchedulerListenerSnapshot());
+            return removed;
         }
     }
 
+    /**
+     * <p>
+     * Register a <code>JobRunShell</code> that is starting to run, so that it
+     * is asked to stop should the scheduler shut down.
+     * </p>
+     */
+    void addRunningShell(JobRunShell shell) {
+        runningShells.add(shell);
+        if (shuttingDown) {
+            // shutdown() may have gone through the set already
+            shell.requestShutdown();
+        }
+    }
+
+    void removeRunningShell(JobRunShell shell) {
+        runningShells.remove(shell);
+    }
+
     /**
      * <p>
      * Get a List containing all of the <i>internal</i> <code>{@link SchedulerListener}</code>s
@@ -1737,11 +2027,21 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
     }
 
     protected void notifyJobStoreJobComplete(OperableTrigger trigger, JobDetail detail, CompletedExecutionInstruction instCode) {
+        if (resources.isEphemeralTriggerJob() && ephemeralTriggers.remove(trigger)
+                && !isForAllJobTriggers(instCode)) {
+            // the job store does not know of the trigger
+            return;
+        }
         resources.getJobStore().triggeredJobComplete(trigger, detail, instCode);
     }
 
     protected void notifyJobStoreJobVetoed(OperableTrigger trigger, JobDetail detail, CompletedExecutionInstruction instCode) {
-        resources.getJobStore().triggeredJobComplete(trigger, detail, instCode);
+        notifyJobStoreJobComplete(trigger, detail, instCode);
+    }
+
+    private static boolean isForAllJobTriggers(CompletedExecutionInstruction instCode) {
+        return instCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_COMPLETE
+                || instCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR;
     }
 
     protected void notifySchedulerThread(long candidateNewNextFireTime) {
@@ -1750,51 +2050,78 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
         }
     }
 
-    private List<TriggerListener> buildTriggerListenerList()
-            throws SchedulerException {
-        List<TriggerListener> allListeners = new LinkedList<TriggerListener>();
-        allListeners.addAll(getListenerManager().getTriggerListeners());
-        allListeners.addAll(getInternalTriggerListeners());
-        return allListeners;
+    /**
+     * Signal only the scheduler thread whose partition the given trigger
+     * belongs to, the others can not acquire it.
+     */
+    protected void notifySchedulerThread(TriggerKey triggerKey, long candidateNewNextFireTime) {
+        if (schedThreads.length == 1) {
+            notifySchedulerThread(candidateNewNextFireTime);
+        } else if (isSignalOnSchedulingChange()) {
+            schedThreads[TriggerPartitions.partitionOf(triggerKey, schedThreads.length)]
+                    .signalSchedulingChange(candidateNewNextFireTime);
+        }
     }
 
-    private List<JobListener> buildJobListenerList()
-            throws SchedulerException {
-        List<JobListener> allListeners = new LinkedList<JobListener>();
-        allListeners.addAll(getListenerManager().getJobListeners());
-        allListeners.addAll(getInternalJobListeners());
+    private ListenerSnapshot<TriggerListener, TriggerKey> triggerListeners() {
+        ListenerSnapshot<TriggerListener, TriggerKey> snapshot = triggerListenerSnapshot;
+        ListenerSnapshot<TriggerListener, TriggerKey> global = listenerManager.getTriggerListenerSnapshot();
+        if (snapshot.source != global) {
+            synchronized (internalTriggerListeners) {
+                snapshot = global.withInternal(internalTriggerListeners, listenerDispatcher.triggerListenerDecorator);
+                triggerListenerSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
 
-        return allListeners;
+    private ListenerSnapshot<JobListener, JobKey> jobListeners() {
+        ListenerSnapshot<JobListener, JobKey> snapshot = jobListenerSnapshot;
+        ListenerSnapshot<JobListener, JobKey> global = listenerManager.getJobListenerSnapshot();
+        if (snapshot.source != global) {
+            synchronized (internalJobListeners) {
+                snapshot = global.withInternal(internalJobListeners, listenerDispatcher.jobListenerDecorator);
+                jobListenerSnapshot = snapshot;
+            }
+        }
+        return snapshot;
     }
 
     private List<SchedulerListener> buildSchedulerListenerList() {
-        List<SchedulerListener> allListeners = new LinkedList<SchedulerListener>();
-        allListeners.addAll(getListenerManager().getSchedulerListeners());
-        allListeners.addAll(getInternalSchedulerListeners());
-
-        return allListeners;
+        SchedulerListenerSnapshot snapshot = schedulerListenerSnapshot;
+        List<SchedulerListener> global = listenerManager.getSchedulerListenerSnapshot();
+        if (snapshot.source != global) {
+            synchronized (internalSchedulerListeners) {
+                snapshot = buildSchedulerListenerSnapshot(global);
+                schedulerListenerSnapshot = snapshot;
+            }
+        }
+        return snapshot.listeners;
     }
 
-    private boolean matchJobListener(JobListener listener, JobKey key) {
-        List<Matcher<JobKey>> matchers = getListenerManager().getJobListenerMatchers(listener.getName());
-        if (matchers == null)
-            return true;
-        for (Matcher<JobKey> matcher : matchers) {
-            if (matcher.isMatch(key))
-                return true;
+    // called holding the internalSchedulerListeners lock
+    private SchedulerListenerSnapshot buildSchedulerListenerSnapshot(List<SchedulerListener> global) {
+        List<SchedulerListener> allListeners = new ArrayList<SchedulerListener>(
+                global.size() + internalSchedulerListeners.size());
+        for (SchedulerListener listener : global) {
+            allListeners.add(listenerDispatcher.decorate(listener));
         }
-        return false;
+        for (SchedulerListener listener : internalSchedulerListeners) {
+            allListeners.add(listenerDispatcher.decorate(listener));
+        }
+        return new SchedulerListenerSnapshot(global, allListeners);
     }
 
-    private boolean matchTriggerListener(TriggerListener listener, TriggerKey key) {
-        List<Matcher<TriggerKey>> matchers = getListenerManager().getTriggerListenerMatchers(listener.getName());
-        if (matchers == null)
-            return true;
-        for (Matcher<TriggerKey> matcher : matchers) {
-            if (matcher.isMatch(key))
-                return true;
+    private static final class SchedulerListenerSnapshot {
+
+        final List<SchedulerListener> source;
+
+        final List<SchedulerListener> listeners;
+
+        SchedulerListenerSnapshot(List<SchedulerListener> source, List<SchedulerListener> listeners) {
+            this.source = source;
+            this.listeners = listeners;
         }
-        return false;
     }
 
     public boolean notifyTriggerListenersFired(JobExecutionContext jec)
@@ -1802,13 +2129,14 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
         boolean vetoedExecution = false;
 
-        // build a list of all trigger listeners that are to be notified...
-        List<TriggerListener> triggerListeners = buildTriggerListenerList();
+        ListenerSnapshot<TriggerListener, TriggerKey> triggerListeners = triggerListeners();
+        TriggerKey key = jec.getTrigger().getKey();
 
         // notify all trigger listeners in the list
-        for (TriggerListener tl : triggerListeners) {
+        for (int i = 0; i < triggerListeners.size(); i++) {
+            TriggerListener tl = triggerListeners.listener(i);
             try {
-                if (!matchTriggerListener(tl, jec.getTrigger().getKey()))
+                if (!triggerListeners.isMatch(i, key))
                     continue;
                 tl.triggerFired(jec.getTrigger(), jec);
 
@@ -1829,12 +2157,13 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     public void notifyTriggerListenersMisfired(Trigger trigger)
             throws SchedulerException {
-        // build a list of all trigger listeners that are to be notified...
-        List<TriggerListener> triggerListeners = buildTriggerListenerList();
+        ListenerSnapshot<TriggerListener, TriggerKey> triggerListeners = triggerListeners();
+        TriggerKey key = trigger.getKey();
         // notify all trigger listeners in the list
-        for (TriggerListener tl : triggerListeners) {
+        for (int i = 0; i < triggerListeners.size(); i++) {
+            TriggerListener tl = triggerListeners.listener(i);
             try {
-                if (!matchTriggerListener(tl, trigger.getKey())) {
+                if (!triggerListeners.isMatch(i, key)) {
                     continue;
                 }
                 tl.triggerMisfired(trigger);
@@ -1849,13 +2178,14 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     public void notifyTriggerListenersComplete(JobExecutionContext jec,
                                                CompletedExecutionInstruction instCode) throws SchedulerException {
-        // build a list of all trigger listeners that are to be notified...
-        List<TriggerListener> triggerListeners = buildTriggerListenerList();
+        ListenerSnapshot<TriggerListener, TriggerKey> triggerListeners = triggerListeners();
+        TriggerKey key = jec.getTrigger().getKey();
 
         // notify all trigger listeners in the list
-        for (TriggerListener tl : triggerListeners) {
+        for (int i = 0; i < triggerListeners.size(); i++) {
+            TriggerListener tl = triggerListeners.listener(i);
             try {
-                if (!matchTriggerListener(tl, jec.getTrigger().getKey()))
+                if (!triggerListeners.isMatch(i, key))
                     continue;
                 tl.triggerComplete(jec.getTrigger(), jec, instCode);
             } catch (Exception e) {
@@ -1869,13 +2199,14 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     public void notifyJobListenersToBeExecuted(JobExecutionContext jec)
             throws SchedulerException {
-        // build a list of all job listeners that are to be notified...
-        List<JobListener> jobListeners = buildJobListenerList();
+        ListenerSnapshot<JobListener, JobKey> jobListeners = jobListeners();
+        JobKey key = jec.getJobDetail().getKey();
 
         // notify all job listeners
-        for (JobListener jl : jobListeners) {
+        for (int i = 0; i < jobListeners.size(); i++) {
+            JobListener jl = jobListeners.listener(i);
             try {
-                if (!matchJobListener(jl, jec.getJobDetail().getKey()))
+                if (!jobListeners.isMatch(i, key))
                     continue;
                 jl.jobToBeExecuted(jec);
             } catch (Exception e) {
@@ -1889,13 +2220,14 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     public void notifyJobListenersWasVetoed(JobExecutionContext jec)
             throws SchedulerException {
-        // build a list of all job listeners that are to be notified...
-        List<JobListener> jobListeners = buildJobListenerList();
+        ListenerSnapshot<JobListener, JobKey> jobListeners = jobListeners();
+        JobKey key = jec.getJobDetail().getKey();
 
         // notify all job listeners
-        for (JobListener jl : jobListeners) {
+        for (int i = 0; i < jobListeners.size(); i++) {
+            JobListener jl = jobListeners.listener(i);
             try {
-                if (!matchJobListener(jl, jec.getJobDetail().getKey()))
+                if (!jobListeners.isMatch(i, key))
                     continue;
                 jl.jobExecutionVetoed(jec);
             } catch (Exception e) {
@@ -1909,13 +2241,14 @@ public class QuartzScheduler implements RemotableQuartzScheduler {
 
     public void notifyJobListenersWasExecuted(JobExecutionContext jec,
                                               JobExecutionException je) throws SchedulerException {
-        // build a list of all job listeners that are to be notified...
-        List<JobListener> jobListeners = buildJobListenerList();
+        ListenerSnapshot<JobListener, JobKey> jobListeners = jobListeners();
+        JobKey key = jec.getJobDetail().getKey();
 
         // notify all job listeners
-        for (JobListener jl : jobListeners) {
+        for (int i = 0; i < jobListeners.size(); i++) {
+            JobListener jl = jobListeners.listener(i);
             try {
-                if (!matchJobListener(jl, jec.getJobDetail().getKey()))
+                if (!jobListeners.isMatch(i, key))
                     continue;
                 jl.jobWasExecuted(jec, je);
             } catch (Exception e) {
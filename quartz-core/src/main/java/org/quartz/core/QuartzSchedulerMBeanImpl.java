@@ -47,6 +47,7 @@ import org.quartz.core.jmx.QuartzSchedulerMBean;
 import org.quartz.core.jmx.TriggerSupport;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.utils.LatencyHistogram;
 import org.quartz.spi.OperableTrigger;
 
 public class QuartzSchedulerMBeanImpl extends StandardMBean implements
@@ -1018,6 +1019,44 @@ public class QuartzSchedulerMBeanImpl extends StandardMBean implements
                 .valueOf(getJobsExecutedMostRecentSample()));
         result.put("JobsScheduled", Long
                 .valueOf(getJobsScheduledMostRecentSample()));
+        result.put("EstimatedTimeToReleaseAndAcquireTrigger", Long
+                .valueOf(getEstimatedTimeToReleaseAndAcquireTrigger()));
+        result.put("AcquiredTriggersReleaseCount", Long
+                .valueOf(getAcquiredTriggersReleaseCount()));
+        LatencyHistogram fireLateness = scheduler.getFireLateness();
+        result.put("FireLatenessCount", Long.valueOf(fireLateness.getCount()));
+        result.put("FireLatenessP50Micros", Long.valueOf(fireLateness.getPercentileMicros(50)));
+        result.put("FireLatenessP99Micros", Long.valueOf(fireLateness.getPercentileMicros(99)));
+        result.put("FireLatenessP999Micros", Long.valueOf(fireLateness.getPercentileMicros(99.9)));
+        result.put("FireLatenessMaxMicros", Long.valueOf(fireLateness.getMaxMicros()));
         return result;
     }
+
+    public long getEstimatedTimeToReleaseAndAcquireTrigger() {
+        return scheduler.getEstimatedTimeToReleaseAndAcquireTrigger();
+    }
+
+    public long getAcquiredTriggersReleaseCount() {
+        return scheduler.getAcquiredTriggersReleaseCount();
+    }
+
+    public int getAcquisitionBatchSize() {
+        return scheduler.getAcquisitionBatchSize();
+    }
+
+    public long getAcquisitionBatchTimeWindow() {
+        return scheduler.getAcquisitionBatchTimeWindow();
+    }
+
+    public long getAcquisitionBatchGrowCount() {
+        return scheduler.getAcquisitionBatchGrowCount();
+    }
+
+    public long getAcquisitionBatchShrinkCount() {
+        return scheduler.getAcquisitionBatchShrinkCount();
+    }
+
+    public long getNextFireTimeWaitCount() {
+        return scheduler.getNextFireTimeWaitCount();
+    }
 }
@@ -8,6 +8,7 @@ import org.quartz.spi.ThreadPool;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -67,10 +68,38 @@ public class QuartzSchedulerResources {
 
     private int maxBatchSize = 1;
 
+    private boolean pipelineTriggerAcquisition = false;
+
+    private int pipelineFiringThreadCount = 1;
+
+    private int schedulerThreadCount = 1;
+
+    private boolean precisionFiring = false;
+
+    private long precisionFiringSpinNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private boolean adaptiveAcquisition = false;
+
+    private boolean ephemeralTriggerJob = false;
+
+    private int adaptiveAcquisitionMaxBatchSize = 64;
+
+    private long adaptiveAcquisitionMaxTimeWindow = 50L;
+
+    private long adaptiveAcquisitionLatenessThreshold = 20L;
+
     private boolean interruptJobsOnShutdown = false;
 
     private boolean interruptJobsOnShutdownWithWait = false;
 
+    private int listenerDispatchThreadCount = ListenerDispatcher.DEFAULT_THREAD_COUNT;
+
+    private int listenerDispatchQueueSize = ListenerDispatcher.DEFAULT_QUEUE_SIZE;
+
+    private int listenerDispatchBatchSize = ListenerDispatcher.DEFAULT_BATCH_SIZE;
+
+    private ListenerDispatcher.OverflowPolicy listenerDispatchOverflowPolicy = ListenerDispatcher.OverflowPolicy.BLOCK;
+
 
     /**
      * <p>
@@ -508,6 +537,134 @@ public class QuartzSchedulerResources {
         this.maxBatchSize = maxBatchSize;
     }
 
+    public boolean isPipelineTriggerAcquisition() {
+        return pipelineTriggerAcquisition;
+    }
+
+    /**
+     * <p>
+     * Set whether the scheduler thread acquires the next batch of triggers
+     * while the current one waits for its fire time, and leaves firing the
+     * batches to helper threads.
+     * </p>
+     */
+    public void setPipelineTriggerAcquisition(boolean pipelineTriggerAcquisition) {
+        this.pipelineTriggerAcquisition = pipelineTriggerAcquisition;
+    }
+
+    public int getPipelineFiringThreadCount() {
+        return pipelineFiringThreadCount;
+    }
+
+    /**
+     * <p>
+     * Set the number of helper threads that fire the batches of triggers
+     * when the trigger acquisition is pipelined.
+     * </p>
+     */
+    public void setPipelineFiringThreadCount(int pipelineFiringThreadCount) {
+        this.pipelineFiringThreadCount = pipelineFiringThreadCount;
+    }
+
+    public int getSchedulerThreadCount() {
+        return schedulerThreadCount;
+    }
+
+    /**
+     * <p>
+     * Set the number of <code>QuartzSchedulerThread</code>s, each firing its
+     * own partition of the triggers. Only used with a
+     * <code>{@link org.quartz.spi.PartitionedJobStore}</code>.
+     * </p>
+     */
+    public void setSchedulerThreadCount(int schedulerThreadCount) {
+        this.schedulerThreadCount = schedulerThreadCount;
+    }
+
+    public boolean isPrecisionFiring() {
+        return precisionFiring;
+    }
+
+    /**
+     * <p>
+     * Set whether the scheduler threads wait for the last milliseconds
+     * before a fire time by parking against <code>System.nanoTime()</code>,
+     * and spinning for the last <code>precisionFiringSpinNanos</code>,
+     * rather than firing up to 2 milliseconds early.
+     * </p>
+     */
+    public void setPrecisionFiring(boolean precisionFiring) {
+        this.precisionFiring = precisionFiring;
+    }
+
+    public long getPrecisionFiringSpinNanos() {
+        return precisionFiringSpinNanos;
+    }
+
+    public void setPrecisionFiringSpinNanos(long precisionFiringSpinNanos) {
+        this.precisionFiringSpinNanos = precisionFiringSpinNanos;
+    }
+
+    public boolean isEphemeralTriggerJob() {
+        return ephemeralTriggerJob;
+    }
+
+    /**
+     * <p>
+     * Set whether <code>triggerJob(JobKey, JobDataMap)</code> runs the jobs
+     * that need not be recovered right away, without storing a trigger.
+     * </p>
+     */
+    public void setEphemeralTriggerJob(boolean ephemeralTriggerJob) {
+        this.ephemeralTriggerJob = ephemeralTriggerJob;
+    }
+
+    public boolean isAdaptiveAcquisition() {
+        return adaptiveAcquisition;
+    }
+
+    /**
+     * <p>
+     * Set whether the scheduler threads size their batches of triggers
+     * between <code>maxBatchSize</code> / <code>batchTimeWindow</code> and
+     * the adaptive limits, and sleep until the next fire time the
+     * <code>JobStore</code> reports when idle.
+     * </p>
+     */
+    public void setAdaptiveAcquisition(boolean adaptiveAcquisition) {
+        this.adaptiveAcquisition = adaptiveAcquisition;
+    }
+
+    public int getAdaptiveAcquisitionMaxBatchSize() {
+        return adaptiveAcquisitionMaxBatchSize;
+    }
+
+    public void setAdaptiveAcquisitionMaxBatchSize(int adaptiveAcquisitionMaxBatchSize) {
+        this.adaptiveAcquisitionMaxBatchSize = adaptiveAcquisitionMaxBatchSize;
+    }
+
+    public long getAdaptiveAcquisitionMaxTimeWindow() {
+        return adaptiveAcquisitionMaxTimeWindow;
+    }
+
+    public void setAdaptiveAcquisitionMaxTimeWindow(long adaptiveAcquisitionMaxTimeWindow) {
+        this.adaptiveAcquisitionMaxTimeWindow = adaptiveAcquisitionMaxTimeWindow;
+    }
+
+    public long getAdaptiveAcquisitionLatenessThreshold() {
+        return adaptiveAcquisitionLatenessThreshold;
+    }
+
+    /**
+     * <p>
+     * Set the average lateness (in milliseconds) of the jobs above which the
+     * batches shrink, when <code>adaptiveAcquisition</code> is on.
+     * </p>
+     */
+    public void setAdaptiveAcquisitionLatenessThreshold(long adaptiveAcquisitionLatenessThreshold) {
+        this.adaptiveAcquisitionLatenessThreshold = adaptiveAcquisitionLatenessThreshold;
+    }
+
     public boolean isInterruptJobsOnShutdown() {
         return interruptJobsOnShutdown;
     }
@@ -526,6 +683,56 @@ public class QuartzSchedulerResources {
     }
 
 
+    public int getListenerDispatchThreadCount() {
+        return listenerDispatchThreadCount;
+    }
+
+    /**
+     * <p>
+     * Set the number of threads that deliver the notifications of the
+     * listeners marked with <code>{@link org.quartz.AsyncListener}</code>.
+     * </p>
+     */
+    public void setListenerDispatchThreadCount(int listenerDispatchThreadCount) {
+        this.listenerDispatchThreadCount = listenerDispatchThreadCount;
+    }
+
+    public int getListenerDispatchQueueSize() {
+        return listenerDispatchQueueSize;
+    }
+
+    /**
+     * <p>
+     * Set the number of notifications each listener dispatch thread may
+     * have queued.
+     * </p>
+     */
+    public void setListenerDispatchQueueSize(int listenerDispatchQueueSize) {
+        this.listenerDispatchQueueSize = listenerDispatchQueueSize;
+    }
+
+    public int getListenerDispatchBatchSize() {
+        return listenerDispatchBatchSize;
+    }
+
+    public void setListenerDispatchBatchSize(int listenerDispatchBatchSize) {
+        this.listenerDispatchBatchSize = listenerDispatchBatchSize;
+    }
+
+    public ListenerDispatcher.OverflowPolicy getListenerDispatchOverflowPolicy() {
+        return listenerDispatchOverflowPolicy;
+    }
+
+    /**
+     * <p>
+     * Set what becomes of a notification when the queue of its listener
+     * dispatch thread is full.
+     * </p>
+     */
+    public void setListenerDispatchOverflowPolicy(ListenerDispatcher.OverflowPolicy listenerDispatchOverflowPolicy) {
+        this.listenerDispatchOverflowPolicy = listenerDispatchOverflowPolicy;
+    }
+
     public ManagementRESTServiceConfiguration getManagementRESTServiceConfiguration() {
         return managementRESTServiceConfiguration;
     }
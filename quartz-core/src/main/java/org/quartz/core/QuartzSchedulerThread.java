@@ -5,7 +5,9 @@ import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.Trigger.CompletedExecutionInstruction;
 import org.quartz.spi.JobStore;
+import org.quartz.spi.NextFireTimeJobStore;
 import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.PartitionedJobStore;
 import org.quartz.spi.TriggerFiredBundle;
 import org.quartz.spi.TriggerFiredResult;
 import org.slf4j.Logger;
@@ -14,7 +16,13 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * <p>
@@ -43,11 +51,19 @@ public class QuartzSchedulerThread extends Thread {
 
     private QuartzSchedulerResources qsRsrcs;
 
+    // the partition of the job store's triggers this thread fires
+    private final int partition;
+    private final int partitionCount;
+
     private final Object sigLock = new Object();
 
     private boolean signaled;
     private long signaledNextFireTime;
 
+    // the changes signaled since the next batch was acquired ahead
+    private boolean signaledAhead;
+    private long signaledAheadNextFireTime;
+
     private boolean paused;
 
     private AtomicBoolean halted;
@@ -61,6 +77,12 @@ public class QuartzSchedulerThread extends Thread {
 
     private int idleWaitVariablness = 7 * 1000;
 
+    // how long the last acquisition of triggers took
+    private long lastAcquireNanos;
+
+    // the triggers handed to the firing threads, but not yet to the thread pool
+    private final AtomicInteger handedOffTriggers = new AtomicInteger();
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     /**
@@ -82,9 +104,29 @@ public class QuartzSchedulerThread extends Thread {
      * </p>
      */
     QuartzSchedulerThread(QuartzScheduler qs, QuartzSchedulerResources qsRsrcs, boolean setDaemon, int threadPrio) {
-        super(qs.getSchedulerThreadGroup(), qsRsrcs.getThreadName());
+        this(qs, qsRsrcs, setDaemon, threadPrio, 0, 1);
+    }
+
+    /**
+     * <p>
+     * Construct a new <code>QuartzSchedulerThread</code> for the given
+     * <code>QuartzScheduler</code>, that fires the triggers of the given
+     * partition of its <code>{@link PartitionedJobStore}</code>, as a
+     * non-daemon <code>Thread</code> with normal priority.
+     * </p>
+     */
+    QuartzSchedulerThread(QuartzScheduler qs, QuartzSchedulerResources qsRsrcs, int partition, int partitionCount) {
+        this(qs, qsRsrcs, qsRsrcs.getMakeSchedulerThreadDaemon(), Thread.NORM_PRIORITY, partition, partitionCount);
+    }
+
+    private QuartzSchedulerThread(QuartzScheduler qs, QuartzSchedulerResources qsRsrcs, boolean setDaemon,
+            int threadPrio, int partition, int partitionCount) {
+        super(qs.getSchedulerThreadGroup(),
+                partitionCount > 1 ? qsRsrcs.getThreadName() + "-" + partition : qsRsrcs.getThreadName());
         this.qs = qs;
         this.qsRsrcs = qsRsrcs;
+        this.partition = partition;
+        this.partitionCount = partitionCount;
         this.setDaemon(setDaemon);
         if (qsRsrcs.isThreadsInheritInitializersClassLoadContext()) {
             log.info("QuartzSchedulerThread Inheriting ContextClassLoader of thread: " + Thread.currentThread().getName());
@@ -176,10 +218,41 @@ public class QuartzSchedulerThread extends Thread {
         synchronized (sigLock) {
             signaled = true;
             signaledNextFireTime = candidateNewNextFireTime;
+            signalAhead(candidateNewNextFireTime);
+            sigLock.notifyAll();
+        }
+    }
+
+    /**
+     * Signals that a trigger fired by a firing thread will fire again at the
+     * given time, which the batch acquired ahead of it may not include. Unlike
+     * <code>signalSchedulingChange()</code>, it does not hide an earlier
+     * signaled change.
+     */
+    private void signalRefire(long nextFireTime) {
+        synchronized (sigLock) {
+            if (!signaled) {
+                signaled = true;
+                signaledNextFireTime = nextFireTime;
+            } else if (signaledNextFireTime != 0 && nextFireTime < signaledNextFireTime) {
+                signaledNextFireTime = nextFireTime;
+            }
+            signalAhead(nextFireTime);
             sigLock.notifyAll();
         }
     }
 
+    // must hold sigLock
+    private void signalAhead(long candidateNewNextFireTime) {
+        if (!signaledAhead) {
+            signaledAhead = true;
+            signaledAheadNextFireTime = candidateNewNextFireTime;
+        } else if (signaledAheadNextFireTime != 0
+                && (candidateNewNextFireTime == 0 || candidateNewNextFireTime < signaledAheadNextFireTime)) {
+            signaledAheadNextFireTime = candidateNewNextFireTime;
+        }
+    }
+
     public void clearSignaledSchedulingChange() {
         synchronized (sigLock) {
             signaled = false;
@@ -209,6 +282,10 @@ public class QuartzSchedulerThread extends Thread {
      */
     @Override
     public void run() {
+        if (qsRsrcs.isPipelineTriggerAcquisition()) {
+            runPipelined();
+            return;
+        }
         int acquiresFailed = 0;
         while (!halted.get()) {
             try {
@@ -255,8 +332,8 @@ public class QuartzSchedulerThread extends Thread {
                     try {
                         // 查询未来（now + idletime）时间内待触发的Triggers
                         // triggers是按触发时间由近及远排序的集合
-                        triggers = qsRsrcs.getJobStore().acquireNextTriggers(
-                                now + idleWaitTime, Math.min(availThreadCount, qsRsrcs.getMaxBatchSize()), qsRsrcs.getBatchTimeWindow());
+                        triggers = acquireFromJobStore(
+                                now + idleWaitTime, Math.min(availThreadCount, qs.getBatchController().getBatchSize()));
                         acquiresFailed = 0;
                         if (log.isDebugEnabled()) {
                             log.debug("batch acquisition of " + (triggers == null ? 0 : triggers.size()) + " triggers");
@@ -282,150 +359,524 @@ public class QuartzSchedulerThread extends Thread {
                         continue;
                     }
                     if (triggers != null && !triggers.isEmpty()) {
-                        now = System.currentTimeMillis();
-                        long triggerTime = triggers.get(0).getNextFireTime().getTime();
-                        long timeUntilTrigger = triggerTime - now;
-                        // 通过循环阻塞，等待第一个Trigger触发时间
-                        // 当触发时间距当前时间<=2 ms时，结束循环
-                        //不过需要注意的是，在此期间，可能有一些新的情况发生，比如说，新增了一个Trigger，
-                        // 并且该新增的Trigger比前面获取的触发时间都早，
-                        // 那么就需要将上面获取的Trigger释放掉(状态变化:STATE_ACQUIRED-->STATE_WAITING)，
-                        // 然后重新查询Trggers
-                        while (timeUntilTrigger > 2) {
-                            synchronized (sigLock) {
-                                if (halted.get()) {
-                                    break;
-                                }
-                                // 判断在此过程中是否有新增的并且触发时间更早的Trigger
-                                // 但是此处有个权衡，为了一个新增的的Trigger而丢弃当前已获取的是否值得？
-                                // 丢弃当前获取的Trigger并重新获取需要花费一定的时间，时间的长短与JobStore的实现有关。
-                                // 所以此处做了主观判断，如果使用的是数据库存储，查询时间假定为70ms，内存存储假定为7ms
-                                // 如果当前时间距已获得的第一个Trigger触发时间小于查询时间，则认为丢弃是不合算的。
-                                if (!isCandidateNewTimeEarlierWithinReason(triggerTime, false)) {
-                                    try {
-                                        // we could have blocked a long while
-                                        // on 'synchronize', so we must recompute
-                                        now = System.currentTimeMillis();
-                                        timeUntilTrigger = triggerTime - now;
-                                        if (timeUntilTrigger >= 1) {
-                                            sigLock.wait(timeUntilTrigger);
-                                        }
-                                    } catch (InterruptedException ignore) {
-                                    }
-                                }
-                            }
-                            // 如果有新增的且触发时间更早的Trigger过来搅局，则释放上面已获取的Trigger，等待下一波查询
-                            if (releaseIfScheduleChangedSignificantly(triggers, triggerTime)) {
-                                break;
-                            }
-                            now = System.currentTimeMillis();
-                            timeUntilTrigger = triggerTime - now;
-                        }
+                        waitForFireTime(triggers);
                         // this happens if releaseIfScheduleChangedSignificantly decided to release triggers
                         if (triggers.isEmpty()) {
                             continue;
                         }
-                        // set triggers to 'executing'
-                        List<TriggerFiredResult> bndles = new ArrayList<TriggerFiredResult>();
-                        boolean goAhead = true;
-                        synchronized (sigLock) {
-                            goAhead = !halted.get();
-                        }
-                        if (goAhead) {
-                            try {
-                                // 通知JobStore，这些Triggers将要被触发
-                                List<TriggerFiredResult> res = qsRsrcs.getJobStore().triggersFired(triggers);
-                                if (res != null) {
-                                    bndles = res;
-                                }
-                            } catch (SchedulerException se) {
-                                qs.notifySchedulerListenersError(
-                                        "An error occurred while firing triggers '"
-                                                + triggers + "'", se);
-                                //QTZ-179 : a problem occurred interacting with the triggers from the db
-                                //we release them and loop again
-                                for (int i = 0; i < triggers.size(); i++) {
-                                    qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
-                                }
-                                continue;
-                            }
-
-                        }
-                        // -------------------------------
-                        // 3 触发Triggers
-                        // -------------------------------
-                        //前面提到过，先前只是获取Trigger的主要信息，
-                        // 其关联的Job、Calendar等信息是在触发前获取的。
-                        // 待Trigger所需信息验证、关联完成后，先行将Trigger的状态改为STATE_ACQUIRED-->STATE_COMPLETE。
-                        // 而后将Trigger封装后的TriggerFiredResult对象交由JobRunShell执行
-                        for (int i = 0; i < bndles.size(); i++) {
-                            TriggerFiredResult result = bndles.get(i);
-                            TriggerFiredBundle bndle = result.getTriggerFiredBundle();
-                            Exception exception = result.getException();
-                            if (exception instanceof RuntimeException) {
-                                getLog().error("RuntimeException while firing trigger " + triggers.get(i), exception);
-                                qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
-                                continue;
-                            }
-                            // it's possible to get 'null' if the triggers was paused,
-                            // blocked, or other similar occurrences that prevent it being
-                            // fired at this time...  or if the scheduler was shutdown (halted)
-                            if (bndle == null) {
-                                qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
-                                continue;
-                            }
-                            JobRunShell shell = null;
-                            try {
-                                shell = qsRsrcs.getJobRunShellFactory().createJobRunShell(bndle);
-                                shell.initialize(qs);
-                            } catch (SchedulerException se) {
-                                qsRsrcs.getJobStore().triggeredJobComplete(triggers.get(i), bndle.getJobDetail(), CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
-                                continue;
-                            }
-                            if (qsRsrcs.getThreadPool().runInThread(shell) == false) {
-                                // this case should never happen, as it is indicative of the
-                                // scheduler being shutdown or a bug in the thread pool or
-                                // a thread pool being used concurrently - which the docs
-                                // say not to do...
-                                getLog().error("ThreadPool.runInThread() return false!");
-                                qsRsrcs.getJobStore().triggeredJobComplete(triggers.get(i), bndle.getJobDetail(), CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
-                            }
-
-                        }
+                        fireTriggers(triggers);
                         continue; // while (!halted)
                     }
                 } else { // if(availThreadCount > 0)
                     // should never happen, if threadPool.blockForAvailableThreads() follows contract
                     continue; // while (!halted)
                 }
-                long now = System.currentTimeMillis();
-                long waitTime = now + getRandomizedIdleWaitTime();
-                long timeUntilContinue = waitTime - now;
+                waitIdle();
+
+            } catch (RuntimeException re) {
+                getLog().error("Runtime error occurred in main trigger firing loop.", re);
+            }
+        } // while (!halted)
+
+        // drop references to scheduler stuff to aid garbage collection...
+        qs = null;
+        qsRsrcs = null;
+    }
+
+    /**
+     * <p>
+     * The main processing loop when the trigger acquisition is pipelined:
+     * the next batch of triggers is acquired while the current one waits for
+     * its fire time, and the batches are fired (<code>triggersFired()</code>
+     * and the creation of their <code>JobRunShell</code>s) by helper threads,
+     * so that the round trips to the job store for one batch are made while
+     * this thread waits for or acquires the next.
+     * </p>
+     *
+     * <p>
+     * The batch acquired ahead only uses the threads the current batch leaves
+     * available, and is acquired only if there is time to do so before the
+     * current batch is due. The changes signaled while it waits its turn,
+     * including the next fire times of the triggers fired meanwhile, are
+     * applied to it once it is the current batch, as to any batch.
+     * </p>
+     */
+    private void runPipelined() {
+        ThreadPoolExecutor firingExecutor = createFiringExecutor();
+        int acquiresFailed = 0;
+        List<OperableTrigger> next = null;
+        while (!halted.get()) {
+            try {
+                if (next != null && isPausedNow()) {
+                    // don't hold on to triggers while paused
+                    releaseAcquiredTriggers(next);
+                    next = null;
+                }
                 synchronized (sigLock) {
+                    while (paused && !halted.get()) {
+                        try {
+                            // wait until togglePause(false) is called...
+                            sigLock.wait(1000L);
+                        } catch (InterruptedException ignore) {
+                        }
+                        acquiresFailed = 0;
+                    }
+                    if (halted.get()) {
+                        break;
+                    }
+                }
+
+                // wait a bit, if reading from job store is consistently
+                // failing (e.g. DB is down or restarting)..
+                if (acquiresFailed > 1) {
                     try {
-                        if (!halted.get()) {
-                            // QTZ-336 A job might have been completed in the mean time and we might have
-                            // missed the scheduled changed signal by not waiting for the notify() yet
-                            // Check that before waiting for too long in case this very job needs to be
-                            // scheduled very soon
-                            if (!isScheduleChanged()) {
-                                sigLock.wait(timeUntilContinue);
+                        long delay = computeDelayForRepeatedErrors(qsRsrcs.getJobStore(), acquiresFailed);
+                        Thread.sleep(delay);
+                    } catch (Exception ignore) {
+                    }
+                }
+
+                int availThreadCount = qsRsrcs.getThreadPool().blockForAvailableThreads();
+                if (availThreadCount <= 0) {
+                    // should never happen, if threadPool.blockForAvailableThreads() follows contract
+                    continue;
+                }
+                // the threads the batches being fired are about to take
+                availThreadCount -= handedOffTriggers.get();
+
+                List<OperableTrigger> triggers = next;
+                next = null;
+                if (triggers != null) {
+                    synchronized (sigLock) {
+                        // what was signaled since it was acquired is news to it
+                        if (signaledAhead) {
+                            if (!signaled) {
+                                signaled = true;
+                                signaledNextFireTime = signaledAheadNextFireTime;
+                            } else if (signaledNextFireTime != 0 && (signaledAheadNextFireTime == 0
+                                    || signaledAheadNextFireTime < signaledNextFireTime)) {
+                                signaledNextFireTime = signaledAheadNextFireTime;
                             }
                         }
-                    } catch (InterruptedException ignore) {
+                    }
+                } else if (availThreadCount <= 0) {
+                    // the free threads are all about to be taken by the batches being fired
+                    waitForHandOffs();
+                    continue;
+                } else {
+                    clearSignaledSchedulingChange();
+                    triggers = acquireNextTriggers(availThreadCount, acquiresFailed);
+                    if (triggers == null) {
+                        if (acquiresFailed < Integer.MAX_VALUE) {
+                            acquiresFailed++;
+                        }
+                        continue;
+                    }
+                    acquiresFailed = 0;
+                    if (triggers.isEmpty()) {
+                        waitIdle();
+                        continue;
+                    }
+                }
+
+                // acquire the next batch while this one waits, if there is time
+                int spareThreadCount = availThreadCount - triggers.size();
+                long timeUntilTrigger = triggers.get(0).getNextFireTime().getTime() - System.currentTimeMillis();
+                if (spareThreadCount > 0 && TimeUnit.MILLISECONDS.toNanos(timeUntilTrigger) > lastAcquireNanos) {
+                    synchronized (sigLock) {
+                        signaledAhead = false;
+                        signaledAheadNextFireTime = 0;
+                    }
+                    next = acquireNextTriggers(spareThreadCount, acquiresFailed);
+                    if (next == null) {
+                        if (acquiresFailed < Integer.MAX_VALUE) {
+                            acquiresFailed++;
+                        }
+                    } else if (next.isEmpty()) {
+                        next = null;
                     }
                 }
 
+                waitForFireTime(triggers);
+                if (triggers.isEmpty()) {
+                    // released as the schedule changed: start over
+                    if (next != null) {
+                        releaseAcquiredTriggers(next);
+                        next = null;
+                    }
+                    continue;
+                }
+                handOff(firingExecutor, triggers);
             } catch (RuntimeException re) {
                 getLog().error("Runtime error occurred in main trigger firing loop.", re);
             }
         } // while (!halted)
 
+        if (next != null) {
+            // don't leave the batch acquired ahead to be recovered
+            releaseAcquiredTriggers(next);
+        }
+
+        // let the firing threads finish with what they were handed
+        firingExecutor.shutdown();
+        boolean interrupted = false;
+        while (!firingExecutor.isTerminated()) {
+            try {
+                firingExecutor.awaitTermination(1L, TimeUnit.SECONDS);
+            } catch (InterruptedException _) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
         // drop references to scheduler stuff to aid garbage collection...
         qs = null;
         qsRsrcs = null;
     }
 
+    /**
+     * The helper threads firing the batches of triggers. When they are all
+     * busy and have a batch queued each, the scheduler thread fires the next
+     * batch itself.
+     */
+    private ThreadPoolExecutor createFiringExecutor() {
+        int threadCount = qsRsrcs.getPipelineFiringThreadCount();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                QuartzSchedulerThread schedThread = QuartzSchedulerThread.this;
+                Thread thread = new Thread(schedThread.getThreadGroup(), runnable,
+                        schedThread.getName() + "_Firing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(schedThread.isDaemon());
+                thread.setPriority(schedThread.getPriority());
+                thread.setContextClassLoader(schedThread.getContextClassLoader());
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threadCount), threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Acquire the next triggers to fire, at most as many as there are
+     * threads available. Returns <code>null</code> if the
+     * job store failed, which is reported unless it also failed last time.
+     */
+    private List<OperableTrigger> acquireNextTriggers(int availThreadCount, int acquiresFailed) {
+        long start = System.nanoTime();
+        try {
+            List<OperableTrigger> triggers = acquireFromJobStore(System.currentTimeMillis() + idleWaitTime,
+                    Math.min(availThreadCount, qs.getBatchController().getBatchSize()));
+            lastAcquireNanos = System.nanoTime() - start;
+            if (log.isDebugEnabled()) {
+                log.debug("batch acquisition of " + (triggers == null ? 0 : triggers.size()) + " triggers");
+            }
+            return triggers == null ? new ArrayList<OperableTrigger>() : triggers;
+        } catch (JobPersistenceException jpe) {
+            if (acquiresFailed == 0) {
+                qs.notifySchedulerListenersError(
+                        "An error occurred while scanning for the next triggers to fire.",
+                        jpe);
+            }
+        } catch (RuntimeException e) {
+            if (acquiresFailed == 0) {
+                getLog().error("quartzSchedulerThreadLoop: RuntimeException "
+                        + e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Have a firing thread fire the triggers, then signal the earliest time
+     * one of them fires again.
+     */
+    private void handOff(ThreadPoolExecutor firingExecutor, final List<OperableTrigger> triggers) {
+        handedOffTriggers.addAndGet(triggers.size());
+        firingExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    List<TriggerFiredResult> bndles = fireTriggers(triggers);
+                    long earliest = Long.MAX_VALUE;
+                    for (TriggerFiredResult result : bndles) {
+                        TriggerFiredBundle bndle = result.getTriggerFiredBundle();
+                        // the triggers of a job that disallows concurrent
+                        // execution are blocked until it completes
+                        if (bndle == null || bndle.getJobDetail().isConcurrentExectionDisallowed()
+                                || bndle.getTrigger().getNextFireTime() == null) {
+                            continue;
+                        }
+                        earliest = Math.min(earliest, bndle.getTrigger().getNextFireTime().getTime());
+                    }
+                    if (earliest != Long.MAX_VALUE) {
+                        signalRefire(earliest);
+                    }
+                } catch (RuntimeException re) {
+                    getLog().error("Runtime error occurred while firing triggers.", re);
+                } finally {
+                    synchronized (handedOffTriggers) {
+                        handedOffTriggers.addAndGet(-triggers.size());
+                        handedOffTriggers.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait until a batch handed off to the firing threads is fired, or a
+     * second at most.
+     */
+    private void waitForHandOffs() {
+        synchronized (handedOffTriggers) {
+            if (handedOffTriggers.get() > 0 && !halted.get()) {
+                try {
+                    handedOffTriggers.wait(1000L);
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }
+    }
+
+    private boolean isPausedNow() {
+        synchronized (sigLock) {
+            return paused;
+        }
+    }
+
+    /**
+     * Acquire the next triggers of this thread's partition, if there are
+     * several scheduler threads, or else of the whole job store.
+     */
+    private List<OperableTrigger> acquireFromJobStore(long noLaterThan, int maxCount)
+            throws JobPersistenceException {
+        long timeWindow = qs.getBatchController().getTimeWindow();
+        long start = System.nanoTime();
+        List<OperableTrigger> triggers;
+        if (partitionCount > 1) {
+            triggers = ((PartitionedJobStore) qsRsrcs.getJobStore()).acquireNextTriggers(
+                    noLaterThan, maxCount, timeWindow, partition, partitionCount);
+        } else {
+            triggers = qsRsrcs.getJobStore().acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+        }
+        qs.getReleaseCostEstimator().acquired(System.nanoTime() - start);
+        qs.getBatchController().acquired(maxCount, triggers == null ? 0 : triggers.size());
+        return triggers;
+    }
+
+    private void releaseAcquiredTriggers(List<OperableTrigger> triggers) {
+        for (OperableTrigger trigger : triggers) {
+            qsRsrcs.getJobStore().releaseAcquiredTrigger(trigger);
+        }
+    }
+
+    /**
+     * Wait until the first of the acquired triggers is due. If the schedule
+     * changes significantly in the meantime, the triggers are released and
+     * the list is emptied.
+     */
+    private void waitForFireTime(List<OperableTrigger> triggers) {
+        long now = System.currentTimeMillis();
+        long triggerTime = triggers.get(0).getNextFireTime().getTime();
+        long timeUntilTrigger = triggerTime - now;
+        if (timeUntilTrigger > 2) {
+            // there is time to spare for it now, not when the trigger is due
+            qs.getFireClock().calibrateIfStale();
+        }
+        // 通过循环阻塞，等待第一个Trigger触发时间
+        // 当触发时间距当前时间<=2 ms时，结束循环
+        //不过需要注意的是，在此期间，可能有一些新的情况发生，比如说，新增了一个Trigger，
+        // 并且该新增的Trigger比前面获取的触发时间都早，
+        // 那么就需要将上面获取的Trigger释放掉(状态变化:STATE_ACQUIRED-->STATE_WAITING)，
+        // 然后重新查询Trggers
+        while (timeUntilTrigger > 2) {
+            synchronized (sigLock) {
+                if (halted.get()) {
+                    break;
+                }
+                // 判断在此过程中是否有新增的并且触发时间更早的Trigger
+                // 但是此处有个权衡，为了一个新增的的Trigger而丢弃当前已获取的是否值得？
+                // 丢弃当前获取的Trigger并重新获取需要花费一定的时间，时间的长短与JobStore的实现有关。
+                // 所以此处做了主观判断，如果使用的是数据库存储，查询时间假定为70ms，内存存储假定为7ms
+                // 如果当前时间距已获得的第一个Trigger触发时间小于查询时间，则认为丢弃是不合算的。
+                if (!isCandidateNewTimeEarlierWithinReason(triggerTime, false)) {
+                    try {
+                        // we could have blocked a long while
+                        // on 'synchronize', so we must recompute
+                        now = System.currentTimeMillis();
+                        timeUntilTrigger = triggerTime - now;
+                        if (timeUntilTrigger >= 1) {
+                            sigLock.wait(timeUntilTrigger);
+                        }
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            }
+            // 如果有新增的且触发时间更早的Trigger过来搅局，则释放上面已获取的Trigger，等待下一波查询
+            if (releaseIfScheduleChangedSignificantly(triggers, triggerTime)) {
+                break;
+            }
+            now = System.currentTimeMillis();
+            timeUntilTrigger = triggerTime - now;
+        }
+        if (qsRsrcs.isPrecisionFiring() && !triggers.isEmpty()) {
+            parkUntil(qs.getFireClock().nanosOf(triggerTime));
+        }
+    }
+
+    /**
+     * Wait for the last milliseconds before a fire time: park until shortly
+     * before it, then spin, as a parked thread may wake up late.
+     */
+    private void parkUntil(long deadlineNanos) {
+        long spinNanos = qsRsrcs.getPrecisionFiringSpinNanos();
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (halted.get()) {
+                return;
+            }
+        }
+        while (deadlineNanos - System.nanoTime() > 0) {
+            // spin
+        }
+    }
+
+    /**
+     * Fire the acquired triggers: have the job store fire them, and run a
+     * <code>JobRunShell</code> for each in the thread pool.
+     *
+     * @return what the job store fired
+     */
+    private List<TriggerFiredResult> fireTriggers(List<OperableTrigger> triggers) {
+        // set triggers to 'executing'
+        List<TriggerFiredResult> bndles = new ArrayList<TriggerFiredResult>();
+        boolean goAhead = true;
+        synchronized (sigLock) {
+            goAhead = !halted.get();
+        }
+        if (goAhead) {
+            try {
+                // 通知JobStore，这些Triggers将要被触发
+                List<TriggerFiredResult> res = qsRsrcs.getJobStore().triggersFired(triggers);
+                if (res != null) {
+                    bndles = res;
+                }
+            } catch (SchedulerException se) {
+                qs.notifySchedulerListenersError(
+                        "An error occurred while firing triggers '"
+                                + triggers + "'", se);
+                //QTZ-179 : a problem occurred interacting with the triggers from the db
+                //we release them and loop again
+                for (int i = 0; i < triggers.size(); i++) {
+                    qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
+                }
+                return bndles;
+            }
+
+        }
+        // -------------------------------
+        // 3 触发Triggers
+        // -------------------------------
+        //前面提到过，先前只是获取Trigger的主要信息，
+        // 其关联的Job、Calendar等信息是在触发前获取的。
+        // 待Trigger所需信息验证、关联完成后，先行将Trigger的状态改为STATE_ACQUIRED-->STATE_COMPLETE。
+        // 而后将Trigger封装后的TriggerFiredResult对象交由JobRunShell执行
+        for (int i = 0; i < bndles.size(); i++) {
+            TriggerFiredResult result = bndles.get(i);
+            TriggerFiredBundle bndle = result.getTriggerFiredBundle();
+            Exception exception = result.getException();
+            if (exception instanceof RuntimeException) {
+                getLog().error("RuntimeException while firing trigger " + triggers.get(i), exception);
+                qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
+                continue;
+            }
+            // it's possible to get 'null' if the triggers was paused,
+            // blocked, or other similar occurrences that prevent it being
+            // fired at this time...  or if the scheduler was shutdown (halted)
+            if (bndle == null) {
+                qsRsrcs.getJobStore().releaseAcquiredTrigger(triggers.get(i));
+                continue;
+            }
+            JobRunShell shell = null;
+            try {
+                shell = qsRsrcs.getJobRunShellFactory().createJobRunShell(bndle);
+                shell.initialize(qs);
+            } catch (SchedulerException se) {
+                qsRsrcs.getJobStore().triggeredJobComplete(triggers.get(i), bndle.getJobDetail(), CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
+                continue;
+            }
+            if (qsRsrcs.getThreadPool().runInThread(shell) == false) {
+                // this case should never happen, as it is indicative of the
+                // scheduler being shutdown or a bug in the thread pool or
+                // a thread pool being used concurrently - which the docs
+                // say not to do...
+                getLog().error("ThreadPool.runInThread() return false!");
+                qsRsrcs.getJobStore().triggeredJobComplete(triggers.get(i), bndle.getJobDetail(), CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
+            }
+
+        }
+        return bndles;
+    }
+
+    /**
+     * Wait a while, as there was no trigger to fire.
+     */
+    private void waitIdle() {
+        long timeUntilContinue = computeIdleWaitTime();
+        synchronized (sigLock) {
+            try {
+                if (!halted.get()) {
+                    // QTZ-336 A job might have been completed in the mean time and we might have
+                    // missed the scheduled changed signal by not waiting for the notify() yet
+                    // Check that before waiting for too long in case this very job needs to be
+                    // scheduled very soon
+                    if (!isScheduleChanged()) {
+                        sigLock.wait(timeUntilContinue);
+                    }
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+
+    /**
+     * How long to wait when idle: the randomized idle wait time, or, with
+     * adaptive acquisition, until shortly before the next fire time the
+     * <code>JobStore</code> reports. The latter is only trusted if the job
+     * store is not clustered (the other nodes do not signal this one of
+     * their changes), and if the next fire time is beyond the idle wait
+     * time (a trigger due sooner should have been acquired, it may have
+     * misfired or its job be blocked).
+     */
+    private long computeIdleWaitTime() {
+        long idleWait = getRandomizedIdleWaitTime();
+        JobStore jobStore = qsRsrcs.getJobStore();
+        if (!qs.getBatchController().isEnabled() || !(jobStore instanceof NextFireTimeJobStore)
+                || jobStore.isClustered()) {
+            return idleWait;
+        }
+        long nextFireTime;
+        try {
+            nextFireTime = ((NextFireTimeJobStore) jobStore).getNextFireTime();
+        } catch (JobPersistenceException jpe) {
+            getLog().warn("Could not get the next fire time, waiting " + idleWait + "ms.", jpe);
+            return idleWait;
+        }
+        long timeUntilNextFireTime = nextFireTime - System.currentTimeMillis();
+        if (nextFireTime == 0 || timeUntilNextFireTime <= idleWaitTime) {
+            return idleWait;
+        }
+        qs.getBatchController().waitingUntilNextFireTime();
+        // wake up in time to acquire it
+        return Math.max(idleWait, timeUntilNextFireTime
+                - qs.getReleaseCostEstimator().getEstimatedTimeToReleaseAndAcquireTrigger());
+    }
+
     /**
      * https://blog.csdn.net/qq_33265520/article/details/84639197
      * <p>
@@ -722,9 +1173,11 @@ public class QuartzSchedulerThread extends Thread {
             List<OperableTrigger> triggers, long triggerTime) {
         if (isCandidateNewTimeEarlierWithinReason(triggerTime, true)) {
             // above call does a clearSignaledSchedulingChange()
+            long start = System.nanoTime();
             for (OperableTrigger trigger : triggers) {
                 qsRsrcs.getJobStore().releaseAcquiredTrigger(trigger);
             }
+            qs.getReleaseCostEstimator().released(System.nanoTime() - start);
             triggers.clear();
             return true;
         }
@@ -747,9 +1200,9 @@ public class QuartzSchedulerThread extends Thread {
         // the job store implementation (and of course the particular database
         // or whatever behind it).  Ideally we would depend on the job store
         // implementation to tell us the amount of time in which it "thinks"
-        // it can abandon the acquired trigger and acquire a new one.  However
-        // we have no current facility for having it tell us that, so we make
-        // a somewhat educated but arbitrary guess ;-).
+        // it can abandon the acquired trigger and acquire a new one.  Better
+        // still, we measure it: the estimate starts out as the job store's
+        // own, and then follows the acquisitions and releases we time.
 
         synchronized (sigLock) {
             if (!isScheduleChanged()) {
@@ -765,7 +1218,7 @@ public class QuartzSchedulerThread extends Thread {
             if (earlier) {
                 // so the new time is considered earlier, but is it enough earlier?
                 long diff = oldTime - System.currentTimeMillis();
-                if (diff < (qsRsrcs.getJobStore().supportsPersistence() ? 70L : 7L)) {
+                if (diff < qs.getReleaseCostEstimator().getEstimatedTimeToReleaseAndAcquireTrigger()) {
                     earlier = false;
                 }
             }
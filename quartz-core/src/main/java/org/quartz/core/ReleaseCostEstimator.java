@@ -0,0 +1,85 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates how long it takes to release the acquired triggers and acquire
+ * new ones, from the latencies the scheduler threads measure.
+ *
+ * <p>
+ * The acquisitions and the releases are each averaged with an exponentially
+ * weighted moving average, so that the estimate follows the job store as it
+ * gets slower or faster. Until there is a measured acquisition, the
+ * estimate of the <code>JobStore</code> itself is used; until there is a
+ * measured release, it is taken to cost as much as an acquisition.
+ * </p>
+ *
+ * 根据实际测得的获取、释放Trigger的耗时，估算放弃已获取的Trigger并重新获取的代价
+ */
+class ReleaseCostEstimator {
+
+    /** The weight of a new sample. */
+    static final double ALPHA = 0.2;
+
+    private final long initialEstimate;
+
+    private double acquireNanos = -1;
+
+    private double releaseNanos = -1;
+
+    private final AtomicLong releaseCount = new AtomicLong();
+
+    /**
+     * @param initialEstimate the estimate, in milliseconds, until the first
+     *                        acquisition is measured
+     */
+    ReleaseCostEstimator(long initialEstimate) {
+        this.initialEstimate = initialEstimate;
+    }
+
+    synchronized void acquired(long nanos) {
+        acquireNanos = average(acquireNanos, nanos);
+    }
+
+    synchronized void released(long nanos) {
+        releaseNanos = average(releaseNanos, nanos);
+        releaseCount.incrementAndGet();
+    }
+
+    private static double average(double average, long sample) {
+        return average < 0 ? sample : average + ALPHA * (sample - average);
+    }
+
+    /**
+     * How long (in milliseconds) releasing the acquired triggers and
+     * acquiring new ones is estimated to take.
+     */
+    synchronized long getEstimatedTimeToReleaseAndAcquireTrigger() {
+        if (acquireNanos < 0) {
+            return initialEstimate;
+        }
+        double nanos = acquireNanos + (releaseNanos < 0 ? acquireNanos : releaseNanos);
+        return (long) Math.ceil(nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /** The number of times acquired triggers were released to acquire earlier ones. */
+    long getReleaseCount() {
+        return releaseCount.get();
+    }
+}
@@ -21,9 +21,20 @@ public class SchedulerSignalerImpl implements SchedulerSignaler {
 
     protected QuartzSchedulerThread schedThread;
 
+    protected QuartzSchedulerThread[] schedThreads;
+
     public SchedulerSignalerImpl(QuartzScheduler sched, QuartzSchedulerThread schedThread) {
+        this(sched, new QuartzSchedulerThread[] {schedThread});
+    }
+
+    /**
+     * Signal all of the given scheduler threads: changes reported by the job
+     * store do not tell which partition they concern.
+     */
+    public SchedulerSignalerImpl(QuartzScheduler sched, QuartzSchedulerThread[] schedThreads) {
         this.sched = sched;
-        this.schedThread = schedThread;
+        this.schedThread = schedThreads[0];
+        this.schedThreads = schedThreads;
 
         log.info("Initialized Scheduler Signaller of type: " + getClass());
     }
@@ -47,7 +58,9 @@ public class SchedulerSignalerImpl implements SchedulerSignaler {
 
     @Override
     public void signalSchedulingChange(long candidateNewNextFireTime) {
-        schedThread.signalSchedulingChange(candidateNewNextFireTime);
+        for (QuartzSchedulerThread thread : schedThreads) {
+            thread.signalSchedulingChange(candidateNewNextFireTime);
+        }
     }
 
     @Override
@@ -60,6 +60,20 @@ public interface QuartzSchedulerMBean {
 
     Map<String, Long> getPerformanceMetrics();
 
+    long getEstimatedTimeToReleaseAndAcquireTrigger();
+
+    long getAcquiredTriggersReleaseCount();
+
+    int getAcquisitionBatchSize();
+
+    long getAcquisitionBatchTimeWindow();
+
+    long getAcquisitionBatchGrowCount();
+
+    long getAcquisitionBatchShrinkCount();
+
+    long getNextFireTimeWaitCount();
+
     /**
      * @return TabularData of CompositeData:JobExecutionContext
      * @throws Exception
@@ -60,6 +60,9 @@ public class JobExecutionContextImpl implements java.io.Serializable, JobExecuti
         this.prevFireTime = firedBundle.getPrevFireTime();
         this.nextFireTime = firedBundle.getNextFireTime();
 
+        // putAll() into the empty map shares the entries of the job's map
+        // until the job or the trigger adds to it; the merged map is dirty
+        // if either map has entries, whatever the job's map's own flag
         this.jobDataMap = new JobDataMap();
         this.jobDataMap.putAll(jobDetail.getJobDataMap());
         this.jobDataMap.putAll(trigger.getJobDataMap());
@@ -1,6 +1,7 @@
 package org.quartz.impl;
 
 import org.quartz.*;
+import org.quartz.core.ListenerDispatcher;
 import org.quartz.core.JobRunShellFactory;
 import org.quartz.core.QuartzScheduler;
 import org.quartz.core.QuartzSchedulerResources;
@@ -12,8 +13,10 @@ import org.quartz.impl.jdbcjobstore.Semaphore;
 import org.quartz.impl.jdbcjobstore.TablePrefixAware;
 import org.quartz.impl.matchers.EverythingMatcher;
 import org.quartz.management.ManagementRESTServiceConfiguration;
+import org.quartz.simpl.ElasticThreadPool;
 import org.quartz.simpl.RAMJobStore;
 import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.simpl.VirtualThreadPool;
 import org.quartz.spi.*;
 import org.quartz.utils.*;
 import org.slf4j.Logger;
@@ -30,6 +33,7 @@ import java.security.AccessControlException;
 import java.util.Collection;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -103,6 +107,34 @@ public class StdSchedulerFactory implements SchedulerFactory {
 
     public static final String PROP_SCHED_MAX_BATCH_SIZE = "org.quartz.scheduler.batchTriggerAcquisitionMaxCount";
 
+    public static final String PROP_SCHED_PIPELINE_TRIGGER_ACQUISITION = "org.quartz.scheduler.pipelineTriggerAcquisition";
+
+    public static final String PROP_SCHED_PIPELINE_FIRING_THREAD_COUNT = "org.quartz.scheduler.pipelineFiringThreadCount";
+
+    public static final String PROP_SCHED_SCHEDULER_THREAD_COUNT = "org.quartz.scheduler.schedulerThreadCount";
+
+    public static final String PROP_SCHED_PRECISION_FIRING = "org.quartz.scheduler.precisionFiring";
+
+    public static final String PROP_SCHED_PRECISION_FIRING_SPIN_MICROS = "org.quartz.scheduler.precisionFiringSpinMicros";
+
+    public static final String PROP_SCHED_ADAPTIVE_ACQUISITION = "org.quartz.scheduler.adaptiveAcquisition";
+
+    public static final String PROP_SCHED_EPHEMERAL_TRIGGER_JOB = "org.quartz.scheduler.ephemeralTriggerJob";
+
+    public static final String PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_BATCH_SIZE = "org.quartz.scheduler.adaptiveAcquisitionMaxBatchSize";
+
+    public static final String PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_TIME_WINDOW = "org.quartz.scheduler.adaptiveAcquisitionMaxTimeWindow";
+
+    public static final String PROP_SCHED_ADAPTIVE_ACQUISITION_LATENESS_THRESHOLD = "org.quartz.scheduler.adaptiveAcquisitionLatenessThreshold";
+
+    public static final String PROP_SCHED_LISTENER_DISPATCH_THREAD_COUNT = "org.quartz.scheduler.listenerDispatch.threadCount";
+
+    public static final String PROP_SCHED_LISTENER_DISPATCH_QUEUE_SIZE = "org.quartz.scheduler.listenerDispatch.queueSize";
+
+    public static final String PROP_SCHED_LISTENER_DISPATCH_BATCH_SIZE = "org.quartz.scheduler.listenerDispatch.batchSize";
+
+    public static final String PROP_SCHED_LISTENER_DISPATCH_OVERFLOW_POLICY = "org.quartz.scheduler.listenerDispatch.overflowPolicy";
+
     public static final String PROP_SCHED_JMX_EXPORT = "org.quartz.scheduler.jmx.export";
 
     public static final String PROP_SCHED_JMX_OBJECT_NAME = "org.quartz.scheduler.jmx.objectName";
@@ -627,6 +659,51 @@ public class StdSchedulerFactory implements SchedulerFactory {
                 cfg.getBooleanProperty(PROP_SCHED_SCHEDULER_THREADS_INHERIT_CONTEXT_CLASS_LOADER_OF_INITIALIZING_THREAD);
         long batchTimeWindow = cfg.getLongProperty(PROP_SCHED_BATCH_TIME_WINDOW, 0L);
         int maxBatchSize = cfg.getIntProperty(PROP_SCHED_MAX_BATCH_SIZE, 1);
+        boolean pipelineTriggerAcquisition = cfg.getBooleanProperty(PROP_SCHED_PIPELINE_TRIGGER_ACQUISITION, false);
+        int pipelineFiringThreadCount = cfg.getIntProperty(PROP_SCHED_PIPELINE_FIRING_THREAD_COUNT, 1);
+        if (pipelineFiringThreadCount < 1) {
+            throw new SchedulerConfigException(PROP_SCHED_PIPELINE_FIRING_THREAD_COUNT + " must be > 0.");
+        }
+        int schedulerThreadCount = cfg.getIntProperty(PROP_SCHED_SCHEDULER_THREAD_COUNT, 1);
+        if (schedulerThreadCount < 1) {
+            throw new SchedulerConfigException(PROP_SCHED_SCHEDULER_THREAD_COUNT + " must be > 0.");
+        }
+        boolean precisionFiring = cfg.getBooleanProperty(PROP_SCHED_PRECISION_FIRING, false);
+        long precisionFiringSpinMicros = cfg.getLongProperty(PROP_SCHED_PRECISION_FIRING_SPIN_MICROS, 100L);
+        if (precisionFiringSpinMicros < 0) {
+            throw new SchedulerConfigException(PROP_SCHED_PRECISION_FIRING_SPIN_MICROS + " must be >= 0.");
+        }
+        boolean adaptiveAcquisition = cfg.getBooleanProperty(PROP_SCHED_ADAPTIVE_ACQUISITION, false);
+        boolean ephemeralTriggerJob = cfg.getBooleanProperty(PROP_SCHED_EPHEMERAL_TRIGGER_JOB, false);
+        int adaptiveAcquisitionMaxBatchSize = cfg.getIntProperty(PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_BATCH_SIZE, 64);
+        long adaptiveAcquisitionMaxTimeWindow = cfg.getLongProperty(PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_TIME_WINDOW, 50L);
+        long adaptiveAcquisitionLatenessThreshold = cfg.getLongProperty(PROP_SCHED_ADAPTIVE_ACQUISITION_LATENESS_THRESHOLD, 20L);
+        if (adaptiveAcquisitionMaxBatchSize < 1) {
+            throw new SchedulerConfigException(PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_BATCH_SIZE + " must be > 0.");
+        }
+        if (adaptiveAcquisitionMaxTimeWindow < 0) {
+            throw new SchedulerConfigException(PROP_SCHED_ADAPTIVE_ACQUISITION_MAX_TIME_WINDOW + " must be >= 0.");
+        }
+        int listenerDispatchThreadCount = cfg.getIntProperty(PROP_SCHED_LISTENER_DISPATCH_THREAD_COUNT,
+                ListenerDispatcher.DEFAULT_THREAD_COUNT);
+        int listenerDispatchQueueSize = cfg.getIntProperty(PROP_SCHED_LISTENER_DISPATCH_QUEUE_SIZE,
+                ListenerDispatcher.DEFAULT_QUEUE_SIZE);
+        int listenerDispatchBatchSize = cfg.getIntProperty(PROP_SCHED_LISTENER_DISPATCH_BATCH_SIZE,
+                ListenerDispatcher.DEFAULT_BATCH_SIZE);
+        if (listenerDispatchThreadCount < 1 || listenerDispatchQueueSize < 1 || listenerDispatchBatchSize < 1) {
+            throw new SchedulerConfigException(
+                    "org.quartz.scheduler.listenerDispatch thread count, queue size and batch size must be > 0.");
+        }
+        ListenerDispatcher.OverflowPolicy listenerDispatchOverflowPolicy;
+        String overflowPolicy = cfg.getStringProperty(PROP_SCHED_LISTENER_DISPATCH_OVERFLOW_POLICY,
+                ListenerDispatcher.OverflowPolicy.BLOCK.name());
+        try {
+            listenerDispatchOverflowPolicy = ListenerDispatcher.OverflowPolicy.valueOf(
+                    overflowPolicy.trim().toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            throw new SchedulerConfigException("Unknown " + PROP_SCHED_LISTENER_DISPATCH_OVERFLOW_POLICY
+                    + ": '" + overflowPolicy + "', expected BLOCK, DROP or CALLER_RUNS.");
+        }
         boolean interruptJobsOnShutdown = cfg.getBooleanProperty(PROP_SCHED_INTERRUPT_JOBS_ON_SHUTDOWN, false);
         boolean interruptJobsOnShutdownWithWait = cfg.getBooleanProperty(PROP_SCHED_INTERRUPT_JOBS_ON_SHUTDOWN_WITH_WAIT, false);
         boolean jmxExport = cfg.getBooleanProperty(PROP_SCHED_JMX_EXPORT);
@@ -1170,6 +1247,20 @@ public class StdSchedulerFactory implements SchedulerFactory {
             rsrcs.setThreadsInheritInitializersClassLoadContext(threadsInheritInitalizersClassLoader);
             rsrcs.setBatchTimeWindow(batchTimeWindow);
             rsrcs.setMaxBatchSize(maxBatchSize);
+            rsrcs.setPipelineTriggerAcquisition(pipelineTriggerAcquisition);
+            rsrcs.setPipelineFiringThreadCount(pipelineFiringThreadCount);
+            rsrcs.setSchedulerThreadCount(schedulerThreadCount);
+            rsrcs.setPrecisionFiring(precisionFiring);
+            rsrcs.setPrecisionFiringSpinNanos(TimeUnit.MICROSECONDS.toNanos(precisionFiringSpinMicros));
+            rsrcs.setAdaptiveAcquisition(adaptiveAcquisition);
+            rsrcs.setEphemeralTriggerJob(ephemeralTriggerJob);
+            rsrcs.setAdaptiveAcquisitionMaxBatchSize(adaptiveAcquisitionMaxBatchSize);
+            rsrcs.setAdaptiveAcquisitionMaxTimeWindow(adaptiveAcquisitionMaxTimeWindow);
+            rsrcs.setAdaptiveAcquisitionLatenessThreshold(adaptiveAcquisitionLatenessThreshold);
+            rsrcs.setListenerDispatchThreadCount(listenerDispatchThreadCount);
+            rsrcs.setListenerDispatchQueueSize(listenerDispatchQueueSize);
+            rsrcs.setListenerDispatchBatchSize(listenerDispatchBatchSize);
+            rsrcs.setListenerDispatchOverflowPolicy(listenerDispatchOverflowPolicy);
             rsrcs.setInterruptJobsOnShutdown(interruptJobsOnShutdown);
             rsrcs.setInterruptJobsOnShutdownWithWait(interruptJobsOnShutdownWithWait);
             rsrcs.setJMXExport(jmxExport);
@@ -1200,6 +1291,14 @@ public class StdSchedulerFactory implements SchedulerFactory {
                 if (threadsInheritInitalizersClassLoader) {
                     ((SimpleThreadPool) tp).setThreadsInheritContextClassLoaderOfInitializingThread(threadsInheritInitalizersClassLoader);
                 }
+            } else if (tp instanceof ElasticThreadPool) {
+                if (threadsInheritInitalizersClassLoader) {
+                    ((ElasticThreadPool) tp).setThreadsInheritContextClassLoaderOfInitializingThread(threadsInheritInitalizersClassLoader);
+                }
+            } else if (tp instanceof VirtualThreadPool) {
+                if (threadsInheritInitalizersClassLoader) {
+                    ((VirtualThreadPool) tp).setThreadsInheritContextClassLoaderOfInitializingThread(threadsInheritInitalizersClassLoader);
+                }
             }
             //执行线程池启动
             tp.initialize();
@@ -51,9 +51,25 @@ public class AttributeRestoringConnectionInvocationHandler implements Invocation
     // Set if overwroteOriginalTxIsolationValue is true
     private int originalTxIsolationValue;
     
+    // Set if prepared statements are to be reused
+    private PreparedStatementCache statementCache;
+
     public AttributeRestoringConnectionInvocationHandler(
         Connection conn) {
+        this(conn, false);
+    }
+
+    /**
+     * @param cacheStatements whether statements prepared through the wrapper
+     * are to be reused until the connection is closed, see 
+     * <code>{@link PreparedStatementCache}</code>.
+     */
+    public AttributeRestoringConnectionInvocationHandler(
+        Connection conn, boolean cacheStatements) {
         this.conn = conn;
+        if (cacheStatements) {
+            statementCache = new PreparedStatementCache(conn);
+        }
     }
 
     protected Logger getLog() {
@@ -68,6 +84,8 @@ public class AttributeRestoringConnectionInvocationHandler implements Invocation
             setTransactionIsolation(((Integer)args[0]).intValue());
         } else if (method.getName().equals("close")) {
             close();
+        } else if (statementCache != null && method.getName().equals("prepareStatement") && args.length == 1) {
+            return statementCache.prepareStatement((String)args[0]);
         } else {
             try {
                 return method.invoke(conn, args);
@@ -153,12 +171,22 @@ public class AttributeRestoringConnectionInvocationHandler implements Invocation
         }
     }
     
+    /**
+     * Closes the statements kept for reuse, if any.
+     */
+    public void closeCachedStatements() {
+        if (statementCache != null) {
+            statementCache.close();
+        }
+    }
+
     /**
      * Attempts to restore the auto commit and transaction isolation connection
      * attributes of the wrapped connection to their original values (if they
      * were overwritten), before finally actually closing the wrapped connection.
      */
     public void close() throws SQLException {
+        closeCachedStatements();
         restoreOriginalAtributes();
         
         conn.close();
@@ -74,7 +74,7 @@ public class CUBRIDDelegate extends StdJDBCDelegate {
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
             throws ClassNotFoundException, IOException, SQLException {
 
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             InputStream binaryInput;
 
             Blob blob = rs.getBlob(colName);
@@ -0,0 +1,291 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A <code>{@link JobDataMapCodec}</code> with a compact binary format for
+ * the values usually found in job data: <code>String</code>s, boxed
+ * primitives, <code>Date</code>s, <code>byte[]</code>s, and
+ * <code>ArrayList</code>s, <code>HashSet</code>s and <code>HashMap</code>s
+ * of those. Integers are written as variable length, zig-zag encoded
+ * numbers, and no class descriptors are written.
+ * </p>
+ * 
+ * <p>
+ * Any other value is written with Java serialization, so it has to be
+ * <code>Serializable</code> just as without a codec.
+ * </p>
+ * 
+ * 紧凑的二进制 JobDataMap 编码.
+ */
+public class CompactJobDataMapCodec implements JobDataMapCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int SHORT = 7;
+    private static final int BYTE = 8;
+    private static final int CHARACTER = 9;
+    private static final int DATE = 10;
+    private static final int BYTES = 11;
+    private static final int LIST = 12;
+    private static final int SET = 13;
+    private static final int MAP = 14;
+    private static final int SERIALIZED = 15;
+
+    public void encode(Map<?, ?> data, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        writeMap(dos, data);
+        dos.flush();
+    }
+
+    public Map<?, ?> decode(InputStream in) throws IOException, ClassNotFoundException {
+        DataInputStream dis = new DataInputStream(in);
+        if (dis.readUnsignedByte() != MAP) {
+            throw new StreamCorruptedException("JobDataMap encoding does not start with a map");
+        }
+        return readMap(dis);
+    }
+
+    private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        out.writeByte(MAP);
+        writeVarLong(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private void writeCollection(DataOutputStream out, int tag, Collection<?> collection) throws IOException {
+        out.writeByte(tag);
+        writeVarLong(out, collection.size());
+        for (Object element : collection) {
+            writeValue(out, element);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        // exact classes only, so that values read back have the type they were stored with
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (type == Boolean.class) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Character.class) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (type == Date.class) {
+            out.writeByte(DATE);
+            writeVarLong(out, zigZag(((Date) value).getTime()));
+        } else if (type == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        } else if (type == ArrayList.class) {
+            writeCollection(out, LIST, (Collection<?>) value);
+        } else if (type == HashSet.class) {
+            writeCollection(out, SET, (Collection<?>) value);
+        } else if (type == HashMap.class) {
+            writeMap(out, (Map<?, ?>) value);
+        } else {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(SERIALIZED);
+            writeVarLong(out, baos.size());
+            baos.writeTo(out);
+        }
+    }
+
+    private Map<Object, Object> readMap(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = readLength(in);
+        Map<Object, Object> map = new HashMap<Object, Object>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return Integer.valueOf((int) unZigZag(readVarLong(in)));
+            case LONG:
+                return Long.valueOf(unZigZag(readVarLong(in)));
+            case BOOLEAN:
+                return Boolean.valueOf(in.readBoolean());
+            case DOUBLE:
+                return Double.valueOf(in.readDouble());
+            case FLOAT:
+                return Float.valueOf(in.readFloat());
+            case SHORT:
+                return Short.valueOf(in.readShort());
+            case BYTE:
+                return Byte.valueOf(in.readByte());
+            case CHARACTER:
+                return Character.valueOf(in.readChar());
+            case DATE:
+                return new Date(unZigZag(readVarLong(in)));
+            case BYTES: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case LIST: {
+                int size = readLength(in);
+                List<Object> list = new ArrayList<Object>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case SET: {
+                int size = readLength(in);
+                Set<Object> set = new HashSet<Object>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(in));
+                }
+                return set;
+            }
+            case MAP:
+                return readMap(in);
+            case SERIALIZED: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readFully(bytes);
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                try {
+                    return ois.readObject();
+                } finally {
+                    ois.close();
+                }
+            }
+            default:
+                throw new StreamCorruptedException("Unknown JobDataMap value type: " + tag);
+        }
+    }
+
+    private static int capacity(int size) {
+        // don't trust a (possibly corrupt) size for more than a modest preallocation
+        return Math.max(16, (int) (Math.min(size, 1024) / .75f) + 1);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number");
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+}
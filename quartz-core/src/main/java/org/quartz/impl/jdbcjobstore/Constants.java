@@ -17,6 +17,8 @@
 
 package org.quartz.impl.jdbcjobstore;
 
+import org.quartz.spi.PausedGroupsJobStore;
+
 /**
  * <p>
  * This interface can be implemented by any <code>{@link
@@ -105,6 +107,10 @@ public interface Constants {
 
     String ALIAS_COL_NEXT_FIRE_TIME = "ALIAS_NXT_FR_TM";
 
+    String ALIAS_COL_JOB_DESCRIPTION = "ALIAS_JOB_DESC";
+
+    String ALIAS_COL_SIMPROP_TRIGGER_NAME = "ALIAS_SP_TRG_NM";
+
     // TABLE_SIMPLE_TRIGGERS columns names
     String COL_REPEAT_COUNT = "REPEAT_COUNT";
 
@@ -173,7 +179,7 @@ public interface Constants {
      */
     String STATE_MISFIRED = "MISFIRED";
 
-    String ALL_GROUPS_PAUSED = "_$_ALL_GROUPS_PAUSED_$_";
+    String ALL_GROUPS_PAUSED = PausedGroupsJobStore.ALL_GROUPS_PAUSED;
 
     // TRIGGER TYPES
     /** Simple Trigger type. */
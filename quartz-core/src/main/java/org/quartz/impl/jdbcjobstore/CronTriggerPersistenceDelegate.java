@@ -20,6 +20,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.TimeZone;
 
 import org.quartz.CronScheduleBuilder;
@@ -29,14 +31,29 @@ import org.quartz.TriggerKey;
 import org.quartz.impl.triggers.CronTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 
-public class CronTriggerPersistenceDelegate implements TriggerPersistenceDelegate, StdJDBCConstants {
+public class CronTriggerPersistenceDelegate implements JoinableTriggerPersistenceDelegate, StdJDBCConstants {
 
     protected String tablePrefix;
     protected String schedNameLiteral;
 
+    private Map<String, String> queries = Collections.emptyMap();
+
     public void initialize(String theTablePrefix, String schedName) {
         this.tablePrefix = theTablePrefix;
         this.schedNameLiteral = "'" + schedName + "'";
+        this.queries = Util.resolveQueries(getClass(), tablePrefix, schedNameLiteral);
+    }
+
+    /**
+     * Replace the table prefix and scheduler name in one of the query
+     * templates, using the queries resolved at initialization.
+     */
+    protected String rtp(String query) {
+        String resolved = queries.get(query);
+        if (resolved != null) {
+            return resolved;
+        }
+        return Util.rtp(query, tablePrefix, schedNameLiteral);
     }
 
     public String getHandledTriggerTypeDiscriminator() {
@@ -55,7 +72,7 @@ public class CronTriggerPersistenceDelegate implements TriggerPersistenceDelegat
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(DELETE_CRON_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(DELETE_CRON_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
 
@@ -75,7 +92,7 @@ public class CronTriggerPersistenceDelegate implements TriggerPersistenceDelegat
         PreparedStatement ps = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(INSERT_CRON_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(INSERT_CRON_TRIGGER));
             ps.setString(1, trigger.getKey().getName());
             ps.setString(2, trigger.getKey().getGroup());
             ps.setString(3, cronTrigger.getCronExpression());
@@ -93,30 +110,38 @@ public class CronTriggerPersistenceDelegate implements TriggerPersistenceDelegat
         ResultSet rs = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(SELECT_CRON_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(SELECT_CRON_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
             rs = ps.executeQuery();
 
             if (rs.next()) {
-                String cronExpr = rs.getString(COL_CRON_EXPRESSION);
-                String timeZoneId = rs.getString(COL_TIME_ZONE_ID);
-
-                CronScheduleBuilder cb = CronScheduleBuilder.cronSchedule(cronExpr);
-              
-                if (timeZoneId != null) 
-                    cb.inTimeZone(TimeZone.getTimeZone(timeZoneId));
-                
-                return new TriggerPropertyBundle(cb, null, null);
+                return readExtendedTriggerProperties(rs);
             }
             
-            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + Util.rtp(SELECT_CRON_TRIGGER, tablePrefix, schedNameLiteral));
+            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + rtp(SELECT_CRON_TRIGGER));
         } finally {
             Util.closeResultSet(rs);
             Util.closeStatement(ps);
         }
     }
 
+    public TriggerPropertyBundle readExtendedTriggerProperties(ResultSet rs) throws SQLException {
+
+        String cronExpr = rs.getString(COL_CRON_EXPRESSION);
+        if (cronExpr == null) {
+            return null;
+        }
+        String timeZoneId = rs.getString(COL_TIME_ZONE_ID);
+
+        CronScheduleBuilder cb = CronScheduleBuilder.cronSchedule(cronExpr);
+      
+        if (timeZoneId != null) 
+            cb.inTimeZone(TimeZone.getTimeZone(timeZoneId));
+        
+        return new TriggerPropertyBundle(cb, null, null);
+    }
+
     public int updateExtendedTriggerProperties(Connection conn, OperableTrigger trigger, String state, JobDetail jobDetail) throws SQLException, IOException {
 
         CronTrigger cronTrigger = (CronTrigger)trigger;
@@ -124,7 +149,7 @@ public class CronTriggerPersistenceDelegate implements TriggerPersistenceDelegat
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(UPDATE_CRON_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(UPDATE_CRON_TRIGGER));
             ps.setString(1, cronTrigger.getCronExpression());
             ps.setString(2, cronTrigger.getTimeZone().getID());
             ps.setString(3, trigger.getKey().getName());
@@ -456,6 +456,28 @@ public interface DriverDelegate {
     int updateTriggerStateFromOtherState(Connection conn,
         TriggerKey triggerKey, String newState, String oldState) throws SQLException;
 
+    /**
+     * <p>
+     * Update each of the given triggers to the given new state, if it is in
+     * the given old state, as a single JDBC batch.
+     * </p>
+     * 
+     * @param conn
+     *          the DB connection
+     * 
+     * @param triggerKeys
+     *          the triggers to update
+     * @param newState
+     *          the new state for the triggers
+     * @param oldState
+     *          the old state the triggers must be in
+     * @return the update counts of the batch, in the order of the keys
+     * @throws SQLException
+     */
+    int[] updateTriggerStatesFromOtherState(Connection conn,
+        List<TriggerKey> triggerKeys, String newState, String oldState)
+        throws SQLException;
+
     /**
      * <p>
      * Update the given trigger to the given new state, if it is one of the
@@ -966,6 +988,31 @@ public interface DriverDelegate {
     public List<TriggerKey> selectTriggerToAcquire(Connection conn, long noLaterThan, long noEarlierThan, int maxCount)
         throws SQLException;
 
+    /**
+     * <p>
+     * Select the next triggers which will fire between the two given
+     * timestamps, in the same order as <code>{@link #selectTriggerToAcquire(Connection, long, long, int)}</code>,
+     * together with their extended properties and their jobs, in as few
+     * round trips as possible.
+     * </p>
+     * 
+     * @param conn
+     *          the DB Connection
+     * @param noLaterThan
+     *          highest value of <code>getNextFireTime()</code> of the triggers (exclusive)
+     * @param noEarlierThan 
+     *          highest value of <code>getNextFireTime()</code> of the triggers (inclusive)
+     * @param maxCount 
+     *          maximum number of triggers to return.
+     * @param loadHelper
+     *          the load helper to use when loading the job classes
+     *          
+     * @return A (never null, possibly empty) list of the next triggers to be fired.
+     */
+    List<TriggerAcquisitionRecord> selectTriggersToAcquire(Connection conn, long noLaterThan, long noEarlierThan,
+        int maxCount, ClassLoadHelper loadHelper) throws SQLException, ClassNotFoundException, IOException,
+        JobPersistenceException;
+
     /**
      * <p>
      * Insert a fired trigger.
@@ -982,6 +1029,25 @@ public interface DriverDelegate {
     int insertFiredTrigger(Connection conn, OperableTrigger trigger,
         String state, JobDetail jobDetail) throws SQLException;
 
+    /**
+     * <p>
+     * Insert fired trigger records for the given acquired triggers, as a
+     * single JDBC batch. The job columns are left empty, as they are by
+     * <code>{@link #insertFiredTrigger(Connection, OperableTrigger, String, JobDetail)}</code>
+     * when no job is given.
+     * </p>
+     * 
+     * @param conn
+     *          the DB Connection
+     * @param triggers
+     *          the triggers
+     * @param state
+     *          the state that the triggers should be stored in
+     * @return the update counts of the batch
+     */
+    int[] insertFiredTriggers(Connection conn, List<OperableTrigger> triggers,
+        String state) throws SQLException;
+
     /**
      * <p>
      * Update a fired trigger record.  Will update the fields  
@@ -1060,6 +1126,20 @@ public interface DriverDelegate {
     int deleteFiredTrigger(Connection conn, String entryId)
         throws SQLException;
 
+    /**
+     * <p>
+     * Delete the given fired triggers, as a single JDBC batch.
+     * </p>
+     * 
+     * @param conn
+     *          the DB Connection
+     * @param entryIds
+     *          the fired trigger entries to delete
+     * @return the update counts of the batch, in the order of the ids
+     */
+    int[] deleteFiredTriggers(Connection conn, List<String> entryIds)
+        throws SQLException;
+
     /**
      * <p>
      * Get the number instances of the identified job currently executing.
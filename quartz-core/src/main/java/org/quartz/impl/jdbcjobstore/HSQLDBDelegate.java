@@ -82,7 +82,7 @@ public class HSQLDBDelegate extends StdJDBCDelegate {
     @Override           
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
         throws ClassNotFoundException, IOException, SQLException {
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             InputStream binaryInput = rs.getBinaryStream(colName);
             return binaryInput;
         }
@@ -0,0 +1,63 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * <p>
+ * Encodes the <code>{@link org.quartz.JobDataMap}</code>s of jobs and
+ * triggers for storage in the <code>JOB_DATA</code> column, in place of Java
+ * serialization.
+ * </p>
+ * 
+ * <p>
+ * A codec is given to <code>{@link StdJDBCDelegate}</code> (and its
+ * descendants) with the <code>jobDataMapCodecClass</code> setting of
+ * <code>org.quartz.jobStore.driverDelegateInitString</code>. The delegate
+ * frames the encoded bytes with a format version byte and takes care of
+ * compression, and keeps reading the BLOBs that were written with Java
+ * serialization, so a codec only deals with the map contents.
+ * </p>
+ * 
+ * <p>
+ * Implementations must have a public no-argument constructor and be thread
+ * safe.
+ * </p>
+ * 
+ * @see CompactJobDataMapCodec
+ */
+public interface JobDataMapCodec {
+
+    /**
+     * <p>
+     * Write the entries of the given map to the given stream.
+     * </p>
+     * 
+     * @throws java.io.NotSerializableException if a value cannot be encoded
+     */
+    void encode(Map<?, ?> data, OutputStream out) throws IOException;
+
+    /**
+     * <p>
+     * Read back a map written by <code>{@link #encode(Map, OutputStream)}</code>.
+     * </p>
+     */
+    Map<?, ?> decode(InputStream in) throws IOException, ClassNotFoundException;
+}
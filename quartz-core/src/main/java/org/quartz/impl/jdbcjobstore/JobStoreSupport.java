@@ -11,6 +11,7 @@ import org.quartz.impl.matchers.StringMatcher.StringOperatorName;
 import org.quartz.impl.triggers.SimpleTriggerImpl;
 import org.quartz.spi.*;
 import org.quartz.utils.DBConnectionManager;
+import org.quartz.utils.TriggerPartitions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +20,14 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
@@ -30,7 +38,7 @@ import java.util.*;
  * @author <a href="mailto:jeff@binaryfeed.org">Jeffrey Wescott</a>
  * @author James House
  */
-public abstract class JobStoreSupport implements JobStore, Constants {
+public abstract class JobStoreSupport implements PartitionedJobStore, NextFireTimeJobStore, Constants {
 
     protected static final String LOCK_TRIGGER_ACCESS = "TRIGGER_ACCESS";
 
@@ -77,6 +85,8 @@ public abstract class JobStoreSupport implements JobStore, Constants {
 
     private MisfireHandler misfireHandler = null;
 
+    private volatile TriggeredJobCompleter triggeredJobCompleter = null;
+
     private ClassLoadHelper classLoadHelper;
 
     private SchedulerSignaler schedSignaler;
@@ -87,6 +97,29 @@ public abstract class JobStoreSupport implements JobStore, Constants {
 
     private boolean acquireTriggersWithinLock = false;
 
+    private boolean acquireTriggersInSingleQuery = false;
+
+    private boolean acquireTriggersSkipLocked = false;
+
+    /** Whether the driver was found to return SUCCESS_NO_INFO for batch updates. */
+    private volatile boolean batchUpdateCountsUnknown = false;
+
+    /** Whether the driver was found to return the count of each batch update. */
+    private volatile boolean batchUpdateCountsKnown = false;
+
+    private int clusterPartitionCount = 0;
+
+    /** The partitions this instance owns, null until the first check-in. */
+    private volatile int[] clusterPartitions;
+
+    private boolean cachePreparedStatements = false;
+
+    private boolean batchTriggeredJobCompletions = false;
+
+    private int triggeredJobCompletionBatchSize = 100;
+
+    private long triggeredJobCompletionFlushInterval = 10L;
+
     private long dbRetryInterval = 15000L; // 15 secs
 
     private boolean makeThreadsDaemons = false;
@@ -421,6 +454,181 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         this.acquireTriggersWithinLock = acquireTriggersWithinLock;
     }
 
+    /**
+     * Whether the triggers to acquire are loaded together with their jobs by
+     * a single joined query, and marked acquired with JDBC batches, instead
+     * of a few statements per trigger.
+     */
+    public boolean isAcquireTriggersInSingleQuery() {
+        return acquireTriggersInSingleQuery;
+    }
+
+    /**
+     * Whether the triggers to acquire should be loaded together with their
+     * jobs by a single joined query, and marked acquired with JDBC batches.
+     * This keeps the number of round trips made while holding the
+     * <code>TRIGGER_ACCESS</code> lock constant, whatever the batch size.
+     * <p>
+     * Requires a driver that supports batch updates.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setAcquireTriggersInSingleQuery(boolean acquireTriggersInSingleQuery) {
+        this.acquireTriggersInSingleQuery = acquireTriggersInSingleQuery;
+    }
+
+    /**
+     * Whether triggers are acquired with <code>SELECT ... FOR UPDATE SKIP
+     * LOCKED</code> instead of under the <code>TRIGGER_ACCESS</code> lock.
+     */
+    public boolean isAcquireTriggersSkipLocked() {
+        return acquireTriggersSkipLocked;
+    }
+
+    /**
+     * Whether triggers should be acquired by locking their rows with
+     * <code>SELECT ... FOR UPDATE SKIP LOCKED</code>, rather than by taking
+     * the <code>TRIGGER_ACCESS</code> lock, so that the instances of a cluster
+     * acquire disjoint sets of triggers concurrently.
+     * <p>
+     * Only honored when the driver delegate implements
+     * <code>{@link SkipLockedAcquisitionDelegate}</code> (for example
+     * <code>PostgreSQLDelegate</code> on PostgreSQL 9.5+, or
+     * <code>MySQLDelegate</code> on MySQL 8); otherwise a warning is logged
+     * and the lock is used as usual. Firing the acquired triggers still
+     * happens under the <code>TRIGGER_ACCESS</code> lock. Takes precedence
+     * over <code>acquireTriggersInSingleQuery</code>.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setAcquireTriggersSkipLocked(boolean acquireTriggersSkipLocked) {
+        this.acquireTriggersSkipLocked = acquireTriggersSkipLocked;
+    }
+
+    public int getClusterPartitionCount() {
+        return clusterPartitionCount;
+    }
+
+    /**
+     * The number of partitions the triggers of a cluster are split into, by
+     * the hash of their keys, for the instances to share. 0, the default,
+     * does not partition the cluster.
+     * <p>
+     * Each instance then owns some of the partitions, worked out on each
+     * check-in from the live instances of <code>SCHEDULER_STATE</code>, and
+     * only acquires triggers of its own partitions, taking a lock row per
+     * partition (<code>TRIGGER_ACCESS_0</code>, ...). Batches of more than
+     * one trigger, and acquisitions with <code>acquireTriggersWithinLock</code>,
+     * still take the <code>TRIGGER_ACCESS</code> lock as well, since the
+     * other writers of the triggers only take that one. When an instance joins or fails, only
+     * the partitions it takes or leaves move. All the instances of a cluster
+     * must use the same count, which should be several times the number of
+     * instances. Ignored when the cluster is not clustered, and when
+     * triggers are acquired with <code>SKIP LOCKED</code>.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setClusterPartitionCount(int clusterPartitionCount) {
+        this.clusterPartitionCount = clusterPartitionCount;
+    }
+
+    /**
+     * The partitions this instance owns, in ascending order, or null if the
+     * cluster is not partitioned or the instance has not checked in yet.
+     */
+    protected int[] getClusterPartitions() throws NoSuchDelegateException {
+        if (!isClustered() || clusterPartitionCount <= 1 || isSkipLockedAcquisition()) {
+            return null;
+        }
+        return clusterPartitions;
+    }
+
+    /**
+     * Whether triggers are really acquired with <code>SKIP LOCKED</code>,
+     * that is whether it is asked for and the delegate supports it.
+     */
+    protected boolean isSkipLockedAcquisition() throws NoSuchDelegateException {
+        return isAcquireTriggersSkipLocked() && getDelegate() instanceof SkipLockedAcquisitionDelegate;
+    }
+
+    /**
+     * Whether the completions of triggered jobs are queued and committed in
+     * batches by a single thread, rather than each in its own transaction.
+     */
+    public boolean isBatchTriggeredJobCompletions() {
+        return batchTriggeredJobCompletions;
+    }
+
+    /**
+     * Whether <code>triggeredJobComplete()</code> should only queue the
+     * completion, for a single thread to commit it together with the others
+     * that came in within <code>triggeredJobCompletionFlushInterval</code>
+     * (up to <code>triggeredJobCompletionBatchSize</code> of them), in one
+     * transaction under the <code>TRIGGER_ACCESS</code> lock, with the fired
+     * trigger records deleted by one JDBC batch. With many short jobs, this
+     * keeps the completions from fighting trigger acquisition for the lock.
+     * <p>
+     * The triggers of a job that disallows concurrent execution are
+     * unblocked when its completion is committed, as before. A completion
+     * that is lost with the process leaves its fired trigger record behind,
+     * and is recovered as if the process had died while the job was running.
+     * Requires a driver that supports batch updates.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setBatchTriggeredJobCompletions(boolean batchTriggeredJobCompletions) {
+        this.batchTriggeredJobCompletions = batchTriggeredJobCompletions;
+    }
+
+    public int getTriggeredJobCompletionBatchSize() {
+        return triggeredJobCompletionBatchSize;
+    }
+
+    /**
+     * The largest number of completions committed in one transaction, when
+     * <code>batchTriggeredJobCompletions</code> is set. Defaults to 100.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setTriggeredJobCompletionBatchSize(int triggeredJobCompletionBatchSize) {
+        if (triggeredJobCompletionBatchSize < 1) {
+            throw new IllegalArgumentException("triggeredJobCompletionBatchSize must be > 0");
+        }
+        this.triggeredJobCompletionBatchSize = triggeredJobCompletionBatchSize;
+    }
+
+    public long getTriggeredJobCompletionFlushInterval() {
+        return triggeredJobCompletionFlushInterval;
+    }
+
+    /**
+     * How long, in milliseconds, a completion may wait for others to be
+     * committed with, when <code>batchTriggeredJobCompletions</code> is set.
+     * Defaults to 10.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setTriggeredJobCompletionFlushInterval(long triggeredJobCompletionFlushInterval) {
+        if (triggeredJobCompletionFlushInterval < 0) {
+            throw new IllegalArgumentException("triggeredJobCompletionFlushInterval must be >= 0");
+        }
+        this.triggeredJobCompletionFlushInterval = triggeredJobCompletionFlushInterval;
+    }
+
+    /**
+     * Whether the statements prepared on a connection are reused until
+     * that connection is given back.
+     */
+    public boolean isCachePreparedStatements() {
+        return cachePreparedStatements;
+    }
+
+    /**
+     * Whether the statements prepared on a connection should be reused until
+     * that connection is given back, so that a transaction running the same
+     * statement for many triggers (such as <code>triggersFired()</code> for a
+     * batch) only prepares it once.  Not needed when the connection pool
+     * already caches statements.
+     */
+    @SuppressWarnings("UnusedDeclaration") /* called reflectively */
+    public void setCachePreparedStatements(boolean cachePreparedStatements) {
+        this.cachePreparedStatements = cachePreparedStatements;
+    }
+
 
     /**
      * <p>
@@ -645,6 +853,15 @@ public abstract class JobStoreSupport implements JobStore, Constants {
             misfireHandler.setContextClassLoader(initializersLoader);
         }
         misfireHandler.initialize();
+
+        if (isBatchTriggeredJobCompletions()) {
+            TriggeredJobCompleter completer = new TriggeredJobCompleter();
+            if (initializersLoader != null) {
+                completer.setContextClassLoader(initializersLoader);
+            }
+            completer.initialize();
+            triggeredJobCompleter = completer;
+        }
         schedulerRunning = true;
         getLog().debug("JobStore background threads started (as scheduler was started).");
     }
@@ -667,6 +884,17 @@ public abstract class JobStoreSupport implements JobStore, Constants {
      * </p>
      */
     public void shutdown() {
+        // commit the completions still queued while the connections are there
+        TriggeredJobCompleter completer = triggeredJobCompleter;
+        if (completer != null) {
+            triggeredJobCompleter = null;
+            completer.shutdown();
+            try {
+                completer.join();
+            } catch (InterruptedException ignore) {
+            }
+        }
+
         shutdown = true;
 
         if (misfireHandler != null) {
@@ -715,7 +943,7 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         return (Connection) Proxy.newProxyInstance(
                 Thread.currentThread().getContextClassLoader(),
                 new Class[]{Connection.class},
-                new AttributeRestoringConnectionInvocationHandler(conn));
+                new AttributeRestoringConnectionInvocationHandler(conn, isCachePreparedStatements()));
     }
 
     protected Connection getConnection() throws JobPersistenceException {
@@ -1814,6 +2042,29 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         }
     }
 
+    public long getNextFireTime()
+            throws JobPersistenceException {
+        return (Long) executeWithoutLock( // no locks necessary for read...
+                new TransactionCallback() {
+                    public Object execute(Connection conn) throws JobPersistenceException {
+                        return getNextFireTime(conn);
+                    }
+                });
+    }
+
+    @SuppressWarnings("deprecation")
+    protected long getNextFireTime(Connection conn)
+            throws JobPersistenceException {
+        try {
+            // misfired triggers are not told apart, the scheduler thread
+            // only sleeps until a time it could not acquire triggers for
+            return getDelegate().selectNextFireTime(conn);
+        } catch (SQLException e) {
+            throw new JobPersistenceException(
+                    "Couldn't obtain next fire time: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * <p>
      * Get the number of <code>{@link org.quartz.Calendar}</code> s that are
@@ -2726,56 +2977,120 @@ public abstract class JobStoreSupport implements JobStore, Constants {
      * @see #releaseAcquiredTrigger(OperableTrigger)
      */
     @Override
-    @SuppressWarnings("unchecked")
     public List<OperableTrigger> acquireNextTriggers(final long noLaterThan, final int maxCount, final long timeWindow)
             throws JobPersistenceException {
+        return acquireNextTriggers(noLaterThan, maxCount, timeWindow, 0, 1);
+    }
+
+    /**
+     * <p>
+     * Get a handle to the next N triggers of the given partition to be
+     * fired, and mark them as 'reserved' by the calling scheduler thread.
+     * </p>
+     *
+     * <p>
+     * The partition of a trigger is worked out from its key, so the
+     * candidates are selected for all partitions (up to
+     * <code>maxCount * partitionCount</code> of them) and those of the other
+     * partitions skipped. With <code>acquireTriggersSkipLocked</code> the
+     * partitions are not used: the rows one scheduler thread selects are
+     * skipped by the others anyway, and locking the candidates of the other
+     * partitions would hide them from their own threads.
+     * </p>
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<OperableTrigger> acquireNextTriggers(final long noLaterThan, final int maxCount, final long timeWindow,
+            final int partition, final int partitionCount) throws JobPersistenceException {
 
+        final int[] owned = getClusterPartitions();
+        if (owned != null && owned.length == 0) {
+            // more instances than partitions
+            return new ArrayList<OperableTrigger>();
+        }
+        final List<String> partitionLocks = new ArrayList<String>();
         String lockName;
-        if (isAcquireTriggersWithinLock() || maxCount > 1) {
+        if (owned != null) {
+            // the lock rows of the partitions are taken in the transaction;
+            // a batch still needs the trigger lock, which the misfire handler,
+            // pausing and firing take rather than the partition locks
+            lockName = (isAcquireTriggersWithinLock() || maxCount > 1) ? LOCK_TRIGGER_ACCESS : null;
+        } else if (isSkipLockedAcquisition()) {
+            // the selected rows stay locked until the transaction ends
+            lockName = null;
+        } else if (isAcquireTriggersWithinLock() || maxCount > 1) {
             lockName = LOCK_TRIGGER_ACCESS;
         } else {
             lockName = null;
         }
-        return executeInNonManagedTXLock(lockName,
-                new TransactionCallback<List<OperableTrigger>>() {
-
-                    private Connection conn;
-
-                    @Override
-                    public List<OperableTrigger> execute(Connection conn) throws JobPersistenceException {
-                        this.conn = conn;
-                        return acquireNextTrigger(conn, noLaterThan, maxCount, timeWindow);
-                    }
-                },
-                new TransactionValidator<List<OperableTrigger>>() {
-                    @Override
-                    public Boolean validate(Connection conn, List<OperableTrigger> result) throws JobPersistenceException {
-                        try {
-                            List<FiredTriggerRecord> acquired = getDelegate().selectInstancesFiredTriggerRecords(conn, getInstanceId());
-                            Set<String> fireInstanceIds = new HashSet<String>();
-                            for (FiredTriggerRecord ft : acquired) {
-                                fireInstanceIds.add(ft.getFireInstanceId());
+        try {
+            return executeInNonManagedTXLock(lockName,
+                    new TransactionCallback<List<OperableTrigger>>() {
+
+                        private Connection conn;
+
+                        @Override
+                        public List<OperableTrigger> execute(Connection conn) throws JobPersistenceException {
+                            this.conn = conn;
+                            if (owned != null) {
+                                // in ascending order, as every instance takes them
+                                for (int p : owned) {
+                                    String name = clusterPartitionLockName(p);
+                                    if (getLockHandler().obtainLock(conn, name)) {
+                                        partitionLocks.add(name);
+                                    }
+                                }
                             }
-                            for (OperableTrigger tr : result) {
-                                if (fireInstanceIds.contains(tr.getFireInstanceId())) {
-                                    return true;
+                            return acquireNextTrigger(conn, noLaterThan, maxCount, timeWindow, partition, partitionCount);
+                        }
+                    },
+                    new TransactionValidator<List<OperableTrigger>>() {
+                        @Override
+                        public Boolean validate(Connection conn, List<OperableTrigger> result) throws JobPersistenceException {
+                            try {
+                                List<FiredTriggerRecord> acquired = getDelegate().selectInstancesFiredTriggerRecords(conn, getInstanceId());
+                                Set<String> fireInstanceIds = new HashSet<String>();
+                                for (FiredTriggerRecord ft : acquired) {
+                                    fireInstanceIds.add(ft.getFireInstanceId());
+                                }
+                                for (OperableTrigger tr : result) {
+                                    if (fireInstanceIds.contains(tr.getFireInstanceId())) {
+                                        return true;
+                                    }
                                 }
+                                return false;
+                            } catch (SQLException e) {
+                                throw new JobPersistenceException("error validating trigger acquisition", e);
                             }
-                            return false;
-                        } catch (SQLException e) {
-                            throw new JobPersistenceException("error validating trigger acquisition", e);
                         }
-                    }
-                });
+                    });
+        } finally {
+            for (String name : partitionLocks) {
+                releaseLock(name, true);
+            }
+        }
     }
 
     // FUTURE_TODO: this really ought to return something like a FiredTriggerBundle,
     // so that the fireInstanceId doesn't have to be on the trigger...
     protected List<OperableTrigger> acquireNextTrigger(Connection conn, long noLaterThan, int maxCount, long timeWindow)
             throws JobPersistenceException {
+        return acquireNextTrigger(conn, noLaterThan, maxCount, timeWindow, 0, 1);
+    }
+
+    protected List<OperableTrigger> acquireNextTrigger(Connection conn, long noLaterThan, int maxCount, long timeWindow,
+            int partition, int partitionCount) throws JobPersistenceException {
         if (timeWindow < 0) {
             throw new IllegalArgumentException();
         }
+        boolean skipLocked = isSkipLockedAcquisition();
+        if (skipLocked) {
+            partitionCount = 1;
+        }
+        int[] owned = getClusterPartitions();
+        if (isAcquireTriggersInSingleQuery() && !skipLocked) {
+            return acquireNextTriggersInSingleQuery(conn, noLaterThan, maxCount, timeWindow, partition, partitionCount);
+        }
         List<OperableTrigger> acquiredTriggers = new ArrayList<OperableTrigger>();
         Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
         final int MAX_DO_LOOP_RETRY = 3;
@@ -2783,71 +3098,234 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         do {
             currentLoopCount++;
             try {
-                List<TriggerKey> keys = getDelegate().selectTriggerToAcquire(conn, noLaterThan + timeWindow, getMisfireTime(), maxCount);
-                // No trigger is ready to fire yet.
-                if (keys == null || keys.size() == 0) {
-                    return acquiredTriggers;
-                }
-
+                int candidateCount = skipLocked ? maxCount : candidateCount(maxCount, partitionCount, owned);
+                Set<TriggerKey> seen = new HashSet<TriggerKey>();
                 long batchEnd = noLaterThan;
-                for (TriggerKey triggerKey : keys) {
-                    // If our trigger is no longer available, try a new one.
-                    OperableTrigger nextTrigger = retrieveTrigger(conn, triggerKey);
-                    if (nextTrigger == null) {
-                        continue; // next trigger
+                boolean nextPage;
+                do {
+                    List<TriggerKey> keys;
+                    if (skipLocked) {
+                        keys = ((SkipLockedAcquisitionDelegate) getDelegate()).selectTriggerToAcquireSkipLocked(
+                                conn, noLaterThan + timeWindow, getMisfireTime(), candidateCount);
+                    } else {
+                        keys = getDelegate().selectTriggerToAcquire(conn, noLaterThan + timeWindow, getMisfireTime(),
+                                candidateCount);
+                    }
+                    // No trigger is ready to fire yet.
+                    if (keys == null || keys.size() == 0) {
+                        return acquiredTriggers;
                     }
 
-                    // If trigger's job is set as @DisallowConcurrentExecution, and it has already been added to result, then
-                    // put it back into the timeTriggers set and continue to search for next trigger.
-                    JobKey jobKey = nextTrigger.getJobKey();
-                    JobDetail job;
-                    try {
-                        job = retrieveJob(conn, jobKey);
-                    } catch (JobPersistenceException jpe) {
+                    boolean skippedOthers = false;
+                    boolean batchDone = false;
+                    for (TriggerKey triggerKey : keys) {
+                        // already handled on a previous page
+                        if (!seen.add(triggerKey)) {
+                            continue;
+                        }
+                        // Leave the triggers of other partitions to their own scheduler threads,
+                        // and those of the partitions of other instances to them.
+                        if (!isInPartition(triggerKey, partition, partitionCount, owned)) {
+                            skippedOthers = true;
+                            continue;
+                        }
+                        if (acquiredTriggers.size() >= maxCount) {
+                            batchDone = true;
+                            break;
+                        }
+                        // If our trigger is no longer available, try a new one.
+                        OperableTrigger nextTrigger = retrieveTrigger(conn, triggerKey);
+                        if (nextTrigger == null) {
+                            continue; // next trigger
+                        }
+
+                        // If trigger's job is set as @DisallowConcurrentExecution, and it has already been added to result, then
+                        // put it back into the timeTriggers set and continue to search for next trigger.
+                        JobKey jobKey = nextTrigger.getJobKey();
+                        JobDetail job;
                         try {
-                            getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
-                            getDelegate().updateTriggerState(conn, triggerKey, STATE_ERROR);
-                        } catch (SQLException sqle) {
-                            getLog().error("Unable to set trigger state to ERROR.", sqle);
+                            job = retrieveJob(conn, jobKey);
+                        } catch (JobPersistenceException jpe) {
+                            try {
+                                getLog().error("Error retrieving job, setting trigger state to ERROR.", jpe);
+                                getDelegate().updateTriggerState(conn, triggerKey, STATE_ERROR);
+                            } catch (SQLException sqle) {
+                                getLog().error("Unable to set trigger state to ERROR.", sqle);
+                            }
+                            continue;
+                        }
+
+                        if (job.isConcurrentExectionDisallowed()) {
+                            if (acquiredJobKeysForNoConcurrentExec.contains(jobKey)) {
+                                continue; // next trigger
+                            } else {
+                                acquiredJobKeysForNoConcurrentExec.add(jobKey);
+                            }
                         }
-                        continue;
-                    }
 
-                    if (job.isConcurrentExectionDisallowed()) {
-                        if (acquiredJobKeysForNoConcurrentExec.contains(jobKey)) {
+                        Date nextFireTime = nextTrigger.getNextFireTime();
+                        // A trigger should not return NULL on nextFireTime when fetched from DB.
+                        // But for whatever reason if we do have this (BAD trigger implementation or
+                        // data?), we then should log a warning and continue to next trigger.
+                        // User would need to manually fix these triggers from DB as they will not
+                        // able to be clean up by Quartz since we are not returning it to be processed.
+                        if (nextFireTime == null) {
+                            log.warn("Trigger {} returned null on nextFireTime and yet still exists in DB!",
+                                    nextTrigger.getKey());
+                            continue;
+                        }
+                        if (nextFireTime.getTime() > batchEnd) {
+                            batchDone = true;
+                            break;
+                        }
+                        // We now have a acquired trigger, let's add to return list.
+                        // If our trigger was no longer in the expected state, try a new one.
+                        int rowsUpdated = getDelegate().updateTriggerStateFromOtherState(conn, triggerKey, STATE_ACQUIRED, STATE_WAITING);
+                        if (rowsUpdated <= 0) {
                             continue; // next trigger
-                        } else {
-                            acquiredJobKeysForNoConcurrentExec.add(jobKey);
                         }
+                        nextTrigger.setFireInstanceId(getFiredTriggerRecordId());
+                        getDelegate().insertFiredTrigger(conn, nextTrigger, STATE_ACQUIRED, null);
+
+                        if (acquiredTriggers.isEmpty()) {
+                            batchEnd = Math.max(nextFireTime.getTime(), System.currentTimeMillis()) + timeWindow;
+                        }
+                        acquiredTriggers.add(nextTrigger);
                     }
+                    nextPage = !batchDone && skippedOthers && keys.size() >= candidateCount;
+                    candidateCount = nextPageCount(candidateCount);
+                } while (nextPage);
 
-                    Date nextFireTime = nextTrigger.getNextFireTime();
-                    // A trigger should not return NULL on nextFireTime when fetched from DB.
-                    // But for whatever reason if we do have this (BAD trigger implementation or
-                    // data?), we then should log a warning and continue to next trigger.
-                    // User would need to manually fix these triggers from DB as they will not
-                    // able to be clean up by Quartz since we are not returning it to be processed.
-                    if (nextFireTime == null) {
-                        log.warn("Trigger {} returned null on nextFireTime and yet still exists in DB!",
-                                nextTrigger.getKey());
-                        continue;
+                // if we didn't end up with any trigger to fire from that first
+                // batch, try again for another batch. We allow with a max retry count.
+                if (acquiredTriggers.size() == 0 && currentLoopCount < MAX_DO_LOOP_RETRY) {
+                    continue;
+                }
+                // We are done with the while loop.
+                break;
+            } catch (Exception e) {
+                throw new JobPersistenceException(
+                        "Couldn't acquire next trigger: " + e.getMessage(), e);
+            }
+        } while (true);
+        // Return the acquired trigger list
+        return acquiredTriggers;
+    }
+
+    /**
+     * Same as <code>acquireNextTrigger()</code>, but loads the candidates and
+     * their jobs with one query, then updates their state and inserts their
+     * fired trigger records with one JDBC batch each.
+     */
+    protected List<OperableTrigger> acquireNextTriggersInSingleQuery(Connection conn, long noLaterThan, int maxCount,
+            long timeWindow) throws JobPersistenceException {
+        return acquireNextTriggersInSingleQuery(conn, noLaterThan, maxCount, timeWindow, 0, 1);
+    }
+
+    protected List<OperableTrigger> acquireNextTriggersInSingleQuery(Connection conn, long noLaterThan, int maxCount,
+            long timeWindow, int partition, int partitionCount) throws JobPersistenceException {
+        int[] owned = getClusterPartitions();
+        List<OperableTrigger> acquiredTriggers = new ArrayList<OperableTrigger>();
+        Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
+        final int MAX_DO_LOOP_RETRY = 3;
+        int currentLoopCount = 0;
+        do {
+            currentLoopCount++;
+            try {
+                int candidateCount = candidateCount(maxCount, partitionCount, owned);
+                Set<TriggerKey> seen = new HashSet<TriggerKey>();
+                List<OperableTrigger> candidates = new ArrayList<OperableTrigger>(maxCount);
+                long batchEnd = noLaterThan;
+                boolean nextPage;
+                do {
+                    List<TriggerAcquisitionRecord> records = getDelegate().selectTriggersToAcquire(conn,
+                            noLaterThan + timeWindow, getMisfireTime(), candidateCount, getClassLoadHelper());
+                    // No trigger is ready to fire yet.
+                    if (records.isEmpty()) {
+                        return acquiredTriggers;
                     }
-                    if (nextFireTime.getTime() > batchEnd) {
-                        break;
+
+                    boolean skippedOthers = false;
+                    boolean batchDone = false;
+                    for (TriggerAcquisitionRecord record : records) {
+                        // already handled on a previous page
+                        if (!seen.add(record.getTriggerKey())) {
+                            continue;
+                        }
+                        // Leave the triggers of other partitions to their own scheduler threads,
+                        // and those of the partitions of other instances to them.
+                        if (!isInPartition(record.getTriggerKey(), partition, partitionCount, owned)) {
+                            skippedOthers = true;
+                            continue;
+                        }
+                        if (candidates.size() >= maxCount) {
+                            batchDone = true;
+                            break;
+                        }
+                        // If our trigger is no longer available, try a new one.
+                        OperableTrigger nextTrigger = record.getTrigger();
+                        if (nextTrigger == null) {
+                            continue; // next trigger
+                        }
+
+                        if (record.getJobException() != null) {
+                            try {
+                                getLog().error("Error retrieving job, setting trigger state to ERROR.", record.getJobException());
+                                getDelegate().updateTriggerState(conn, record.getTriggerKey(), STATE_ERROR);
+                            } catch (SQLException sqle) {
+                                getLog().error("Unable to set trigger state to ERROR.", sqle);
+                            }
+                            continue;
+                        }
+
+                        JobKey jobKey = nextTrigger.getJobKey();
+                        if (record.getJobDetail().isConcurrentExectionDisallowed()) {
+                            if (acquiredJobKeysForNoConcurrentExec.contains(jobKey)) {
+                                continue; // next trigger
+                            } else {
+                                acquiredJobKeysForNoConcurrentExec.add(jobKey);
+                            }
+                        }
+
+                        Date nextFireTime = nextTrigger.getNextFireTime();
+                        if (nextFireTime == null) {
+                            log.warn("Trigger {} returned null on nextFireTime and yet still exists in DB!",
+                                    nextTrigger.getKey());
+                            continue;
+                        }
+                        if (nextFireTime.getTime() > batchEnd) {
+                            batchDone = true;
+                            break;
+                        }
+                        if (candidates.isEmpty()) {
+                            batchEnd = Math.max(nextFireTime.getTime(), System.currentTimeMillis()) + timeWindow;
+                        }
+                        candidates.add(nextTrigger);
                     }
-                    // We now have a acquired trigger, let's add to return list.
-                    // If our trigger was no longer in the expected state, try a new one.
-                    int rowsUpdated = getDelegate().updateTriggerStateFromOtherState(conn, triggerKey, STATE_ACQUIRED, STATE_WAITING);
-                    if (rowsUpdated <= 0) {
-                        continue; // next trigger
+                    nextPage = !batchDone && skippedOthers && records.size() >= candidateCount;
+                    candidateCount = nextPageCount(candidateCount);
+                } while (nextPage);
+
+                if (!candidates.isEmpty()) {
+                    List<TriggerKey> keys = new ArrayList<TriggerKey>(candidates.size());
+                    for (OperableTrigger trigger : candidates) {
+                        keys.add(trigger.getKey());
                     }
-                    nextTrigger.setFireInstanceId(getFiredTriggerRecordId());
-                    getDelegate().insertFiredTrigger(conn, nextTrigger, STATE_ACQUIRED, null);
-
-                    if (acquiredTriggers.isEmpty()) {
-                        batchEnd = Math.max(nextFireTime.getTime(), System.currentTimeMillis()) + timeWindow;
+                    int[] rowsUpdated = updateTriggerStatesToAcquired(conn, keys);
+
+                    // If a trigger was no longer in the expected state, leave it out.
+                    List<OperableTrigger> acquired = new ArrayList<OperableTrigger>(candidates.size());
+                    for (int i = 0; i < candidates.size(); i++) {
+                        if (rowsUpdated[i] > 0) {
+                            OperableTrigger nextTrigger = candidates.get(i);
+                            nextTrigger.setFireInstanceId(getFiredTriggerRecordId());
+                            acquired.add(nextTrigger);
+                        }
+                    }
+                    if (!acquired.isEmpty()) {
+                        getDelegate().insertFiredTriggers(conn, acquired, STATE_ACQUIRED);
+                        acquiredTriggers.addAll(acquired);
                     }
-                    acquiredTriggers.add(nextTrigger);
                 }
 
                 // if we didn't end up with any trigger to fire from that first
@@ -2866,6 +3344,106 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         return acquiredTriggers;
     }
 
+    /**
+     * Move the given triggers from <code>WAITING</code> to
+     * <code>ACQUIRED</code>, returning the number of rows updated for each,
+     * so that a trigger that left the <code>WAITING</code> state meanwhile can
+     * be left out.
+     *
+     * <p>
+     * The rows are updated in one batch, unless the driver was found not to
+     * report the update count of each statement of a batch
+     * (<code>SUCCESS_NO_INFO</code>). Until the driver has reported the
+     * counts once, the batch is run after a savepoint, so that when it does
+     * not the batch can be rolled back and run again row by row.
+     * </p>
+     */
+    int[] updateTriggerStatesToAcquired(Connection conn, List<TriggerKey> keys)
+            throws SQLException, NoSuchDelegateException {
+        if (!batchUpdateCountsUnknown) {
+            Savepoint beforeBatch = null;
+            if (!batchUpdateCountsKnown) {
+                try {
+                    beforeBatch = conn.setSavepoint();
+                } catch (SQLException e) {
+                    getLog().info("The JDBC driver does not support savepoints, "
+                            + "acquired triggers are updated one by one.");
+                    batchUpdateCountsUnknown = true;
+                }
+            }
+            if (!batchUpdateCountsUnknown) {
+                int[] rowsUpdated = getDelegate().updateTriggerStatesFromOtherState(conn, keys, STATE_ACQUIRED, STATE_WAITING);
+                boolean countsReported = true;
+                for (int count : rowsUpdated) {
+                    if (count == Statement.SUCCESS_NO_INFO) {
+                        countsReported = false;
+                        break;
+                    }
+                }
+                if (countsReported) {
+                    batchUpdateCountsKnown = true;
+                    return rowsUpdated;
+                }
+                getLog().info("The JDBC driver does not report batch update counts, "
+                        + "acquired triggers are updated one by one.");
+                batchUpdateCountsUnknown = true;
+                if (beforeBatch == null) {
+                    // the driver reported the counts before: the rows cannot be told apart
+                    throw new SQLException("The JDBC driver stopped reporting batch update counts.");
+                }
+                conn.rollback(beforeBatch);
+            }
+        }
+        int[] rowsUpdated = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            rowsUpdated[i] = getDelegate().updateTriggerStateFromOtherState(conn, keys.get(i),
+                    STATE_ACQUIRED, STATE_WAITING);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * How many candidates to select so that a partition gets about
+     * <code>maxCount</code> of them.
+     */
+    private int candidateCount(int maxCount, int partitionCount, int[] owned) {
+        long count = (long) maxCount * partitionCount;
+        if (owned != null) {
+            // the candidates of the cluster are shared by the instances
+            count = count * clusterPartitionCount / owned.length;
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * How many candidates to select for the next page, when a full page had
+     * too few of the partition's triggers: twice as many, the triggers seen
+     * already being skipped.
+     */
+    private static int nextPageCount(int candidateCount) {
+        return (int) Math.min(candidateCount * 2L, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Whether the trigger belongs to the given partition of the scheduler
+     * threads and, if the cluster is partitioned, to one of the partitions
+     * this instance owns.
+     */
+    private boolean isInPartition(TriggerKey key, int partition, int partitionCount, int[] owned) {
+        if (partitionCount > 1 && TriggerPartitions.partitionOf(key, partitionCount) != partition) {
+            return false;
+        }
+        return owned == null
+                || Arrays.binarySearch(owned, TriggerPartitions.clusterPartitionOf(key, clusterPartitionCount)) >= 0;
+    }
+
+    /**
+     * The name of the lock row of a partition of the cluster.
+     */
+    protected static String clusterPartitionLockName(int partition) {
+        return LOCK_TRIGGER_ACCESS + "_" + partition;
+    }
+
     /**
      * <p>
      * Inform the <code>JobStore</code> that the scheduler no longer plans to
@@ -3057,6 +3635,10 @@ public abstract class JobStoreSupport implements JobStore, Constants {
     @Override
     public void triggeredJobComplete(final OperableTrigger trigger,
                                      final JobDetail jobDetail, final CompletedExecutionInstruction triggerInstCode) {
+        TriggeredJobCompleter completer = triggeredJobCompleter;
+        if (completer != null && completer.enqueue(new TriggeredJobCompletion(trigger, jobDetail, triggerInstCode))) {
+            return;
+        }
         retryExecuteInNonManagedTXLock(
                 LOCK_TRIGGER_ACCESS,
                 new VoidTransactionCallback() {
@@ -3074,63 +3656,48 @@ public abstract class JobStoreSupport implements JobStore, Constants {
                                         OperableTrigger trigger, JobDetail jobDetail,
                                         CompletedExecutionInstruction triggerInstCode) throws JobPersistenceException {
         try {
-            if (triggerInstCode == CompletedExecutionInstruction.DELETE_TRIGGER) {
-                if (trigger.getNextFireTime() == null) {
-                    // double check for possible reschedule within job 
-                    // execution, which would cancel the need to delete...
-                    TriggerStatus stat = getDelegate().selectTriggerStatus(
-                            conn, trigger.getKey());
-                    if (stat != null && stat.getNextFireTime() == null) {
-                        removeTrigger(conn, trigger.getKey());
-                    }
-                } else {
-                    removeTrigger(conn, trigger.getKey());
-                    signalSchedulingChangeOnTxCompletion(0L);
-                }
-            } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_COMPLETE) {
-                getDelegate().updateTriggerState(conn, trigger.getKey(),
-                        STATE_COMPLETE);
-                signalSchedulingChangeOnTxCompletion(0L);
-            } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_ERROR) {
-                getLog().info("Trigger " + trigger.getKey() + " set to ERROR state.");
-                getDelegate().updateTriggerState(conn, trigger.getKey(),
-                        STATE_ERROR);
-                signalSchedulingChangeOnTxCompletion(0L);
-            } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_COMPLETE) {
-                getDelegate().updateTriggerStatesForJob(conn,
-                        trigger.getJobKey(), STATE_COMPLETE);
-                signalSchedulingChangeOnTxCompletion(0L);
-            } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR) {
-                getLog().info("All triggers of Job " +
-                        trigger.getKey() + " set to ERROR state.");
-                getDelegate().updateTriggerStatesForJob(conn,
-                        trigger.getJobKey(), STATE_ERROR);
-                signalSchedulingChangeOnTxCompletion(0L);
-            }
+            applyCompletedExecutionInstruction(conn, trigger, triggerInstCode);
 
             if (jobDetail.isConcurrentExectionDisallowed()) {
-                getDelegate().updateTriggerStatesForJobFromOtherState(conn,
-                        jobDetail.getKey(), STATE_WAITING,
-                        STATE_BLOCKED);
+                unblockTriggersOfJob(conn, jobDetail.getKey());
+            }
+            persistJobDataAfterExecution(conn, jobDetail);
+        } catch (SQLException e) {
+            throw new JobPersistenceException(
+                    "Couldn't update trigger state(s): " + e.getMessage(), e);
+        }
 
-                getDelegate().updateTriggerStatesForJobFromOtherState(conn,
-                        jobDetail.getKey(), STATE_PAUSED,
-                        STATE_PAUSED_BLOCKED);
+        try {
+            getDelegate().deleteFiredTrigger(conn, trigger.getFireInstanceId());
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Couldn't delete fired trigger: "
+                    + e.getMessage(), e);
+        }
+    }
 
-                signalSchedulingChangeOnTxCompletion(0L);
-            }
-            if (jobDetail.isPersistJobDataAfterExecution()) {
-                try {
-                    if (jobDetail.getJobDataMap().isDirty()) {
-                        getDelegate().updateJobData(conn, jobDetail);
-                    }
-                } catch (IOException e) {
-                    throw new JobPersistenceException(
-                            "Couldn't serialize job data: " + e.getMessage(), e);
-                } catch (SQLException e) {
-                    throw new JobPersistenceException(
-                            "Couldn't update job data: " + e.getMessage(), e);
+    /**
+     * Same as <code>triggeredJobComplete()</code> for each of the given
+     * completions, in order, but the triggers of each job that disallows
+     * concurrent execution are unblocked once, and the fired trigger records
+     * are deleted with one JDBC batch.
+     */
+    protected void triggeredJobsComplete(Connection conn, List<TriggeredJobCompletion> completions)
+            throws JobPersistenceException {
+        Set<JobKey> jobsToUnblock = new LinkedHashSet<JobKey>();
+        List<String> firedTriggerIds = new ArrayList<String>(completions.size());
+        try {
+            for (TriggeredJobCompletion completion : completions) {
+                applyCompletedExecutionInstruction(conn, completion.trigger, completion.triggerInstCode);
+                if (completion.jobDetail.isConcurrentExectionDisallowed()) {
+                    jobsToUnblock.add(completion.jobDetail.getKey());
                 }
+                persistJobDataAfterExecution(conn, completion.jobDetail);
+                firedTriggerIds.add(completion.trigger.getFireInstanceId());
+            }
+            // only touches BLOCKED and PAUSED_BLOCKED triggers, so doing it
+            // after the instructions of the whole batch changes nothing
+            for (JobKey jobKey : jobsToUnblock) {
+                unblockTriggersOfJob(conn, jobKey);
             }
         } catch (SQLException e) {
             throw new JobPersistenceException(
@@ -3138,13 +3705,98 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         }
 
         try {
-            getDelegate().deleteFiredTrigger(conn, trigger.getFireInstanceId());
+            getDelegate().deleteFiredTriggers(conn, firedTriggerIds);
         } catch (SQLException e) {
-            throw new JobPersistenceException("Couldn't delete fired trigger: "
+            throw new JobPersistenceException("Couldn't delete fired triggers: "
                     + e.getMessage(), e);
         }
     }
 
+    private void applyCompletedExecutionInstruction(Connection conn, OperableTrigger trigger,
+                                                    CompletedExecutionInstruction triggerInstCode)
+            throws SQLException, JobPersistenceException {
+        if (triggerInstCode == CompletedExecutionInstruction.DELETE_TRIGGER) {
+            if (trigger.getNextFireTime() == null) {
+                // double check for possible reschedule within job 
+                // execution, which would cancel the need to delete...
+                TriggerStatus stat = getDelegate().selectTriggerStatus(
+                        conn, trigger.getKey());
+                if (stat != null && stat.getNextFireTime() == null) {
+                    removeTrigger(conn, trigger.getKey());
+                }
+            } else {
+                removeTrigger(conn, trigger.getKey());
+                signalSchedulingChangeOnTxCompletion(0L);
+            }
+        } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_COMPLETE) {
+            getDelegate().updateTriggerState(conn, trigger.getKey(),
+                    STATE_COMPLETE);
+            signalSchedulingChangeOnTxCompletion(0L);
+        } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_ERROR) {
+            getLog().info("Trigger " + trigger.getKey() + " set to ERROR state.");
+            getDelegate().updateTriggerState(conn, trigger.getKey(),
+                    STATE_ERROR);
+            signalSchedulingChangeOnTxCompletion(0L);
+        } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_COMPLETE) {
+            getDelegate().updateTriggerStatesForJob(conn,
+                    trigger.getJobKey(), STATE_COMPLETE);
+            signalSchedulingChangeOnTxCompletion(0L);
+        } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR) {
+            getLog().info("All triggers of Job " +
+                    trigger.getKey() + " set to ERROR state.");
+            getDelegate().updateTriggerStatesForJob(conn,
+                    trigger.getJobKey(), STATE_ERROR);
+            signalSchedulingChangeOnTxCompletion(0L);
+        }
+    }
+
+    private void unblockTriggersOfJob(Connection conn, JobKey jobKey) throws SQLException, JobPersistenceException {
+        getDelegate().updateTriggerStatesForJobFromOtherState(conn,
+                jobKey, STATE_WAITING,
+                STATE_BLOCKED);
+
+        getDelegate().updateTriggerStatesForJobFromOtherState(conn,
+                jobKey, STATE_PAUSED,
+                STATE_PAUSED_BLOCKED);
+
+        signalSchedulingChangeOnTxCompletion(0L);
+    }
+
+    private void persistJobDataAfterExecution(Connection conn, JobDetail jobDetail) throws JobPersistenceException {
+        if (jobDetail.isPersistJobDataAfterExecution()) {
+            try {
+                if (jobDetail.getJobDataMap().isDirty()) {
+                    getDelegate().updateJobData(conn, jobDetail);
+                }
+            } catch (IOException e) {
+                throw new JobPersistenceException(
+                        "Couldn't serialize job data: " + e.getMessage(), e);
+            } catch (SQLException e) {
+                throw new JobPersistenceException(
+                        "Couldn't update job data: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * A completion queued for the <code>TriggeredJobCompleter</code>.
+     */
+    protected static final class TriggeredJobCompletion {
+
+        final OperableTrigger trigger;
+
+        final JobDetail jobDetail;
+
+        final CompletedExecutionInstruction triggerInstCode;
+
+        TriggeredJobCompletion(OperableTrigger trigger, JobDetail jobDetail,
+                               CompletedExecutionInstruction triggerInstCode) {
+            this.trigger = trigger;
+            this.jobDetail = jobDetail;
+            this.triggerInstCode = triggerInstCode;
+        }
+    }
+
     /**
      * <P>
      * Get the driver delegate for DB operations.
@@ -3159,6 +3811,11 @@ public abstract class JobStoreSupport implements JobStore, Constants {
                     }
                     delegate = delegateClass.newInstance();
                     delegate.initialize(getLog(), tablePrefix, instanceName, instanceId, getClassLoadHelper(), canUseProperties(), getDriverDelegateInitString());
+                    if (isAcquireTriggersSkipLocked() && !(delegate instanceof SkipLockedAcquisitionDelegate)) {
+                        getLog().warn("acquireTriggersSkipLocked is set, but " + delegate.getClass().getName()
+                                + " does not support SKIP LOCKED; acquiring triggers under the "
+                                + LOCK_TRIGGER_ACCESS + " lock instead.");
+                    }
 
                 } catch (InstantiationException e) {
                     throw new NoSuchDelegateException("Couldn't create delegate: "
@@ -3351,6 +4008,10 @@ public abstract class JobStoreSupport implements JobStore, Constants {
                 failedInstances.addAll(findOrphanedFailedInstances(conn, states));
             }
 
+            if (isClustered() && clusterPartitionCount > 1) {
+                assignClusterPartitions(states, failedInstances);
+            }
+
             // If not the first time but we didn't find our own instance, then
             // Someone must have done recovery for us.
             if ((!foundThisScheduler) && (!firstCheckIn)) {
@@ -3369,6 +4030,29 @@ public abstract class JobStoreSupport implements JobStore, Constants {
         }
     }
 
+    /**
+     * Work out the partitions of the cluster this instance owns, from the
+     * instances that checked in and have not failed, and log the change if
+     * they moved.
+     */
+    protected void assignClusterPartitions(List<SchedulerStateRecord> states,
+            List<SchedulerStateRecord> failedInstances) {
+        Set<String> live = new TreeSet<String>();
+        for (SchedulerStateRecord rec : states) {
+            live.add(rec.getSchedulerInstanceId());
+        }
+        for (SchedulerStateRecord rec : failedInstances) {
+            live.remove(rec.getSchedulerInstanceId());
+        }
+        int[] owned = TriggerPartitions.assign(live, getInstanceId(), clusterPartitionCount);
+        if (!Arrays.equals(owned, clusterPartitions)) {
+            live.add(getInstanceId());
+            getLog().info("Instance " + getInstanceId() + " owns partitions " + Arrays.toString(owned)
+                    + " of " + clusterPartitionCount + ", among " + live.size() + " instances.");
+        }
+        clusterPartitions = owned;
+    }
+
     /**
      * Create dummy <code>SchedulerStateRecord</code> objects for fired triggers
      * that have no scheduler state record.  Checkin timestamp and interval are
@@ -3621,6 +4305,7 @@ public abstract class JobStoreSupport implements JobStore, Constants {
                     AttributeRestoringConnectionInvocationHandler connHandler =
                             (AttributeRestoringConnectionInvocationHandler) invocationHandler;
 
+                    connHandler.closeCachedStatements();
                     connHandler.restoreOriginalAtributes();
                     closeConnection(connHandler.getWrappedConnection());
                     return;
@@ -4003,6 +4688,152 @@ public abstract class JobStoreSupport implements JobStore, Constants {
             }
         }
     }
+
+    /////////////////////////////////////////////////////////////////////////////
+    //
+    // TriggeredJobCompleter Thread
+    //
+    /////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Commits the completions queued by <code>triggeredJobComplete()</code>,
+     * as many as came in within the flush interval (up to the batch size) in
+     * one transaction. Should that transaction fail, they are committed one
+     * by one, as they would have been without batching.
+     */
+    class TriggeredJobCompleter extends Thread {
+
+        private final BlockingQueue<TriggeredJobCompletion> queue;
+
+        // held (shared) while queueing, so that nothing is queued once the
+        // completer has been told to stop and is draining the queue
+        private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+        private volatile boolean shutdown = false;
+
+        TriggeredJobCompleter() {
+            this.setName("QuartzScheduler_" + instanceName + "-" + instanceId + "_TriggeredJobCompleter");
+            this.setDaemon(getMakeThreadsDaemons());
+            // a full queue makes the workers wait, rather than pile up
+            this.queue = new LinkedBlockingQueue<TriggeredJobCompletion>(10 * getTriggeredJobCompletionBatchSize());
+        }
+
+        public void initialize() {
+            ThreadExecutor executor = getThreadExecutor();
+            executor.execute(TriggeredJobCompleter.this);
+        }
+
+        /**
+         * Queue the completion, unless the completer is stopping; returns
+         * whether it was queued.
+         */
+        boolean enqueue(TriggeredJobCompletion completion) {
+            stopLock.readLock().lock();
+            try {
+                if (shutdown) {
+                    return false;
+                }
+                queue.put(completion);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                stopLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Stop once the completions queued so far have been committed.
+         */
+        public void shutdown() {
+            stopLock.writeLock().lock();
+            try {
+                shutdown = true;
+            } finally {
+                stopLock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            int batchSize = getTriggeredJobCompletionBatchSize();
+            long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(getTriggeredJobCompletionFlushInterval());
+            List<TriggeredJobCompletion> batch = new ArrayList<TriggeredJobCompletion>(batchSize);
+            while (!shutdown) {
+                try {
+                    TriggeredJobCompletion first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + flushIntervalNanos;
+                    while (batch.size() < batchSize && !shutdown) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0) {
+                            break;
+                        }
+                        TriggeredJobCompletion next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException ignore) {
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch, true);
+                    batch.clear();
+                }
+            }
+
+            // what was queued before shutdown() returned; without retrying,
+            // the job store is going away: anything not committed is left in
+            // the fired triggers table, to be recovered
+            while (queue.drainTo(batch, batchSize) > 0) {
+                flush(batch, false);
+                batch.clear();
+            }
+        }
+
+        private void flush(final List<TriggeredJobCompletion> batch, boolean retry) {
+            try {
+                executeInNonManagedTXLock(
+                        LOCK_TRIGGER_ACCESS,
+                        new VoidTransactionCallback() {
+                            @Override
+                            public void executeVoid(Connection conn) throws JobPersistenceException {
+                                triggeredJobsComplete(conn, batch);
+                            }
+                        }, null);
+                return;
+            } catch (JobPersistenceException e) {
+                getLog().warn("TriggeredJobCompleter: couldn't complete " + batch.size()
+                        + " triggered job(s) together, completing them one by one: " + e.getMessage(), e);
+            }
+            for (final TriggeredJobCompletion completion : batch) {
+                VoidTransactionCallback callback = new VoidTransactionCallback() {
+                    @Override
+                    public void executeVoid(Connection conn) throws JobPersistenceException {
+                        triggeredJobComplete(conn, completion.trigger, completion.jobDetail,
+                                completion.triggerInstCode);
+                    }
+                };
+                try {
+                    if (retry) {
+                        retryExecuteInNonManagedTXLock(LOCK_TRIGGER_ACCESS, callback);
+                    } else {
+                        executeInNonManagedTXLock(LOCK_TRIGGER_ACCESS, callback, null);
+                    }
+                } catch (Exception e) {
+                    getLog().error("TriggeredJobCompleter: couldn't complete trigger "
+                            + completion.trigger.getKey() + ", its fired trigger record is left for recovery: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+    }
 }
 
 // EOF
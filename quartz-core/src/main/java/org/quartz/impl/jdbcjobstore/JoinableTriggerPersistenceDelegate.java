@@ -0,0 +1,38 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A <code>{@link TriggerPersistenceDelegate}</code> whose extended properties
+ * table is joined into the batched trigger acquisition query, so that the
+ * extended properties can be read from the same row as the trigger itself.
+ *
+ * @see StdJDBCDelegate#selectTriggersToAcquire(java.sql.Connection, long, long, int, org.quartz.spi.ClassLoadHelper)
+ */
+public interface JoinableTriggerPersistenceDelegate extends TriggerPersistenceDelegate {
+
+    /**
+     * Read the extended properties from the current row of a result set
+     * produced by <code>SELECT_NEXT_TRIGGERS_TO_ACQUIRE_WITH_JOBS</code>.
+     *
+     * @return the properties, or <code>null</code> if the row did not join
+     * an extended properties row for the trigger.
+     */
+    public TriggerPropertyBundle readExtendedTriggerProperties(ResultSet rs) throws SQLException;
+}
@@ -80,7 +80,7 @@ public class MSSQLDelegate extends StdJDBCDelegate {
     @Override           
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
         throws ClassNotFoundException, IOException, SQLException {
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             InputStream binaryInput = rs.getBinaryStream(colName);
             return binaryInput;
         }
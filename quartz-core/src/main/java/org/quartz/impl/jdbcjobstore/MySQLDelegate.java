@@ -0,0 +1,41 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+/**
+ * <p>
+ * This is a driver delegate for MySQL 8.0 or later (InnoDB tables).
+ * </p>
+ * 
+ * <p>
+ * It only differs from <code>{@link StdJDBCDelegate}</code>, which remains
+ * the delegate to use with older MySQL versions, in supporting
+ * <code>SKIP LOCKED</code> trigger acquisition, see
+ * <code>{@link JobStoreSupport#setAcquireTriggersSkipLocked(boolean)}</code>.
+ * </p>
+ * 
+ * <p>
+ * The class is empty on purpose: the <code>SKIP LOCKED</code> query is
+ * <code>{@link StdJDBCDelegate#selectTriggerToAcquireSkipLocked(java.sql.Connection, long, long, int)}</code>,
+ * which every delegate inherits, and implementing the
+ * <code>{@link SkipLockedAcquisitionDelegate}</code> marker is what tells
+ * the job store that the database can run it.
+ * </p>
+ */
+public class MySQLDelegate extends StdJDBCDelegate implements SkipLockedAcquisitionDelegate {
+}
+
+// EOF
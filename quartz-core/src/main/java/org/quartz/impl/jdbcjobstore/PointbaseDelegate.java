@@ -443,7 +443,7 @@ public class PointbaseDelegate extends StdJDBCDelegate {
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
         throws ClassNotFoundException, IOException, SQLException {
         //log.debug( "Getting Job details from blob in col " + colName );
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             byte data[] = rs.getBytes(colName);
             if(data == null) {
                 return null;
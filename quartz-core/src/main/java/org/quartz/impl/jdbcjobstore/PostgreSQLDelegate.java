@@ -32,9 +32,14 @@ import org.slf4j.Logger;
  * This is a driver delegate for the PostgreSQL JDBC driver.
  * </p>
  * 
+ * <p>
+ * Supports <code>SKIP LOCKED</code> trigger acquisition (PostgreSQL 9.5 or
+ * later), see <code>{@link JobStoreSupport#setAcquireTriggersSkipLocked(boolean)}</code>.
+ * </p>
+ * 
  * @author <a href="mailto:jeff@binaryfeed.org">Jeffrey Wescott</a>
  */
-public class PostgreSQLDelegate extends StdJDBCDelegate {
+public class PostgreSQLDelegate extends StdJDBCDelegate implements SkipLockedAcquisitionDelegate {
 
     //---------------------------------------------------------------------------
     // protected methods that can be overridden by subclasses
@@ -83,7 +88,7 @@ public class PostgreSQLDelegate extends StdJDBCDelegate {
     @Override           
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
         throws ClassNotFoundException, IOException, SQLException {
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             InputStream binaryInput = null;
             byte[] bytes = rs.getBytes(colName);
             if(bytes == null || bytes.length == 0) {
@@ -0,0 +1,154 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Keeps the <code>{@link PreparedStatement}</code>s prepared on one
+ * <code>{@link Connection}</code> for reuse, until the connection is closed.
+ * </p>
+ * 
+ * <p>
+ * The statements handed out are proxies whose <code>close()</code> only
+ * resets them (parameters, pending batch and any row limits) and returns
+ * them to the cache, so the next <code>prepareStatement()</code> with the
+ * same SQL on the same connection skips the driver's prepare. A statement
+ * that is still in use when its SQL is prepared again is not shared: the
+ * caller gets a fresh, uncached statement instead. A statement that threw is
+ * really closed rather than returned to the cache.
+ * </p>
+ * 
+ * <p>
+ * Not thread safe, like the connection it belongs to.
+ * </p>
+ * 
+ * @see AttributeRestoringConnectionInvocationHandler
+ */
+class PreparedStatementCache {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Connection conn;
+
+    private final Map<String, CachedStatement> statements = new HashMap<String, CachedStatement>();
+
+    PreparedStatementCache(Connection conn) {
+        this.conn = conn;
+    }
+
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached == null) {
+            cached = new CachedStatement(sql, conn.prepareStatement(sql));
+            statements.put(sql, cached);
+        } else if (cached.inUse) {
+            return conn.prepareStatement(sql);
+        }
+        cached.inUse = true;
+        return cached.proxy;
+    }
+
+    /**
+     * Really close all of the cached statements.
+     */
+    void close() {
+        for (CachedStatement cached : statements.values()) {
+            Util.closeStatement(cached.statement);
+        }
+        statements.clear();
+    }
+
+    private class CachedStatement implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private boolean batched;
+        private boolean limited;
+        private boolean broken;
+
+        CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                release();
+                return null;
+            } else if (name.equals("isClosed")) {
+                return !inUse || statement.isClosed();
+            } else if (name.equals("addBatch")) {
+                batched = true;
+            } else if (name.equals("executeBatch")) {
+                batched = false;
+            } else if (name.equals("setMaxRows") || name.equals("setFetchSize") || name.equals("setQueryTimeout")) {
+                limited = true;
+            }
+
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException ite) {
+                broken = true;
+                throw (ite.getCause() != null ? ite.getCause() : ite);
+            }
+        }
+
+        private void release() throws SQLException {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            if (!broken) {
+                try {
+                    statement.clearParameters();
+                    if (batched) {
+                        statement.clearBatch();
+                        batched = false;
+                    }
+                    if (limited) {
+                        statement.setMaxRows(0);
+                        statement.setFetchSize(0);
+                        statement.setQueryTimeout(0);
+                        limited = false;
+                    }
+                    return;
+                } catch (SQLException e) {
+                    log.debug("Could not reset cached statement, closing it.", e);
+                }
+            }
+            statements.remove(sql);
+            statement.close();
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.quartz.JobDetail;
 import org.quartz.ScheduleBuilder;
@@ -37,7 +39,7 @@ import org.quartz.spi.OperableTrigger;
  * 
  * @author jhouse
  */
-public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implements TriggerPersistenceDelegate, StdJDBCConstants {
+public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implements JoinableTriggerPersistenceDelegate, StdJDBCConstants {
 
     protected static final String TABLE_SIMPLE_PROPERTIES_TRIGGERS = "SIMPROP_TRIGGERS";
     
@@ -89,9 +91,24 @@ public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implemen
 
     protected String schedNameLiteral;
 
+    private Map<String, String> queries = Collections.emptyMap();
+
     public void initialize(String theTablePrefix, String schedName) {
         this.tablePrefix = theTablePrefix;
         this.schedNameLiteral = "'" + schedName + "'";
+        this.queries = Util.resolveQueries(getClass(), tablePrefix, schedNameLiteral);
+    }
+
+    /**
+     * Replace the table prefix and scheduler name in one of the query
+     * templates, using the queries resolved at initialization.
+     */
+    protected String rtp(String query) {
+        String resolved = queries.get(query);
+        if (resolved != null) {
+            return resolved;
+        }
+        return Util.rtp(query, tablePrefix, schedNameLiteral);
     }
 
     protected abstract SimplePropertiesTriggerProperties getTriggerProperties(OperableTrigger trigger);
@@ -102,7 +119,7 @@ public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implemen
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(DELETE_SIMPLE_PROPS_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(DELETE_SIMPLE_PROPS_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
 
@@ -119,7 +136,7 @@ public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implemen
         PreparedStatement ps = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(INSERT_SIMPLE_PROPS_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(INSERT_SIMPLE_PROPS_TRIGGER));
             ps.setString(1, trigger.getKey().getName());
             ps.setString(2, trigger.getKey().getGroup());
             ps.setString(3, properties.getString1());
@@ -146,36 +163,47 @@ public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implemen
         ResultSet rs = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(SELECT_SIMPLE_PROPS_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(SELECT_SIMPLE_PROPS_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
             rs = ps.executeQuery();
     
             if (rs.next()) {
-                SimplePropertiesTriggerProperties properties = new SimplePropertiesTriggerProperties();
-                    
-                properties.setString1(rs.getString(COL_STR_PROP_1));
-                properties.setString2(rs.getString(COL_STR_PROP_2));
-                properties.setString3(rs.getString(COL_STR_PROP_3));
-                properties.setInt1(rs.getInt(COL_INT_PROP_1));
-                properties.setInt2(rs.getInt(COL_INT_PROP_2));
-                properties.setLong1(rs.getInt(COL_LONG_PROP_1));
-                properties.setLong2(rs.getInt(COL_LONG_PROP_2));
-                properties.setDecimal1(rs.getBigDecimal(COL_DEC_PROP_1));
-                properties.setDecimal2(rs.getBigDecimal(COL_DEC_PROP_2));
-                properties.setBoolean1(rs.getBoolean(COL_BOOL_PROP_1));
-                properties.setBoolean2(rs.getBoolean(COL_BOOL_PROP_2));
-                
-                return getTriggerPropertyBundle(properties);
+                return getTriggerPropertyBundle(readTriggerProperties(rs));
             }
             
-            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + Util.rtp(SELECT_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + rtp(SELECT_SIMPLE_TRIGGER));
         } finally {
             Util.closeResultSet(rs);
             Util.closeStatement(ps);
         }
     }
 
+    public TriggerPropertyBundle readExtendedTriggerProperties(ResultSet rs) throws SQLException {
+
+        if (rs.getString(ALIAS_COL_SIMPROP_TRIGGER_NAME) == null) {
+            return null;
+        }
+        return getTriggerPropertyBundle(readTriggerProperties(rs));
+    }
+
+    private SimplePropertiesTriggerProperties readTriggerProperties(ResultSet rs) throws SQLException {
+        SimplePropertiesTriggerProperties properties = new SimplePropertiesTriggerProperties();
+            
+        properties.setString1(rs.getString(COL_STR_PROP_1));
+        properties.setString2(rs.getString(COL_STR_PROP_2));
+        properties.setString3(rs.getString(COL_STR_PROP_3));
+        properties.setInt1(rs.getInt(COL_INT_PROP_1));
+        properties.setInt2(rs.getInt(COL_INT_PROP_2));
+        properties.setLong1(rs.getInt(COL_LONG_PROP_1));
+        properties.setLong2(rs.getInt(COL_LONG_PROP_2));
+        properties.setDecimal1(rs.getBigDecimal(COL_DEC_PROP_1));
+        properties.setDecimal2(rs.getBigDecimal(COL_DEC_PROP_2));
+        properties.setBoolean1(rs.getBoolean(COL_BOOL_PROP_1));
+        properties.setBoolean2(rs.getBoolean(COL_BOOL_PROP_2));
+        return properties;
+    }
+
     public int updateExtendedTriggerProperties(Connection conn, OperableTrigger trigger, String state, JobDetail jobDetail) throws SQLException, IOException {
 
         SimplePropertiesTriggerProperties properties = getTriggerProperties(trigger);
@@ -183,7 +211,7 @@ public abstract class SimplePropertiesTriggerPersistenceDelegateSupport implemen
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(UPDATE_SIMPLE_PROPS_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(UPDATE_SIMPLE_PROPS_TRIGGER));
             ps.setString(1, properties.getString1());
             ps.setString(2, properties.getString2());
             ps.setString(3, properties.getString3());
@@ -21,6 +21,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.quartz.JobDetail;
 import org.quartz.SimpleScheduleBuilder;
@@ -29,14 +31,29 @@ import org.quartz.TriggerKey;
 import org.quartz.impl.triggers.SimpleTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 
-public class SimpleTriggerPersistenceDelegate implements TriggerPersistenceDelegate, StdJDBCConstants {
+public class SimpleTriggerPersistenceDelegate implements JoinableTriggerPersistenceDelegate, StdJDBCConstants {
 
     protected String tablePrefix;
     protected String schedNameLiteral;
 
+    private Map<String, String> queries = Collections.emptyMap();
+
     public void initialize(String theTablePrefix, String schedName) {
         this.tablePrefix = theTablePrefix;
         this.schedNameLiteral = "'" + schedName + "'";
+        this.queries = Util.resolveQueries(getClass(), tablePrefix, schedNameLiteral);
+    }
+
+    /**
+     * Replace the table prefix and scheduler name in one of the query
+     * templates, using the queries resolved at initialization.
+     */
+    protected String rtp(String query) {
+        String resolved = queries.get(query);
+        if (resolved != null) {
+            return resolved;
+        }
+        return Util.rtp(query, tablePrefix, schedNameLiteral);
     }
 
     public String getHandledTriggerTypeDiscriminator() {
@@ -51,7 +68,7 @@ public class SimpleTriggerPersistenceDelegate implements TriggerPersistenceDeleg
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(DELETE_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(DELETE_SIMPLE_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
 
@@ -68,7 +85,7 @@ public class SimpleTriggerPersistenceDelegate implements TriggerPersistenceDeleg
         PreparedStatement ps = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(INSERT_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(INSERT_SIMPLE_TRIGGER));
             ps.setString(1, trigger.getKey().getName());
             ps.setString(2, trigger.getKey().getGroup());
             ps.setInt(3, simpleTrigger.getRepeatCount());
@@ -87,33 +104,41 @@ public class SimpleTriggerPersistenceDelegate implements TriggerPersistenceDeleg
         ResultSet rs = null;
         
         try {
-            ps = conn.prepareStatement(Util.rtp(SELECT_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(SELECT_SIMPLE_TRIGGER));
             ps.setString(1, triggerKey.getName());
             ps.setString(2, triggerKey.getGroup());
             rs = ps.executeQuery();
     
             if (rs.next()) {
-                int repeatCount = rs.getInt(COL_REPEAT_COUNT);
-                long repeatInterval = rs.getLong(COL_REPEAT_INTERVAL);
-                int timesTriggered = rs.getInt(COL_TIMES_TRIGGERED);
-
-                SimpleScheduleBuilder sb = SimpleScheduleBuilder.simpleSchedule()
-                    .withRepeatCount(repeatCount)
-                    .withIntervalInMilliseconds(repeatInterval);
-                
-                String[] statePropertyNames = { "timesTriggered" };
-                Object[] statePropertyValues = { timesTriggered };
-                
-                return new TriggerPropertyBundle(sb, statePropertyNames, statePropertyValues);
+                return readExtendedTriggerProperties(rs);
             }
             
-            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + Util.rtp(SELECT_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            throw new IllegalStateException("No record found for selection of Trigger with key: '" + triggerKey + "' and statement: " + rtp(SELECT_SIMPLE_TRIGGER));
         } finally {
             Util.closeResultSet(rs);
             Util.closeStatement(ps);
         }
     }
 
+    public TriggerPropertyBundle readExtendedTriggerProperties(ResultSet rs) throws SQLException {
+
+        int repeatCount = rs.getInt(COL_REPEAT_COUNT);
+        if (rs.wasNull()) {
+            return null;
+        }
+        long repeatInterval = rs.getLong(COL_REPEAT_INTERVAL);
+        int timesTriggered = rs.getInt(COL_TIMES_TRIGGERED);
+
+        SimpleScheduleBuilder sb = SimpleScheduleBuilder.simpleSchedule()
+            .withRepeatCount(repeatCount)
+            .withIntervalInMilliseconds(repeatInterval);
+        
+        String[] statePropertyNames = { "timesTriggered" };
+        Object[] statePropertyValues = { timesTriggered };
+        
+        return new TriggerPropertyBundle(sb, statePropertyNames, statePropertyValues);
+    }
+
     public int updateExtendedTriggerProperties(Connection conn, OperableTrigger trigger, String state, JobDetail jobDetail) throws SQLException, IOException {
 
         SimpleTrigger simpleTrigger = (SimpleTrigger)trigger;
@@ -121,7 +146,7 @@ public class SimpleTriggerPersistenceDelegate implements TriggerPersistenceDeleg
         PreparedStatement ps = null;
 
         try {
-            ps = conn.prepareStatement(Util.rtp(UPDATE_SIMPLE_TRIGGER, tablePrefix, schedNameLiteral));
+            ps = conn.prepareStatement(rtp(UPDATE_SIMPLE_TRIGGER));
 
             ps.setInt(1, simpleTrigger.getRepeatCount());
             ps.setBigDecimal(2, new BigDecimal(String.valueOf(simpleTrigger.getRepeatInterval())));
@@ -0,0 +1,64 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.quartz.TriggerKey;
+
+/**
+ * <p>
+ * Implemented by the <code>{@link DriverDelegate}</code>s of databases that
+ * can lock the rows they select while skipping the rows locked by others
+ * (<code>SELECT ... FOR UPDATE SKIP LOCKED</code>).
+ * </p>
+ * 
+ * <p>
+ * With such a delegate, and <code>acquireTriggersSkipLocked</code> set, the
+ * scheduler instances of a cluster acquire disjoint sets of triggers in
+ * parallel instead of taking turns on the <code>TRIGGER_ACCESS</code> lock.
+ * </p>
+ * 
+ * @see JobStoreSupport#setAcquireTriggersSkipLocked(boolean)
+ * @see PostgreSQLDelegate
+ * @see MySQLDelegate
+ */
+public interface SkipLockedAcquisitionDelegate {
+
+    /**
+     * <p>
+     * Select, and lock until the end of the transaction, the next triggers
+     * which will fire between the two given timestamps, in ascending order
+     * of fire time and then descending by priority, leaving out the triggers
+     * already locked by other transactions.
+     * </p>
+     * 
+     * @param conn
+     *          the DB Connection
+     * @param noLaterThan
+     *          highest value of <code>getNextFireTime()</code> of the triggers (exclusive)
+     * @param noEarlierThan 
+     *          highest value of <code>getNextFireTime()</code> of the triggers (inclusive)
+     * @param maxCount 
+     *          maximum number of trigger keys allow to acquired in the returning list.
+     *          
+     * @return A (never null, possibly empty) list of the identifiers (Key objects) of the next triggers to be fired.
+     */
+    List<TriggerKey> selectTriggerToAcquireSkipLocked(Connection conn, long noLaterThan, long noEarlierThan, int maxCount)
+        throws SQLException;
+}
@@ -514,6 +514,40 @@ public interface StdJDBCConstants extends Constants {
         + " AND " + COL_TRIGGER_STATE + " = ? AND " + COL_NEXT_FIRE_TIME + " <= ? " 
         + "AND (" + COL_MISFIRE_INSTRUCTION + " = -1 OR (" +COL_MISFIRE_INSTRUCTION+ " != -1 AND "+ COL_NEXT_FIRE_TIME + " >= ?)) "
         + "ORDER BY "+ COL_NEXT_FIRE_TIME + " ASC, " + COL_PRIORITY + " DESC";
+
+    // for databases that support LIMIT and SKIP LOCKED (PostgreSQL 9.5+, MySQL 8)
+    String SELECT_NEXT_TRIGGER_TO_ACQUIRE_SKIP_LOCKED = "SELECT "
+        + COL_TRIGGER_NAME + ", " + COL_TRIGGER_GROUP + ", "
+        + COL_NEXT_FIRE_TIME + ", " + COL_PRIORITY + " FROM "
+        + TABLE_PREFIX_SUBST + TABLE_TRIGGERS + " WHERE "
+        + COL_SCHEDULER_NAME + " = " + SCHED_NAME_SUBST
+        + " AND " + COL_TRIGGER_STATE + " = ? AND " + COL_NEXT_FIRE_TIME + " <= ? " 
+        + "AND (" + COL_MISFIRE_INSTRUCTION + " = -1 OR (" +COL_MISFIRE_INSTRUCTION+ " != -1 AND "+ COL_NEXT_FIRE_TIME + " >= ?)) "
+        + "ORDER BY "+ COL_NEXT_FIRE_TIME + " ASC, " + COL_PRIORITY + " DESC LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // joins the trigger rows with their job rows and the extension rows of the
+    // built-in trigger types, so that acquisition needs a single round trip
+    String SELECT_NEXT_TRIGGERS_TO_ACQUIRE_WITH_JOBS = "SELECT T.*, S."
+        + COL_REPEAT_COUNT + ", S." + COL_REPEAT_INTERVAL + ", S." + COL_TIMES_TRIGGERED + ", C."
+        + COL_CRON_EXPRESSION + ", C." + COL_TIME_ZONE_ID + ", P."
+        + COL_TRIGGER_NAME + " AS " + ALIAS_COL_SIMPROP_TRIGGER_NAME + ", "
+        + "P.STR_PROP_1, P.STR_PROP_2, P.STR_PROP_3, P.INT_PROP_1, P.INT_PROP_2, "
+        + "P.LONG_PROP_1, P.LONG_PROP_2, P.DEC_PROP_1, P.DEC_PROP_2, P.BOOL_PROP_1, P.BOOL_PROP_2, J."
+        + COL_DESCRIPTION + " AS " + ALIAS_COL_JOB_DESCRIPTION + ", J."
+        + COL_JOB_CLASS + ", J." + COL_IS_DURABLE + ", J." + COL_REQUESTS_RECOVERY + " FROM "
+        + TABLE_PREFIX_SUBST + TABLE_TRIGGERS + " T LEFT OUTER JOIN "
+        + TABLE_PREFIX_SUBST + TABLE_JOB_DETAILS + " J ON J." + COL_SCHEDULER_NAME + " = T." + COL_SCHEDULER_NAME
+        + " AND J." + COL_JOB_NAME + " = T." + COL_JOB_NAME + " AND J." + COL_JOB_GROUP + " = T." + COL_JOB_GROUP
+        + " LEFT OUTER JOIN " + TABLE_PREFIX_SUBST + TABLE_SIMPLE_TRIGGERS + " S ON S." + COL_SCHEDULER_NAME + " = T." + COL_SCHEDULER_NAME
+        + " AND S." + COL_TRIGGER_NAME + " = T." + COL_TRIGGER_NAME + " AND S." + COL_TRIGGER_GROUP + " = T." + COL_TRIGGER_GROUP
+        + " LEFT OUTER JOIN " + TABLE_PREFIX_SUBST + TABLE_CRON_TRIGGERS + " C ON C." + COL_SCHEDULER_NAME + " = T." + COL_SCHEDULER_NAME
+        + " AND C." + COL_TRIGGER_NAME + " = T." + COL_TRIGGER_NAME + " AND C." + COL_TRIGGER_GROUP + " = T." + COL_TRIGGER_GROUP
+        + " LEFT OUTER JOIN " + TABLE_PREFIX_SUBST + "SIMPROP_TRIGGERS P ON P." + COL_SCHEDULER_NAME + " = T." + COL_SCHEDULER_NAME
+        + " AND P." + COL_TRIGGER_NAME + " = T." + COL_TRIGGER_NAME + " AND P." + COL_TRIGGER_GROUP + " = T." + COL_TRIGGER_GROUP
+        + " WHERE T." + COL_SCHEDULER_NAME + " = " + SCHED_NAME_SUBST
+        + " AND T." + COL_TRIGGER_STATE + " = ? AND T." + COL_NEXT_FIRE_TIME + " <= ? "
+        + "AND (T." + COL_MISFIRE_INSTRUCTION + " = -1 OR (T." + COL_MISFIRE_INSTRUCTION + " != -1 AND T." + COL_NEXT_FIRE_TIME + " >= ?)) "
+        + "ORDER BY T." + COL_NEXT_FIRE_TIME + " ASC, T." + COL_PRIORITY + " DESC";
     
     
     String INSERT_FIRED_TRIGGER = "INSERT INTO "
@@ -33,6 +33,10 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.util.Date;
 import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import static org.quartz.JobKey.jobKey;
 import static org.quartz.TriggerBuilder.newTrigger;
@@ -73,6 +77,24 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
 
     protected List<TriggerPersistenceDelegate> triggerPersistenceDelegates = new LinkedList<TriggerPersistenceDelegate>();
 
+    // the query templates of this delegate, resolved once at initialize()
+    private Map<String, String> queries = Collections.emptyMap();
+
+    // null to keep storing job data with Java serialization
+    protected JobDataMapCodec jobDataMapCodec = null;
+
+    // encoded job data larger than this many bytes is deflated, never if negative
+    protected int jobDataMapCompressionThreshold = -1;
+
+    /**
+     * The first byte of the job data written with a <code>{@link JobDataMapCodec}</code>.
+     * Java serialization streams start with <code>0xAC</code>, so the job data
+     * written before the codec was configured can still be told apart and read.
+     */
+    protected static final int JOB_DATA_CODEC_FORMAT_VERSION = 1;
+
+    private static final int JOB_DATA_DEFLATED = 1;
+
 
     /*
      * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -111,6 +133,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         this.instanceId = instanceId;
         this.useProperties = useProperties;
         this.classLoadHelper = classLoadHelper;
+        this.queries = Util.resolveQueries(getClass(), tablePrefix, getSchedulerNameLiteral());
         addDefaultTriggerPersistenceDelegates();
 
         if (initString == null) {
@@ -137,6 +160,18 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
                         throw new NoSuchDelegateException("Error instantiating TriggerPersistenceDelegate of type: " + trigDelClassName, e);
                     }
                 }
+            } else if (name.equals("jobDataMapCodecClass")) {
+                try {
+                    jobDataMapCodec = (JobDataMapCodec) classLoadHelper.loadClass(parts[1]).newInstance();
+                } catch (Exception e) {
+                    throw new NoSuchDelegateException("Error instantiating JobDataMapCodec of type: " + parts[1], e);
+                }
+            } else if (name.equals("jobDataMapCompressionThreshold")) {
+                try {
+                    jobDataMapCompressionThreshold = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new NoSuchDelegateException("Invalid jobDataMapCompressionThreshold: '" + parts[1] + "'", e);
+                }
             } else {
                 throw new NoSuchDelegateException("Unknown setting: '" + name + "'");
             }
@@ -154,6 +189,16 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         return useProperties;
     }
 
+    /**
+     * Whether <code>{@link #getJobDataFromBlob(ResultSet, String)}</code>
+     * should return the raw <code>InputStream</code> of the job data, rather
+     * than deserialize it: when properties are used, or a
+     * <code>{@link JobDataMapCodec}</code> is configured.
+     */
+    protected boolean readsJobDataAsStream() {
+        return canUseProperties() || jobDataMapCodec != null;
+    }
+
     public void addTriggerPersistenceDelegate(TriggerPersistenceDelegate delegate) {
         logger.debug("Adding TriggerPersistenceDelegate of type: " + delegate.getClass().getCanonicalName());
         delegate.initialize(tablePrefix, schedName);
@@ -807,7 +852,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
                 if (canUseProperties()) {
                     map = getMapFromProperties(rs);
                 } else {
-                    map = (Map<?, ?>) getObjectFromBlob(rs, COL_JOB_DATAMAP);
+                    map = getMapFromBlob(rs);
                 }
 
                 if (null != map) {
@@ -822,6 +867,25 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    /**
+     * build Map from the serialized or codec encoded job data.
+     */
+    private Map<?, ?> getMapFromBlob(ResultSet rs)
+            throws ClassNotFoundException, IOException, SQLException {
+        if (jobDataMapCodec == null) {
+            return (Map<?, ?>) getObjectFromBlob(rs, COL_JOB_DATAMAP);
+        }
+        InputStream is = (InputStream) getJobDataFromBlob(rs, COL_JOB_DATAMAP);
+        if (is == null) {
+            return null;
+        }
+        try {
+            return decodeJobData(is);
+        } finally {
+            is.close();
+        }
+    }
+
     /**
      * build Map from java.util.Properties encoding.
      */
@@ -1360,6 +1424,39 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    /**
+     * <p>
+     * Update each of the given triggers to the given new state, if it is in
+     * the given old state, as a single JDBC batch.
+     * </p>
+     *
+     * @param conn        the DB connection
+     * @param triggerKeys the triggers to update
+     * @param newState    the new state for the triggers
+     * @param oldState    the old state the triggers must be in
+     * @return the update counts of the batch, in the order of the keys
+     * @throws SQLException
+     */
+    public int[] updateTriggerStatesFromOtherState(Connection conn,
+                                                   List<TriggerKey> triggerKeys, String newState, String oldState) throws SQLException {
+        PreparedStatement ps = null;
+
+        try {
+            ps = conn.prepareStatement(rtp(UPDATE_TRIGGER_STATE_FROM_STATE));
+            for (TriggerKey triggerKey : triggerKeys) {
+                ps.setString(1, newState);
+                ps.setString(2, triggerKey.getName());
+                ps.setString(3, triggerKey.getGroup());
+                ps.setString(4, oldState);
+                ps.addBatch();
+            }
+
+            return ps.executeBatch();
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
     /**
      * <p>
      * Update all of the triggers of the given group to the given new state, if
@@ -1682,7 +1779,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
                 if (canUseProperties()) {
                     map = getMapFromProperties(rs);
                 } else {
-                    map = (Map<?, ?>) getObjectFromBlob(rs, COL_JOB_DATAMAP);
+                    map = getMapFromBlob(rs);
                 }
 
                 Date nft = null;
@@ -1811,7 +1908,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
                 if (canUseProperties()) {
                     map = getMapFromProperties(rs);
                 } else {
-                    map = (Map<?, ?>) getObjectFromBlob(rs, COL_JOB_DATAMAP);
+                    map = getMapFromBlob(rs);
                 }
 
                 rs.close();
@@ -2485,6 +2582,208 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    /**
+     * <p>
+     * Select and lock the next triggers which will fire between the two given
+     * timestamps, skipping the rows already locked by other transactions.
+     * </p>
+     *
+     * <p>
+     * Uses <code>LIMIT ? FOR UPDATE SKIP LOCKED</code>, so it only works with
+     * the databases that support it; delegates for those databases declare
+     * <code>{@link SkipLockedAcquisitionDelegate}</code>.
+     * </p>
+     *
+     * @param conn          the DB Connection
+     * @param noLaterThan   highest value of <code>getNextFireTime()</code> of the triggers (exclusive)
+     * @param noEarlierThan highest value of <code>getNextFireTime()</code> of the triggers (inclusive)
+     * @param maxCount      maximum number of trigger keys allow to acquired in the returning list.
+     * @return A (never null, possibly empty) list of the identifiers (Key objects) of the next triggers to be fired.
+     */
+    public List<TriggerKey> selectTriggerToAcquireSkipLocked(Connection conn, long noLaterThan, long noEarlierThan, int maxCount)
+            throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<TriggerKey> nextTriggers = new LinkedList<TriggerKey>();
+        try {
+            ps = conn.prepareStatement(rtp(SELECT_NEXT_TRIGGER_TO_ACQUIRE_SKIP_LOCKED));
+            if (maxCount < 1) {
+                maxCount = 1; // we want at least one trigger back.
+            }
+            ps.setFetchSize(maxCount);
+            ps.setString(1, STATE_WAITING);
+            ps.setBigDecimal(2, new BigDecimal(String.valueOf(noLaterThan)));
+            ps.setBigDecimal(3, new BigDecimal(String.valueOf(noEarlierThan)));
+            ps.setInt(4, maxCount);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                nextTriggers.add(triggerKey(
+                        rs.getString(COL_TRIGGER_NAME),
+                        rs.getString(COL_TRIGGER_GROUP)));
+            }
+
+            return nextTriggers;
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+        }
+    }
+
+    /**
+     * <p>
+     * Select the next triggers which will fire between the two given
+     * timestamps, together with their jobs, using a single query that joins
+     * the trigger, job and extended properties tables.
+     * </p>
+     *
+     * <p>
+     * Triggers whose extended properties are not part of the join (blob
+     * triggers, or types handled by a <code>TriggerPersistenceDelegate</code>
+     * that is not a <code>JoinableTriggerPersistenceDelegate</code>) are
+     * loaded with <code>selectTrigger()</code> once the query has been read.
+     * </p>
+     *
+     * @param conn          the DB Connection
+     * @param noLaterThan   highest value of <code>getNextFireTime()</code> of the triggers (exclusive)
+     * @param noEarlierThan highest value of <code>getNextFireTime()</code> of the triggers (inclusive)
+     * @param maxCount      maximum number of triggers to return.
+     * @param loadHelper    the load helper to use when loading the job classes
+     * @return A (never null, possibly empty) list of the next triggers to be fired.
+     */
+    public List<TriggerAcquisitionRecord> selectTriggersToAcquire(Connection conn, long noLaterThan,
+            long noEarlierThan, int maxCount, ClassLoadHelper loadHelper)
+            throws SQLException, ClassNotFoundException, IOException, JobPersistenceException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<TriggerAcquisitionRecord> records = new ArrayList<TriggerAcquisitionRecord>();
+        List<TriggerAcquisitionRecord> notJoined = new LinkedList<TriggerAcquisitionRecord>();
+        try {
+            ps = conn.prepareStatement(rtp(SELECT_NEXT_TRIGGERS_TO_ACQUIRE_WITH_JOBS));
+            if (maxCount < 1) {
+                maxCount = 1; // we want at least one trigger back.
+            }
+            ps.setMaxRows(maxCount);
+            ps.setFetchSize(maxCount);
+            ps.setString(1, STATE_WAITING);
+            ps.setBigDecimal(2, new BigDecimal(String.valueOf(noLaterThan)));
+            ps.setBigDecimal(3, new BigDecimal(String.valueOf(noEarlierThan)));
+            rs = ps.executeQuery();
+            while (rs.next() && records.size() < maxCount) {
+                TriggerAcquisitionRecord record = new TriggerAcquisitionRecord();
+                TriggerKey key = triggerKey(rs.getString(COL_TRIGGER_NAME), rs.getString(COL_TRIGGER_GROUP));
+                record.setTriggerKey(key);
+
+                // columns are read in select order, some drivers stream the rows
+                OperableTrigger trigger = buildTrigger(rs, key);
+                if (trigger != null) {
+                    record.setTrigger(trigger);
+                } else {
+                    notJoined.add(record);
+                }
+
+                try {
+                    JobDetail job = buildJobDetail(rs, loadHelper);
+                    if (job != null) {
+                        record.setJobDetail(job);
+                    } else {
+                        record.setJobException(new JobPersistenceException("The job referenced by the trigger ("
+                                + key.getGroup() + "." + key.getName() + ") does not exist."));
+                    }
+                } catch (ClassNotFoundException e) {
+                    record.setJobException(e);
+                }
+                records.add(record);
+            }
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+        }
+
+        for (TriggerAcquisitionRecord record : notJoined) {
+            record.setTrigger(selectTrigger(conn, record.getTriggerKey()));
+        }
+        return records;
+    }
+
+    /**
+     * Build the trigger from a row of <code>SELECT_NEXT_TRIGGERS_TO_ACQUIRE_WITH_JOBS</code>,
+     * or return <code>null</code> if its extended properties were not joined.
+     */
+    private OperableTrigger buildTrigger(ResultSet rs, TriggerKey triggerKey)
+            throws SQLException, ClassNotFoundException, IOException, JobPersistenceException {
+        String jobName = rs.getString(COL_JOB_NAME);
+        String jobGroup = rs.getString(COL_JOB_GROUP);
+        String description = rs.getString(COL_DESCRIPTION);
+        long nextFireTime = rs.getLong(COL_NEXT_FIRE_TIME);
+        long prevFireTime = rs.getLong(COL_PREV_FIRE_TIME);
+        int priority = rs.getInt(COL_PRIORITY);
+        String triggerType = rs.getString(COL_TRIGGER_TYPE);
+        long startTime = rs.getLong(COL_START_TIME);
+        long endTime = rs.getLong(COL_END_TIME);
+        String calendarName = rs.getString(COL_CALENDAR_NAME);
+        int misFireInstr = rs.getInt(COL_MISFIRE_INSTRUCTION);
+
+        Map<?, ?> map = null;
+        if (canUseProperties()) {
+            map = getMapFromProperties(rs);
+        } else {
+            map = getMapFromBlob(rs);
+        }
+
+        TriggerPersistenceDelegate tDel = findTriggerPersistenceDelegate(triggerType);
+        TriggerPropertyBundle triggerProps = null;
+        if (tDel instanceof JoinableTriggerPersistenceDelegate) {
+            triggerProps = ((JoinableTriggerPersistenceDelegate) tDel).readExtendedTriggerProperties(rs);
+        }
+        if (triggerProps == null) {
+            return null;
+        }
+
+        TriggerBuilder<?> tb = newTrigger()
+                .withDescription(description)
+                .withPriority(priority)
+                .startAt(new Date(startTime))
+                .endAt(endTime > 0 ? new Date(endTime) : null)
+                .withIdentity(triggerKey)
+                .modifiedByCalendar(calendarName)
+                .withSchedule(triggerProps.getScheduleBuilder())
+                .forJob(jobKey(jobName, jobGroup));
+
+        if (null != map) {
+            tb.usingJobData(new JobDataMap(map));
+        }
+
+        OperableTrigger trigger = (OperableTrigger) tb.build();
+
+        trigger.setMisfireInstruction(misFireInstr);
+        trigger.setNextFireTime(nextFireTime > 0 ? new Date(nextFireTime) : null);
+        trigger.setPreviousFireTime(prevFireTime > 0 ? new Date(prevFireTime) : null);
+
+        setTriggerStateProperties(trigger, triggerProps);
+        return trigger;
+    }
+
+    /**
+     * Build the job from a row of <code>SELECT_NEXT_TRIGGERS_TO_ACQUIRE_WITH_JOBS</code>,
+     * or return <code>null</code> if the trigger's job does not exist.
+     */
+    private JobDetail buildJobDetail(ResultSet rs, ClassLoadHelper loadHelper)
+            throws SQLException, ClassNotFoundException {
+        JobDetailImpl job = new JobDetailImpl();
+        job.setName(rs.getString(COL_JOB_NAME));
+        job.setGroup(rs.getString(COL_JOB_GROUP));
+        job.setDescription(rs.getString(ALIAS_COL_JOB_DESCRIPTION));
+        job.setDurability(getBoolean(rs, COL_IS_DURABLE));
+        job.setRequestsRecovery(getBoolean(rs, COL_REQUESTS_RECOVERY));
+        String jobClass = rs.getString(COL_JOB_CLASS);
+        if (jobClass == null) {
+            // left out of the outer join
+            return null;
+        }
+        job.setJobClass(loadHelper.loadClass(jobClass, Job.class));
+        return job;
+    }
+
     /**
      * <p>
      * Insert a fired trigger.
@@ -2526,6 +2825,45 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    /**
+     * <p>
+     * Insert fired trigger records for the given acquired triggers, as a
+     * single JDBC batch. The job columns are left empty.
+     * </p>
+     *
+     * @param conn     the DB Connection
+     * @param triggers the triggers
+     * @param state    the state that the triggers should be stored in
+     * @return the update counts of the batch
+     */
+    public int[] insertFiredTriggers(Connection conn, List<OperableTrigger> triggers,
+                                     String state) throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(rtp(INSERT_FIRED_TRIGGER));
+            BigDecimal firedTime = new BigDecimal(String.valueOf(System.currentTimeMillis()));
+            for (OperableTrigger trigger : triggers) {
+                ps.setString(1, trigger.getFireInstanceId());
+                ps.setString(2, trigger.getKey().getName());
+                ps.setString(3, trigger.getKey().getGroup());
+                ps.setString(4, instanceId);
+                ps.setBigDecimal(5, firedTime);
+                ps.setBigDecimal(6, new BigDecimal(String.valueOf(trigger.getNextFireTime().getTime())));
+                ps.setString(7, state);
+                ps.setString(8, null);
+                ps.setString(9, null);
+                setBoolean(ps, 10, false);
+                setBoolean(ps, 11, false);
+                ps.setInt(12, trigger.getPriority());
+                ps.addBatch();
+            }
+
+            return ps.executeBatch();
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
     /**
      * <p>
      * Update a fired trigger.
@@ -2769,6 +3107,22 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    public int[] deleteFiredTriggers(Connection conn, List<String> entryIds)
+            throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(rtp(DELETE_FIRED_TRIGGER));
+            for (String entryId : entryIds) {
+                ps.setString(1, entryId);
+                ps.addBatch();
+            }
+
+            return ps.executeBatch();
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
     public int selectJobExecutionCount(Connection conn, JobKey jobKey) throws SQLException {
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -2877,6 +3231,10 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
      * @return the query, with proper table prefix substituted
      */
     protected final String rtp(String query) {
+        String resolved = queries.get(query);
+        if (resolved != null) {
+            return resolved;
+        }
         return Util.rtp(query, tablePrefix, getSchedulerNameLiteral());
     }
 
@@ -2927,6 +3285,9 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
 
         try {
+            if (jobDataMapCodec != null) {
+                return encodeJobData(data);
+            }
             return serializeObject(data);
         } catch (NotSerializableException e) {
             throw new NotSerializableException(
@@ -2937,6 +3298,79 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
         }
     }
 
+    /**
+     * <p>
+     * Encode a <code>{@link org.quartz.JobDataMap}</code> with the configured
+     * <code>{@link JobDataMapCodec}</code>: a format version byte, a flags
+     * byte, then the codec output, deflated if it is larger than the
+     * compression threshold.
+     * </p>
+     */
+    protected ByteArrayOutputStream encodeJobData(JobDataMap data)
+            throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        jobDataMapCodec.encode(data.getReadOnlyMap(), encoded);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(encoded.size() + 2);
+        baos.write(JOB_DATA_CODEC_FORMAT_VERSION);
+        if (jobDataMapCompressionThreshold >= 0 && encoded.size() > jobDataMapCompressionThreshold) {
+            baos.write(JOB_DATA_DEFLATED);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream out = new DeflaterOutputStream(baos, deflater);
+                encoded.writeTo(out);
+                out.finish();
+            } finally {
+                deflater.end();
+            }
+        } else {
+            baos.write(0);
+            encoded.writeTo(baos);
+        }
+        return baos;
+    }
+
+    /**
+     * <p>
+     * Decode job data written by <code>{@link #encodeJobData(JobDataMap)}</code>,
+     * or with Java serialization before a codec was configured.
+     * </p>
+     *
+     * @return the Map, or null if the stream is empty
+     */
+    protected Map<?, ?> decodeJobData(InputStream is)
+            throws ClassNotFoundException, IOException {
+        if (!is.markSupported()) {
+            is = new BufferedInputStream(is);
+        }
+        is.mark(1);
+        int version = is.read();
+        if (version == -1) {
+            return null;
+        }
+        if (version == 0xAC) {
+            is.reset();
+            ObjectInputStream in = new ObjectInputStream(is);
+            return (Map<?, ?>) in.readObject();
+        }
+        if (version != JOB_DATA_CODEC_FORMAT_VERSION) {
+            throw new StreamCorruptedException("Unknown job data format version: " + version);
+        }
+        int flags = is.read();
+        if (flags == -1) {
+            throw new EOFException("Truncated job data");
+        }
+        if ((flags & JOB_DATA_DEFLATED) == 0) {
+            return jobDataMapCodec.decode(is);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            return jobDataMapCodec.decode(new InflaterInputStream(is, inflater));
+        } finally {
+            inflater.end();
+        }
+    }
+
     /**
      * Find the key of the first non-serializable value in the given Map.
      *
@@ -2974,7 +3408,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
             throws IOException {
         ByteArrayOutputStream ba = new ByteArrayOutputStream();
         if (null != data) {
-            Properties properties = convertToProperty(data.getWrappedMap());
+            Properties properties = convertToProperty(data.getReadOnlyMap());
             properties.store(ba, "");
         }
 
@@ -3072,7 +3506,7 @@ public class StdJDBCDelegate implements DriverDelegate, StdJDBCConstants {
      */
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
             throws ClassNotFoundException, IOException, SQLException {
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             Blob blobLocator = rs.getBlob(colName);
             if (blobLocator != null) {
                 InputStream binaryInput = blobLocator.getBinaryStream();
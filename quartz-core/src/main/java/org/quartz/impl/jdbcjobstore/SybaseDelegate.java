@@ -84,7 +84,7 @@ public class SybaseDelegate extends StdJDBCDelegate {
     @Override           
     protected Object getJobDataFromBlob(ResultSet rs, String colName)
         throws ClassNotFoundException, IOException, SQLException {
-        if (canUseProperties()) {
+        if (readsJobDataAsStream()) {
             InputStream binaryInput = rs.getBinaryStream(colName);
             return binaryInput;
         }
@@ -0,0 +1,99 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import org.quartz.JobDetail;
+import org.quartz.TriggerKey;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * <p>
+ * Conveys a trigger that is a candidate for acquisition, together with the
+ * job it fires, as loaded by a single batched query.
+ * </p>
+ *
+ * <p>
+ * The <code>JobDetail</code> carries no <code>JobDataMap</code>, acquisition
+ * only needs to know the job's class. If the job could not be loaded the
+ * cause is available from <code>getJobException()</code> instead.
+ * </p>
+ *
+ * @see DriverDelegate#selectTriggersToAcquire(java.sql.Connection, long, long, int, org.quartz.spi.ClassLoadHelper)
+ */
+public class TriggerAcquisitionRecord {
+
+    /*
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * 
+     * Data members.
+     * 
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    private TriggerKey triggerKey;
+
+    private OperableTrigger trigger;
+
+    private JobDetail jobDetail;
+
+    private Exception jobException;
+
+    /*
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * 
+     * Interface.
+     * 
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    public TriggerKey getTriggerKey() {
+        return triggerKey;
+    }
+
+    public void setTriggerKey(TriggerKey key) {
+        triggerKey = key;
+    }
+
+    /**
+     * The trigger, or <code>null</code> if it was deleted while it was
+     * being loaded.
+     */
+    public OperableTrigger getTrigger() {
+        return trigger;
+    }
+
+    public void setTrigger(OperableTrigger trigger) {
+        this.trigger = trigger;
+    }
+
+    public JobDetail getJobDetail() {
+        return jobDetail;
+    }
+
+    public void setJobDetail(JobDetail jobDetail) {
+        this.jobDetail = jobDetail;
+    }
+
+    public Exception getJobException() {
+        return jobException;
+    }
+
+    public void setJobException(Exception jobException) {
+        this.jobException = jobException;
+    }
+}
+
+// EOF
@@ -21,11 +21,18 @@ package org.quartz.impl.jdbcjobstore;
 import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import org.quartz.JobPersistenceException;
 
@@ -68,6 +75,57 @@ public final class Util {
         return MessageFormat.format(query, new Object[]{tablePrefix, schedNameLiteral});
     }
 
+    /**
+     * <p>
+     * Substitute the table prefix and scheduler name into every query
+     * template declared as a <code>static final String</code> constant by
+     * the given class, its superclasses or any interface they implement.
+     * </p>
+     * 
+     * <p>
+     * The returned map is keyed by identity: constant templates are interned,
+     * so a lookup with the constant itself finds its resolved query without
+     * hashing the template, while a query built at run time simply misses.
+     * </p>
+     * 
+     * @param type
+     *          the class declaring or inheriting the templates
+     * @return an unmodifiable map from each template to its resolved query
+     */
+    public static Map<String, String> resolveQueries(Class<?> type, String tablePrefix, String schedNameLiteral) {
+        Map<String, String> queries = new IdentityHashMap<String, String>();
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            collectQueries(c, visited, queries, tablePrefix, schedNameLiteral);
+        }
+        return Collections.unmodifiableMap(queries);
+    }
+
+    private static void collectQueries(Class<?> type, Set<Class<?>> visited, Map<String, String> queries,
+            String tablePrefix, String schedNameLiteral) {
+        if (!visited.add(type)) {
+            return;
+        }
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers) || field.getType() != String.class) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                String template = (String) field.get(null);
+                if (template != null && template.indexOf(StdJDBCConstants.TABLE_PREFIX_SUBST) >= 0) {
+                    queries.put(template, rtp(template, tablePrefix, schedNameLiteral));
+                }
+            } catch (Exception e) {
+                // not accessible, the query will be resolved when it is used
+            }
+        }
+        for (Class<?> i : type.getInterfaces()) {
+            collectQueries(i, visited, queries, tablePrefix, schedNameLiteral);
+        }
+    }
+
     /**
      * <p>
      * Obtain a unique key for a given job.
@@ -0,0 +1,1233 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import org.quartz.Calendar;
+import org.quartz.*;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.StringMatcher;
+import org.quartz.spi.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A <code>{@link org.quartz.spi.JobStore}</code> that utilizes RAM as its
+ * storage device, like <code>{@link RAMJobStore}</code>, but which is built
+ * for highly concurrent access.
+ * </p>
+ *
+ * <p>
+ * Jobs, triggers, calendars and their group indexes are kept in
+ * <code>ConcurrentHashMap</code>s, so read-only operations such as
+ * <code>checkExists</code>, <code>retrieveJob</code>,
+ * <code>retrieveTrigger</code> or <code>getTriggerState</code> never block.
+ * The only exclusive lock guards the fire-time index (<code>timeTriggers</code>)
+ * together with the trigger state transitions that move triggers in and out
+ * of it - acquiring, firing, pausing, blocking and (un)scheduling.
+ * </p>
+ *
+ * <p>
+ * Stored triggers are replaced rather than mutated when their fire times
+ * change (copy-on-write), so lock-free readers always clone a consistent
+ * trigger. Completing a job that allows concurrent execution and needs no
+ * trigger state change takes no lock at all.
+ * </p>
+ *
+ * <p>
+ * ConcurrentRAMJobStore: 与RAMJobStore一样使用RAM作为存储介质，区别在于：
+ * - 读操作无锁
+ * - 只有修改触发时间索引（及相关的trigger状态）时才需要独占锁
+ * </p>
+ *
+ * @see RAMJobStore
+ */
+public class ConcurrentRAMJobStore implements PartitionedJobStore, NextFireTimeJobStore, PausedGroupsJobStore {
+
+    protected final ConcurrentHashMap<JobKey, JobWrapper> jobsByKey = new ConcurrentHashMap<JobKey, JobWrapper>(1000);
+
+    protected final ConcurrentHashMap<TriggerKey, TriggerWrapper> triggersByKey = new ConcurrentHashMap<TriggerKey, TriggerWrapper>(1000);
+
+    protected final ConcurrentHashMap<String, ConcurrentHashMap<JobKey, JobWrapper>> jobsByGroup = new ConcurrentHashMap<String, ConcurrentHashMap<JobKey, JobWrapper>>(25);
+
+    protected final ConcurrentHashMap<String, ConcurrentHashMap<TriggerKey, TriggerWrapper>> triggersByGroup = new ConcurrentHashMap<String, ConcurrentHashMap<TriggerKey, TriggerWrapper>>(25);
+
+    protected final ConcurrentHashMap<JobKey, Set<TriggerWrapper>> triggersByJob = new ConcurrentHashMap<JobKey, Set<TriggerWrapper>>(1000);
+
+    protected final ConcurrentHashMap<String, Calendar> calendarsByName = new ConcurrentHashMap<String, Calendar>(25);
+
+    /**
+     * The fire-time index. Guarded by <code>lock</code>, as are all changes of
+     * <code>TriggerWrapper.state</code> and of the paused / blocked sets.
+     */
+    protected TriggerIndex timeTriggers = new TreeSetTriggerIndex();
+
+    protected final Object lock = new Object();
+
+    protected final Set<String> pausedTriggerGroups = ConcurrentHashMap.newKeySet();
+
+    protected final Set<String> pausedJobGroups = ConcurrentHashMap.newKeySet();
+
+    protected final Set<JobKey> blockedJobs = ConcurrentHashMap.newKeySet();
+
+    protected long misfireThreshold = 5000L;
+
+    protected boolean useTimingWheel = false;
+
+    protected long timingWheelTickMillis = 1L;
+
+    protected SchedulerSignaler signaler;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final AtomicLong ftrCtr = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * <p>
+     * Create a new <code>ConcurrentRAMJobStore</code>.
+     * </p>
+     */
+    public ConcurrentRAMJobStore() {
+    }
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) {
+        this.signaler = schedSignaler;
+        if (useTimingWheel) {
+            timeTriggers = new TimingWheelTriggerIndex(timingWheelTickMillis);
+        }
+        getLog().info("ConcurrentRAMJobStore initialized.");
+    }
+
+    @Override
+    public void schedulerStarted() {
+        // nothing to do
+    }
+
+    @Override
+    public void schedulerPaused() {
+        // nothing to do
+    }
+
+    @Override
+    public void schedulerResumed() {
+        // nothing to do
+    }
+
+    public long getMisfireThreshold() {
+        return misfireThreshold;
+    }
+
+    /**
+     * The number of milliseconds by which a trigger must have missed its
+     * next-fire-time, in order for it to be considered "misfired" and thus
+     * have its misfire instruction applied.
+     *
+     * @param misfireThreshold the new misfire threshold
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void setMisfireThreshold(long misfireThreshold) {
+        if (misfireThreshold < 1) {
+            throw new IllegalArgumentException("Misfire threshold must be larger than 0");
+        }
+        this.misfireThreshold = misfireThreshold;
+    }
+
+    public boolean isUseTimingWheel() {
+        return useTimingWheel;
+    }
+
+    /**
+     * Whether to index waiting triggers in a hierarchical timing wheel
+     * instead of a <code>TreeSet</code>.
+     *
+     * @see RAMJobStore#setUseTimingWheel(boolean)
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void setUseTimingWheel(boolean useTimingWheel) {
+        this.useTimingWheel = useTimingWheel;
+    }
+
+    public long getTimingWheelTickMillis() {
+        return timingWheelTickMillis;
+    }
+
+    /**
+     * @see RAMJobStore#setTimingWheelTickMillis(long)
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void setTimingWheelTickMillis(long timingWheelTickMillis) {
+        if (timingWheelTickMillis < 1) {
+            throw new IllegalArgumentException("Timing wheel tick must be larger than 0");
+        }
+        this.timingWheelTickMillis = timingWheelTickMillis;
+    }
+
+    public void shutdown() {
+    }
+
+    @Override
+    public boolean supportsPersistence() {
+        return false;
+    }
+
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        synchronized (lock) {
+            for (TriggerKey key : new ArrayList<TriggerKey>(triggersByKey.keySet())) {
+                removeTrigger(key);
+            }
+            for (JobKey key : new ArrayList<JobKey>(jobsByKey.keySet())) {
+                removeJob(key);
+            }
+            calendarsByName.clear();
+        }
+    }
+
+    public void storeJobAndTrigger(JobDetail newJob,
+                                   OperableTrigger newTrigger) throws JobPersistenceException {
+        storeJob(newJob, false);
+        storeTrigger(newTrigger, false);
+    }
+
+    /**
+     * <p>
+     * Store the given <code>{@link org.quartz.Job}</code>.
+     * </p>
+     *
+     * <p>
+     * Jobs are not part of the fire-time index, so this takes no lock; the
+     * per-key atomicity of <code>ConcurrentHashMap.compute</code> keeps the
+     * group index in step with <code>jobsByKey</code>.
+     * </p>
+     */
+    public void storeJob(JobDetail newJob,
+                         final boolean replaceExisting) throws ObjectAlreadyExistsException {
+        final JobWrapper jw = new JobWrapper((JobDetail) newJob.clone());
+        final boolean[] exists = new boolean[1];
+
+        jobsByKey.compute(jw.key, (key, orig) -> {
+            if (orig == null) {
+                addToGroup(jobsByGroup, key.getGroup(), key, jw);
+                return jw;
+            }
+            exists[0] = true;
+            if (replaceExisting) {
+                orig.jobDetail = jw.jobDetail; // already cloned
+            }
+            return orig;
+        });
+
+        if (exists[0] && !replaceExisting) {
+            throw new ObjectAlreadyExistsException(newJob);
+        }
+    }
+
+    public boolean removeJob(JobKey jobKey) {
+        boolean found = false;
+
+        synchronized (lock) {
+            Set<TriggerWrapper> triggersOfJob = triggersByJob.get(jobKey);
+            if (triggersOfJob != null) {
+                for (TriggerWrapper tw : new ArrayList<TriggerWrapper>(triggersOfJob)) {
+                    removeTrigger(tw.key, false);
+                    found = true;
+                }
+            }
+
+            found = removeJobWrapper(jobKey) | found;
+        }
+
+        return found;
+    }
+
+    private boolean removeJobWrapper(JobKey jobKey) {
+        final boolean[] removed = new boolean[1];
+        jobsByKey.computeIfPresent(jobKey, (key, jw) -> {
+            removeFromGroup(jobsByGroup, key.getGroup(), key);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    public boolean removeJobs(List<JobKey> jobKeys)
+            throws JobPersistenceException {
+        boolean allFound = true;
+
+        synchronized (lock) {
+            for (JobKey key : jobKeys)
+                allFound = removeJob(key) && allFound;
+        }
+
+        return allFound;
+    }
+
+    public boolean removeTriggers(List<TriggerKey> triggerKeys)
+            throws JobPersistenceException {
+        boolean allFound = true;
+
+        synchronized (lock) {
+            for (TriggerKey key : triggerKeys)
+                allFound = removeTrigger(key) && allFound;
+        }
+
+        return allFound;
+    }
+
+    public void storeJobsAndTriggers(
+            Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+            throws JobPersistenceException {
+
+        synchronized (lock) {
+            // make sure there are no collisions...
+            if (!replace) {
+                for (Entry<JobDetail, Set<? extends Trigger>> e : triggersAndJobs.entrySet()) {
+                    if (checkExists(e.getKey().getKey()))
+                        throw new ObjectAlreadyExistsException(e.getKey());
+                    for (Trigger trigger : e.getValue()) {
+                        if (checkExists(trigger.getKey()))
+                            throw new ObjectAlreadyExistsException(trigger);
+                    }
+                }
+            }
+            // do bulk add...
+            for (Entry<JobDetail, Set<? extends Trigger>> e : triggersAndJobs.entrySet()) {
+                storeJob(e.getKey(), true);
+                for (Trigger trigger : e.getValue()) {
+                    storeTrigger((OperableTrigger) trigger, true);
+                }
+            }
+        }
+    }
+
+    public void storeTrigger(OperableTrigger newTrigger,
+                             boolean replaceExisting) throws JobPersistenceException {
+        TriggerWrapper tw = new TriggerWrapper((OperableTrigger) newTrigger.clone());
+
+        synchronized (lock) {
+            if (triggersByKey.containsKey(tw.key)) {
+                if (!replaceExisting) {
+                    throw new ObjectAlreadyExistsException(newTrigger);
+                }
+
+                removeTrigger(newTrigger.getKey(), false);
+            }
+
+            if (!jobsByKey.containsKey(tw.jobKey)) {
+                throw new JobPersistenceException("The job ("
+                        + newTrigger.getJobKey()
+                        + ") referenced by the trigger does not exist.");
+            }
+
+            // decide the state before the trigger becomes visible to lock-free readers
+            if (pausedTriggerGroups.contains(tw.key.getGroup())
+                    || pausedJobGroups.contains(tw.jobKey.getGroup())) {
+                tw.state = TriggerWrapper.STATE_PAUSED;
+                if (blockedJobs.contains(tw.jobKey)) {
+                    tw.state = TriggerWrapper.STATE_PAUSED_BLOCKED;
+                }
+            } else if (blockedJobs.contains(tw.jobKey)) {
+                tw.state = TriggerWrapper.STATE_BLOCKED;
+            }
+
+            addToSet(triggersByJob, tw.jobKey, tw);
+            addToGroup(triggersByGroup, tw.key.getGroup(), tw.key, tw);
+            triggersByKey.put(tw.key, tw);
+
+            if (tw.state == TriggerWrapper.STATE_WAITING) {
+                timeTriggers.add(tw);
+            }
+        }
+    }
+
+    public boolean removeTrigger(TriggerKey triggerKey) {
+        return removeTrigger(triggerKey, true);
+    }
+
+    private boolean removeTrigger(TriggerKey key, boolean removeOrphanedJob) {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.remove(key);
+            if (tw == null) {
+                return false;
+            }
+
+            removeFromGroup(triggersByGroup, key.getGroup(), key);
+            removeFromSet(triggersByJob, tw.jobKey, tw);
+            timeTriggers.remove(tw);
+
+            if (removeOrphanedJob) {
+                JobWrapper jw = jobsByKey.get(tw.jobKey);
+                if (jw != null && !triggersByJob.containsKey(tw.jobKey) && !jw.jobDetail.isDurable()) {
+                    if (removeJob(jw.key)) {
+                        signaler.notifySchedulerListenersJobDeleted(jw.key);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.get(triggerKey);
+            if (tw == null) {
+                return false;
+            }
+
+            if (!tw.jobKey.equals(newTrigger.getJobKey())) {
+                throw new JobPersistenceException("New trigger is not related to the same job as the old trigger.");
+            }
+
+            removeTrigger(triggerKey, false);
+
+            try {
+                storeTrigger(newTrigger, false);
+            } catch (JobPersistenceException jpe) {
+                storeTrigger(tw.getTrigger(), false); // put previous trigger back...
+                throw jpe;
+            }
+            return true;
+        }
+    }
+
+    public JobDetail retrieveJob(JobKey jobKey) {
+        JobWrapper jw = jobsByKey.get(jobKey);
+        return (jw != null) ? (JobDetail) jw.jobDetail.clone() : null;
+    }
+
+    public OperableTrigger retrieveTrigger(TriggerKey triggerKey) {
+        TriggerWrapper tw = triggersByKey.get(triggerKey);
+        return (tw != null) ? (OperableTrigger) tw.getTrigger().clone() : null;
+    }
+
+    public boolean checkExists(JobKey jobKey) {
+        return jobsByKey.containsKey(jobKey);
+    }
+
+    public boolean checkExists(TriggerKey triggerKey) {
+        return triggersByKey.containsKey(triggerKey);
+    }
+
+    public TriggerState getTriggerState(TriggerKey triggerKey) {
+        TriggerWrapper tw = triggersByKey.get(triggerKey);
+        if (tw == null) {
+            return TriggerState.NONE;
+        }
+
+        switch (tw.state) {
+            case TriggerWrapper.STATE_COMPLETE:
+                return TriggerState.COMPLETE;
+            case TriggerWrapper.STATE_PAUSED:
+            case TriggerWrapper.STATE_PAUSED_BLOCKED:
+                return TriggerState.PAUSED;
+            case TriggerWrapper.STATE_BLOCKED:
+                return TriggerState.BLOCKED;
+            case TriggerWrapper.STATE_ERROR:
+                return TriggerState.ERROR;
+            default:
+                return TriggerState.NORMAL;
+        }
+    }
+
+    public void resetTriggerFromErrorState(final TriggerKey triggerKey) {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.get(triggerKey);
+            // does the trigger exist, and is it in error state?
+            if (tw == null || tw.state != TriggerWrapper.STATE_ERROR) {
+                return;
+            }
+
+            if (pausedTriggerGroups.contains(triggerKey.getGroup())) {
+                tw.state = TriggerWrapper.STATE_PAUSED;
+            } else {
+                tw.state = TriggerWrapper.STATE_WAITING;
+                timeTriggers.add(tw);
+            }
+        }
+    }
+
+    public void storeCalendar(String name,
+                              Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+            throws ObjectAlreadyExistsException {
+
+        calendar = (Calendar) calendar.clone();
+
+        Calendar obj;
+        if (replaceExisting) {
+            obj = calendarsByName.put(name, calendar);
+        } else {
+            obj = calendarsByName.putIfAbsent(name, calendar);
+            if (obj != null) {
+                throw new ObjectAlreadyExistsException(
+                        "Calendar with name '" + name + "' already exists.");
+            }
+        }
+
+        if (obj != null && updateTriggers) {
+            synchronized (lock) {
+                for (TriggerWrapper tw : triggersByKey.values()) {
+                    if (!name.equals(tw.getTrigger().getCalendarName())) {
+                        continue;
+                    }
+                    boolean removed = timeTriggers.remove(tw);
+
+                    OperableTrigger trig = (OperableTrigger) tw.getTrigger().clone();
+                    trig.updateWithNewCalendar(calendar, getMisfireThreshold());
+                    tw.trigger = trig;
+
+                    if (removed) {
+                        timeTriggers.add(tw);
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean removeCalendar(String calName)
+            throws JobPersistenceException {
+        // under the lock, so that no trigger referencing it is stored meanwhile
+        synchronized (lock) {
+            for (TriggerWrapper tw : triggersByKey.values()) {
+                if (calName.equals(tw.getTrigger().getCalendarName())) {
+                    throw new JobPersistenceException(
+                            "Calender cannot be removed if it referenced by a Trigger!");
+                }
+            }
+
+            return (calendarsByName.remove(calName) != null);
+        }
+    }
+
+    public Calendar retrieveCalendar(String calName) {
+        Calendar cal = calendarsByName.get(calName);
+        return (cal != null) ? (Calendar) cal.clone() : null;
+    }
+
+    public int getNumberOfJobs() {
+        return jobsByKey.size();
+    }
+
+    public int getNumberOfTriggers() {
+        return triggersByKey.size();
+    }
+
+    public long getNextFireTime() {
+        synchronized (lock) {
+            TriggerWrapper tw = timeTriggers.peek();
+            return tw == null ? 0 : tw.trigger.getNextFireTime().getTime();
+        }
+    }
+
+    public int getNumberOfCalendars() {
+        return calendarsByName.size();
+    }
+
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher) {
+        return collectKeys(jobsByGroup, matcher.getCompareWithOperator(), matcher.getCompareToValue());
+    }
+
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) {
+        return collectKeys(triggersByGroup, matcher.getCompareWithOperator(), matcher.getCompareToValue());
+    }
+
+    private static <K, V> Set<K> collectKeys(ConcurrentHashMap<String, ConcurrentHashMap<K, V>> groups,
+                                             StringMatcher.StringOperatorName operator, String compareToValue) {
+        Set<K> outList = null;
+
+        switch (operator) {
+            case EQUALS:
+                ConcurrentHashMap<K, V> grpMap = groups.get(compareToValue);
+                if (grpMap != null) {
+                    outList = new HashSet<K>(grpMap.keySet());
+                }
+                break;
+
+            default:
+                for (Map.Entry<String, ConcurrentHashMap<K, V>> entry : groups.entrySet()) {
+                    if (operator.evaluate(entry.getKey(), compareToValue)) {
+                        if (outList == null) {
+                            outList = new HashSet<K>();
+                        }
+                        outList.addAll(entry.getValue().keySet());
+                    }
+                }
+        }
+
+        return outList == null ? Collections.<K>emptySet() : outList;
+    }
+
+    public List<String> getCalendarNames() {
+        return new LinkedList<String>(calendarsByName.keySet());
+    }
+
+    public List<String> getJobGroupNames() {
+        return new LinkedList<String>(jobsByGroup.keySet());
+    }
+
+    public List<String> getTriggerGroupNames() {
+        return new LinkedList<String>(triggersByGroup.keySet());
+    }
+
+    public List<OperableTrigger> getTriggersForJob(JobKey jobKey) {
+        ArrayList<OperableTrigger> trigList = new ArrayList<OperableTrigger>();
+
+        Set<TriggerWrapper> jobList = triggersByJob.get(jobKey);
+        if (jobList != null) {
+            for (TriggerWrapper tw : jobList) {
+                trigList.add((OperableTrigger) tw.getTrigger().clone());
+            }
+        }
+
+        return trigList;
+    }
+
+    protected List<TriggerWrapper> getTriggerWrappersForJob(JobKey jobKey) {
+        Set<TriggerWrapper> jobList = triggersByJob.get(jobKey);
+        return (jobList != null) ? new ArrayList<TriggerWrapper>(jobList) : Collections.<TriggerWrapper>emptyList();
+    }
+
+    public void pauseTrigger(TriggerKey triggerKey) {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.get(triggerKey);
+
+            // does the trigger exist?
+            if (tw == null) {
+                return;
+            }
+
+            // if the trigger is "complete" pausing it does not make sense...
+            if (tw.state == TriggerWrapper.STATE_COMPLETE) {
+                return;
+            }
+
+            if (tw.state == TriggerWrapper.STATE_BLOCKED) {
+                tw.state = TriggerWrapper.STATE_PAUSED_BLOCKED;
+            } else {
+                tw.state = TriggerWrapper.STATE_PAUSED;
+            }
+
+            timeTriggers.remove(tw);
+        }
+    }
+
+    public List<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) {
+        List<String> pausedGroups = new LinkedList<String>();
+
+        synchronized (lock) {
+            StringMatcher.StringOperatorName operator = matcher.getCompareWithOperator();
+            switch (operator) {
+                case EQUALS:
+                    if (pausedTriggerGroups.add(matcher.getCompareToValue())) {
+                        pausedGroups.add(matcher.getCompareToValue());
+                    }
+                    break;
+                default:
+                    for (String group : triggersByGroup.keySet()) {
+                        if (operator.evaluate(group, matcher.getCompareToValue())) {
+                            if (pausedTriggerGroups.add(group)) {
+                                pausedGroups.add(group);
+                            }
+                        }
+                    }
+            }
+
+            for (String pausedGroup : pausedGroups) {
+                for (TriggerKey key : getTriggerKeys(GroupMatcher.triggerGroupEquals(pausedGroup))) {
+                    pauseTrigger(key);
+                }
+            }
+        }
+
+        return pausedGroups;
+    }
+
+    public void pauseJob(JobKey jobKey) {
+        synchronized (lock) {
+            for (TriggerWrapper tw : getTriggerWrappersForJob(jobKey)) {
+                pauseTrigger(tw.key);
+            }
+        }
+    }
+
+    public List<String> pauseJobs(GroupMatcher<JobKey> matcher) {
+        List<String> pausedGroups = new LinkedList<String>();
+
+        synchronized (lock) {
+            StringMatcher.StringOperatorName operator = matcher.getCompareWithOperator();
+            switch (operator) {
+                case EQUALS:
+                    if (pausedJobGroups.add(matcher.getCompareToValue())) {
+                        pausedGroups.add(matcher.getCompareToValue());
+                    }
+                    break;
+                default:
+                    for (String group : jobsByGroup.keySet()) {
+                        if (operator.evaluate(group, matcher.getCompareToValue())) {
+                            if (pausedJobGroups.add(group)) {
+                                pausedGroups.add(group);
+                            }
+                        }
+                    }
+            }
+
+            for (String groupName : pausedGroups) {
+                for (JobKey jobKey : getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
+                    pauseJob(jobKey);
+                }
+            }
+        }
+
+        return pausedGroups;
+    }
+
+    public void resumeTrigger(TriggerKey triggerKey) {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.get(triggerKey);
+
+            // does the trigger exist?
+            if (tw == null) {
+                return;
+            }
+
+            // if the trigger is not paused resuming it does not make sense...
+            if (tw.state != TriggerWrapper.STATE_PAUSED &&
+                    tw.state != TriggerWrapper.STATE_PAUSED_BLOCKED) {
+                return;
+            }
+
+            if (blockedJobs.contains(tw.jobKey)) {
+                tw.state = TriggerWrapper.STATE_BLOCKED;
+            } else {
+                tw.state = TriggerWrapper.STATE_WAITING;
+            }
+
+            applyMisfire(tw);
+
+            if (tw.state == TriggerWrapper.STATE_WAITING) {
+                timeTriggers.add(tw);
+            }
+        }
+    }
+
+    public List<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) {
+        Set<String> groups = new HashSet<String>();
+
+        synchronized (lock) {
+            for (TriggerKey triggerKey : getTriggerKeys(matcher)) {
+                groups.add(triggerKey.getGroup());
+                TriggerWrapper tw = triggersByKey.get(triggerKey);
+                if (tw != null && pausedJobGroups.contains(tw.jobKey.getGroup())) {
+                    continue;
+                }
+                resumeTrigger(triggerKey);
+            }
+
+            // Find all matching paused trigger groups, and then remove them.
+            StringMatcher.StringOperatorName operator = matcher.getCompareWithOperator();
+            String matcherGroup = matcher.getCompareToValue();
+            switch (operator) {
+                case EQUALS:
+                    pausedTriggerGroups.remove(matcherGroup);
+                    break;
+                default:
+                    for (String group : new ArrayList<String>(pausedTriggerGroups)) {
+                        if (operator.evaluate(group, matcherGroup)) {
+                            pausedTriggerGroups.remove(group);
+                        }
+                    }
+            }
+        }
+
+        return new ArrayList<String>(groups);
+    }
+
+    public void resumeJob(JobKey jobKey) {
+        synchronized (lock) {
+            for (TriggerWrapper tw : getTriggerWrappersForJob(jobKey)) {
+                resumeTrigger(tw.key);
+            }
+        }
+    }
+
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) {
+        Set<String> resumedGroups = new HashSet<String>();
+
+        synchronized (lock) {
+            Set<JobKey> keys = getJobKeys(matcher);
+
+            for (String pausedJobGroup : pausedJobGroups) {
+                if (matcher.getCompareWithOperator().evaluate(pausedJobGroup, matcher.getCompareToValue())) {
+                    resumedGroups.add(pausedJobGroup);
+                }
+            }
+
+            pausedJobGroups.removeAll(resumedGroups);
+
+            for (JobKey key : keys) {
+                resumeJob(key);
+            }
+        }
+
+        return resumedGroups;
+    }
+
+    public void pauseAll() {
+        synchronized (lock) {
+            for (String name : getTriggerGroupNames()) {
+                pauseTriggers(GroupMatcher.triggerGroupEquals(name));
+            }
+        }
+    }
+
+    public void resumeAll() {
+        synchronized (lock) {
+            pausedJobGroups.clear();
+            resumeTriggers(GroupMatcher.anyTriggerGroup());
+        }
+    }
+
+    /**
+     * Must be called while holding <code>lock</code>, with the trigger
+     * removed from <code>timeTriggers</code>.
+     */
+    protected boolean applyMisfire(TriggerWrapper tw) {
+
+        long misfireTime = System.currentTimeMillis();
+        if (getMisfireThreshold() > 0) {
+            misfireTime -= getMisfireThreshold();
+        }
+
+        OperableTrigger trig = tw.getTrigger();
+        Date tnft = trig.getNextFireTime();
+        if (tnft == null || tnft.getTime() > misfireTime
+                || trig.getMisfireInstruction() == Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY) {
+            return false;
+        }
+
+        Calendar cal = null;
+        if (trig.getCalendarName() != null) {
+            cal = calendarsByName.get(trig.getCalendarName());
+        }
+
+        signaler.notifyTriggerListenersMisfired((OperableTrigger) trig.clone());
+
+        trig = (OperableTrigger) trig.clone();
+        trig.updateAfterMisfire(cal);
+        tw.trigger = trig;
+
+        if (trig.getNextFireTime() == null) {
+            tw.state = TriggerWrapper.STATE_COMPLETE;
+            signaler.notifySchedulerListenersFinalized(trig);
+            timeTriggers.remove(tw);
+        } else if (tnft.equals(trig.getNextFireTime())) {
+            return false;
+        }
+
+        return true;
+    }
+
+    protected String getFiredTriggerRecordId() {
+        return String.valueOf(ftrCtr.incrementAndGet());
+    }
+
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow) {
+        return acquireNextTriggers(noLaterThan, maxCount, timeWindow, 0, 1);
+    }
+
+    /**
+     * Acquire from the given partition only; the fire-time index is split by
+     * partition the first time this is called with more than one.
+     */
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow,
+            int partition, int partitionCount) {
+        List<OperableTrigger> result = new ArrayList<OperableTrigger>();
+
+        synchronized (lock) {
+            TriggerIndex candidates = timeTriggers;
+            if (partitionCount > 1) {
+                PartitionedTriggerIndex partitioned = PartitionedTriggerIndex.partition(
+                        timeTriggers, partitionCount, useTimingWheel, timingWheelTickMillis);
+                timeTriggers = partitioned;
+                candidates = partitioned.getPartition(partition);
+            }
+
+            // return empty list if store has no triggers.
+            if (candidates.isEmpty())
+                return result;
+
+            Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
+            List<TriggerWrapper> excludedTriggers = null;
+            long batchEnd = noLaterThan;
+
+            TriggerWrapper tw;
+            while ((tw = candidates.first(batchEnd)) != null) {
+                timeTriggers.remove(tw);
+
+                if (tw.getTrigger().getNextFireTime() == null) {
+                    continue;
+                }
+
+                if (applyMisfire(tw)) {
+                    if (tw.getTrigger().getNextFireTime() != null) {
+                        timeTriggers.add(tw);
+                    }
+                    continue;
+                }
+
+                OperableTrigger trig = tw.getTrigger();
+                if (trig.getNextFireTime().getTime() > batchEnd) {
+                    timeTriggers.add(tw);
+                    break;
+                }
+
+                // If trigger's job is set as @DisallowConcurrentExecution, and it has already been added to result, then
+                // put it back into the timeTriggers set and continue to search for next trigger.
+                JobWrapper jw = jobsByKey.get(tw.jobKey);
+                if (jw != null && jw.jobDetail.isConcurrentExectionDisallowed()) {
+                    if (!acquiredJobKeysForNoConcurrentExec.add(tw.jobKey)) {
+                        if (excludedTriggers == null) {
+                            excludedTriggers = new ArrayList<TriggerWrapper>();
+                        }
+                        excludedTriggers.add(tw);
+                        continue; // go to next trigger in store.
+                    }
+                }
+
+                tw.state = TriggerWrapper.STATE_ACQUIRED;
+                if (result.isEmpty()) {
+                    batchEnd = Math.max(trig.getNextFireTime().getTime(), System.currentTimeMillis()) + timeWindow;
+                }
+                // the stored trigger is read without the lock, so only the copy is changed
+                OperableTrigger acquired = (OperableTrigger) trig.clone();
+                acquired.setFireInstanceId(getFiredTriggerRecordId());
+                result.add(acquired);
+                if (result.size() == maxCount)
+                    break;
+            }
+
+            // If we did excluded triggers to prevent ACQUIRE state due to DisallowConcurrentExecution, we need to add them back to store.
+            if (excludedTriggers != null) {
+                for (TriggerWrapper etw : excludedTriggers) {
+                    timeTriggers.add(etw);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public void releaseAcquiredTrigger(OperableTrigger trigger) {
+        synchronized (lock) {
+            TriggerWrapper tw = triggersByKey.get(trigger.getKey());
+            if (tw != null && tw.state == TriggerWrapper.STATE_ACQUIRED) {
+                tw.state = TriggerWrapper.STATE_WAITING;
+                timeTriggers.add(tw);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Inform the <code>JobStore</code> that the scheduler is now firing the
+     * given <code>Trigger</code>s.
+     * </p>
+     *
+     * <p>
+     * Only the state transitions happen under <code>lock</code>; the
+     * <code>JobDetail</code> and <code>Calendar</code> copies handed to the
+     * scheduler are made after it has been released.
+     * </p>
+     */
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) {
+        int size = firedTriggers.size();
+        List<OperableTrigger> fired = new ArrayList<OperableTrigger>(size);
+        List<JobDetail> jobs = new ArrayList<JobDetail>(size);
+        List<Calendar> cals = new ArrayList<Calendar>(size);
+        List<Date> prevFireTimes = new ArrayList<Date>(size);
+
+        synchronized (lock) {
+            for (OperableTrigger trigger : firedTriggers) {
+                TriggerWrapper tw = triggersByKey.get(trigger.getKey());
+                // was the trigger deleted, or completed, paused, blocked, etc. since being acquired?
+                if (tw == null || tw.state != TriggerWrapper.STATE_ACQUIRED) {
+                    continue;
+                }
+                JobWrapper jw = jobsByKey.get(tw.jobKey);
+                if (jw == null) {
+                    continue;
+                }
+
+                Calendar cal = null;
+                if (tw.getTrigger().getCalendarName() != null) {
+                    cal = calendarsByName.get(tw.getTrigger().getCalendarName());
+                    if (cal == null)
+                        continue;
+                }
+                Date prevFireTime = trigger.getPreviousFireTime();
+                // in case trigger was replaced between acquiring and firing
+                timeTriggers.remove(tw);
+                // call triggered on our copy, and the scheduler's copy
+                OperableTrigger trig = (OperableTrigger) tw.getTrigger().clone();
+                trig.triggered(cal);
+                tw.trigger = trig;
+                trigger.triggered(cal);
+                tw.state = TriggerWrapper.STATE_WAITING;
+
+                JobDetail job = jw.jobDetail;
+                if (job.isConcurrentExectionDisallowed()) {
+                    for (TriggerWrapper ttw : getTriggerWrappersForJob(job.getKey())) {
+                        // acquired ones too, as the JDBC job store does, in
+                        // case they are in a batch that has yet to be fired
+                        if (ttw.state == TriggerWrapper.STATE_WAITING
+                                || ttw.state == TriggerWrapper.STATE_ACQUIRED) {
+                            ttw.state = TriggerWrapper.STATE_BLOCKED;
+                        }
+                        if (ttw.state == TriggerWrapper.STATE_PAUSED) {
+                            ttw.state = TriggerWrapper.STATE_PAUSED_BLOCKED;
+                        }
+                        timeTriggers.remove(ttw);
+                    }
+                    blockedJobs.add(job.getKey());
+                } else if (trig.getNextFireTime() != null) {
+                    timeTriggers.add(tw);
+                }
+
+                fired.add(trigger);
+                jobs.add(job);
+                cals.add(cal);
+                prevFireTimes.add(prevFireTime);
+            }
+        }
+
+        List<TriggerFiredResult> results = new ArrayList<TriggerFiredResult>(fired.size());
+        for (int i = 0; i < fired.size(); i++) {
+            OperableTrigger trigger = fired.get(i);
+            Calendar cal = cals.get(i);
+            TriggerFiredBundle bndle = new TriggerFiredBundle((JobDetail) jobs.get(i).clone(), trigger,
+                    (cal != null) ? (Calendar) cal.clone() : null,
+                    false, new Date(), trigger.getPreviousFireTime(), prevFireTimes.get(i),
+                    trigger.getNextFireTime());
+            results.add(new TriggerFiredResult(bndle));
+        }
+        return results;
+    }
+
+    /**
+     * <p>
+     * Inform the <code>JobStore</code> that the scheduler has completed the
+     * firing of the given <code>Trigger</code>.
+     * </p>
+     *
+     * <p>
+     * The common case - a job that allows concurrent execution, completing
+     * with <code>NOOP</code> - touches neither the fire-time index nor any
+     * trigger state, and therefore takes no lock.
+     * </p>
+     */
+    public void triggeredJobComplete(OperableTrigger trigger,
+                                     JobDetail jobDetail, CompletedExecutionInstruction triggerInstCode) {
+
+        boolean signal = false;
+
+        // It's possible that the job is null if:
+        //   1- it was deleted during execution
+        //   2- the store is being used only for volatile jobs / triggers
+        //      from the JDBC job store
+        final JobWrapper jw = jobsByKey.get(jobDetail.getKey());
+        if (jw != null) {
+            JobDetail jd = jw.jobDetail;
+
+            JobDataMap newData = jobDetail.getJobDataMap();
+            // a job that did not write to its data has nothing to persist
+            if (jd.isPersistJobDataAfterExecution() && (newData == null || newData.isDirty())) {
+                if (newData != null) {
+                    newData = (JobDataMap) newData.clone();
+                    newData.clearDirtyFlag();
+                }
+                final JobDetail read = jd;
+                final JobDetail updated = jd.getJobBuilder().setJobData(newData).build();
+                // atomically with storeJob and removeJob, which also go through
+                // the map: the data is not written back over a replaced or removed job
+                jobsByKey.computeIfPresent(jd.getKey(), (key, current) -> {
+                    if (current == jw && current.jobDetail == read) {
+                        current.jobDetail = updated;
+                    }
+                    return current;
+                });
+                jd = updated;
+            }
+            if (jd.isConcurrentExectionDisallowed()) {
+                synchronized (lock) {
+                    blockedJobs.remove(jd.getKey());
+                    for (TriggerWrapper ttw : getTriggerWrappersForJob(jd.getKey())) {
+                        if (ttw.state == TriggerWrapper.STATE_BLOCKED) {
+                            ttw.state = TriggerWrapper.STATE_WAITING;
+                            timeTriggers.add(ttw);
+                        }
+                        if (ttw.state == TriggerWrapper.STATE_PAUSED_BLOCKED) {
+                            ttw.state = TriggerWrapper.STATE_PAUSED;
+                        }
+                    }
+                }
+                signal = true;
+            }
+        } else if (blockedJobs.contains(jobDetail.getKey())) { // even if it was deleted, there may be cleanup to do
+            synchronized (lock) {
+                blockedJobs.remove(jobDetail.getKey());
+            }
+        }
+
+        // check for trigger deleted during execution...
+        TriggerWrapper tw = triggersByKey.get(trigger.getKey());
+        if (tw != null && triggerInstCode != CompletedExecutionInstruction.NOOP) {
+            synchronized (lock) {
+                if (triggerInstCode == CompletedExecutionInstruction.DELETE_TRIGGER) {
+                    if (trigger.getNextFireTime() == null) {
+                        // double check for possible reschedule within job
+                        // execution, which would cancel the need to delete...
+                        if (tw.getTrigger().getNextFireTime() == null) {
+                            removeTrigger(trigger.getKey());
+                        }
+                    } else {
+                        removeTrigger(trigger.getKey());
+                        signal = true;
+                    }
+                } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_COMPLETE) {
+                    tw.state = TriggerWrapper.STATE_COMPLETE;
+                    timeTriggers.remove(tw);
+                    signal = true;
+                } else if (triggerInstCode == CompletedExecutionInstruction.SET_TRIGGER_ERROR) {
+                    getLog().info("Trigger " + trigger.getKey() + " set to ERROR state.");
+                    tw.state = TriggerWrapper.STATE_ERROR;
+                    signal = true;
+                } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR) {
+                    getLog().info("All triggers of Job "
+                            + trigger.getJobKey() + " set to ERROR state.");
+                    setAllTriggersOfJobToState(trigger.getJobKey(), TriggerWrapper.STATE_ERROR);
+                    signal = true;
+                } else if (triggerInstCode == CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_COMPLETE) {
+                    setAllTriggersOfJobToState(trigger.getJobKey(), TriggerWrapper.STATE_COMPLETE);
+                    signal = true;
+                }
+            }
+        }
+
+        if (signal) {
+            signaler.signalSchedulingChange(0L);
+        }
+    }
+
+    protected void setAllTriggersOfJobToState(JobKey jobKey, int state) {
+        synchronized (lock) {
+            for (TriggerWrapper tw : getTriggerWrappersForJob(jobKey)) {
+                tw.state = state;
+                if (state != TriggerWrapper.STATE_WAITING) {
+                    timeTriggers.remove(tw);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getAcquireRetryDelay(int failureCount) {
+        return 20;
+    }
+
+    public Set<String> getPausedTriggerGroups() {
+        return new HashSet<String>(pausedTriggerGroups);
+    }
+
+    public Set<String> getPausedJobGroups() {
+        return new HashSet<String>(pausedJobGroups);
+    }
+
+    public void setInstanceId(String schedInstId) {
+        //
+    }
+
+    public void setInstanceName(String schedName) {
+        //
+    }
+
+    @Override
+    public void setThreadPoolSize(final int poolSize) {
+        //
+    }
+
+    public long getEstimatedTimeToReleaseAndAcquireTrigger() {
+        return 5;
+    }
+
+    @Override
+    public boolean isClustered() {
+        return false;
+    }
+
+    /*
+     * Index maintenance. Empty group / job buckets are dropped atomically via
+     * compute(), so a concurrent add never lands in a bucket that is being
+     * discarded.
+     */
+
+    private static <K, V> void addToGroup(ConcurrentHashMap<String, ConcurrentHashMap<K, V>> groups,
+                                          String group, final K key, final V value) {
+        groups.compute(group, (g, grpMap) -> {
+            if (grpMap == null) {
+                grpMap = new ConcurrentHashMap<K, V>(16);
+            }
+            grpMap.put(key, value);
+            return grpMap;
+        });
+    }
+
+    private static <K, V> void removeFromGroup(ConcurrentHashMap<String, ConcurrentHashMap<K, V>> groups,
+                                               String group, final K key) {
+        groups.computeIfPresent(group, (g, grpMap) -> {
+            grpMap.remove(key);
+            return grpMap.isEmpty() ? null : grpMap;
+        });
+    }
+
+    private static void addToSet(ConcurrentHashMap<JobKey, Set<TriggerWrapper>> map,
+                                 JobKey jobKey, final TriggerWrapper tw) {
+        map.compute(jobKey, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet(4);
+            }
+            set.add(tw);
+            return set;
+        });
+    }
+
+    private static void removeFromSet(ConcurrentHashMap<JobKey, Set<TriggerWrapper>> map,
+                                      JobKey jobKey, final TriggerWrapper tw) {
+        map.computeIfPresent(jobKey, (k, set) -> {
+            set.remove(tw);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
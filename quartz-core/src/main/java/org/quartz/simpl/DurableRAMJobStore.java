@@ -0,0 +1,1026 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.Calendar;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+
+/**
+ * <p>
+ * A <code>{@link RAMJobStore}</code> whose jobs, triggers and calendars
+ * survive a restart of the process: every change to them is appended to a
+ * log in a local directory before the call that makes it returns, and the
+ * store is rebuilt from that directory when it is initialized.
+ * </p>
+ *
+ * <p>
+ * The log is memory-mapped, and forced to disk by group commit, so that
+ * the threads changing the store at the same time wait for a single
+ * force. Firing a trigger is logged too, as the trigger's next fire time,
+ * so that a trigger does not fire again after a restart. When a segment of
+ * the log is full, the store starts the next one and writes a snapshot of
+ * its content in the background; once written, the older segments are
+ * deleted, so that a restart replays at most about a segment of the log.
+ * </p>
+ *
+ * <p>
+ * Like the JDBC job stores, this store requires the jobs, triggers,
+ * calendars and the values of the <code>JobDataMap</code>s to be
+ * <code>Serializable</code>. What is not kept is what the JDBC job stores
+ * recover from too: triggers that were acquired, fired or blocked are
+ * waiting again after a restart, misfires are handled again, and triggers
+ * that will not fire again are removed, with their jobs if not durable, as
+ * the job that was running when they last fired can no longer complete.
+ * Unlike the JDBC job stores, the jobs that were running are not run again
+ * after a restart, even those that request recovery. The store is for a
+ * single scheduler; it is not clustered.
+ * </p>
+ *
+ * DurableRAMJobStore: 在RAMJobStore的基础上，将所有变更写入本地的追加日志并定期生成快照，重启后可恢复
+ */
+public class DurableRAMJobStore extends RAMJobStore {
+
+    private static final byte STORE_JOB_AND_TRIGGER = 1;
+    private static final byte STORE_JOB = 2;
+    private static final byte REMOVE_JOB = 3;
+    private static final byte REMOVE_JOBS = 4;
+    private static final byte REMOVE_TRIGGERS = 5;
+    private static final byte STORE_JOBS_AND_TRIGGERS = 6;
+    private static final byte STORE_TRIGGER = 7;
+    private static final byte REMOVE_TRIGGER = 8;
+    private static final byte REPLACE_TRIGGER = 9;
+    private static final byte RESET_TRIGGER_FROM_ERROR_STATE = 10;
+    private static final byte STORE_CALENDAR = 11;
+    private static final byte REMOVE_CALENDAR = 12;
+    private static final byte PAUSE_TRIGGER = 13;
+    private static final byte PAUSE_TRIGGERS = 14;
+    private static final byte PAUSE_JOB = 15;
+    private static final byte PAUSE_JOBS = 16;
+    private static final byte RESUME_TRIGGER = 17;
+    private static final byte RESUME_TRIGGERS = 18;
+    private static final byte RESUME_JOB = 19;
+    private static final byte RESUME_JOBS = 20;
+    private static final byte PAUSE_ALL = 21;
+    private static final byte RESUME_ALL = 22;
+    private static final byte CLEAR_ALL_SCHEDULING_DATA = 23;
+    private static final byte TRIGGERS_FIRED = 24;
+    private static final byte TRIGGERED_JOB_COMPLETE = 25;
+
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private String directory;
+
+    private int logSegmentSize = 16 * 1024 * 1024;
+
+    private boolean forceLog = true;
+
+    private ClassLoadHelper loadHelper;
+
+    private volatile WriteAheadLog wal;
+
+    private ExecutorService snapshotWriter;
+
+    /** The depth of the logged calls in progress. Guarded by lock. */
+    private int nesting;
+
+    /**
+     * A change to the store, logged once it is applied.
+     */
+    private abstract static class Change<T> {
+        final byte op;
+
+        final Object[] args;
+
+        Change(byte op, Object... args) {
+            this.op = op;
+            this.args = args;
+        }
+
+        abstract T apply() throws JobPersistenceException;
+    }
+
+    /**
+     * The content of the store, as kept in a snapshot.
+     */
+    private static final class Snapshot {
+        /** The number of records at the start of the segment that the snapshot already includes. */
+        int skip;
+
+        HashMap<String, Calendar> calendars;
+
+        HashSet<String> pausedTriggerGroups;
+
+        HashSet<String> pausedJobGroups;
+
+        List<JobDetail> jobs = new ArrayList<JobDetail>();
+
+        List<OperableTrigger> triggers = new ArrayList<OperableTrigger>();
+
+        List<Integer> states = new ArrayList<Integer>();
+    }
+
+    /**
+     * <p>
+     * Create a new <code>DurableRAMJobStore</code>.
+     * </p>
+     */
+    public DurableRAMJobStore() {
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * <p>
+     * The directory where the log and the snapshots are kept. It is created
+     * if it does not exist, and must not be shared with another scheduler.
+     * </p>
+     */
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getLogSegmentSize() {
+        return logSegmentSize;
+    }
+
+    /**
+     * <p>
+     * The size, in bytes, of a segment of the log. A snapshot is written
+     * each time a segment is full. Defaults to 16 MB.
+     * </p>
+     */
+    public void setLogSegmentSize(int logSegmentSize) {
+        this.logSegmentSize = logSegmentSize;
+    }
+
+    public boolean isForceLog() {
+        return forceLog;
+    }
+
+    /**
+     * <p>
+     * Whether a change waits for the log to be forced to disk before its
+     * call returns. If <code>false</code>, the log is written to the
+     * memory-mapped file only, which survives the end of the process but
+     * not a crash of the operating system. Defaults to <code>true</code>.
+     * </p>
+     */
+    public void setForceLog(boolean forceLog) {
+        this.forceLog = forceLog;
+    }
+
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler)
+            throws SchedulerConfigException {
+        super.initialize(loadHelper, schedSignaler);
+        this.loadHelper = loadHelper;
+
+        if (directory == null) {
+            throw new SchedulerConfigException("The directory of the DurableRAMJobStore is not set.");
+        }
+        if (logSegmentSize <= 0) {
+            throw new SchedulerConfigException("The log segment size must be positive: " + logSegmentSize);
+        }
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new SchedulerConfigException("Could not create the directory of the DurableRAMJobStore: " + dir);
+        }
+
+        WriteAheadLog log = new WriteAheadLog(dir, logSegmentSize, forceLog);
+        try {
+            long generation = recover(log);
+            removeCompletedTriggers();
+            // start afresh, with a snapshot of what was recovered
+            log.open(generation, 0);
+            Snapshot snapshot;
+            synchronized (lock) {
+                snapshot = capture(0);
+            }
+            wal = log;
+            writeSnapshot(generation, snapshot);
+        } catch (IOException e) {
+            throw new SchedulerConfigException("Could not recover the DurableRAMJobStore from " + dir, e);
+        } catch (JobPersistenceException e) {
+            throw new SchedulerConfigException("Could not recover the DurableRAMJobStore from " + dir, e);
+        }
+
+        snapshotWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "DurableRAMJobStore-snapshots");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        getLog().info("DurableRAMJobStore recovered " + getNumberOfJobs() + " jobs and "
+                + getNumberOfTriggers() + " triggers from " + dir);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdown();
+            try {
+                snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        WriteAheadLog log = wal;
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Override
+    public boolean supportsPersistence() {
+        return true;
+    }
+
+    /**
+     * Rebuild the store from the latest readable snapshot and the segments
+     * of the log written since.
+     *
+     * @return the generation to continue the log with
+     */
+    private long recover(WriteAheadLog log) throws IOException, JobPersistenceException {
+        List<Long> snapshots = log.generations(WriteAheadLog.SNAPSHOT_SUFFIX);
+        List<Long> segments = log.generations(WriteAheadLog.LOG_SUFFIX);
+
+        long from = -1;
+        int skip = 0;
+        for (int i = snapshots.size() - 1; i >= 0 && from < 0; i--) {
+            long generation = snapshots.get(i);
+            Snapshot snapshot;
+            try {
+                snapshot = readSnapshot(log.snapshotFile(generation));
+            } catch (IOException e) {
+                getLog().warn("Skipping the unreadable snapshot " + log.snapshotFile(generation), e);
+                continue;
+            }
+            restore(snapshot);
+            from = generation;
+            skip = snapshot.skip;
+        }
+
+        long last = Math.max(from, 0);
+        for (Long generation : segments) {
+            if (generation < from) {
+                continue;
+            }
+            final int[] toSkip = {generation == from ? skip : 0};
+            int count = log.read(generation, new WriteAheadLog.RecordHandler() {
+                public void record(byte[] data) throws IOException {
+                    if (toSkip[0] > 0) {
+                        toSkip[0]--;
+                    } else {
+                        replay(data);
+                    }
+                }
+            });
+            getLog().debug("Replayed " + count + " records of " + log.logFile(generation));
+            last = Math.max(last, generation);
+        }
+        if (!snapshots.isEmpty()) {
+            last = Math.max(last, snapshots.get(snapshots.size() - 1));
+        }
+        return last + 1;
+    }
+
+    /**
+     * Remove the triggers that will not fire again, and their jobs if they
+     * are not durable and have no other trigger: they were left for the
+     * completion of the job that was running when they last fired, which
+     * will not come after a restart.
+     */
+    private void removeCompletedTriggers() {
+        synchronized (lock) {
+            List<TriggerKey> completed = new ArrayList<TriggerKey>();
+            for (TriggerWrapper tw : triggersByKey.values()) {
+                if (tw.trigger.getNextFireTime() == null) {
+                    completed.add(tw.key);
+                }
+            }
+            for (TriggerKey key : completed) {
+                super.removeTrigger(key);
+            }
+            if (!completed.isEmpty()) {
+                getLog().info("DurableRAMJobStore removed " + completed.size() + " completed triggers");
+            }
+        }
+    }
+
+    private ObjectInputStream objectInput(InputStream in) throws IOException {
+        return new ObjectInputStream(in) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                try {
+                    return loadHelper.loadClass(desc.getName());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        };
+    }
+
+    private static byte[] record(byte op, Object... args) throws JobPersistenceException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeByte(op);
+            out.writeObject(args);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new JobPersistenceException("Could not serialize the change to log: " + e, e);
+        }
+    }
+
+    private void replay(byte[] data) throws IOException {
+        ObjectInputStream in = objectInput(new ByteArrayInputStream(data));
+        byte op = in.readByte();
+        Object[] args;
+        try {
+            args = (Object[]) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read a record of the log: " + e, e);
+        }
+        try {
+            apply(op, args);
+        } catch (JobPersistenceException e) {
+            getLog().warn("Could not replay a change (" + op + ") of the log.", e);
+        } catch (RuntimeException e) {
+            getLog().warn("Could not replay a change (" + op + ") of the log.", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(byte op, Object[] args) throws JobPersistenceException {
+        synchronized (lock) {
+            switch (op) {
+                case STORE_JOB_AND_TRIGGER:
+                    super.storeJobAndTrigger((JobDetail) args[0], (OperableTrigger) args[1]);
+                    break;
+                case STORE_JOB:
+                    super.storeJob((JobDetail) args[0], (Boolean) args[1]);
+                    break;
+                case REMOVE_JOB:
+                    super.removeJob((JobKey) args[0]);
+                    break;
+                case REMOVE_JOBS:
+                    super.removeJobs((List<JobKey>) args[0]);
+                    break;
+                case REMOVE_TRIGGERS:
+                    super.removeTriggers((List<TriggerKey>) args[0]);
+                    break;
+                case STORE_JOBS_AND_TRIGGERS:
+                    super.storeJobsAndTriggers((Map<JobDetail, Set<? extends Trigger>>) args[0], (Boolean) args[1]);
+                    break;
+                case STORE_TRIGGER:
+                    super.storeTrigger((OperableTrigger) args[0], (Boolean) args[1]);
+                    break;
+                case REMOVE_TRIGGER:
+                    super.removeTrigger((TriggerKey) args[0]);
+                    break;
+                case REPLACE_TRIGGER:
+                    super.replaceTrigger((TriggerKey) args[0], (OperableTrigger) args[1]);
+                    break;
+                case RESET_TRIGGER_FROM_ERROR_STATE:
+                    super.resetTriggerFromErrorState((TriggerKey) args[0]);
+                    break;
+                case STORE_CALENDAR:
+                    super.storeCalendar((String) args[0], (Calendar) args[1], (Boolean) args[2], (Boolean) args[3]);
+                    break;
+                case REMOVE_CALENDAR:
+                    super.removeCalendar((String) args[0]);
+                    break;
+                case PAUSE_TRIGGER:
+                    super.pauseTrigger((TriggerKey) args[0]);
+                    break;
+                case PAUSE_TRIGGERS:
+                    super.pauseTriggers((GroupMatcher<TriggerKey>) args[0]);
+                    break;
+                case PAUSE_JOB:
+                    super.pauseJob((JobKey) args[0]);
+                    break;
+                case PAUSE_JOBS:
+                    super.pauseJobs((GroupMatcher<JobKey>) args[0]);
+                    break;
+                case RESUME_TRIGGER:
+                    super.resumeTrigger((TriggerKey) args[0]);
+                    break;
+                case RESUME_TRIGGERS:
+                    super.resumeTriggers((GroupMatcher<TriggerKey>) args[0]);
+                    break;
+                case RESUME_JOB:
+                    super.resumeJob((JobKey) args[0]);
+                    break;
+                case RESUME_JOBS:
+                    super.resumeJobs((GroupMatcher<JobKey>) args[0]);
+                    break;
+                case PAUSE_ALL:
+                    super.pauseAll();
+                    break;
+                case RESUME_ALL:
+                    super.resumeAll();
+                    break;
+                case CLEAR_ALL_SCHEDULING_DATA:
+                    super.clearAllSchedulingData();
+                    break;
+                case TRIGGERS_FIRED:
+                    replayFired((List<OperableTrigger>) args[0]);
+                    break;
+                case TRIGGERED_JOB_COMPLETE:
+                    super.triggeredJobComplete((OperableTrigger) args[0], (JobDetail) args[1],
+                            (CompletedExecutionInstruction) args[2]);
+                    break;
+                default:
+                    throw new JobPersistenceException("Unknown change in the log: " + op);
+            }
+        }
+    }
+
+    /**
+     * Put back the triggers as they were once fired.
+     */
+    private void replayFired(List<OperableTrigger> fired) {
+        for (OperableTrigger trigger : fired) {
+            TriggerWrapper tw = triggersByKey.get(trigger.getKey());
+            if (tw == null) {
+                continue;
+            }
+            timeTriggers.remove(tw);
+            tw.trigger = trigger;
+            if (tw.state == TriggerWrapper.STATE_WAITING && trigger.getNextFireTime() != null) {
+                timeTriggers.add(tw);
+            }
+        }
+    }
+
+    /**
+     * Log the change, then apply it, unless it is made by another logged
+     * change, which logs them both. The record is appended before the
+     * change is applied, so that a change that cannot be logged is not
+     * made, and under the lock, so that the log has the changes in the
+     * order they were made. A change that fails once logged fails the same
+     * way when the log is replayed.
+     */
+    private <T> T log(Change<T> change) throws JobPersistenceException {
+        if (wal == null || (Thread.holdsLock(lock) && nesting > 0)) {
+            return change.apply();
+        }
+        byte[] record = record(change.op, change.args);
+        T result;
+        long lsn;
+        synchronized (lock) {
+            nesting++;
+            try {
+                lsn = append(record);
+                result = change.apply();
+            } finally {
+                nesting--;
+            }
+        }
+        commit(lsn);
+        return result;
+    }
+
+    /**
+     * {@link #log(Change)} a change whose method declares no checked
+     * exception: a failure to log it can only be unchecked.
+     */
+    private <T> T logUnchecked(Change<T> change) {
+        try {
+            return log(change);
+        } catch (JobPersistenceException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append a record, starting the next segment of the log if the current
+     * one is full. Called under the lock.
+     */
+    private long append(byte[] record) throws JobPersistenceException {
+        final WriteAheadLog log = wal;
+        long lsn = log.append(record);
+        if (lsn >= 0) {
+            return lsn;
+        }
+        // the snapshot is taken before the change being logged is applied:
+        // it is the first record of the next segment
+        final Snapshot snapshot = capture(0);
+        final long generation = log.getGeneration() + 1;
+        try {
+            log.open(generation, record.length);
+        } catch (IOException e) {
+            throw new JobPersistenceException("Could not start the log segment " + log.logFile(generation), e);
+        }
+        lsn = log.append(record);
+        snapshotWriter.execute(new Runnable() {
+            public void run() {
+                try {
+                    writeSnapshot(generation, snapshot);
+                } catch (IOException e) {
+                    getLog().error("Could not write the snapshot " + log.snapshotFile(generation)
+                            + "; the log segments before it are kept.", e);
+                }
+            }
+        });
+        return lsn;
+    }
+
+    private void commit(long lsn) throws JobPersistenceException {
+        try {
+            wal.commit(lsn);
+        } catch (IOException e) {
+            throw new JobPersistenceException("Could not force the log to disk: " + e, e);
+        }
+    }
+
+    /**
+     * The content of the store. Called under the lock; the objects are
+     * serialized later.
+     */
+    private Snapshot capture(int skip) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.skip = skip;
+        snapshot.calendars = new HashMap<String, Calendar>(calendarsByName);
+        snapshot.pausedTriggerGroups = new HashSet<String>(pausedTriggerGroups);
+        snapshot.pausedJobGroups = new HashSet<String>(pausedJobGroups);
+        for (JobWrapper jw : jobsByKey.values()) {
+            snapshot.jobs.add(jw.jobDetail);
+        }
+        for (TriggerWrapper tw : triggersByKey.values()) {
+            // the stored triggers change as they fire
+            snapshot.triggers.add((OperableTrigger) tw.trigger.clone());
+            snapshot.states.add(durableState(tw.state));
+        }
+        return snapshot;
+    }
+
+    /**
+     * The state a trigger is in after a restart.
+     */
+    private static int durableState(int state) {
+        switch (state) {
+            case TriggerWrapper.STATE_PAUSED:
+            case TriggerWrapper.STATE_PAUSED_BLOCKED:
+                return TriggerWrapper.STATE_PAUSED;
+            case TriggerWrapper.STATE_COMPLETE:
+                return TriggerWrapper.STATE_COMPLETE;
+            case TriggerWrapper.STATE_ERROR:
+                return TriggerWrapper.STATE_ERROR;
+            default:
+                return TriggerWrapper.STATE_WAITING;
+        }
+    }
+
+    private void restore(Snapshot snapshot) throws JobPersistenceException {
+        synchronized (lock) {
+            for (Map.Entry<String, Calendar> entry : snapshot.calendars.entrySet()) {
+                super.storeCalendar(entry.getKey(), entry.getValue(), true, false);
+            }
+            pausedTriggerGroups.addAll(snapshot.pausedTriggerGroups);
+            pausedJobGroups.addAll(snapshot.pausedJobGroups);
+            for (JobDetail job : snapshot.jobs) {
+                super.storeJob(job, true);
+            }
+            for (int i = 0; i < snapshot.triggers.size(); i++) {
+                OperableTrigger trigger = snapshot.triggers.get(i);
+                int state = snapshot.states.get(i);
+                super.storeTrigger(trigger, true);
+                TriggerWrapper tw = triggersByKey.get(trigger.getKey());
+                if (tw.state != state) {
+                    timeTriggers.remove(tw);
+                    tw.state = state;
+                    if (state == TriggerWrapper.STATE_WAITING) {
+                        timeTriggers.add(tw);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the snapshot of the given generation, then delete the older
+     * snapshots and segments of the log.
+     */
+    private void writeSnapshot(long generation, Snapshot snapshot) throws IOException {
+        WriteAheadLog log = wal;
+        File file = log.snapshotFile(generation);
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeInt(snapshot.skip);
+            out.writeObject(snapshot.calendars);
+            out.writeObject(snapshot.pausedTriggerGroups);
+            out.writeObject(snapshot.pausedJobGroups);
+            out.writeInt(snapshot.jobs.size());
+            for (int i = 0; i < snapshot.jobs.size(); i++) {
+                out.writeObject(snapshot.jobs.get(i));
+                if (i % 1000 == 999) {
+                    // or the stream keeps a handle to every object written
+                    out.reset();
+                }
+            }
+            out.writeInt(snapshot.triggers.size());
+            for (int i = 0; i < snapshot.triggers.size(); i++) {
+                out.writeObject(snapshot.triggers.get(i));
+                out.writeInt(snapshot.states.get(i));
+                if (i % 1000 == 999) {
+                    out.reset();
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.deleteBefore(generation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Snapshot readSnapshot(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            ObjectInputStream oin = objectInput(in);
+            int format = oin.readInt();
+            if (format != SNAPSHOT_FORMAT) {
+                throw new IOException("Unknown snapshot format " + format + ": " + file);
+            }
+            Snapshot snapshot = new Snapshot();
+            snapshot.skip = oin.readInt();
+            snapshot.calendars = (HashMap<String, Calendar>) oin.readObject();
+            snapshot.pausedTriggerGroups = (HashSet<String>) oin.readObject();
+            snapshot.pausedJobGroups = (HashSet<String>) oin.readObject();
+            int jobs = oin.readInt();
+            for (int i = 0; i < jobs; i++) {
+                snapshot.jobs.add((JobDetail) oin.readObject());
+            }
+            int triggers = oin.readInt();
+            for (int i = 0; i < triggers; i++) {
+                snapshot.triggers.add((OperableTrigger) oin.readObject());
+                snapshot.states.add(oin.readInt());
+            }
+            return snapshot;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read the snapshot " + file + ": " + e, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    // the changes, each applied by RAMJobStore, then logged
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        log(new Change<Void>(CLEAR_ALL_SCHEDULING_DATA) {
+            Void apply() throws JobPersistenceException {
+                DurableRAMJobStore.super.clearAllSchedulingData();
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void storeJobAndTrigger(final JobDetail newJob, final OperableTrigger newTrigger)
+            throws JobPersistenceException {
+        log(new Change<Void>(STORE_JOB_AND_TRIGGER, newJob, newTrigger) {
+            Void apply() throws JobPersistenceException {
+                DurableRAMJobStore.super.storeJobAndTrigger(newJob, newTrigger);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void storeJob(final JobDetail newJob, final boolean replaceExisting) throws ObjectAlreadyExistsException {
+        try {
+            log(new Change<Void>(STORE_JOB, newJob, replaceExisting) {
+                Void apply() throws JobPersistenceException {
+                    DurableRAMJobStore.super.storeJob(newJob, replaceExisting);
+                    return null;
+                }
+            });
+        } catch (ObjectAlreadyExistsException e) {
+            throw e;
+        } catch (JobPersistenceException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean removeJob(final JobKey jobKey) {
+        return logUnchecked(new Change<Boolean>(REMOVE_JOB, jobKey) {
+            Boolean apply() {
+                return DurableRAMJobStore.super.removeJob(jobKey);
+            }
+        });
+    }
+
+    @Override
+    public boolean removeJobs(final List<JobKey> jobKeys) throws JobPersistenceException {
+        return log(new Change<Boolean>(REMOVE_JOBS, new ArrayList<JobKey>(jobKeys)) {
+            Boolean apply() throws JobPersistenceException {
+                return DurableRAMJobStore.super.removeJobs(jobKeys);
+            }
+        });
+    }
+
+    @Override
+    public boolean removeTriggers(final List<TriggerKey> triggerKeys) throws JobPersistenceException {
+        return log(new Change<Boolean>(REMOVE_TRIGGERS, new ArrayList<TriggerKey>(triggerKeys)) {
+            Boolean apply() throws JobPersistenceException {
+                return DurableRAMJobStore.super.removeTriggers(triggerKeys);
+            }
+        });
+    }
+
+    @Override
+    public void storeJobsAndTriggers(final Map<JobDetail, Set<? extends Trigger>> triggersAndJobs,
+            final boolean replace) throws JobPersistenceException {
+        HashMap<JobDetail, Set<? extends Trigger>> copy = new HashMap<JobDetail, Set<? extends Trigger>>();
+        for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<Trigger>(entry.getValue()));
+        }
+        log(new Change<Void>(STORE_JOBS_AND_TRIGGERS, copy, replace) {
+            Void apply() throws JobPersistenceException {
+                DurableRAMJobStore.super.storeJobsAndTriggers(triggersAndJobs, replace);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void storeTrigger(final OperableTrigger newTrigger, final boolean replaceExisting)
+            throws JobPersistenceException {
+        log(new Change<Void>(STORE_TRIGGER, newTrigger, replaceExisting) {
+            Void apply() throws JobPersistenceException {
+                DurableRAMJobStore.super.storeTrigger(newTrigger, replaceExisting);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public boolean removeTrigger(final TriggerKey triggerKey) {
+        return logUnchecked(new Change<Boolean>(REMOVE_TRIGGER, triggerKey) {
+            Boolean apply() {
+                return DurableRAMJobStore.super.removeTrigger(triggerKey);
+            }
+        });
+    }
+
+    @Override
+    public boolean replaceTrigger(final TriggerKey triggerKey, final OperableTrigger newTrigger)
+            throws JobPersistenceException {
+        return log(new Change<Boolean>(REPLACE_TRIGGER, triggerKey, newTrigger) {
+            Boolean apply() throws JobPersistenceException {
+                return DurableRAMJobStore.super.replaceTrigger(triggerKey, newTrigger);
+            }
+        });
+    }
+
+    @Override
+    public void resetTriggerFromErrorState(final TriggerKey triggerKey) throws JobPersistenceException {
+        log(new Change<Void>(RESET_TRIGGER_FROM_ERROR_STATE, triggerKey) {
+            Void apply() throws JobPersistenceException {
+                DurableRAMJobStore.super.resetTriggerFromErrorState(triggerKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void storeCalendar(final String name, final Calendar calendar, final boolean replaceExisting,
+            final boolean updateTriggers) throws ObjectAlreadyExistsException {
+        try {
+            log(new Change<Void>(STORE_CALENDAR, name, calendar, replaceExisting, updateTriggers) {
+                Void apply() throws JobPersistenceException {
+                    DurableRAMJobStore.super.storeCalendar(name, calendar, replaceExisting, updateTriggers);
+                    return null;
+                }
+            });
+        } catch (ObjectAlreadyExistsException e) {
+            throw e;
+        } catch (JobPersistenceException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean removeCalendar(final String calName) throws JobPersistenceException {
+        return log(new Change<Boolean>(REMOVE_CALENDAR, calName) {
+            Boolean apply() throws JobPersistenceException {
+                return DurableRAMJobStore.super.removeCalendar(calName);
+            }
+        });
+    }
+
+    @Override
+    public void pauseTrigger(final TriggerKey triggerKey) {
+        logUnchecked(new Change<Void>(PAUSE_TRIGGER, triggerKey) {
+            Void apply() {
+                DurableRAMJobStore.super.pauseTrigger(triggerKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<String> pauseTriggers(final GroupMatcher<TriggerKey> matcher) {
+        return logUnchecked(new Change<List<String>>(PAUSE_TRIGGERS, matcher) {
+            List<String> apply() {
+                return DurableRAMJobStore.super.pauseTriggers(matcher);
+            }
+        });
+    }
+
+    @Override
+    public void pauseJob(final JobKey jobKey) {
+        logUnchecked(new Change<Void>(PAUSE_JOB, jobKey) {
+            Void apply() {
+                DurableRAMJobStore.super.pauseJob(jobKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<String> pauseJobs(final GroupMatcher<JobKey> matcher) {
+        return logUnchecked(new Change<List<String>>(PAUSE_JOBS, matcher) {
+            List<String> apply() {
+                return DurableRAMJobStore.super.pauseJobs(matcher);
+            }
+        });
+    }
+
+    @Override
+    public void resumeTrigger(final TriggerKey triggerKey) {
+        logUnchecked(new Change<Void>(RESUME_TRIGGER, triggerKey) {
+            Void apply() {
+                DurableRAMJobStore.super.resumeTrigger(triggerKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<String> resumeTriggers(final GroupMatcher<TriggerKey> matcher) {
+        return logUnchecked(new Change<List<String>>(RESUME_TRIGGERS, matcher) {
+            List<String> apply() {
+                return DurableRAMJobStore.super.resumeTriggers(matcher);
+            }
+        });
+    }
+
+    @Override
+    public void resumeJob(final JobKey jobKey) {
+        logUnchecked(new Change<Void>(RESUME_JOB, jobKey) {
+            Void apply() {
+                DurableRAMJobStore.super.resumeJob(jobKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Collection<String> resumeJobs(final GroupMatcher<JobKey> matcher) {
+        return logUnchecked(new Change<Collection<String>>(RESUME_JOBS, matcher) {
+            Collection<String> apply() {
+                return DurableRAMJobStore.super.resumeJobs(matcher);
+            }
+        });
+    }
+
+    @Override
+    public void pauseAll() {
+        logUnchecked(new Change<Void>(PAUSE_ALL) {
+            Void apply() {
+                DurableRAMJobStore.super.pauseAll();
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void resumeAll() {
+        logUnchecked(new Change<Void>(RESUME_ALL) {
+            Void apply() {
+                DurableRAMJobStore.super.resumeAll();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Logs the fired triggers as they are once fired, serialized under the
+     * lock, as they change on the next fire.
+     */
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) {
+        List<TriggerFiredResult> results;
+        long lsn = -1;
+        synchronized (lock) {
+            results = super.triggersFired(firedTriggers);
+            if (wal != null && nesting == 0 && !results.isEmpty()) {
+                ArrayList<OperableTrigger> fired = new ArrayList<OperableTrigger>(results.size());
+                for (TriggerFiredResult result : results) {
+                    TriggerWrapper tw = triggersByKey.get(result.getTriggerFiredBundle().getTrigger().getKey());
+                    if (tw != null) {
+                        fired.add(tw.trigger);
+                    }
+                }
+                try {
+                    lsn = append(record(TRIGGERS_FIRED, fired));
+                } catch (JobPersistenceException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        }
+        if (lsn >= 0) {
+            try {
+                commit(lsn);
+            } catch (JobPersistenceException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void triggeredJobComplete(final OperableTrigger trigger, final JobDetail jobDetail,
+            final CompletedExecutionInstruction triggerInstCode) {
+        JobDataMap data = jobDetail.getJobDataMap();
+        boolean persistData = jobDetail.isPersistJobDataAfterExecution() && (data == null || data.isDirty());
+        if (!persistData && triggerInstCode == CompletedExecutionInstruction.NOOP) {
+            // only unblocks the triggers of the job, which is not kept
+            super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+            return;
+        }
+        logUnchecked(new Change<Void>(TRIGGERED_JOB_COMPLETE, trigger, jobDetail, triggerInstCode) {
+            Void apply() {
+                DurableRAMJobStore.super.triggeredJobComplete(trigger, jobDetail, triggerInstCode);
+                return null;
+            }
+        });
+    }
+}
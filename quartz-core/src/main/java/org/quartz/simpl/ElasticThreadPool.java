@@ -0,0 +1,570 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A <code>{@link org.quartz.spi.ThreadPool}</code> that grows on demand from
+ * <code>coreThreadCount</code> up to <code>threadCount</code> threads, and
+ * retires the threads beyond the core ones once they have been idle for
+ * <code>keepAliveMillis</code>.
+ * </p>
+ *
+ * <p>
+ * Unlike <code>{@link SimpleThreadPool}</code> there is no pool wide monitor:
+ * the number of busy threads is an atomic counter, idle threads wait on a
+ * lock-free stack and are handed their next <code>Runnable</code> directly,
+ * and the threads blocked in <code>{@link #runInThread(Runnable)}</code> or
+ * <code>{@link #blockForAvailableThreads()}</code> are unparked as soon as a
+ * thread becomes available, instead of polling every 500ms.
+ * </p>
+ *
+ * <p>
+ * The idle threads are reused last-in first-out, so that under a light load
+ * the same few threads do all the work and the others get to retire.
+ * </p>
+ *
+ * <p>
+ * 可伸缩的无锁线程池：按需在 coreThreadCount 与 threadCount 之间增减线程
+ * </p>
+ *
+ * @see SimpleThreadPool
+ */
+public class ElasticThreadPool implements ThreadPool {
+
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int RETIRED = 2;
+
+    private int count = -1;
+
+    private int coreCount = 1;
+
+    private long keepAliveMillis = 60000L;
+
+    private int prio = Thread.NORM_PRIORITY;
+
+    private boolean inheritLoader = false;
+
+    private boolean inheritGroup = true;
+
+    private boolean makeThreadsDaemons = false;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private ThreadGroup threadGroup;
+
+    private volatile boolean isShutdown = false;
+
+    private volatile boolean initialized = false;
+
+    /** Threads running a <code>Runnable</code>, or about to. */
+    private ThreadSlots slots;
+
+    private ClassLoader initializerClassLoader;
+
+    /** Live pool threads, busy or idle. */
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final AtomicInteger threadSequence = new AtomicInteger();
+
+    private final ConcurrentLinkedDeque<WorkerThread> idleWorkers = new ConcurrentLinkedDeque<WorkerThread>();
+
+    private final Set<Thread> threads = ConcurrentHashMap.<Thread>newKeySet();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * <p>
+     * Create a new (unconfigured) <code>ElasticThreadPool</code>.
+     * </p>
+     *
+     * @see #setThreadCount(int)
+     * @see #setCoreThreadCount(int)
+     */
+    public ElasticThreadPool() {
+    }
+
+    /**
+     * <p>
+     * Create a new <code>ElasticThreadPool</code> of at most the given number
+     * of <code>Thread</code>s, keeping at least <code>coreThreadCount</code>
+     * of them alive.
+     * </p>
+     */
+    public ElasticThreadPool(int coreThreadCount, int threadCount, int threadPriority) {
+        setCoreThreadCount(coreThreadCount);
+        setThreadCount(threadCount);
+        setThreadPriority(threadPriority);
+    }
+
+    public Logger getLog() {
+        return log;
+    }
+
+    /**
+     * <p>
+     * The maximum number of threads, which is what the scheduler and the
+     * job stores size themselves for.
+     * </p>
+     */
+    @Override
+    public int getPoolSize() {
+        return getThreadCount();
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of worker threads in the pool - has no effect
+     * after <code>initialize()</code> has been called.
+     * </p>
+     */
+    public void setThreadCount(int count) {
+        this.count = count;
+    }
+
+    public int getThreadCount() {
+        return count;
+    }
+
+    /**
+     * <p>
+     * Set the number of worker threads started by <code>initialize()</code>
+     * and never retired - has no effect after <code>initialize()</code> has
+     * been called.
+     * </p>
+     */
+    public void setCoreThreadCount(int coreCount) {
+        this.coreCount = coreCount;
+    }
+
+    public int getCoreThreadCount() {
+        return coreCount;
+    }
+
+    /**
+     * <p>
+     * Set how long a worker thread beyond the core ones may stay idle before
+     * it ends.
+     * </p>
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public void setThreadPriority(int prio) {
+        this.prio = prio;
+    }
+
+    public int getThreadPriority() {
+        return prio;
+    }
+
+    public void setThreadNamePrefix(String prfx) {
+        this.threadNamePrefix = prfx;
+    }
+
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    public boolean isThreadsInheritContextClassLoaderOfInitializingThread() {
+        return inheritLoader;
+    }
+
+    public void setThreadsInheritContextClassLoaderOfInitializingThread(
+            boolean inheritLoader) {
+        this.inheritLoader = inheritLoader;
+    }
+
+    public boolean isThreadsInheritGroupOfInitializingThread() {
+        return inheritGroup;
+    }
+
+    public void setThreadsInheritGroupOfInitializingThread(
+            boolean inheritGroup) {
+        this.inheritGroup = inheritGroup;
+    }
+
+    public boolean isMakeThreadsDaemons() {
+        return makeThreadsDaemons;
+    }
+
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    /**
+     * <p>
+     * The number of worker threads currently alive.
+     * </p>
+     */
+    public int getCurrentThreadCount() {
+        return threadCount.get();
+    }
+
+    /**
+     * <p>
+     * The number of worker threads currently running a <code>Runnable</code>.
+     * </p>
+     */
+    public int getBusyThreadCount() {
+        return slots == null ? 0 : slots.getBusyCount();
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        schedulerInstanceName = schedName;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (initialized) {
+            return;
+        }
+        if (count <= 0) {
+            throw new SchedulerConfigException(
+                    "Thread count must be > 0");
+        }
+        if (coreCount < 0 || coreCount > count) {
+            throw new SchedulerConfigException(
+                    "Core thread count must be >= 0 and <= thread count");
+        }
+        if (keepAliveMillis <= 0) {
+            throw new SchedulerConfigException(
+                    "Keep alive time must be > 0");
+        }
+        if (prio <= 0 || prio > 9) {
+            throw new SchedulerConfigException(
+                    "Thread priority must be > 0 and <= 9");
+        }
+        if (isThreadsInheritGroupOfInitializingThread()) {
+            threadGroup = Thread.currentThread().getThreadGroup();
+        } else {
+            // follow the threadGroup tree to the root thread group.
+            threadGroup = Thread.currentThread().getThreadGroup();
+            ThreadGroup parent = threadGroup;
+            while (!parent.getName().equals("main")) {
+                threadGroup = parent;
+                parent = threadGroup.getParent();
+            }
+            threadGroup = new ThreadGroup(parent, schedulerInstanceName + "-ElasticThreadPool");
+            if (isMakeThreadsDaemons()) {
+                threadGroup.setDaemon(true);
+            }
+        }
+        if (isThreadsInheritContextClassLoaderOfInitializingThread()) {
+            getLog().info(
+                    "Job execution threads will use class loader of thread: "
+                            + Thread.currentThread().getName());
+            initializerClassLoader = Thread.currentThread().getContextClassLoader();
+        }
+        slots = new ThreadSlots(count);
+        initialized = true;
+
+        // start the core threads, idle
+        for (int i = 0; i < coreCount; i++) {
+            threadCount.incrementAndGet();
+            startWorker(null);
+        }
+    }
+
+    /**
+     * <p>
+     * Run the given <code>Runnable</code> on an idle thread, or on a new one
+     * while there are fewer than <code>threadCount</code>, blocking until one
+     * of the busy threads is done otherwise. If the pool is shut down, the
+     * <code>Runnable</code> is executed in a new additional thread.
+     * </p>
+     */
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+        if (!slots.acquire()) {
+            // If the thread pool is going down, execute the Runnable
+            // within a new additional thread (no thread from the pool).
+            Thread t = new Thread(threadGroup, runnable, "WorkerThread-LastJob");
+            t.setPriority(prio);
+            t.setDaemon(isMakeThreadsDaemons());
+            threads.add(t);
+            t.start();
+            return true;
+        }
+
+        WorkerThread wt;
+        while ((wt = idleWorkers.pollFirst()) != null) {
+            if (wt.assign(runnable)) {
+                return true;
+            }
+            // it retired in the meantime, try the next one
+        }
+
+        // no idle thread: as busy threads put themselves back on the idle
+        // stack before releasing their slot, there is room for a new one
+        threadCount.incrementAndGet();
+        startWorker(runnable);
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        return slots.awaitAvailable();
+    }
+
+    private void startWorker(Runnable firstTask) {
+        String threadPrefix = getThreadNamePrefix();
+        if (threadPrefix == null) {
+            threadPrefix = schedulerInstanceName + "_Worker";
+        }
+        WorkerThread wt = new WorkerThread(threadGroup,
+                threadPrefix + "-" + threadSequence.incrementAndGet(), firstTask);
+        if (isThreadsInheritContextClassLoaderOfInitializingThread()) {
+            wt.setContextClassLoader(initializerClassLoader);
+        }
+        threads.add(wt);
+        if (firstTask == null) {
+            // a core thread: idle until it gets its first Runnable
+            idleWorkers.addFirst(wt);
+        }
+        wt.start();
+    }
+
+    /**
+     * <p>
+     * Terminate any worker threads in this thread pool.
+     * </p>
+     *
+     * <p>
+     * Jobs currently in progress will complete.
+     * </p>
+     */
+    public void shutdown() {
+        shutdown(true);
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        getLog().debug("Shutting down threadpool...");
+        isShutdown = true;
+
+        // idle threads end, busy ones after their current Runnable, and the
+        // threads waiting for a slot give up
+        for (Thread t : threads) {
+            LockSupport.unpark(t);
+        }
+        if (slots != null) {
+            slots.close();
+        }
+
+        if (waitForJobsToComplete) {
+            boolean interrupted = false;
+            try {
+                for (Thread t : threads) {
+                    while (t.isAlive()) {
+                        try {
+                            getLog().debug(
+                                    "Waiting for thread " + t.getName()
+                                            + " to shut down");
+                            // note: with waiting infinite time the
+                            // application may appear to 'hang'.
+                            t.join();
+                        } catch (InterruptedException ignore) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            getLog().debug("No executing jobs remaining, all threads stopped.");
+        }
+        getLog().debug("Shutdown of threadpool complete.");
+    }
+
+    /*
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     *
+     * WorkerThread Class.
+     *
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    /**
+     * <p>
+     * A worker runs its <code>Runnable</code>, then parks on the idle stack
+     * until it is handed the next one, or retires.
+     * </p>
+     */
+    class WorkerThread extends Thread {
+
+        /** IDLE, BUSY once handed a Runnable, RETIRED once it no longer takes any. */
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        private volatile Runnable runnable;
+
+        WorkerThread(ThreadGroup threadGroup, String name, Runnable firstTask) {
+            super(threadGroup, name);
+            this.runnable = firstTask;
+            if (firstTask != null) {
+                state.set(BUSY);
+            }
+            setPriority(prio);
+            setDaemon(isMakeThreadsDaemons());
+        }
+
+        /**
+         * Hand this idle worker a <code>Runnable</code>; false if it retired
+         * first.
+         */
+        boolean assign(Runnable newRunnable) {
+            runnable = newRunnable;
+            if (state.compareAndSet(IDLE, BUSY)) {
+                LockSupport.unpark(this);
+                return true;
+            }
+            runnable = null;
+            return false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable r = state.get() == BUSY ? runnable : awaitRunnable();
+                while (r != null) {
+                    execute(r);
+                    runnable = null;
+                    if (isShutdown) {
+                        state.set(RETIRED);
+                        threadCount.decrementAndGet();
+                        slots.release();
+                        break;
+                    }
+                    // back on the idle stack before the slot is released,
+                    // so that runInThread finds this thread rather than
+                    // starting another one
+                    state.set(IDLE);
+                    idleWorkers.addFirst(this);
+                    slots.release();
+                    r = awaitRunnable();
+                }
+            } finally {
+                threads.remove(this);
+            }
+            try {
+                getLog().debug("WorkerThread is shut down.");
+            } catch (Exception e) {
+                // ignore to help with a tomcat glitch
+            }
+        }
+
+        /**
+         * Park until handed a <code>Runnable</code>; null once retired.
+         */
+        private Runnable awaitRunnable() {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+            while (true) {
+                if (state.get() == BUSY) {
+                    return runnable;
+                }
+                if (isShutdown) {
+                    if (retire()) {
+                        return null;
+                    }
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (threadCount.get() > coreCount && retire()) {
+                        return null;
+                    }
+                    // a core thread, or one that just got work: start over
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+                    continue;
+                }
+                LockSupport.parkNanos(this, remaining);
+                // interrupts are not how workers are told anything
+                Thread.interrupted();
+            }
+        }
+
+        private boolean retire() {
+            if (!isShutdown) {
+                // never go below the core size, even with several retiring at once
+                int n;
+                do {
+                    n = threadCount.get();
+                    if (n <= coreCount) {
+                        return false;
+                    }
+                } while (!threadCount.compareAndSet(n, n - 1));
+                if (!state.compareAndSet(IDLE, RETIRED)) {
+                    threadCount.incrementAndGet();
+                    return false;
+                }
+            } else if (state.compareAndSet(IDLE, RETIRED)) {
+                threadCount.decrementAndGet();
+            } else {
+                return false;
+            }
+            idleWorkers.removeFirstOccurrence(this);
+            return true;
+        }
+
+        private void execute(Runnable r) {
+            try {
+                r.run();
+            } catch (Throwable exceptionInRunnable) {
+                try {
+                    getLog().error("Error while executing the Runnable: ",
+                            exceptionInRunnable);
+                } catch (Exception e) {
+                    // ignore to help with a tomcat glitch
+                }
+            } finally {
+                // repair the thread in case the runnable mucked it up...
+                if (getPriority() != prio) {
+                    setPriority(prio);
+                }
+            }
+        }
+    }
+}
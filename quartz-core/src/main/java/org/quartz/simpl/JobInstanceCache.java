@@ -0,0 +1,169 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ReusableJobInstance;
+import org.quartz.ReusableJobInstance.Scope;
+
+/**
+ * The job instances <code>SimpleJobFactory</code> keeps for the classes
+ * marked with <code>{@link ReusableJobInstance}</code>.
+ *
+ * <p>
+ * An instance is kept with the definition of the job it was created for,
+ * and is only handed out again for the same definition: when the job is
+ * replaced (<code>storeJob(..., true)</code>) by one with another class,
+ * description or <code>JobDataMap</code>, whether through this scheduler,
+ * another node of the cluster or the job store itself, the next firing gets
+ * a new instance. At most <code>maxInstances</code> instances are kept.
+ * </p>
+ *
+ * <p>
+ * The instances of a class that is not thread-safe are only kept for the
+ * jobs that disallow concurrent execution, one per job: the job store then
+ * never has two of its executions running at once, whichever the threads.
+ * </p>
+ */
+final class JobInstanceCache {
+
+    private static final ClassValue<ReusableJobInstance> REUSE = new ClassValue<ReusableJobInstance>() {
+        @Override
+        protected ReusableJobInstance computeValue(Class<?> type) {
+            return type.getAnnotation(ReusableJobInstance.class);
+        }
+    };
+
+    private final int maxInstances;
+
+    private final ConcurrentHashMap<Object, Entry> instances = new ConcurrentHashMap<Object, Entry>();
+
+    JobInstanceCache(int maxInstances) {
+        this.maxInstances = maxInstances;
+    }
+
+    /**
+     * How the instances of the class may be reused, or <code>null</code> if
+     * they may not.
+     */
+    static ReusableJobInstance reuseOf(Class<?> jobClass) {
+        return REUSE.get(jobClass);
+    }
+
+    /**
+     * Whether an instance may be kept for the given job: the executions of
+     * the job may share it.
+     */
+    static boolean isReusable(JobDetail jobDetail, ReusableJobInstance reuse) {
+        return reuse.threadSafe() || (reuse.scope() == Scope.JOB && jobDetail.isConcurrentExectionDisallowed());
+    }
+
+    /**
+     * The instance kept for the given job, if it is still the job it was
+     * created for, or <code>null</code>.
+     */
+    Job get(JobDetail jobDetail, ReusableJobInstance reuse) {
+        Entry entry = instances.get(keyOf(jobDetail, reuse));
+        if (entry == null || !entry.isFor(jobDetail, reuse.scope())) {
+            return null;
+        }
+        return entry.job;
+    }
+
+    void put(JobDetail jobDetail, ReusableJobInstance reuse, Job job) {
+        Object key = keyOf(jobDetail, reuse);
+        // an entry for a replaced job is overwritten, new ones only up to the limit
+        if (instances.size() < maxInstances || instances.containsKey(key)) {
+            instances.put(key, new Entry(jobDetail, reuse.scope(), job));
+        }
+    }
+
+    /**
+     * Drop the instance kept for the given job, if any.
+     */
+    void remove(JobKey jobKey) {
+        instances.remove(jobKey);
+    }
+
+    /**
+     * Drop the instance kept for the given job if the job is not durable,
+     * so that it may be gone with its last trigger.
+     */
+    void removeIfNotDurable(JobKey jobKey) {
+        Entry entry = instances.get(jobKey);
+        if (entry != null && !entry.durable) {
+            instances.remove(jobKey, entry);
+        }
+    }
+
+    /** The number of instances kept. */
+    int size() {
+        return instances.size();
+    }
+
+    void clear() {
+        instances.clear();
+    }
+
+    private static Object keyOf(JobDetail jobDetail, ReusableJobInstance reuse) {
+        return reuse.scope() == Scope.CLASS ? jobDetail.getJobClass() : jobDetail.getKey();
+    }
+
+    private static final class Entry {
+
+        final Job job;
+
+        final Class<?> jobClass;
+
+        final boolean durable;
+
+        final String description;
+
+        final Map<String, Object> jobData;
+
+        Entry(JobDetail jobDetail, Scope scope, Job job) {
+            this.job = job;
+            this.jobClass = jobDetail.getJobClass();
+            this.durable = jobDetail.isDurable();
+            if (scope == Scope.JOB) {
+                this.description = jobDetail.getDescription();
+                this.jobData = new HashMap<String, Object>(jobDetail.getJobDataMap().getReadOnlyMap());
+            } else {
+                this.description = null;
+                this.jobData = null;
+            }
+        }
+        boolean isFor(JobDetail jobDetail, Scope scope) {
+            if (jobClass != jobDetail.getJobClass()) {
+                return false;
+            }
+            if (scope == Scope.CLASS) {
+                return true;
+            }
+            String otherDescription = jobDetail.getDescription();
+            if (description == null ? otherDescription != null : !description.equals(otherDescription)) {
+                return false;
+            }
+            return jobData.equals(jobDetail.getJobDataMap().getReadOnlyMap());
+        }
+    }
+}
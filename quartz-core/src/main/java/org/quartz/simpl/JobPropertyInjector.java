@@ -0,0 +1,263 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The bean property setters of a job class, as
+ * <code>PropertySettingJobFactory</code> uses them: introspected once per
+ * class (the injectors are kept in a <code>ClassValue</code>), with the
+ * setters bound as <code>MethodHandle</code>s and the conversion of the
+ * <code>JobDataMap</code> values to their parameter types worked out up
+ * front.
+ *
+ * <p>
+ * As before, the entry <code>"fooBar"</code> goes to the write method named
+ * <code>setFooBar</code>, whatever its property is called; the setter of
+ * each key is looked up once and then remembered.
+ * </p>
+ *
+ * 每个 Job 类的属性注入器, 缓存 setter 的 MethodHandle 与类型转换
+ */
+final class JobPropertyInjector {
+
+    private static final ClassValue<JobPropertyInjector> INJECTORS = new ClassValue<JobPropertyInjector>() {
+        @Override
+        protected JobPropertyInjector computeValue(Class<?> type) {
+            return new JobPropertyInjector(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** How many keys are remembered, in case the keys are always new. */
+    private static final int MAX_REMEMBERED_KEYS = 1024;
+
+    /** Remembers the keys that have no setter. */
+    private static final Setter NO_SETTER = new Setter(null, null, null);
+
+    private final IntrospectionException introspectionFailure;
+
+    private final Map<String, Setter> settersByMethodName;
+
+    private final ConcurrentHashMap<String, Setter> settersByKey = new ConcurrentHashMap<String, Setter>();
+
+    private JobPropertyInjector(Class<?> type) {
+        Map<String, Setter> setters = new HashMap<String, Setter>();
+        IntrospectionException failure = null;
+        try {
+            PropertyDescriptor[] propDescs = Introspector.getBeanInfo(type).getPropertyDescriptors();
+            for (PropertyDescriptor propDesc : propDescs) {
+                Method writeMethod = propDesc.getWriteMethod();
+                if (writeMethod == null || writeMethod.getParameterTypes().length != 1) {
+                    continue;
+                }
+                // the first one, as the linear search used to find
+                if (!setters.containsKey(writeMethod.getName())) {
+                    setters.put(writeMethod.getName(), new Setter(writeMethod, bind(writeMethod),
+                            Converter.forType(writeMethod.getParameterTypes()[0])));
+                }
+            }
+        } catch (IntrospectionException e) {
+            failure = e;
+        }
+        this.introspectionFailure = failure;
+        this.settersByMethodName = setters;
+    }
+
+    static JobPropertyInjector forClass(Class<?> type) {
+        return INJECTORS.get(type);
+    }
+
+    /**
+     * Why the class could not be introspected, or <code>null</code> if it
+     * was.
+     */
+    IntrospectionException getIntrospectionFailure() {
+        return introspectionFailure;
+    }
+
+    /**
+     * The setter for the given <code>JobDataMap</code> key, or
+     * <code>null</code> if there is none.
+     */
+    Setter getSetter(String key) {
+        Setter setter = settersByKey.get(key);
+        if (setter == null) {
+            String methName = "set" + key.substring(0, 1).toUpperCase(Locale.US) + key.substring(1);
+            setter = settersByMethodName.get(methName);
+            if (setter == null) {
+                setter = NO_SETTER;
+            }
+            if (settersByKey.size() < MAX_REMEMBERED_KEYS) {
+                settersByKey.put(key, setter);
+            }
+        }
+        return setter == NO_SETTER ? null : setter;
+    }
+
+    /**
+     * A handle taking (Object, Object), or <code>null</code> if the method
+     * cannot be accessed from here; it is then called reflectively, and
+     * fails as it always did.
+     */
+    private static MethodHandle bind(Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A bean property setter, with the conversion of values to its
+     * parameter type.
+     */
+    static final class Setter {
+
+        private final Method method;
+
+        private final MethodHandle handle;
+
+        private final Converter converter;
+
+        Setter(Method method, MethodHandle handle, Converter converter) {
+            this.method = method;
+            this.handle = handle;
+            this.converter = converter;
+        }
+
+        Class<?> getParameterType() {
+            return method.getParameterTypes()[0];
+        }
+
+        boolean isPrimitive() {
+            return converter.primitive;
+        }
+
+        /**
+         * The value converted to the parameter type, or <code>null</code> if
+         * it cannot be.
+         *
+         * @throws NumberFormatException if a string does not parse as the
+         * number the parameter is
+         */
+        Object convert(Object value) {
+            return value == null ? null : converter.convert(value);
+        }
+
+        void set(Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+            if (handle == null) {
+                method.invoke(target, value);
+                return;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    /**
+     * Converts a <code>JobDataMap</code> value to a parameter type: strings
+     * are parsed for primitives, and anything else must already be of the
+     * type.
+     */
+    abstract static class Converter {
+
+        private static final Map<Class<?>, Converter> PRIMITIVES = new HashMap<Class<?>, Converter>();
+
+        static {
+            PRIMITIVES.put(int.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Integer.valueOf((String) o) : o instanceof Integer ? o : null;
+                }
+            });
+            PRIMITIVES.put(long.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Long.valueOf((String) o) : o instanceof Long ? o : null;
+                }
+            });
+            PRIMITIVES.put(float.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Float.valueOf((String) o) : o instanceof Float ? o : null;
+                }
+            });
+            PRIMITIVES.put(double.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Double.valueOf((String) o) : o instanceof Double ? o : null;
+                }
+            });
+            PRIMITIVES.put(boolean.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Boolean.valueOf((String) o) : o instanceof Boolean ? o : null;
+                }
+            });
+            PRIMITIVES.put(byte.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Byte.valueOf((String) o) : o instanceof Byte ? o : null;
+                }
+            });
+            PRIMITIVES.put(short.class, new Converter(true) {
+                Object convert(Object o) {
+                    return o instanceof String ? Short.valueOf((String) o) : o instanceof Short ? o : null;
+                }
+            });
+            PRIMITIVES.put(char.class, new Converter(true) {
+                Object convert(Object o) {
+                    if (o instanceof String) {
+                        String str = (String) o;
+                        return str.length() == 1 ? Character.valueOf(str.charAt(0)) : null;
+                    }
+                    return o instanceof Character ? o : null;
+                }
+            });
+        }
+
+        final boolean primitive;
+
+        Converter(boolean primitive) {
+            this.primitive = primitive;
+        }
+
+        abstract Object convert(Object value);
+
+        static Converter forType(final Class<?> type) {
+            Converter converter = PRIMITIVES.get(type);
+            if (converter != null) {
+                return converter;
+            }
+            return new Converter(false) {
+                Object convert(Object o) {
+                    return type.isInstance(o) ? o : null;
+                }
+            };
+        }
+    }
+}
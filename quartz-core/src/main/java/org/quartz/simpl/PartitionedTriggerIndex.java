@@ -0,0 +1,150 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.quartz.utils.TriggerPartitions;
+
+/**
+ * A {@link TriggerIndex} made of one index per partition of the triggers
+ * (see {@link TriggerPartitions}), so that the scheduler thread of a
+ * partition finds its next trigger without going through those of the
+ * others.
+ *
+ * <p>
+ * <code>first()</code> still returns the first trigger of all partitions;
+ * the iteration goes through the partitions one after the other, so it is
+ * only in fire-time order within each.
+ * </p>
+ */
+class PartitionedTriggerIndex implements TriggerIndex {
+
+    private final TriggerIndex[] partitions;
+
+    private final Comparator<TriggerWrapper> comparator = new TriggerWrapperComparator();
+
+    PartitionedTriggerIndex(TriggerIndex[] partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * The given index if it already has that many partitions, else a new
+     * one holding the same triggers.
+     */
+    static PartitionedTriggerIndex partition(TriggerIndex index, int partitionCount,
+            boolean useTimingWheel, long timingWheelTickMillis) {
+        if (index instanceof PartitionedTriggerIndex
+                && ((PartitionedTriggerIndex) index).getPartitionCount() == partitionCount) {
+            return (PartitionedTriggerIndex) index;
+        }
+        TriggerIndex[] partitions = new TriggerIndex[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = useTimingWheel
+                    ? new TimingWheelTriggerIndex(timingWheelTickMillis) : new TreeSetTriggerIndex();
+        }
+        PartitionedTriggerIndex partitioned = new PartitionedTriggerIndex(partitions);
+        // a wrapper still threaded into the source wheel would not be re-added,
+        // so take each one out of the source first
+        List<TriggerWrapper> moved = new ArrayList<TriggerWrapper>(index.size());
+        for (TriggerWrapper tw : index) {
+            moved.add(tw);
+        }
+        for (TriggerWrapper tw : moved) {
+            index.remove(tw);
+            if (!partitioned.add(tw)) {
+                throw new IllegalStateException("Trigger '" + tw.key + "' could not be moved to its partition");
+            }
+        }
+        return partitioned;
+    }
+
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * The index of the given partition. Triggers should still be added to
+     * and removed from this index.
+     */
+    TriggerIndex getPartition(int partition) {
+        return partitions[partition];
+    }
+
+    private TriggerIndex partitionOf(TriggerWrapper tw) {
+        return partitions[TriggerPartitions.partitionOf(tw.key, partitions.length)];
+    }
+
+    public boolean add(TriggerWrapper tw) {
+        return partitionOf(tw).add(tw);
+    }
+
+    public boolean remove(TriggerWrapper tw) {
+        return partitionOf(tw).remove(tw);
+    }
+
+    public TriggerWrapper first(long noLaterThan) {
+        TriggerWrapper first = null;
+        for (TriggerIndex partition : partitions) {
+            TriggerWrapper tw = partition.first(noLaterThan);
+            if (tw != null && (first == null || comparator.compare(tw, first) < 0)) {
+                first = tw;
+            }
+        }
+        return first;
+    }
+
+    public TriggerWrapper peek() {
+        TriggerWrapper first = null;
+        for (TriggerIndex partition : partitions) {
+            TriggerWrapper tw = partition.peek();
+            if (tw != null && (first == null || comparator.compare(tw, first) < 0)) {
+                first = tw;
+            }
+        }
+        return first;
+    }
+
+    public int size() {
+        int size = 0;
+        for (TriggerIndex partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (TriggerIndex partition : partitions) {
+            if (!partition.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Iterator<TriggerWrapper> iterator() {
+        List<TriggerWrapper> all = new ArrayList<TriggerWrapper>(size());
+        for (TriggerIndex partition : partitions) {
+            for (TriggerWrapper tw : partition) {
+                all.add(tw);
+            }
+        }
+        return all.iterator();
+    }
+}
@@ -16,13 +16,8 @@
  */
 package org.quartz.simpl;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Iterator;
-import java.util.Locale;
 import java.util.Map;
 
 import org.quartz.Job;
@@ -66,119 +61,79 @@ public class PropertySettingJobFactory extends SimpleJobFactory {
     @Override
     public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException {
 
-        Job job = super.newJob(bundle, scheduler);
-        
         JobDataMap jobDataMap = new JobDataMap();
         jobDataMap.putAll(scheduler.getContext());
         jobDataMap.putAll(bundle.getJobDetail().getJobDataMap());
         jobDataMap.putAll(bundle.getTrigger().getJobDataMap());
 
+        // a kept instance may be executing: setting its properties would change it under that execution
+        Class<?> jobClass = bundle.getJobDetail().getJobClass();
+        boolean reuseInstance = JobInstanceCache.reuseOf(jobClass) == null || !setsProperties(jobClass, jobDataMap);
+        Job job = newJob(bundle, scheduler, reuseInstance);
+
         setBeanProps(job, jobDataMap);
         
         return job;
     }
     
+    /**
+     * Whether <code>setBeanProps()</code> would set any property of an
+     * instance of the class from the given data.
+     */
+    private static boolean setsProperties(Class<?> jobClass, JobDataMap data) {
+        JobPropertyInjector injector = JobPropertyInjector.forClass(jobClass);
+        if (injector.getIntrospectionFailure() != null) {
+            return false;
+        }
+        for (Object key : data.getReadOnlyMap().keySet()) {
+            if (injector.getSetter((String) key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected void setBeanProps(Object obj, JobDataMap data) throws SchedulerException {
 
-        BeanInfo bi = null;
-        try {
-            bi = Introspector.getBeanInfo(obj.getClass());
-        } catch (IntrospectionException e) {
-            handleError("Unable to introspect Job class.", e);
+        // introspected once per class, see JobPropertyInjector
+        JobPropertyInjector injector = JobPropertyInjector.forClass(obj.getClass());
+        if (injector.getIntrospectionFailure() != null) {
+            handleError("Unable to introspect Job class.", injector.getIntrospectionFailure());
+            return;
         }
         
-        PropertyDescriptor[] propDescs = bi.getPropertyDescriptors();
-        
         // Get the wrapped entry set so don't have to incur overhead of wrapping for
         // dirty flag checking since this is read only access
-        for (Iterator<?> entryIter = data.getWrappedMap().entrySet().iterator(); entryIter.hasNext();) {
+        for (Iterator<?> entryIter = data.getReadOnlyMap().entrySet().iterator(); entryIter.hasNext();) {
             Map.Entry<?,?> entry = (Map.Entry<?,?>)entryIter.next();
             
             String name = (String)entry.getKey();
-            String c = name.substring(0, 1).toUpperCase(Locale.US);
-            String methName = "set" + c + name.substring(1);
         
-            java.lang.reflect.Method setMeth = getSetMethod(methName, propDescs);
+            JobPropertyInjector.Setter setter = injector.getSetter(name);
         
             Class<?> paramType = null;
             Object o = null;
             
             try {
-                if (setMeth == null) {
+                if (setter == null) {
                     handleError(
                         "No setter on Job class " + obj.getClass().getName() + 
                         " for property '" + name + "'");
                     continue;
                 }
                 
-                paramType = setMeth.getParameterTypes()[0];
+                paramType = setter.getParameterType();
                 o = entry.getValue();
                 
-                Object parm = null;
-                if (paramType.isPrimitive()) {
-                    if (o == null) {
-                        handleError(
-                            "Cannot set primitive property '" + name + 
-                            "' on Job class " + obj.getClass().getName() + 
-                            " to null.");
-                        continue;
-                    }
-
-                    if (paramType.equals(int.class)) {
-                        if (o instanceof String) {                            
-                            parm = Integer.valueOf((String)o);
-                        } else if (o instanceof Integer) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(long.class)) {
-                        if (o instanceof String) {
-                            parm = Long.valueOf((String)o);
-                        } else if (o instanceof Long) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(float.class)) {
-                        if (o instanceof String) {
-                            parm = Float.valueOf((String)o);
-                        } else if (o instanceof Float) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(double.class)) {
-                        if (o instanceof String) {
-                            parm = Double.valueOf((String)o);
-                        } else if (o instanceof Double) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(boolean.class)) {
-                        if (o instanceof String) {
-                            parm = Boolean.valueOf((String)o);
-                        } else if (o instanceof Boolean) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(byte.class)) {
-                        if (o instanceof String) {
-                            parm = Byte.valueOf((String)o);
-                        } else if (o instanceof Byte) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(short.class)) {
-                        if (o instanceof String) {
-                            parm = Short.valueOf((String)o);
-                        } else if (o instanceof Short) {
-                            parm = o;
-                        }
-                    } else if (paramType.equals(char.class)) {
-                        if (o instanceof String) {
-                            String str = (String)o;
-                            if (str.length() == 1) {
-                                parm = Character.valueOf(str.charAt(0));
-                            }
-                        } else if (o instanceof Character) {
-                            parm = o;
-                        }
-                    }
-                } else if ((o != null) && (paramType.isAssignableFrom(o.getClass()))) {
-                    parm = o;
+                if (o == null && setter.isPrimitive()) {
+                    handleError(
+                        "Cannot set primitive property '" + name + 
+                        "' on Job class " + obj.getClass().getName() + 
+                        " to null.");
+                    continue;
                 }
+
+                Object parm = setter.convert(o);
                 
                 // If the parameter wasn't originally null, but we didn't find a 
                 // matching parameter, then we are stuck.
@@ -191,7 +146,7 @@ public class PropertySettingJobFactory extends SimpleJobFactory {
                     continue;
                 }
                                 
-                setMeth.invoke(obj, new Object[]{ parm });
+                setter.set(obj, parm);
             } catch (NumberFormatException nfe) {
                 handleError(
                     "The setter on Job class " + obj.getClass().getName() + 
@@ -236,27 +191,6 @@ public class PropertySettingJobFactory extends SimpleJobFactory {
         }
     }
     
-    private java.lang.reflect.Method getSetMethod(String name,
-            PropertyDescriptor[] props) {
-        for (int i = 0; i < props.length; i++) {
-            java.lang.reflect.Method wMeth = props[i].getWriteMethod();
-        
-            if(wMeth == null) {
-                continue;
-            }
-            
-            if(wMeth.getParameterTypes().length != 1) {
-                continue;
-            }
-            
-            if (wMeth.getName().equals(name)) {
-                return wMeth;
-            }
-        }
-        
-        return null;
-    }
-
     /**
      * Whether the JobInstantiation should fail and throw and exception if
      * a key (name) and value (type) found in the JobDataMap does not 
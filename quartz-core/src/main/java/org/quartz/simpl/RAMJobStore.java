@@ -32,7 +32,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * - 访问非常快
  * - 数据非持久化
  */
-public class RAMJobStore implements JobStore {
+public class RAMJobStore implements PartitionedJobStore, NextFireTimeJobStore, PausedGroupsJobStore {
 
     protected HashMap<JobKey, JobWrapper> jobsByKey = new HashMap<JobKey, JobWrapper>(1000);
 
@@ -42,7 +42,7 @@ public class RAMJobStore implements JobStore {
 
     protected HashMap<String, HashMap<TriggerKey, TriggerWrapper>> triggersByGroup = new HashMap<String, HashMap<TriggerKey, TriggerWrapper>>(25);
 
-    protected TreeSet<TriggerWrapper> timeTriggers = new TreeSet<TriggerWrapper>(new TriggerWrapperComparator());
+    protected TriggerIndex timeTriggers = new TreeSetTriggerIndex();
 
     protected HashMap<String, Calendar> calendarsByName = new HashMap<String, Calendar>(25);
 
@@ -58,6 +58,10 @@ public class RAMJobStore implements JobStore {
 
     protected long misfireThreshold = 5000L;
 
+    protected boolean useTimingWheel = false;
+
+    protected long timingWheelTickMillis = 1L;
+
     protected SchedulerSignaler signaler;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -81,8 +85,12 @@ public class RAMJobStore implements JobStore {
      * </p>
      */
     @Override
-    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler) {
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler schedSignaler)
+            throws SchedulerConfigException {
         this.signaler = schedSignaler;
+        if (useTimingWheel) {
+            timeTriggers = new TimingWheelTriggerIndex(timingWheelTickMillis);
+        }
         getLog().info("RAMJobStore initialized.");
     }
 
@@ -120,6 +128,37 @@ public class RAMJobStore implements JobStore {
         this.misfireThreshold = misfireThreshold;
     }
 
+    public boolean isUseTimingWheel() {
+        return useTimingWheel;
+    }
+
+    /**
+     * Whether to index waiting triggers by fire time in a hierarchical timing
+     * wheel (O(1) insert and remove) instead of a <code>TreeSet</code>
+     * (O(log n)). Worth enabling for stores holding very many triggers. Must
+     * be set before the store is initialized.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void setUseTimingWheel(boolean useTimingWheel) {
+        this.useTimingWheel = useTimingWheel;
+    }
+
+    public long getTimingWheelTickMillis() {
+        return timingWheelTickMillis;
+    }
+
+    /**
+     * The granularity, in milliseconds, of the timing wheel's buckets. Only
+     * used when <code>useTimingWheel</code> is set; defaults to 1.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void setTimingWheelTickMillis(long timingWheelTickMillis) {
+        if (timingWheelTickMillis < 1) {
+            throw new IllegalArgumentException("Timing wheel tick must be larger than 0");
+        }
+        this.timingWheelTickMillis = timingWheelTickMillis;
+    }
+
     /**
      * <p>
      * Called by the QuartzScheduler to inform the <code>JobStore</code> that
@@ -771,6 +810,13 @@ public class RAMJobStore implements JobStore {
         }
     }
 
+    public long getNextFireTime() {
+        synchronized (lock) {
+            TriggerWrapper tw = timeTriggers.peek();
+            return tw == null ? 0 : tw.trigger.getNextFireTime().getTime();
+        }
+    }
+
     /**
      * <p>
      * Get the number of <code>{@link org.quartz.Calendar}</code> s that are
@@ -1370,27 +1416,42 @@ public class RAMJobStore implements JobStore {
      * @see #releaseAcquiredTrigger(OperableTrigger)
      */
     public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow) {
+        return acquireNextTriggers(noLaterThan, maxCount, timeWindow, 0, 1);
+    }
+
+    /**
+     * <p>
+     * Get a handle to the next triggers of the given partition to be fired,
+     * and mark them as 'reserved' by the calling scheduler thread. The
+     * fire-time index is split by partition the first time this is called
+     * with more than one.
+     * </p>
+     */
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow,
+            int partition, int partitionCount) {
         synchronized (lock) {
             List<OperableTrigger> result = new ArrayList<OperableTrigger>();
             Set<JobKey> acquiredJobKeysForNoConcurrentExec = new HashSet<JobKey>();
             Set<TriggerWrapper> excludedTriggers = new HashSet<TriggerWrapper>();
             long batchEnd = noLaterThan;
 
+            TriggerIndex candidates = timeTriggers;
+            if (partitionCount > 1) {
+                PartitionedTriggerIndex partitioned = PartitionedTriggerIndex.partition(
+                        timeTriggers, partitionCount, useTimingWheel, timingWheelTickMillis);
+                timeTriggers = partitioned;
+                candidates = partitioned.getPartition(partition);
+            }
+
             // return empty list if store has no triggers.
-            if (timeTriggers.size() == 0)
+            if (candidates.isEmpty())
                 return result;
 
             while (true) {
-                TriggerWrapper tw;
-
-                try {
-                    tw = timeTriggers.first();
-                    if (tw == null)
-                        break;
-                    timeTriggers.remove(tw);
-                } catch (java.util.NoSuchElementException nsee) {
+                TriggerWrapper tw = candidates.first(batchEnd);
+                if (tw == null)
                     break;
-                }
+                timeTriggers.remove(tw);
 
                 if (tw.trigger.getNextFireTime() == null) {
                     continue;
@@ -1433,8 +1494,8 @@ public class RAMJobStore implements JobStore {
             }
 
             // If we did excluded triggers to prevent ACQUIRE state due to DisallowConcurrentExecution, we need to add them back to store.
-            if (excludedTriggers.size() > 0)
-                timeTriggers.addAll(excludedTriggers);
+            for (TriggerWrapper tw : excludedTriggers)
+                timeTriggers.add(tw);
             return result;
         }
     }
@@ -1504,7 +1565,10 @@ public class RAMJobStore implements JobStore {
                 if (job.isConcurrentExectionDisallowed()) {
                     ArrayList<TriggerWrapper> trigs = getTriggerWrappersForJob(job.getKey());
                     for (TriggerWrapper ttw : trigs) {
-                        if (ttw.state == TriggerWrapper.STATE_WAITING) {
+                        // acquired ones too, as the JDBC job store does, in
+                        // case they are in a batch that has yet to be fired
+                        if (ttw.state == TriggerWrapper.STATE_WAITING
+                                || ttw.state == TriggerWrapper.STATE_ACQUIRED) {
                             ttw.state = TriggerWrapper.STATE_BLOCKED;
                         }
                         if (ttw.state == TriggerWrapper.STATE_PAUSED) {
@@ -1549,8 +1613,9 @@ public class RAMJobStore implements JobStore {
             if (jw != null) {
                 JobDetail jd = jw.jobDetail;
 
-                if (jd.isPersistJobDataAfterExecution()) {
-                    JobDataMap newData = jobDetail.getJobDataMap();
+                JobDataMap newData = jobDetail.getJobDataMap();
+                // a job that did not write to its data has nothing to persist
+                if (jd.isPersistJobDataAfterExecution() && (newData == null || newData.isDirty())) {
                     if (newData != null) {
                         newData = (JobDataMap) newData.clone();
                         newData.clearDirtyFlag();
@@ -1659,6 +1724,15 @@ public class RAMJobStore implements JobStore {
         return set;
     }
 
+    /**
+     * @see org.quartz.spi.PausedGroupsJobStore#getPausedJobGroups()
+     */
+    public Set<String> getPausedJobGroups() {
+        synchronized (lock) {
+            return new HashSet<String>(pausedJobGroups);
+        }
+    }
+
     public void setInstanceId(String schedInstId) {
         //
     }
@@ -1714,7 +1788,7 @@ class JobWrapper {
 
     public JobKey key;
 
-    public JobDetail jobDetail;
+    public volatile JobDetail jobDetail;
 
     JobWrapper(JobDetail jobDetail) {
         this.jobDetail = jobDetail;
@@ -1745,9 +1819,21 @@ class TriggerWrapper {
 
     public final JobKey jobKey;
 
-    public final OperableTrigger trigger;
+    public volatile OperableTrigger trigger;
+
+    public volatile int state = STATE_WAITING;
+
+    // fire-time index bookkeeping, see TimingWheelTriggerIndex (guarded by the store's lock)
+
+    TriggerWrapper indexPrev;
+
+    TriggerWrapper indexNext;
+
+    int indexSlot = TimingWheelTriggerIndex.NOT_INDEXED;
+
+    long indexTime;
 
-    public int state = STATE_WAITING;
+    int indexPriority;
 
     public static final int STATE_WAITING = 0;
 
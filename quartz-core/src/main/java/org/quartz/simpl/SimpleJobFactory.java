@@ -1,9 +1,16 @@
 package org.quartz.simpl;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.quartz.Job;
 import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ReusableJobInstance;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.listeners.SchedulerListenerSupport;
 import org.quartz.spi.JobFactory;
 import org.quartz.spi.TriggerFiredBundle;
 import org.slf4j.Logger;
@@ -25,10 +32,60 @@ public class SimpleJobFactory implements JobFactory {
         return log;
     }
 
+    /**
+     * The default for {@link #setMaxReusableInstances(int)}.
+     */
+    public static final int DEFAULT_MAX_REUSABLE_INSTANCES = 1000;
+
+    private int maxReusableInstances = DEFAULT_MAX_REUSABLE_INSTANCES;
+
+    private JobInstanceCache reusableInstances = new JobInstanceCache(DEFAULT_MAX_REUSABLE_INSTANCES);
+
+    /** The schedulers that tell this factory of the jobs they remove. */
+    private final Set<Scheduler> listenedTo = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Produce the job instance for the bundle; for a class marked with
+     * <code>{@link ReusableJobInstance}</code> that is the instance kept for
+     * the job, if there is one.
+     */
     @Override
-    public Job newJob(TriggerFiredBundle bundle, Scheduler Scheduler) throws SchedulerException {
+    public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException {
+        return newJob(bundle, scheduler, true);
+    }
+
+    /**
+     * Produce the job instance for the bundle, using the instance kept for
+     * the job only if <code>reuseInstance</code> is <code>true</code>.
+     */
+    protected Job newJob(TriggerFiredBundle bundle, Scheduler scheduler, boolean reuseInstance)
+            throws SchedulerException {
         JobDetail jobDetail = bundle.getJobDetail();
         Class<? extends Job> jobClass = jobDetail.getJobClass();
+        ReusableJobInstance reuse = JobInstanceCache.reuseOf(jobClass);
+        if (reuseInstance && reuse != null && JobInstanceCache.isReusable(jobDetail, reuse)) {
+            Job job = reusableInstances.get(jobDetail, reuse);
+            if (job == null) {
+                job = instantiate(jobDetail, jobClass);
+                listenTo(scheduler);
+                reusableInstances.put(jobDetail, reuse, job);
+            }
+            return job;
+        }
+        return instantiate(jobDetail, jobClass);
+    }
+
+    /**
+     * Have the scheduler tell this factory of the jobs it removes, so that
+     * their instances are not kept.
+     */
+    private void listenTo(Scheduler scheduler) throws SchedulerException {
+        if (scheduler != null && listenedTo.add(scheduler)) {
+            scheduler.getListenerManager().addSchedulerListener(new RemovedJobListener());
+        }
+    }
+
+    private Job instantiate(JobDetail jobDetail, Class<? extends Job> jobClass) throws SchedulerException {
         try {
             if (log.isDebugEnabled()) {
                 log.debug(
@@ -43,4 +100,50 @@ public class SimpleJobFactory implements JobFactory {
             throw se;
         }
     }
+
+    /**
+     * The maximum number of instances of <code>{@link ReusableJobInstance}</code>
+     * classes kept; beyond that, new jobs get a new instance every time.
+     * Setting it drops the instances kept so far.
+     *
+     * @param maxReusableInstances defaults to 1000.
+     */
+    public void setMaxReusableInstances(int maxReusableInstances) {
+        if (maxReusableInstances < 0) {
+            throw new IllegalArgumentException("maxReusableInstances must be >= 0");
+        }
+        this.maxReusableInstances = maxReusableInstances;
+        this.reusableInstances = new JobInstanceCache(maxReusableInstances);
+    }
+
+    public int getMaxReusableInstances() {
+        return maxReusableInstances;
+    }
+
+    JobInstanceCache getReusableInstances() {
+        return reusableInstances;
+    }
+
+    /**
+     * Drops the instances of the jobs the scheduler removes: the deleted
+     * ones, and the non-durable ones whose trigger will not fire again, which
+     * the job store removes with their last trigger.
+     */
+    private final class RemovedJobListener extends SchedulerListenerSupport {
+
+        @Override
+        public void jobDeleted(JobKey jobKey) {
+            reusableInstances.remove(jobKey);
+        }
+
+        @Override
+        public void triggerFinalized(Trigger trigger) {
+            reusableInstances.removeIfNotDurable(trigger.getJobKey());
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            reusableInstances.clear();
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed number of "busy" slots for the thread pools that bound how many
+ * <code>Runnable</code>s run at once: an atomic counter, and the threads
+ * waiting for a slot to free up, which are unparked as soon as one does.
+ *
+ * <p>
+ * Only the scheduler thread(s) ever wait, so a release simply wakes all the
+ * waiters.
+ * </p>
+ */
+final class ThreadSlots {
+
+    private final int capacity;
+
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    private volatile boolean closed = false;
+
+    ThreadSlots(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int getBusyCount() {
+        return busy.get();
+    }
+
+    /**
+     * Take a slot, waiting for one to free up if needed; false if the slots
+     * are (or get) closed.
+     */
+    boolean acquire() {
+        Thread current = Thread.currentThread();
+        boolean queued = false;
+        boolean interrupted = false;
+        try {
+            while (!closed) {
+                int n = busy.get();
+                if (n < capacity) {
+                    if (busy.compareAndSet(n, n + 1)) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (!queued) {
+                    // check again once registered, so no release goes unnoticed
+                    waiters.add(current);
+                    queued = true;
+                    continue;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+            return false;
+        } finally {
+            if (queued) {
+                waiters.remove(current);
+            }
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    void release() {
+        busy.decrementAndGet();
+        signalWaiters();
+    }
+
+    /**
+     * Wait until at least one slot is free, or the slots are closed; the
+     * number of free slots.
+     */
+    int awaitAvailable() {
+        int available = capacity - busy.get();
+        if (available > 0 || closed) {
+            return Math.max(available, 0);
+        }
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        waiters.add(current);
+        try {
+            while ((available = capacity - busy.get()) <= 0 && !closed) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            waiters.remove(current);
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+        return Math.max(available, 0);
+    }
+
+    /**
+     * Make the waiting and all later <code>acquire()</code>s fail.
+     */
+    void close() {
+        closed = true;
+        signalWaiters();
+    }
+
+    private void signalWaiters() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * A {@link TriggerIndex} implemented as a hashed hierarchical timing wheel.
+ * </p>
+ *
+ * <p>
+ * Fire times are bucketed into ticks of <code>tickMillis</code>. Each level
+ * of the wheel has 64 slots, a slot at level <i>n</i> spanning
+ * 64<sup>n</sup> ticks, and there are enough levels to cover every possible
+ * tick, so nothing ever overflows. Slots are intrusive doubly-linked lists
+ * threaded through the <code>TriggerWrapper</code>s themselves, which makes
+ * inserting and cancelling a trigger O(1) and allocation-free. A bitmap per
+ * level finds the next occupied slot without scanning empty ones.
+ * </p>
+ *
+ * <p>
+ * Triggers due at or before the wheel's cursor live in a small "current"
+ * bucket that is kept sorted by fire time, descending priority and key - the
+ * same order as <code>TriggerTimeComparator</code> - so priorities within a
+ * tick are respected. When the current bucket runs dry, the cursor moves to
+ * the earliest occupied slot and that whole slot is cascaded down one or more
+ * levels in a single batch. The cursor never moves past the
+ * <code>noLaterThan</code> horizon given to {@link #first(long)}; triggers
+ * added behind the cursor simply go into the current bucket.
+ * </p>
+ *
+ * <p>
+ * The fire time and priority are captured when a trigger is added, so the
+ * index never dereferences the trigger's <code>Date</code>s afterwards.
+ * </p>
+ *
+ * 分层时间轮：插入、删除为O(1)，按槽位批量下沉（cascade），同一tick内按优先级排序。
+ */
+class TimingWheelTriggerIndex implements TriggerIndex {
+
+    static final int NOT_INDEXED = -1;
+
+    private static final int IN_CURRENT = -2;
+
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** Enough levels to address every non-negative tick. */
+    private static final int LEVELS = (Long.SIZE + WHEEL_BITS - 1) / WHEEL_BITS;
+
+    private static final Comparator<TriggerWrapper> CURRENT_ORDER = new Comparator<TriggerWrapper>() {
+        public int compare(TriggerWrapper tw1, TriggerWrapper tw2) {
+            if (tw1.indexTime != tw2.indexTime) {
+                return tw1.indexTime < tw2.indexTime ? -1 : 1;
+            }
+            int comp = tw2.indexPriority - tw1.indexPriority;
+            if (comp != 0) {
+                return comp;
+            }
+            return tw1.key.compareTo(tw2.key);
+        }
+    };
+
+    private final long tickMillis;
+
+    private final TriggerWrapper[] slots = new TriggerWrapper[LEVELS * WHEEL_SIZE];
+
+    private final long[] occupied = new long[LEVELS];
+
+    private final TreeSet<TriggerWrapper> current = new TreeSet<TriggerWrapper>(CURRENT_ORDER);
+
+    private long cursor;
+
+    private int size;
+
+    TimingWheelTriggerIndex(long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Timing wheel tick must be at least 1 millisecond");
+        }
+        this.tickMillis = tickMillis;
+        this.cursor = tickOf(System.currentTimeMillis());
+    }
+
+    public boolean add(TriggerWrapper tw) {
+        if (tw.indexSlot != NOT_INDEXED) {
+            return false;
+        }
+        Date nft = tw.getTrigger().getNextFireTime();
+        tw.indexTime = (nft == null) ? Long.MAX_VALUE : nft.getTime();
+        tw.indexPriority = tw.getTrigger().getPriority();
+        place(tw);
+        size++;
+        return true;
+    }
+
+    public boolean remove(TriggerWrapper tw) {
+        int idx = tw.indexSlot;
+        if (idx == NOT_INDEXED) {
+            return false;
+        }
+        if (idx == IN_CURRENT) {
+            current.remove(tw);
+        } else {
+            unlink(tw, idx);
+        }
+        tw.indexSlot = NOT_INDEXED;
+        size--;
+        return true;
+    }
+
+    public TriggerWrapper first(long noLaterThan) {
+        long limit = tickOf(noLaterThan);
+        while (current.isEmpty()) {
+            if (!advance(limit)) {
+                return null;
+            }
+        }
+        return current.first();
+    }
+
+    /**
+     * Return the first trigger without moving the cursor: the head of the
+     * current bucket, or else the first trigger of the earliest occupied
+     * slot, found by walking that slot's list.
+     */
+    public TriggerWrapper peek() {
+        if (!current.isEmpty()) {
+            return current.first();
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits == 0) {
+                continue;
+            }
+            int idx = (level << WHEEL_BITS) | Long.numberOfTrailingZeros(bits);
+            TriggerWrapper first = null;
+            for (TriggerWrapper tw = slots[idx]; tw != null; tw = tw.indexNext) {
+                if (first == null || CURRENT_ORDER.compare(tw, first) < 0) {
+                    first = tw;
+                }
+            }
+            return first;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Iterates the indexed triggers; only the current bucket is in fire-time
+     * order.
+     */
+    public Iterator<TriggerWrapper> iterator() {
+        List<TriggerWrapper> all = new ArrayList<TriggerWrapper>(size);
+        all.addAll(current);
+        for (TriggerWrapper head : slots) {
+            for (TriggerWrapper tw = head; tw != null; tw = tw.indexNext) {
+                all.add(tw);
+            }
+        }
+        return Collections.unmodifiableList(all).iterator();
+    }
+
+    private long tickOf(long time) {
+        return (time <= 0) ? 0 : time / tickMillis;
+    }
+
+    /**
+     * Put the wrapper in the current bucket if it is due at or before the
+     * cursor, otherwise in the slot of the level at which its tick first
+     * differs from the cursor.
+     */
+    private void place(TriggerWrapper tw) {
+        long tick = tickOf(tw.indexTime);
+        if (tick <= cursor) {
+            tw.indexSlot = IN_CURRENT;
+            current.add(tw);
+            return;
+        }
+
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ cursor)) / WHEEL_BITS;
+        int slot = (int) (tick >>> (level * WHEEL_BITS)) & WHEEL_MASK;
+        int idx = (level << WHEEL_BITS) | slot;
+
+        TriggerWrapper head = slots[idx];
+        tw.indexPrev = null;
+        tw.indexNext = head;
+        if (head != null) {
+            head.indexPrev = tw;
+        }
+        slots[idx] = tw;
+        occupied[level] |= 1L << slot;
+        tw.indexSlot = idx;
+    }
+
+    private void unlink(TriggerWrapper tw, int idx) {
+        if (tw.indexPrev != null) {
+            tw.indexPrev.indexNext = tw.indexNext;
+        } else {
+            slots[idx] = tw.indexNext;
+        }
+        if (tw.indexNext != null) {
+            tw.indexNext.indexPrev = tw.indexPrev;
+        }
+        tw.indexPrev = null;
+        tw.indexNext = null;
+        if (slots[idx] == null) {
+            occupied[idx >>> WHEEL_BITS] &= ~(1L << (idx & WHEEL_MASK));
+        }
+    }
+
+    /**
+     * Move the cursor to the start of the earliest occupied slot - which is
+     * the lowest occupied slot of the lowest occupied level - and cascade that
+     * slot's triggers. Returns <code>false</code> if the wheel is empty or the
+     * slot starts after <code>limit</code>.
+     */
+    private boolean advance(long limit) {
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits == 0) {
+                continue;
+            }
+
+            int slot = Long.numberOfTrailingZeros(bits);
+            int shift = level * WHEEL_BITS;
+            int highShift = shift + WHEEL_BITS;
+            long high = (highShift >= Long.SIZE) ? 0 : (cursor >>> highShift) << highShift;
+            long slotStart = high | ((long) slot << shift);
+            if (slotStart > limit) {
+                return false;
+            }
+
+            int idx = (level << WHEEL_BITS) | slot;
+            TriggerWrapper tw = slots[idx];
+            slots[idx] = null;
+            occupied[level] &= ~(1L << slot);
+            cursor = slotStart;
+
+            while (tw != null) {
+                TriggerWrapper next = tw.indexNext;
+                place(tw);
+                tw = next;
+            }
+            return true;
+        }
+        return false;
+    }
+}
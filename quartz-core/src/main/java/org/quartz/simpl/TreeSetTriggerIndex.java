@@ -0,0 +1,56 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The default {@link TriggerIndex}: a <code>TreeSet</code> ordered by
+ * {@link TriggerWrapperComparator}, with O(log n) insert, remove and lookup.
+ */
+class TreeSetTriggerIndex implements TriggerIndex {
+
+    private final TreeSet<TriggerWrapper> timeTriggers = new TreeSet<TriggerWrapper>(new TriggerWrapperComparator());
+
+    public boolean add(TriggerWrapper tw) {
+        return timeTriggers.add(tw);
+    }
+
+    public boolean remove(TriggerWrapper tw) {
+        return timeTriggers.remove(tw);
+    }
+
+    public TriggerWrapper first(long noLaterThan) {
+        return timeTriggers.isEmpty() ? null : timeTriggers.first();
+    }
+
+    public TriggerWrapper peek() {
+        return first(Long.MAX_VALUE);
+    }
+
+    public int size() {
+        return timeTriggers.size();
+    }
+
+    public boolean isEmpty() {
+        return timeTriggers.isEmpty();
+    }
+
+    public Iterator<TriggerWrapper> iterator() {
+        return timeTriggers.iterator();
+    }
+}
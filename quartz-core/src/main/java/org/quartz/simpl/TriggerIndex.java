@@ -0,0 +1,67 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+/**
+ * The fire-time index of the in-memory job stores: the set of
+ * <code>WAITING</code> triggers, ordered by next fire time, then by
+ * descending priority, then by key (see
+ * {@link org.quartz.Trigger.TriggerTimeComparator}).
+ *
+ * <p>
+ * Implementations are not thread-safe; the owning store guards them with its
+ * lock. A wrapper must be removed from the index before the fire time or
+ * priority of its trigger is changed, and added back afterwards.
+ * </p>
+ *
+ * @see TreeSetTriggerIndex
+ * @see TimingWheelTriggerIndex
+ */
+interface TriggerIndex extends Iterable<TriggerWrapper> {
+
+    /**
+     * Add the wrapper to the index.
+     *
+     * @return <code>false</code> if it was already indexed.
+     */
+    boolean add(TriggerWrapper tw);
+
+    /**
+     * Remove the wrapper from the index.
+     *
+     * @return <code>false</code> if it was not indexed.
+     */
+    boolean remove(TriggerWrapper tw);
+
+    /**
+     * Return (without removing) the first trigger in fire-time order, or
+     * <code>null</code> if the index is empty. Implementations may also
+     * return <code>null</code> when no trigger fires at or before
+     * <code>noLaterThan</code>.
+     */
+    TriggerWrapper first(long noLaterThan);
+
+    /**
+     * Return (without removing) the first trigger in fire-time order, or
+     * <code>null</code> if the index is empty. Unlike {@link #first(long)}
+     * this leaves the index as it is, however far off the trigger fires.
+     */
+    TriggerWrapper peek();
+
+    int size();
+
+    boolean isEmpty();
+}
@@ -0,0 +1,315 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A <code>{@link org.quartz.spi.ThreadPool}</code> that runs each
+ * <code>Runnable</code> (that is each <code>JobRunShell</code>) on a new
+ * virtual thread, for jobs that spend most of their time blocked on I/O.
+ * </p>
+ *
+ * <p>
+ * Virtual threads are cheap to create and to keep blocked, so nothing is
+ * pooled: <code>threadCount</code> is only a cap on the number of jobs
+ * running at once, which <code>{@link #blockForAvailableThreads()}</code>
+ * reports and <code>{@link #runInThread(Runnable)}</code> waits on, like the
+ * size of the other pools. Without it, a burst of triggers could start an
+ * unbounded number of jobs against the same database or service.
+ * </p>
+ *
+ * <p>
+ * Virtual threads need Java 21; they are created through reflection, so
+ * that Quartz itself still builds and runs on Java 8. On an older JVM
+ * <code>initialize()</code> fails with a
+ * <code>SchedulerConfigException</code>.
+ * </p>
+ *
+ * <p>
+ * Keep in mind that a job that blocks while holding a monitor
+ * (<code>synchronized</code>) pins the carrier thread it runs on.
+ * </p>
+ *
+ * <p>
+ * 使用虚拟线程执行任务的线程池, threadCount 为同时执行任务数的上限
+ * </p>
+ *
+ * @see ElasticThreadPool
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+    private int count = -1;
+
+    private boolean inheritLoader = false;
+
+    private String threadNamePrefix;
+
+    private String schedulerInstanceName;
+
+    private ThreadFactory threadFactory;
+
+    private ClassLoader initializerClassLoader;
+
+    private ThreadSlots slots;
+
+    private volatile boolean isShutdown = false;
+
+    private final Set<Thread> threads = ConcurrentHashMap.<Thread>newKeySet();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * <p>
+     * Create a new (unconfigured) <code>VirtualThreadPool</code>.
+     * </p>
+     *
+     * @see #setThreadCount(int)
+     */
+    public VirtualThreadPool() {
+    }
+
+    /**
+     * <p>
+     * Create a new <code>VirtualThreadPool</code> running at most the given
+     * number of <code>Runnable</code>s at once.
+     * </p>
+     */
+    public VirtualThreadPool(int threadCount) {
+        setThreadCount(threadCount);
+    }
+
+    /**
+     * <p>
+     * Whether this JVM has virtual threads.
+     * </p>
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public Logger getLog() {
+        return log;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return getThreadCount();
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of <code>Runnable</code>s running at once - has
+     * no effect after <code>initialize()</code> has been called.
+     * </p>
+     */
+    public void setThreadCount(int count) {
+        this.count = count;
+    }
+
+    public int getThreadCount() {
+        return count;
+    }
+
+    public void setThreadNamePrefix(String prfx) {
+        this.threadNamePrefix = prfx;
+    }
+
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    public boolean isThreadsInheritContextClassLoaderOfInitializingThread() {
+        return inheritLoader;
+    }
+
+    public void setThreadsInheritContextClassLoaderOfInitializingThread(
+            boolean inheritLoader) {
+        this.inheritLoader = inheritLoader;
+    }
+
+    /**
+     * <p>
+     * The number of <code>Runnable</code>s currently running.
+     * </p>
+     */
+    public int getBusyThreadCount() {
+        return slots == null ? 0 : slots.getBusyCount();
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        schedulerInstanceName = schedName;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (slots != null) {
+            return;
+        }
+        if (count <= 0) {
+            throw new SchedulerConfigException(
+                    "Thread count must be > 0");
+        }
+        String threadPrefix = getThreadNamePrefix();
+        if (threadPrefix == null) {
+            threadPrefix = schedulerInstanceName + "_VirtualWorker";
+        }
+        threadFactory = createVirtualThreadFactory(threadPrefix + "-");
+        if (isThreadsInheritContextClassLoaderOfInitializingThread()) {
+            getLog().info(
+                    "Job execution threads will use class loader of thread: "
+                            + Thread.currentThread().getName());
+            initializerClassLoader = Thread.currentThread().getContextClassLoader();
+        }
+        slots = new ThreadSlots(count);
+    }
+
+    /**
+     * <code>Thread.ofVirtual().name(prefix, 1).factory()</code>, through
+     * reflection.
+     */
+    private static ThreadFactory createVirtualThreadFactory(String prefix) throws SchedulerConfigException {
+        if (!isSupported()) {
+            throw new SchedulerConfigException(
+                    "VirtualThreadPool requires Java 21 or later, running on " + System.getProperty("java.version"));
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (InvocationTargetException e) {
+            // e.g. a preview release run without --enable-preview
+            throw new SchedulerConfigException(
+                    "Virtual threads are not available: " + e.getCause(), e.getCause());
+        } catch (Exception e) {
+            throw new SchedulerConfigException(
+                    "Virtual threads are not available: " + e, e);
+        }
+    }
+
+    /**
+     * <p>
+     * Run the given <code>Runnable</code> on a new virtual thread, blocking
+     * while <code>threadCount</code> of them are running. If the pool is
+     * shut down, the <code>Runnable</code> is still executed, in a thread of
+     * its own.
+     * </p>
+     */
+    @Override
+    public boolean runInThread(final Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+        final boolean counted = slots.acquire();
+        Thread t = threadFactory.newThread(new Runnable() {
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable exceptionInRunnable) {
+                    try {
+                        getLog().error("Error while executing the Runnable: ",
+                                exceptionInRunnable);
+                    } catch (Exception e) {
+                        // ignore to help with a tomcat glitch
+                    }
+                } finally {
+                    threads.remove(Thread.currentThread());
+                    if (counted) {
+                        slots.release();
+                    }
+                }
+            }
+        });
+        if (initializerClassLoader != null) {
+            t.setContextClassLoader(initializerClassLoader);
+        }
+        threads.add(t);
+        t.start();
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        return slots.awaitAvailable();
+    }
+
+    /**
+     * <p>
+     * Stop accepting work, waiting for the running <code>Runnable</code>s to
+     * complete.
+     * </p>
+     */
+    public void shutdown() {
+        shutdown(true);
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        getLog().debug("Shutting down threadpool...");
+        isShutdown = true;
+        if (slots == null) { // case where the pool wasn't even initialize()ed
+            return;
+        }
+        slots.close();
+
+        if (waitForJobsToComplete) {
+            boolean interrupted = false;
+            try {
+                for (Thread t : threads) {
+                    while (t.isAlive()) {
+                        try {
+                            t.join();
+                        } catch (InterruptedException ignore) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            getLog().debug("No executing jobs remaining, all threads stopped.");
+        }
+        getLog().debug("Shutdown of threadpool complete.");
+    }
+
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * The append-only log of a {@link DurableRAMJobStore}, and the naming of
+ * its snapshots.
+ * </p>
+ *
+ * <p>
+ * The log is a sequence of segments, each a file of a fixed size that is
+ * memory-mapped and numbered by a generation. A record is written as its
+ * length, its CRC-32 and its bytes; a length of 0, which is how a segment
+ * starts out, ends the segment, and a record whose CRC does not match (one
+ * that was being written during a crash) ends it too. The snapshot of a
+ * generation holds the state of the store at the start of the segment of
+ * that generation, so that older segments and snapshots can be deleted
+ * once it is written.
+ * </p>
+ *
+ * <p>
+ * Records are appended by one thread at a time, and are made durable by
+ * {@link #commit(long)}: the first thread to commit forces the mapped
+ * segment to disk, and the threads that commit meanwhile wait for it, and
+ * for at most one more force, rather than each forcing the segment.
+ * </p>
+ *
+ * 内存映射的追加写日志，支持分段与组提交
+ */
+class WriteAheadLog {
+
+    static final String LOG_SUFFIX = ".log";
+
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final Pattern FILE_NAME = Pattern.compile("quartz-(\\d{19})(\\.log|\\.snapshot)");
+
+    private static final long MAGIC = 0x5152545a57414c31L; // "QRTZWAL1"
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final boolean force;
+
+    private volatile Segment segment;
+
+    /** The sequence number just past the last record appended. */
+    private volatile long appendedLsn;
+
+    private final Object commitLock = new Object();
+
+    /** The sequence number up to which records are on disk. Guarded by commitLock. */
+    private long durableLsn;
+
+    /** Whether a thread is forcing the segment. Guarded by commitLock. */
+    private boolean forcing;
+
+    private long forceCount;
+
+    private static final class Segment {
+        final long generation;
+
+        final MappedByteBuffer buffer;
+
+        /** The sequence number of the first byte of the segment. */
+        final long baseLsn;
+
+        Segment(long generation, MappedByteBuffer buffer, long baseLsn) {
+            this.generation = generation;
+            this.buffer = buffer;
+            this.baseLsn = baseLsn;
+        }
+    }
+
+    /**
+     * Receives the records of a segment, in the order they were appended.
+     */
+    interface RecordHandler {
+        void record(byte[] data) throws IOException;
+    }
+
+    WriteAheadLog(File directory, int segmentSize, boolean force) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.force = force;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    File logFile(long generation) {
+        return new File(directory, String.format("quartz-%019d%s", generation, LOG_SUFFIX));
+    }
+
+    File snapshotFile(long generation) {
+        return new File(directory, String.format("quartz-%019d%s", generation, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * The generations of the files with the given suffix, oldest first.
+     */
+    List<Long> generations(String suffix) {
+        List<Long> generations = new ArrayList<Long>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher m = FILE_NAME.matcher(name);
+                if (m.matches() && m.group(2).equals(suffix)) {
+                    generations.add(Long.valueOf(m.group(1)));
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Read the records of a segment, up to its end or to the first record
+     * that was not completely written.
+     *
+     * @return the number of records read
+     */
+    int read(long generation, RecordHandler handler) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(logFile(generation), "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(generation, buffer, handler);
+            } finally {
+                unmap(buffer);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int read(long generation, MappedByteBuffer buffer, RecordHandler handler) throws IOException {
+        if (buffer.getLong() != MAGIC || buffer.getLong() != generation) {
+            throw new IOException("Not a log segment of generation " + generation + ": " + logFile(generation));
+        }
+        int count = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            crc.reset();
+            crc.update(data, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            handler.record(data);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Start writing a new segment of the given generation, after the
+     * current one if any, which is forced to disk first.
+     */
+    void open(long generation, int minCapacity) throws IOException {
+        Segment previous = segment;
+        long baseLsn = 0;
+        if (previous != null) {
+            previous.buffer.force();
+            baseLsn = previous.baseLsn + previous.buffer.capacity();
+            synchronized (commitLock) {
+                durableLsn = Math.max(durableLsn, appendedLsn);
+            }
+        }
+        int capacity = Math.max(segmentSize, HEADER_SIZE + RECORD_HEADER_SIZE + minCapacity);
+        File file = logFile(generation);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            raf.setLength(0);
+            raf.setLength(capacity);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            // the mapping stays valid once the file is closed
+            raf.close();
+        }
+        buffer.putLong(MAGIC);
+        buffer.putLong(generation);
+        buffer.force();
+        segment = new Segment(generation, buffer, baseLsn);
+        appendedLsn = baseLsn + HEADER_SIZE;
+        if (previous != null) {
+            // a commit may still be forcing the previous segment
+            awaitForce();
+            unmap(previous.buffer);
+        }
+    }
+
+    /** Wait until no thread is forcing a segment. */
+    private void awaitForce() {
+        synchronized (commitLock) {
+            boolean interrupted = false;
+            while (forcing) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    long getGeneration() {
+        return segment.generation;
+    }
+
+    /**
+     * Append a record to the current segment. Only called by one thread at
+     * a time.
+     *
+     * @return the sequence number to commit for the record to be durable,
+     *         or -1 if it does not fit in the segment
+     */
+    long append(byte[] data) {
+        Segment current = segment;
+        if (current == null) {
+            throw new IllegalStateException("The log is closed");
+        }
+        MappedByteBuffer buffer = current.buffer;
+        if (buffer.remaining() < RECORD_HEADER_SIZE + data.length) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        buffer.putInt(data.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(data);
+        long lsn = current.baseLsn + buffer.position();
+        appendedLsn = lsn;
+        return lsn;
+    }
+
+    /**
+     * Wait until the records up to the given sequence number are on disk.
+     * Does nothing if the log is not forced, or if <code>lsn</code> is
+     * negative.
+     */
+    void commit(long lsn) throws IOException {
+        if (!force || lsn < 0) {
+            return;
+        }
+        while (true) {
+            synchronized (commitLock) {
+                boolean interrupted = false;
+                while (forcing && durableLsn < lsn) {
+                    try {
+                        commitLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (durableLsn >= lsn || segment == null) {
+                    // or closed, which forced the log
+                    return;
+                }
+                forcing = true;
+            }
+            // read before the segment: a segment is forced before the next
+            // one is published, so the target is in the segment read
+            long target = appendedLsn;
+            Segment current = segment;
+            boolean forced = false;
+            try {
+                current.buffer.force();
+                forced = true;
+            } finally {
+                synchronized (commitLock) {
+                    forcing = false;
+                    if (forced) {
+                        durableLsn = Math.max(durableLsn, target);
+                        forceCount++;
+                    }
+                    commitLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /** The number of times a commit forced the log to disk. */
+    long getForceCount() {
+        synchronized (commitLock) {
+            return forceCount;
+        }
+    }
+
+    /**
+     * Delete the segments and snapshots older than the given generation.
+     */
+    void deleteBefore(long generation) {
+        for (String suffix : new String[] {LOG_SUFFIX, SNAPSHOT_SUFFIX}) {
+            for (Long g : generations(suffix)) {
+                if (g < generation) {
+                    File file = suffix.equals(LOG_SUFFIX) ? logFile(g) : snapshotFile(g);
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Force the current segment to disk and release its mapping; nothing
+     * can be appended afterwards.
+     */
+    void close() {
+        Segment current = segment;
+        if (current == null) {
+            return;
+        }
+        synchronized (commitLock) {
+            awaitForce();
+            // keep the commits from forcing the segment while it is unmapped
+            forcing = true;
+        }
+        try {
+            current.buffer.force();
+        } finally {
+            synchronized (commitLock) {
+                forcing = false;
+                durableLsn = Math.max(durableLsn, appendedLsn);
+                segment = null;
+                commitLock.notifyAll();
+            }
+        }
+        unmap(current.buffer);
+    }
+
+    /**
+     * Release the mapping of the buffer now, rather than when the buffer is
+     * garbage collected, which also keeps the file from being deleted on
+     * some platforms. There is no public API for it: this uses
+     * <code>Unsafe.invokeCleaner()</code> on Java 9 and later, and the
+     * buffer's cleaner on Java 8, and leaves the mapping to the garbage
+     * collector if neither is available. The buffer must not be used
+     * afterwards.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception ignore) {
+            // left to the garbage collector
+        }
+    }
+}
@@ -72,6 +72,7 @@ public interface JobStore {
     /**
      * How long (in milliseconds) the <code>JobStore</code> implementation
      * estimates that it will take to release a trigger and acquire a new one.
+     * The scheduler uses this until it has measured the actual time.
      */
     long getEstimatedTimeToReleaseAndAcquireTrigger();
 
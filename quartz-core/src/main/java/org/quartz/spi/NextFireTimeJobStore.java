@@ -0,0 +1,39 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.spi;
+
+import org.quartz.JobPersistenceException;
+
+/**
+ * <p>
+ * A <code>{@link JobStore}</code> that can tell when its next trigger is
+ * due, so that an idle scheduler thread can sleep until then rather than
+ * poll it.
+ * </p>
+ *
+ * 能够给出下一个Trigger触发时间的JobStore
+ *
+ * @see org.quartz.core.QuartzSchedulerThread
+ */
+public interface NextFireTimeJobStore extends JobStore {
+
+    /**
+     * The earliest next fire time, in milliseconds, of the triggers waiting
+     * to be acquired, or 0 if there are none. It may be in the past, for a
+     * trigger that misfired.
+     */
+    long getNextFireTime() throws JobPersistenceException;
+}
@@ -0,0 +1,51 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.spi;
+
+import java.util.List;
+
+import org.quartz.JobPersistenceException;
+
+/**
+ * <p>
+ * A <code>{@link JobStore}</code> that lets several scheduler threads of one
+ * scheduler acquire triggers at the same time, each from its own partition
+ * of the triggers, so that they never compete for the same triggers.
+ * </p>
+ *
+ * <p>
+ * A trigger belongs to the partition
+ * <code>{@link org.quartz.utils.TriggerPartitions#partitionOf(org.quartz.TriggerKey, int)}</code>
+ * gives for its key.
+ * </p>
+ *
+ * 支持多个调度线程按分区并发获取Trigger的JobStore
+ *
+ * @see org.quartz.core.QuartzSchedulerThread
+ */
+public interface PartitionedJobStore extends JobStore {
+
+    /**
+     * Same as <code>{@link JobStore#acquireNextTriggers(long, int, long)}</code>,
+     * but only acquires triggers of the given partition.
+     *
+     * @param partition      the partition to acquire from, from 0 to
+     *                       <code>partitionCount - 1</code>
+     * @param partitionCount the number of partitions, the same for all calls
+     */
+    List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow,
+            int partition, int partitionCount) throws JobPersistenceException;
+}
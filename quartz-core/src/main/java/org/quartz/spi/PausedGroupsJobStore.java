@@ -0,0 +1,45 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.spi;
+
+import java.util.Set;
+
+import org.quartz.JobPersistenceException;
+
+/**
+ * <p>
+ * A <code>{@link JobStore}</code> that keeps the groups of jobs paused
+ * with <code>pauseJobs()</code>, so that the triggers stored later for
+ * their jobs are paused as well.
+ * </p>
+ *
+ * @see org.quartz.core.QuartzScheduler
+ */
+public interface PausedGroupsJobStore extends JobStore {
+
+    /**
+     * The group in <code>{@link JobStore#getPausedTriggerGroups()}</code>
+     * of a job store that pauses all the trigger groups at once, including
+     * those of the triggers stored later, as the JDBC job stores do after
+     * <code>pauseAll()</code>.
+     */
+    String ALL_GROUPS_PAUSED = "_$_ALL_GROUPS_PAUSED_$_";
+
+    /**
+     * The groups of the paused jobs, whose new triggers are stored paused.
+     */
+    Set<String> getPausedJobGroups() throws JobPersistenceException;
+}
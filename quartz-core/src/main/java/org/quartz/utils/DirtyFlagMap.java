@@ -1,52 +1,77 @@
 package org.quartz.utils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.lang.reflect.Array;
 import java.util.*;
 
 /**
  * An implementation of <code>Map</code> that wraps another <code>Map</code>
  * and flags itself 'dirty' when it is modified.
+ *
+ * <p>
+ * The entries are kept in a {@link HashTrieMap}, so that a clone shares
+ * them with the original, and each of the two copies only the part it
+ * modifies afterwards. Cloning, and adding a few entries to a clone, takes
+ * the same time however many entries the map has.
+ * </p>
  */
 public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Serializable {
 
     private static final long serialVersionUID = 1433884852607126222L;
 
+    /**
+     * The serialized form is kept as it was when the entries were in a
+     * <code>HashMap</code>.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("dirty", boolean.class),
+        new ObjectStreamField("map", Map.class)
+    };
+
     private boolean dirty = false;
-    private Map<K, V> map;
+    private transient HashTrieMap<K, V> map;
 
     /**
      * <p>
-     * Create a DirtyFlagMap that 'wraps' a <code>HashMap</code>.
+     * Create an empty DirtyFlagMap.
      * </p>
-     *
-     * @see java.util.HashMap
      */
     public DirtyFlagMap() {
-        map = new HashMap<>();
+        map = new HashTrieMap<>();
     }
 
     /**
      * <p>
-     * Create a DirtyFlagMap that 'wraps' a <code>HashMap</code> that has the
-     * given initial capacity.
+     * Create an empty DirtyFlagMap. The map grows as needed, so the
+     * initial capacity is only checked, as <code>HashMap</code> does.
      * </p>
      *
      * @see java.util.HashMap
      */
     public DirtyFlagMap(final int initialCapacity) {
-        map = new HashMap<>(initialCapacity);
+        this(initialCapacity, 0.75f);
     }
 
     /**
      * <p>
-     * Create a DirtyFlagMap that 'wraps' a <code>HashMap</code> that has the
-     * given initial capacity and load factor.
+     * Create an empty DirtyFlagMap. The map grows as needed, so the
+     * initial capacity and load factor are only checked, as
+     * <code>HashMap</code> does.
      * </p>
      *
      * @see java.util.HashMap
      */
     public DirtyFlagMap(final int initialCapacity, final float loadFactor) {
-        map = new HashMap<>(initialCapacity, loadFactor);
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        map = new HashTrieMap<>();
     }
 
     /**
@@ -76,6 +101,15 @@ public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Seriali
         return map;
     }
 
+    /**
+     * <p>
+     * Get a read-only view of the underlying Map.
+     * </p>
+     */
+    public Map<K, V> getReadOnlyMap() {
+        return Collections.unmodifiableMap(map);
+    }
+
     @Override
     public void clear() {
         if (!map.isEmpty()) {
@@ -105,7 +139,7 @@ public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Seriali
             return false;
         }
 
-        return map.equals(((DirtyFlagMap<?, ?>) obj).getWrappedMap());
+        return map.equals(((DirtyFlagMap<?, ?>) obj).map);
     }
 
     @Override
@@ -131,12 +165,24 @@ public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Seriali
         return map.put(key, val);
     }
 
+    @SuppressWarnings("unchecked") // suppress warnings on generic cast of the other map's entries.
     public void putAll(final Map<? extends K, ? extends V> t) {
-        if (!t.isEmpty()) {
-            dirty = true;
+        if (t.isEmpty()) {
+            return;
         }
+        dirty = true;
 
-        map.putAll(t);
+        if (t instanceof DirtyFlagMap) {
+            HashTrieMap<K, V> other = ((DirtyFlagMap<K, V>) t).map;
+            if (map.isEmpty()) {
+                // share the other map's entries instead of copying them
+                map = other.fork();
+            } else {
+                map.putAll(other);
+            }
+        } else {
+            map.putAll(t);
+        }
     }
 
     public V remove(final Object key) {
@@ -158,14 +204,12 @@ public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Seriali
     }
 
     @Override
-    @SuppressWarnings("unchecked") // suppress warnings on generic cast of super.clone() and map.clone() lines.
+    @SuppressWarnings("unchecked") // suppress warnings on generic cast of super.clone() line.
     public Object clone() {
         DirtyFlagMap<K, V> copy;
         try {
             copy = (DirtyFlagMap<K, V>) super.clone();
-            if (map instanceof HashMap) {
-                copy.map = (Map<K, V>) ((HashMap<K, V>) map).clone();
-            }
+            copy.map = map.fork();
         } catch (CloneNotSupportedException ex) {
             throw new IncompatibleClassChangeError("Not Cloneable.");
         }
@@ -173,6 +217,21 @@ public class DirtyFlagMap<K, V> implements Map<K, V>, Cloneable, java.io.Seriali
         return copy;
     }
 
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("dirty", dirty);
+        fields.put("map", new HashMap<K, V>(map));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked") // suppress warnings on generic cast of the deserialized map.
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        dirty = fields.get("dirty", false);
+        Map<K, V> entries = (Map<K, V>) fields.get("map", null);
+        map = entries == null ? new HashTrieMap<K, V>() : new HashTrieMap<K, V>(entries);
+    }
+
     /**
      * Wrap a Collection so we can mark the DirtyFlagMap as dirty if
      * the underlying Collection is modified.
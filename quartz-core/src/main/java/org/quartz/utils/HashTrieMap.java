@@ -0,0 +1,649 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * A <code>Map</code> that can be forked in constant time: the fork and the
+ * original share their entries, and each copies only the part of the
+ * structure it modifies afterwards.
+ * </p>
+ *
+ * <p>
+ * Up to {@link #SMALL_MAX} entries are kept in an array that is searched
+ * linearly. Larger maps are kept in a hash array mapped trie: each level
+ * of the trie is indexed by 5 bits of the hash of the key, so that a
+ * lookup or a modification visits at most 7 nodes, and a modification of a
+ * shared map copies at most those.
+ * </p>
+ *
+ * <p>
+ * Nodes are tagged with the edit token of the map that created them, and
+ * that map modifies them in place as long as it holds the token. Forking
+ * gives both maps a new token, which makes every existing node read-only
+ * for both. Iterators work on a snapshot taken the same way, so that the
+ * map may be modified while it is iterated over, including through the
+ * iterator. Like <code>HashMap</code>, this map allows a <code>null</code>
+ * key and <code>null</code> values, and is not synchronized.
+ * </p>
+ *
+ * 可在常数时间内复制的Map：复制品与原Map共享结构，修改时只复制被修改的路径
+ */
+class HashTrieMap<K, V> extends AbstractMap<K, V> {
+
+    /** The most entries kept in a linearly searched array rather than in a trie. */
+    static final int SMALL_MAX = 8;
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    private Object edit = new Object();
+
+    private Node root;
+
+    private int size;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    HashTrieMap() {
+    }
+
+    HashTrieMap(Map<? extends K, ? extends V> m) {
+        putAll(m);
+    }
+
+    /**
+     * A map with the same entries as this one, made without copying them.
+     */
+    HashTrieMap<K, V> fork() {
+        HashTrieMap<K, V> copy = new HashTrieMap<K, V>();
+        if (root != null) {
+            freeze();
+            copy.root = root;
+            copy.size = size;
+        }
+        return copy;
+    }
+
+    /**
+     * Stop modifying the existing nodes in place.
+     */
+    private void freeze() {
+        edit = new Object();
+    }
+
+    static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    static boolean eq(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && root.find(hash(key), key, 0) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        if (root == null) {
+            return null;
+        }
+        Leaf leaf = root.find(hash(key), key, 0);
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V put(K key, V value) {
+        int hash = hash(key);
+        Leaf leaf = new Leaf(hash, key, value);
+        if (root == null) {
+            root = new SmallNode(edit, leaf);
+            size = 1;
+            return null;
+        }
+        Leaf old = root.find(hash, key, 0);
+        if (old != null && old.value == value) {
+            return value;
+        }
+        root = root.put(edit, leaf, 0);
+        if (old == null) {
+            size++;
+            return null;
+        }
+        return (V) old.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(Object key) {
+        if (root == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Leaf old = root.find(hash, key, 0);
+        if (old == null) {
+            return null;
+        }
+        root = root.remove(edit, hash, key, 0);
+        size--;
+        if (root instanceof TrieNode && size <= SMALL_MAX / 2) {
+            // back to an array once the trie is small
+            SmallNode small = new SmallNode(edit, null);
+            for (LeafIterator it = new LeafIterator(root); it.hasNext();) {
+                small.slots[small.count++] = it.next();
+            }
+            root = small;
+        }
+        return (V) old.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        if (es == null) {
+            es = new EntrySet();
+            entrySet = es;
+        }
+        return es;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry) || root == null) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Leaf leaf = root.find(hash(e.getKey()), e.getKey(), 0);
+            return leaf != null && eq(leaf.value, e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                HashTrieMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            HashTrieMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private final LeafIterator leaves;
+
+        private Leaf last;
+
+        EntryIterator() {
+            if (root != null) {
+                freeze();
+            }
+            leaves = new LeafIterator(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaves.hasNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map.Entry<K, V> next() {
+            last = leaves.next();
+            return new Entry((K) last.key, (V) last.value);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            HashTrieMap.this.remove(last.key);
+            last = null;
+        }
+    }
+
+    /**
+     * An entry that writes its value through to the map.
+     */
+    private final class Entry extends AbstractMap.SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        Entry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * An entry, which is never modified once it is in a node.
+     */
+    private static final class Leaf {
+        final int hash;
+
+        final Object key;
+
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A node holds leaves and, in a trie, the nodes of the next level.
+     */
+    private abstract static class Node {
+        final Object edit;
+
+        Object[] slots;
+
+        int count;
+
+        Node(Object edit, Object[] slots, int count) {
+            this.edit = edit;
+            this.slots = slots;
+            this.count = count;
+        }
+
+        abstract Leaf find(int hash, Object key, int shift);
+
+        /**
+         * Add the leaf, or replace the one with the same key.
+         *
+         * @return this node if it was modified in place, or its copy
+         */
+        abstract Node put(Object edit, Leaf leaf, int shift);
+
+        /**
+         * Remove the leaf with the given key, which the node contains.
+         *
+         * @return this node if it was modified in place, its copy, or
+         *         <code>null</code> if it is left empty
+         */
+        abstract Node remove(Object edit, int hash, Object key, int shift);
+    }
+
+    /**
+     * Leaves searched linearly.
+     */
+    private abstract static class ListNode extends Node {
+
+        ListNode(Object edit, Object[] slots, int count) {
+            super(edit, slots, count);
+        }
+
+        final int indexOf(int hash, Object key) {
+            for (int i = 0; i < count; i++) {
+                Leaf leaf = (Leaf) slots[i];
+                if (leaf.hash == hash && eq(leaf.key, key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        final Leaf find(int hash, Object key, int shift) {
+            int i = indexOf(hash, key);
+            return i < 0 ? null : (Leaf) slots[i];
+        }
+
+        abstract ListNode copy(Object edit, int capacity);
+
+        /** Replace the leaf at the given index, or append it if the index is <code>count</code>. */
+        final ListNode set(Object edit, int index, Leaf leaf) {
+            ListNode node = this;
+            int capacity = Math.max(count, index + 1);
+            if (this.edit != edit || slots.length < capacity) {
+                node = copy(edit, capacity);
+            }
+            node.slots[index] = leaf;
+            node.count = capacity;
+            return node;
+        }
+
+        @Override
+        final Node remove(Object edit, int hash, Object key, int shift) {
+            if (count == 1) {
+                return null;
+            }
+            int i = indexOf(hash, key);
+            ListNode node = this.edit == edit ? this : copy(edit, count);
+            System.arraycopy(node.slots, i + 1, node.slots, i, count - i - 1);
+            node.count = count - 1;
+            node.slots[node.count] = null;
+            return node;
+        }
+    }
+
+    /**
+     * The root of a map with at most {@link #SMALL_MAX} entries, whatever
+     * their hashes.
+     */
+    private static final class SmallNode extends ListNode {
+
+        SmallNode(Object edit, Leaf leaf) {
+            super(edit, new Object[SMALL_MAX], 0);
+            if (leaf != null) {
+                slots[count++] = leaf;
+            }
+        }
+
+        private SmallNode(Object edit, Object[] slots, int count) {
+            super(edit, slots, count);
+        }
+
+        @Override
+        ListNode copy(Object edit, int capacity) {
+            Object[] copy = new Object[SMALL_MAX];
+            System.arraycopy(slots, 0, copy, 0, count);
+            return new SmallNode(edit, copy, count);
+        }
+
+        @Override
+        Node put(Object edit, Leaf leaf, int shift) {
+            int i = indexOf(leaf.hash, leaf.key);
+            if (i >= 0) {
+                return set(edit, i, leaf);
+            }
+            if (count < SMALL_MAX) {
+                return set(edit, count, leaf);
+            }
+            Node trie = new TrieNode(edit, 0, NO_SLOTS);
+            for (int j = 0; j < count; j++) {
+                trie = trie.put(edit, (Leaf) slots[j], 0);
+            }
+            return trie.put(edit, leaf, 0);
+        }
+    }
+
+    /**
+     * Leaves whose keys have the same hash.
+     */
+    private static final class CollisionNode extends ListNode {
+
+        final int hash;
+
+        CollisionNode(Object edit, int hash, Object[] slots, int count) {
+            super(edit, slots, count);
+            this.hash = hash;
+        }
+
+        @Override
+        ListNode copy(Object edit, int capacity) {
+            Object[] copy = new Object[capacity];
+            System.arraycopy(slots, 0, copy, 0, count);
+            return new CollisionNode(edit, hash, copy, count);
+        }
+
+        @Override
+        Node put(Object edit, Leaf leaf, int shift) {
+            if (leaf.hash != hash) {
+                return TrieNode.join(edit, this, hash, leaf, shift);
+            }
+            int i = indexOf(leaf.hash, leaf.key);
+            return set(edit, i >= 0 ? i : count, leaf);
+        }
+    }
+
+    /**
+     * A level of the trie: a bit of the bitmap is set for each 5-bit
+     * fragment of the hashes present, and the slots hold, in the order of
+     * the bits, the leaf or the node of the next level for that fragment.
+     */
+    private static final class TrieNode extends Node {
+
+        int bitmap;
+
+        TrieNode(Object edit, int bitmap, Object[] slots) {
+            super(edit, slots, slots.length);
+            this.bitmap = bitmap;
+        }
+
+        static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /**
+         * A node with the given leaf and the given node or leaf, whose hashes differ.
+         * The slots are in the order of the bits, compared unsigned as the
+         * bit of the fragment 31 is the sign bit.
+         */
+        static Node join(Object edit, Object a, int hashA, Leaf b, int shift) {
+            int bitA = bit(hashA, shift);
+            int bitB = bit(b.hash, shift);
+            if (bitA == bitB) {
+                return new TrieNode(edit, bitA, new Object[] {join(edit, a, hashA, b, shift + BITS)});
+            }
+            return new TrieNode(edit, bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] {a, b} : new Object[] {b, a});
+        }
+
+        @Override
+        Leaf find(int hash, Object key, int shift) {
+            Node node = this;
+            while (true) {
+                if (!(node instanceof TrieNode)) {
+                    return node.find(hash, key, shift);
+                }
+                TrieNode trie = (TrieNode) node;
+                int bit = bit(hash, shift);
+                if ((trie.bitmap & bit) == 0) {
+                    return null;
+                }
+                Object slot = trie.slots[trie.index(bit)];
+                if (slot instanceof Leaf) {
+                    Leaf leaf = (Leaf) slot;
+                    return leaf.hash == hash && eq(leaf.key, key) ? leaf : null;
+                }
+                node = (Node) slot;
+                shift += BITS;
+            }
+        }
+
+        private TrieNode editable(Object edit) {
+            return this.edit == edit ? this : new TrieNode(edit, bitmap, slots.clone());
+        }
+
+        @Override
+        Node put(Object edit, Leaf leaf, int shift) {
+            int bit = bit(leaf.hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[count + 1];
+                System.arraycopy(slots, 0, grown, 0, i);
+                grown[i] = leaf;
+                System.arraycopy(slots, i, grown, i + 1, count - i);
+                if (this.edit == edit) {
+                    bitmap |= bit;
+                    slots = grown;
+                    count++;
+                    return this;
+                }
+                return new TrieNode(edit, bitmap | bit, grown);
+            }
+            Object slot = slots[i];
+            Object replacement;
+            if (slot instanceof Leaf) {
+                Leaf existing = (Leaf) slot;
+                if (existing.hash == leaf.hash && eq(existing.key, leaf.key)) {
+                    replacement = leaf;
+                } else if (existing.hash == leaf.hash) {
+                    replacement = new CollisionNode(edit, leaf.hash, new Object[] {existing, leaf}, 2);
+                } else {
+                    replacement = join(edit, existing, existing.hash, leaf, shift + BITS);
+                }
+            } else {
+                replacement = ((Node) slot).put(edit, leaf, shift + BITS);
+                if (replacement == slot) {
+                    return this;
+                }
+            }
+            TrieNode node = editable(edit);
+            node.slots[i] = replacement;
+            return node;
+        }
+
+        @Override
+        Node remove(Object edit, int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            Object slot = slots[i];
+            Object replacement = null;
+            if (slot instanceof Node) {
+                Node child = ((Node) slot).remove(edit, hash, key, shift + BITS);
+                // a single leaf moves up in place of its node
+                replacement = child != null && child.count == 1 && child.slots[0] instanceof Leaf
+                        ? child.slots[0] : child;
+            }
+            if (replacement != null) {
+                if (replacement == slot) {
+                    return this;
+                }
+                TrieNode node = editable(edit);
+                node.slots[i] = replacement;
+                return node;
+            }
+            if (count == 1) {
+                return null;
+            }
+            Object[] shrunk = new Object[count - 1];
+            System.arraycopy(slots, 0, shrunk, 0, i);
+            System.arraycopy(slots, i + 1, shrunk, i, count - i - 1);
+            if (this.edit == edit) {
+                bitmap &= ~bit;
+                slots = shrunk;
+                count--;
+                return this;
+            }
+            return new TrieNode(edit, bitmap & ~bit, shrunk);
+        }
+    }
+
+    /**
+     * Walks the leaves of a trie, depth first. The nodes must not be
+     * modified while they are walked.
+     */
+    private static final class LeafIterator {
+
+        private final Node[] nodes = new Node[10];
+
+        private final int[] indexes = new int[10];
+
+        private int depth = -1;
+
+        private Leaf next;
+
+        LeafIterator(Node root) {
+            if (root != null) {
+                depth = 0;
+                nodes[0] = root;
+                advance();
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (indexes[depth] == node.count) {
+                    depth--;
+                    continue;
+                }
+                Object slot = node.slots[indexes[depth]++];
+                if (slot instanceof Leaf) {
+                    next = (Leaf) slot;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                indexes[depth] = 0;
+            }
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        Leaf next() {
+            Leaf leaf = next;
+            if (leaf == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return leaf;
+        }
+    }
+}
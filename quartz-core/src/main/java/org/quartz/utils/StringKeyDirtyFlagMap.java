@@ -57,7 +57,7 @@ public class StringKeyDirtyFlagMap extends DirtyFlagMap<String, Object> {
 
     @Override
     public int hashCode() {
-        return getWrappedMap().hashCode();
+        return super.hashCode();
     }
 
     /**
@@ -0,0 +1,143 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.quartz.TriggerKey;
+
+/**
+ * <p>
+ * Splits the triggers of a scheduler into partitions by the hash of their
+ * keys, for the scheduler threads of a
+ * <code>{@link org.quartz.spi.PartitionedJobStore}</code>, and for the
+ * instances of a partitioned JDBC cluster.
+ * </p>
+ */
+public final class TriggerPartitions {
+
+    private static final long CLUSTER_SALT = 0x9e3779b97f4a7c15L;
+
+    private TriggerPartitions() {
+    }
+
+    /**
+     * The partition, from 0 to <code>partitionCount - 1</code>, of the
+     * trigger with the given key.
+     */
+    public static int partitionOf(TriggerKey key, int partitionCount) {
+        if (partitionCount <= 1) {
+            return 0;
+        }
+        int h = key.hashCode();
+        // spread the high bits, the low ones of short names vary little
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    /**
+     * The partition, from 0 to <code>partitionCount - 1</code>, of the
+     * trigger with the given key among the partitions of a cluster.
+     *
+     * <p>
+     * The hash is mixed differently than by {@link #partitionOf}, so that the
+     * triggers of the cluster partitions an instance owns are still spread
+     * over all of its scheduler threads; with the same hash, 2 threads and 4
+     * cluster partitions, an instance owning partitions 1 and 3 would only
+     * ever acquire triggers for its second thread.
+     * </p>
+     */
+    public static int clusterPartitionOf(TriggerKey key, int partitionCount) {
+        if (partitionCount <= 1) {
+            return 0;
+        }
+        long h = mix(key.hashCode() ^ CLUSTER_SALT);
+        return (int) ((h >>> 1) % partitionCount);
+    }
+
+    /**
+     * The partitions, in ascending order, that the given instance owns among
+     * the given instances of a cluster.
+     *
+     * <p>
+     * A partition is owned by the instance with the highest hash of the
+     * instance's id and the partition (rendezvous hashing): every instance
+     * that knows the same instances works out the same owners without
+     * talking to the others, and when an instance joins or leaves, only the
+     * partitions it takes or leaves change owner.
+     * </p>
+     *
+     * @param instanceIds    the ids of the live instances; the given
+     *                       instance is counted even if it is not among them
+     */
+    public static int[] assign(Collection<String> instanceIds, String instanceId, int partitionCount) {
+        List<String> instances = new ArrayList<String>(instanceIds);
+        if (!instances.contains(instanceId)) {
+            instances.add(instanceId);
+        }
+        long[] hashes = new long[instances.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(instances.get(i));
+        }
+        long own = hash(instanceId);
+
+        int[] owned = new int[partitionCount];
+        int count = 0;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            long ownWeight = weight(own, partition);
+            boolean owner = true;
+            for (int i = 0; i < hashes.length && owner; i++) {
+                long weight = weight(hashes[i], partition);
+                // break ties by id, so that exactly one instance owns the partition
+                owner = weight < ownWeight
+                        || (weight == ownWeight && instances.get(i).compareTo(instanceId) >= 0);
+            }
+            if (owner) {
+                owned[count++] = partition;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(owned, 0, result, 0, count);
+        return result;
+    }
+
+    /** 64-bit FNV-1a of the characters of the id. */
+    private static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long weight(long instanceHash, int partition) {
+        // so that close partitions get unrelated weights
+        return mix(instanceHash ^ (partition * 0x9e3779b97f4a7c15L));
+    }
+
+    /** The finalizer of MurmurHash3. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
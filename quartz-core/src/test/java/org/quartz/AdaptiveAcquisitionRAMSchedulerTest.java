@@ -0,0 +1,107 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.quartz.core.QuartzSchedulerResources;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scheduler tests with adaptive acquisition, and checks the
+ * decisions it reports through JMX.
+ */
+public class AdaptiveAcquisitionRAMSchedulerTest extends RAMSchedulerTest {
+
+    @Override
+    protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        return createScheduler(name, threadPoolSize, config());
+    }
+
+    private static Properties config() {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.adaptiveAcquisition", "true");
+        return config;
+    }
+
+    private Scheduler createExportedScheduler(String name, int threadPoolSize) throws SchedulerException {
+        Properties config = config();
+        config.setProperty("org.quartz.scheduler.jmx.export", "true");
+        config.setProperty("org.quartz.scheduler.idleWaitTime", "1000");
+        return createScheduler(name, threadPoolSize, config);
+    }
+
+    private static long attribute(Scheduler scheduler, String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(QuartzSchedulerResources.generateJMXObjectName(
+                scheduler.getSchedulerName(), scheduler.getSchedulerInstanceId()));
+        return ((Number) server.getAttribute(objectName, name)).longValue();
+    }
+
+    @Test
+    public void testWaitsUntilNextFireTime() throws Exception {
+        Scheduler scheduler = createExportedScheduler("testWaitsUntilNextFireTime", 2);
+        try {
+            CountingJob.latch = new CountDownLatch(1);
+            scheduler.start();
+            JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").build();
+            scheduler.scheduleJob(job, TriggerBuilder.newTrigger().withIdentity("t")
+                    .startAt(new Date(System.currentTimeMillis() + 3000L)).build());
+            assertTrue(CountingJob.latch.await(10, TimeUnit.SECONDS));
+            assertTrue(attribute(scheduler, "NextFireTimeWaitCount") > 0);
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testBatchesGrowWhenFull() throws Exception {
+        Scheduler scheduler = createExportedScheduler("testBatchesGrowWhenFull", 10);
+        try {
+            CountingJob.latch = new CountDownLatch(200);
+            JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            long start = System.currentTimeMillis() + 200L;
+            for (int i = 0; i < 200; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + i)).build());
+            }
+            scheduler.start();
+            assertTrue(CountingJob.latch.await(20, TimeUnit.SECONDS));
+            assertTrue(attribute(scheduler, "AcquisitionBatchGrowCount") > 0);
+            assertTrue(attribute(scheduler, "AcquisitionBatchSize") > 1);
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public static class CountingJob implements Job {
+        static volatile CountDownLatch latch;
+
+        public void execute(JobExecutionContext context) {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.quartz;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * Differential test of {@link CompiledCronExpression} against the
+ * <code>Calendar</code> based computation of {@link CronExpression}, on
+ * random expressions, time zones and start times, with a bias for the
+ * special characters and for times around daylight saving transitions.
+ *
+ * <p>
+ * Start times are whole seconds: with milliseconds, the <code>W</code>
+ * computation of the <code>Calendar</code> based code depends on the
+ * milliseconds of the current time.
+ * </p>
+ */
+public class CompiledCronExpressionTest extends TestCase {
+
+    // not Pacific/Apia: both computations loop forever over the day it skipped
+    // at the end of 2011 for some 'W' expressions
+    private static final String[] ZONES = {
+        "UTC", "America/New_York", "Europe/London", "Europe/Paris", "Australia/Lord_Howe",
+        "America/Sao_Paulo", "America/Havana", "Asia/Kolkata", "Europe/Moscow",
+        "America/St_Johns", "Asia/Tehran", "Pacific/Chatham", "Africa/Casablanca"
+    };
+
+    private static final long YEAR_MILLIS = 365L * 24 * 3600 * 1000;
+
+    private final Random random = new Random(20240214L);
+
+    public void testMatchesCalendarComputation() throws Exception {
+        for (int i = 0; i < 3000; i++) {
+            CronExpression expression = randomExpression();
+            expression.setTimeZone(TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]));
+            check(expression, randomStart(expression.getTimeZone()));
+        }
+    }
+
+    public void testDaylightSavingTransitions() throws Exception {
+        String[] expressions = {
+            "0 30 2 * * ?", "0 0/15 1-3 * * ?", "0 * * * * ?", "* * 2 * * ?", "0 0 0 * * ?",
+            "0 30 1 ? * SUN", "0 0 2 L * ?", "0 0 2 LW * ?", "0 59 23 ? * 1#2", "0 0 1,2,3 ? * 6L"
+        };
+        for (String zone : ZONES) {
+            ZoneRules rules = ZoneId.of(zone).getRules();
+            for (String cron : expressions) {
+                CronExpression expression = new CronExpression(cron);
+                expression.setTimeZone(TimeZone.getTimeZone(zone));
+                Instant at = Instant.parse("1995-01-01T00:00:00Z");
+                for (int n = 0; n < 60; n++) {
+                    ZoneOffsetTransition transition = rules.nextTransition(at);
+                    if (transition == null) {
+                        break;
+                    }
+                    at = transition.getInstant();
+                    for (long delta = -3 * 3600; delta <= 3 * 3600; delta += 1800 + random.nextInt(60)) {
+                        check(expression, (at.getEpochSecond() + delta) * 1000L);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testFallsBackForOtherTimeZones() throws Exception {
+        CronExpression expression = new CronExpression("0 0 12 ? * MON-FRI");
+        expression.setTimeZone(new java.util.SimpleTimeZone(3600000, "Custom"));
+        Date start = new Date(1500000000000L);
+        assertEquals(expression.getTimeAfterWithCalendar(start), expression.getTimeAfter(start));
+    }
+
+    private void check(CronExpression expression, long start) {
+        Date expected;
+        Date actual;
+        Date after = new Date(start);
+        for (int step = 0; step < 5; step++) {
+            try {
+                expected = expression.getTimeAfterWithCalendar(after);
+            } catch (UnsupportedOperationException e) {
+                try {
+                    expression.getTimeAfter(after);
+                    fail("expected UnsupportedOperationException for " + expression);
+                } catch (UnsupportedOperationException ok) {
+                }
+                return;
+            }
+            actual = expression.getTimeAfter(after);
+            assertEquals(expression + " in " + expression.getTimeZone().getID() + " after " + after.getTime(),
+                    expected, actual);
+            if (expected == null) {
+                return;
+            }
+            after = expected;
+        }
+    }
+
+    private long randomStart(TimeZone zone) {
+        long start;
+        if (random.nextInt(3) == 0) {
+            // close to a transition
+            ZoneRules rules = ZoneId.of(zone.getID()).getRules();
+            long from = (long) (random.nextDouble() * 60 * YEAR_MILLIS);
+            ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(from));
+            start = transition == null ? from : transition.toEpochSecond() * 1000L;
+            start += (random.nextInt(6 * 3600) - 3 * 3600) * 1000L;
+        } else {
+            start = (long) ((random.nextDouble() * 140 - 10) * YEAR_MILLIS);
+        }
+        return start - Math.floorMod(start, 1000L);
+    }
+
+    private CronExpression randomExpression() throws ParseException {
+        while (true) {
+            String dayOfMonth;
+            String dayOfWeek;
+            if (random.nextBoolean()) {
+                dayOfMonth = randomDayOfMonth();
+                dayOfWeek = "?";
+            } else {
+                dayOfMonth = "?";
+                dayOfWeek = randomDayOfWeek();
+            }
+            StringBuilder cron = new StringBuilder();
+            cron.append(randomField(0, 59)).append(' ')
+                .append(randomField(0, 59)).append(' ')
+                .append(randomField(0, 23)).append(' ')
+                .append(dayOfMonth).append(' ')
+                .append(randomField(1, 12)).append(' ')
+                .append(dayOfWeek);
+            int years = random.nextInt(8);
+            if (years == 0) {
+                int from = 1990 + random.nextInt(100);
+                cron.append(' ').append(from).append('-').append(from + random.nextInt(20));
+            } else if (years == 1) {
+                cron.append(' ').append(1990 + random.nextInt(100)).append(',').append(2000 + random.nextInt(200));
+            }
+            try {
+                return new CronExpression(cron.toString());
+            } catch (ParseException e) {
+                // not every combination is valid, try another one
+            } catch (RuntimeException e) {
+                // nor does every invalid one fail with a ParseException
+            }
+        }
+    }
+
+    private String randomField(int min, int max) {
+        int span = max - min + 1;
+        switch (random.nextInt(7)) {
+            case 0:
+            case 1:
+                return "*";
+            case 2:
+                return String.valueOf(min + random.nextInt(span));
+            case 3:
+                return (min + random.nextInt(span)) + "," + (min + random.nextInt(span));
+            case 4: {
+                int from = min + random.nextInt(span);
+                return from + "-" + (min + random.nextInt(span));
+            }
+            case 5:
+                return (min + random.nextInt(span)) + "/" + (1 + random.nextInt(span));
+            default:
+                return "*/" + (1 + random.nextInt(Math.max(1, span / 2)));
+        }
+    }
+
+    private String randomDayOfMonth() {
+        switch (random.nextInt(8)) {
+            case 0:
+                return "L";
+            case 1:
+                return "L-" + random.nextInt(31);
+            case 2:
+                return "LW";
+            case 3:
+                return (1 + random.nextInt(31)) + "W";
+            default:
+                return randomField(1, 31);
+        }
+    }
+
+    private String randomDayOfWeek() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return (1 + random.nextInt(7)) + "L";
+            case 1:
+                return (1 + random.nextInt(7)) + "#" + (1 + random.nextInt(5));
+            default:
+                return randomField(1, 7);
+        }
+    }
+}
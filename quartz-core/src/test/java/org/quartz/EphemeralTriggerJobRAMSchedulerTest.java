@@ -0,0 +1,232 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.TriggerListenerSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scheduler tests with <code>triggerJob</code> firing ephemeral
+ * triggers, and checks that they are not stored but fire as usual.
+ */
+public class EphemeralTriggerJobRAMSchedulerTest extends RAMSchedulerTest {
+
+    @Override
+    protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.ephemeralTriggerJob", "true");
+        return createScheduler(name, threadPoolSize, config);
+    }
+
+    @Test
+    public void testTriggersAreNotStored() throws Exception {
+        Scheduler scheduler = createScheduler("testTriggersAreNotStored", 25);
+        try {
+            JobKey jobKey = JobKey.jobKey("job");
+            scheduler.addJob(JobBuilder.newJob(BlockingJob.class).withIdentity(jobKey)
+                    .usingJobData("fromJob", "a").storeDurably().build(), false);
+            CountingTriggerListener listener = new CountingTriggerListener();
+            scheduler.getListenerManager().addTriggerListener(listener);
+            scheduler.start();
+
+            BlockingJob.release = new CountDownLatch(1);
+            BlockingJob.done = new CountDownLatch(20);
+            BlockingJob.merged.set(0);
+            JobDataMap data = new JobDataMap();
+            data.put("fromTrigger", "b");
+            for (int i = 0; i < 20; i++) {
+                scheduler.triggerJob(jobKey, data);
+            }
+            assertTrue(scheduler.getTriggersOfJob(jobKey).isEmpty());
+            BlockingJob.release.countDown();
+            assertTrue(BlockingJob.done.await(10, TimeUnit.SECONDS));
+            assertEquals(20, BlockingJob.merged.get());
+            assertEquals(20, listener.fired.get());
+            Thread.sleep(100L);
+            assertEquals(20, listener.completed.get());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testNonConcurrentJobsGoThroughTheStore() throws Exception {
+        Scheduler scheduler = createScheduler("testNonConcurrentJobsGoThroughTheStore", 5);
+        try {
+            NonConcurrentJob.running.set(0);
+            NonConcurrentJob.overlaps.set(0);
+            NonConcurrentJob.done = new CountDownLatch(4);
+            JobKey jobKey = JobKey.jobKey("job");
+            scheduler.addJob(JobBuilder.newJob(NonConcurrentJob.class).withIdentity(jobKey).storeDurably().build(),
+                    false);
+            scheduler.start();
+            for (int i = 0; i < 4; i++) {
+                scheduler.triggerJob(jobKey);
+            }
+            assertTrue(NonConcurrentJob.done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, NonConcurrentJob.overlaps.get());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testTriggeredInStandbyFiresOnStart() throws Exception {
+        Scheduler scheduler = createScheduler("testTriggeredInStandbyFiresOnStart", 5);
+        try {
+            BlockingJob.release = new CountDownLatch(0);
+            BlockingJob.done = new CountDownLatch(1);
+            JobKey jobKey = JobKey.jobKey("job");
+            scheduler.addJob(JobBuilder.newJob(BlockingJob.class).withIdentity(jobKey).storeDurably().build(), false);
+            scheduler.triggerJob(jobKey);
+            assertEquals(1, scheduler.getTriggersOfJob(jobKey).size());
+            scheduler.start();
+            assertTrue(BlockingJob.done.await(10, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testPausedJobGroupWaits() throws Exception {
+        Scheduler scheduler = createScheduler("testPausedJobGroupWaits", 5);
+        try {
+            BlockingJob.release = new CountDownLatch(0);
+            BlockingJob.done = new CountDownLatch(1);
+            JobKey jobKey = JobKey.jobKey("job", "paused");
+            scheduler.addJob(JobBuilder.newJob(BlockingJob.class).withIdentity(jobKey).storeDurably().build(), false);
+            scheduler.pauseJobs(GroupMatcher.jobGroupEquals("paused"));
+            scheduler.start();
+            scheduler.triggerJob(jobKey);
+            assertEquals(1, scheduler.getTriggersOfJob(jobKey).size());
+            assertFalse(BlockingJob.done.await(200, TimeUnit.MILLISECONDS));
+            scheduler.resumeJobs(GroupMatcher.jobGroupEquals("paused"));
+            assertTrue(BlockingJob.done.await(10, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testCallerWaitsForAFreeThread() throws Exception {
+        final Scheduler scheduler = createScheduler("testCallerWaitsForAFreeThread", 1);
+        try {
+            BlockingJob.release = new CountDownLatch(1);
+            BlockingJob.done = new CountDownLatch(2);
+            final JobKey jobKey = JobKey.jobKey("job");
+            scheduler.addJob(JobBuilder.newJob(BlockingJob.class).withIdentity(jobKey).storeDurably().build(), false);
+            scheduler.start();
+            scheduler.triggerJob(jobKey);
+
+            final CountDownLatch returned = new CountDownLatch(1);
+            Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        scheduler.triggerJob(jobKey);
+                        returned.countDown();
+                    } catch (SchedulerException e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            caller.start();
+            // the only thread of the pool is busy
+            assertFalse(returned.await(200, TimeUnit.MILLISECONDS));
+            BlockingJob.release.countDown();
+            assertTrue(returned.await(10, TimeUnit.SECONDS));
+            assertTrue(BlockingJob.done.await(10, TimeUnit.SECONDS));
+            assertTrue(scheduler.getTriggersOfJob(jobKey).isEmpty());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public static class CountingTriggerListener extends TriggerListenerSupport {
+        final AtomicInteger fired = new AtomicInteger();
+
+        final AtomicInteger completed = new AtomicInteger();
+
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            fired.incrementAndGet();
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+            completed.incrementAndGet();
+        }
+    }
+
+    public static class BlockingJob implements Job {
+        static volatile CountDownLatch release;
+
+        static volatile CountDownLatch done;
+
+        static final AtomicInteger merged = new AtomicInteger();
+
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            }
+            JobDataMap data = context.getMergedJobDataMap();
+            if ("a".equals(data.get("fromJob")) && "b".equals(data.get("fromTrigger"))) {
+                merged.incrementAndGet();
+            }
+            done.countDown();
+        }
+    }
+
+    @DisallowConcurrentExecution
+    public static class NonConcurrentJob implements Job {
+        static final AtomicInteger running = new AtomicInteger();
+
+        static final AtomicInteger overlaps = new AtomicInteger();
+
+        static volatile CountDownLatch done;
+
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            if (running.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            } finally {
+                running.decrementAndGet();
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scheduler tests with several scheduler threads, each acquiring its
+ * own partition of the triggers, and checks that every trigger fires once.
+ */
+public class PartitionedRAMSchedulerTest extends RAMSchedulerTest {
+
+    @Override
+    protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        return createScheduler(name, threadPoolSize, false);
+    }
+
+    private Scheduler createScheduler(String name, int threadPoolSize, boolean useTimingWheel) throws SchedulerException {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.schedulerThreadCount", "4");
+        config.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "4");
+        config.setProperty("org.quartz.jobStore.useTimingWheel", Boolean.toString(useTimingWheel));
+        return createScheduler(name, threadPoolSize, config);
+    }
+
+    @Test
+    public void testEachTriggerFiresOnce() throws Exception {
+        Scheduler scheduler = createScheduler("testEachTriggerFiresOnce", 10);
+        try {
+            FiringJob.fired.clear();
+            FiringJob.duplicates.set(0);
+            FiringJob.latch = new CountDownLatch(200);
+            JobDetail job = JobBuilder.newJob(FiringJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            scheduler.start();
+            // scheduled while running, so that the signals reach the owning threads
+            long start = System.currentTimeMillis() + 200L;
+            for (int i = 0; i < 200; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + (i % 20) * 10L)).build());
+            }
+            assertTrue(FiringJob.latch.await(20, TimeUnit.SECONDS));
+            Thread.sleep(100L);
+            assertEquals(200, FiringJob.fired.size());
+            assertEquals(0, FiringJob.duplicates.get());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testTriggersStoredBeforeStartFireWithTimingWheel() throws Exception {
+        Scheduler scheduler = createScheduler("testTriggersStoredBeforeStartFireWithTimingWheel", 10, true);
+        try {
+            FiringJob.fired.clear();
+            FiringJob.duplicates.set(0);
+            FiringJob.latch = new CountDownLatch(100);
+            JobDetail job = JobBuilder.newJob(FiringJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            // stored in the unpartitioned wheel, moved to the partitions on the first acquire
+            long start = System.currentTimeMillis() + 200L;
+            for (int i = 0; i < 100; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + (i % 10) * 10L)).build());
+            }
+            scheduler.start();
+            assertTrue(FiringJob.latch.await(20, TimeUnit.SECONDS));
+            Thread.sleep(100L);
+            assertEquals(100, FiringJob.fired.size());
+            assertEquals(0, FiringJob.duplicates.get());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public static class FiringJob implements Job {
+        static final Set<TriggerKey> fired = ConcurrentHashMap.newKeySet();
+
+        static final AtomicInteger duplicates = new AtomicInteger();
+
+        static volatile CountDownLatch latch;
+
+        public void execute(JobExecutionContext context) {
+            if (!fired.add(context.getTrigger().getKey())) {
+                duplicates.incrementAndGet();
+            }
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.quartz;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.spi.OperableTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scheduler tests with the trigger acquisition pipelined, and checks
+ * that batches acquired ahead fire on time and respect
+ * <code>{@link DisallowConcurrentExecution}</code>.
+ */
+public class PipelinedRAMSchedulerTest extends RAMSchedulerTest {
+
+    @Override
+    protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.pipelineTriggerAcquisition", "true");
+        config.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "4");
+        return createScheduler(name, threadPoolSize, config);
+    }
+
+    @Test
+    public void testBatchesAcquiredAheadAllFire() throws Exception {
+        Scheduler scheduler = createScheduler("testBatchesAcquiredAheadAllFire", 10);
+        try {
+            CountingJob.latch = new CountDownLatch(100);
+            JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            long start = System.currentTimeMillis() + 200L;
+            for (int i = 0; i < 100; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + i * 5L)).build());
+            }
+            scheduler.start();
+            assertTrue(CountingJob.latch.await(20, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testNoConcurrentExecutionAcrossBatches() throws Exception {
+        Scheduler scheduler = createScheduler("testNoConcurrentExecutionAcrossBatches", 10);
+        try {
+            NonConcurrentJob.running.set(0);
+            NonConcurrentJob.overlaps.set(0);
+            NonConcurrentJob.latch = new CountDownLatch(6);
+            JobDetail job = JobBuilder.newJob(NonConcurrentJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            long start = System.currentTimeMillis() + 200L;
+            // a trigger per batch, each due before the job is done
+            for (int i = 0; i < 6; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + i * 10L)).build());
+            }
+            scheduler.start();
+            assertTrue(NonConcurrentJob.latch.await(20, TimeUnit.SECONDS));
+            assertEquals(0, NonConcurrentJob.overlaps.get());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    @Test
+    public void testBatchAcquiredAheadIsReleasedOnShutdown() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.pipelineTriggerAcquisition", "true");
+        config.setProperty("org.quartz.jobStore.class", TrackingJobStore.class.getName());
+        Scheduler scheduler = createScheduler("testBatchAcquiredAheadIsReleasedOnShutdown", 10, config);
+        TrackingJobStore.acquired = new CountDownLatch(2);
+        TrackingJobStore.released.clear();
+        JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build();
+        scheduler.addJob(job, false);
+        long start = System.currentTimeMillis() + 2000L;
+        scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("first").forJob(job)
+                .startAt(new Date(start)).build());
+        scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("ahead").forJob(job)
+                .startAt(new Date(start + 100L)).build());
+        scheduler.start();
+        try {
+            assertTrue(TrackingJobStore.acquired.await(10, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown(true);
+        }
+        assertTrue(TrackingJobStore.released.contains(TriggerKey.triggerKey("ahead")));
+    }
+
+    public static class TrackingJobStore extends RAMJobStore {
+        static volatile CountDownLatch acquired;
+
+        static final Set<TriggerKey> released = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow) {
+            List<OperableTrigger> triggers = super.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+            for (int i = 0; i < triggers.size(); i++) {
+                acquired.countDown();
+            }
+            return triggers;
+        }
+
+        @Override
+        public void releaseAcquiredTrigger(OperableTrigger trigger) {
+            released.add(trigger.getKey());
+            super.releaseAcquiredTrigger(trigger);
+        }
+    }
+
+    public static class CountingJob implements Job {
+        static volatile CountDownLatch latch;
+
+        public void execute(JobExecutionContext context) {
+            latch.countDown();
+        }
+    }
+
+    @DisallowConcurrentExecution
+    public static class NonConcurrentJob implements Job {
+        static final AtomicInteger running = new AtomicInteger();
+
+        static final AtomicInteger overlaps = new AtomicInteger();
+
+        static volatile CountDownLatch latch;
+
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            if (running.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            } finally {
+                running.decrementAndGet();
+                latch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scheduler tests with precision firing, and checks that jobs do
+ * not start before their fire times and that their lateness is recorded.
+ */
+public class PrecisionFiringRAMSchedulerTest extends RAMSchedulerTest {
+
+    @Override
+    protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.precisionFiring", "true");
+        return createScheduler(name, threadPoolSize, config);
+    }
+
+    @Test
+    public void testNoJobStartsEarly() throws Exception {
+        Scheduler scheduler = createScheduler("testNoJobStartsEarly", 5);
+        try {
+            TimedJob.early.set(0);
+            TimedJob.latch = new CountDownLatch(20);
+            JobDetail job = JobBuilder.newJob(TimedJob.class).withIdentity("job").storeDurably().build();
+            scheduler.addJob(job, false);
+            scheduler.start();
+            long start = System.currentTimeMillis() + 100L;
+            for (int i = 0; i < 20; i++) {
+                scheduler.scheduleJob(TriggerBuilder.newTrigger().withIdentity("t" + i).forJob(job)
+                        .startAt(new Date(start + i * 7L)).build());
+            }
+            assertTrue(TimedJob.latch.await(20, TimeUnit.SECONDS));
+            assertEquals(0, TimedJob.early.get());
+            assertEquals(20, scheduler.getMetaData().getNumberOfJobsExecuted());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public static class TimedJob implements Job {
+        static final AtomicInteger early = new AtomicInteger();
+
+        static volatile CountDownLatch latch;
+
+        public void execute(JobExecutionContext context) {
+            if (System.currentTimeMillis() < context.getScheduledFireTime().getTime()) {
+                early.incrementAndGet();
+            }
+            latch.countDown();
+        }
+    }
+}
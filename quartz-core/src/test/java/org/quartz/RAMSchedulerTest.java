@@ -23,11 +23,20 @@ public class RAMSchedulerTest extends AbstractSchedulerTest {
 
     @Override
     protected Scheduler createScheduler(String name, int threadPoolSize) throws SchedulerException {
+        return createScheduler(name, threadPoolSize, new Properties());
+    }
+
+    /**
+     * Creates a scheduler like <code>{@link #createScheduler(String, int)}</code>
+     * does, with the given properties added to or overriding its own.
+     */
+    protected Scheduler createScheduler(String name, int threadPoolSize, Properties extra) throws SchedulerException {
         Properties config = new Properties();
         config.setProperty("org.quartz.scheduler.instanceName", name + "Scheduler");
         config.setProperty("org.quartz.scheduler.instanceId", "AUTO");
         config.setProperty("org.quartz.threadPool.threadCount", Integer.toString(threadPoolSize));
         config.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        config.putAll(extra);
         return new StdSchedulerFactory(config).getScheduler();
     }
 }
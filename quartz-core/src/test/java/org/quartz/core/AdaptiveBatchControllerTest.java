@@ -0,0 +1,96 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the decisions of AdaptiveBatchController.
+ */
+public class AdaptiveBatchControllerTest extends TestCase {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public void testDisabledKeepsConfiguration() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(false, 1, 0, 64, 50, 20);
+        for (int i = 0; i < 10; i++) {
+            controller.acquired(1, 1);
+        }
+        assertEquals(1, controller.getBatchSize());
+        assertEquals(0, controller.getTimeWindow());
+        assertEquals(0, controller.getGrowCount());
+    }
+
+    public void testGrowsAfterFullBatches() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(true, 1, 0, 8, 4, 20);
+        controller.acquired(1, 1);
+        controller.acquired(1, 1);
+        assertEquals(1, controller.getBatchSize());
+        controller.acquired(1, 1);
+        assertEquals(2, controller.getBatchSize());
+        assertEquals(1, controller.getTimeWindow());
+
+        for (int i = 0; i < 30; i++) {
+            controller.acquired(controller.getBatchSize(), controller.getBatchSize());
+        }
+        assertEquals(8, controller.getBatchSize());
+        assertEquals(4, controller.getTimeWindow());
+        assertEquals(3, controller.getGrowCount());
+    }
+
+    public void testPartialBatchesDoNotGrow() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(true, 4, 0, 64, 50, 20);
+        for (int i = 0; i < 10; i++) {
+            controller.acquired(4, 3);
+            // cut short by the threads available
+            controller.acquired(2, 2);
+        }
+        assertEquals(4, controller.getBatchSize());
+    }
+
+    public void testShrinksWhenLate() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(true, 2, 5, 64, 50, 20);
+        for (int i = 0; i < 9; i++) {
+            controller.acquired(controller.getBatchSize(), controller.getBatchSize());
+        }
+        assertEquals(16, controller.getBatchSize());
+        assertEquals(40, controller.getTimeWindow());
+
+        for (int i = 0; i < 50; i++) {
+            controller.fired(100 * MS);
+        }
+        controller.acquired(16, 16);
+        assertEquals(8, controller.getBatchSize());
+        assertEquals(20, controller.getTimeWindow());
+        assertEquals(1, controller.getShrinkCount());
+
+        // on time again: no further shrinking
+        controller.fired(MS);
+        controller.acquired(8, 2);
+        assertEquals(8, controller.getBatchSize());
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 50; j++) {
+                controller.fired(100 * MS);
+            }
+            controller.acquired(1, 1);
+        }
+        assertEquals(2, controller.getBatchSize());
+        assertEquals(5, controller.getTimeWindow());
+    }
+}
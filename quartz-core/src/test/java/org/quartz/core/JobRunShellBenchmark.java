@@ -0,0 +1,230 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.DefaultThreadExecutor;
+import org.quartz.impl.StdScheduler;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Fire rate benchmark of the <code>JobRunShell</code> life cycle.
+ *
+ * <p>
+ * Runs a scheduler with triggers that fire a no-op job every millisecond,
+ * once with the shells registered in the running shell registry (the current
+ * behaviour) and once with shells that also add and remove themselves as
+ * internal scheduler listeners around each run, as they used to, and prints
+ * the fires per second of each; before that, it times the registration and
+ * deregistration alone. The jobs sleep a little, so that many shells
+ * are running at once, as with real jobs. This is not run as part of the
+ * test suite; start it with <code>main</code>, optionally passing the number
+ * of seconds per run, the number of worker threads, the number of triggers
+ * and the job duration in milliseconds.
+ * </p>
+ */
+public class JobRunShellBenchmark {
+
+    static final LongAdder FIRES = new LongAdder();
+
+    static volatile long jobMillis;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int triggers = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        jobMillis = args.length > 3 ? Long.parseLong(args[3]) : 2L;
+
+        for (int round = 0; round < 2; round++) {
+            registrations("registry", false, threads);
+            registrations("listener list", true, threads);
+        }
+        for (int round = 0; round < 2; round++) {
+            run("registry", false, seconds, threads, triggers);
+            run("listener list", true, seconds, threads, triggers);
+        }
+    }
+
+    /**
+     * Just the registration and deregistration each shell goes through, from
+     * 16 threads, while <code>inFlight</code> other shells are registered.
+     */
+    private static void registrations(String name, final boolean listenerShells, int inFlight) throws Exception {
+        QuartzSchedulerResources qrs = new QuartzSchedulerResources();
+        qrs.setName("JobRunShellBenchmark");
+        qrs.setInstanceId("NON_CLUSTERED");
+        qrs.setThreadPool(new SimpleThreadPool(1, Thread.NORM_PRIORITY));
+        qrs.setThreadExecutor(new DefaultThreadExecutor());
+        qrs.setJobStore(new RAMJobStore());
+        qrs.setRMIRegistryPort(-1);
+        final QuartzScheduler qs = new QuartzScheduler(qrs, -1, -1);
+        for (int i = 0; i < inFlight; i++) {
+            register(qs, new JobRunShell(null, null), listenerShells);
+        }
+
+        final long end = System.nanoTime() + 2000000000L;
+        final LongAdder count = new LongAdder();
+        Thread[] threads = new Thread[16];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    JobRunShell shell = new JobRunShell(null, null);
+                    while (System.nanoTime() < end) {
+                        register(qs, shell, listenerShells);
+                        deregister(qs, shell, listenerShells);
+                        count.increment();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        qs.shutdown(false);
+        System.out.println(String.format("%-14s %,10d registrations/s with %d shells running",
+                name, count.sum() / 2, inFlight));
+    }
+
+    private static void register(QuartzScheduler qs, JobRunShell shell, boolean listenerShells) {
+        if (listenerShells) {
+            qs.addInternalSchedulerListener(shell);
+        } else {
+            qs.addRunningShell(shell);
+        }
+    }
+
+    private static void deregister(QuartzScheduler qs, JobRunShell shell, boolean listenerShells) {
+        if (listenerShells) {
+            qs.removeInternalSchedulerListener(shell);
+        } else {
+            qs.removeRunningShell(shell);
+        }
+    }
+
+    private static void run(String name, boolean listenerShells, int seconds, int threads, int triggers)
+            throws Exception {
+        SimpleThreadPool threadPool = new SimpleThreadPool(threads, Thread.NORM_PRIORITY);
+        threadPool.setInstanceName("JobRunShellBenchmark");
+        threadPool.initialize();
+        RAMJobStore jobStore = new RAMJobStore();
+        jobStore.setMisfireThreshold(Long.MAX_VALUE / 2);
+        BenchmarkShellFactory shellFactory = new BenchmarkShellFactory(listenerShells);
+
+        QuartzSchedulerResources qrs = new QuartzSchedulerResources();
+        qrs.setName("JobRunShellBenchmark");
+        qrs.setInstanceId("NON_CLUSTERED");
+        qrs.setJobRunShellFactory(shellFactory);
+        qrs.setThreadPool(threadPool);
+        qrs.setThreadExecutor(new DefaultThreadExecutor());
+        qrs.setJobStore(jobStore);
+        qrs.setMaxBatchSize(threads);
+        qrs.setRMIRegistryPort(-1);
+
+        QuartzScheduler qs = new QuartzScheduler(qrs, -1, -1);
+        CascadingClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        jobStore.initialize(loadHelper, qs.getSchedulerSignaler());
+        Scheduler scheduler = new StdScheduler(qs);
+        shellFactory.initialize(scheduler);
+        qs.initialize();
+
+        for (int i = 0; i < triggers; i++) {
+            JobDetail job = JobBuilder.newJob(NoOpJob.class).withIdentity("job" + i).build();
+            Trigger trigger = TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(1)
+                            .repeatForever().withMisfireHandlingInstructionIgnoreMisfires())
+                    .startNow().build();
+            scheduler.scheduleJob(job, trigger);
+        }
+
+        scheduler.start();
+        Thread.sleep(1000L);
+        long before = FIRES.sum();
+        Thread.sleep(seconds * 1000L);
+        long fires = FIRES.sum() - before;
+        scheduler.shutdown(true);
+
+        System.out.println(String.format("%-14s %,10d fires/s", name, fires / seconds));
+    }
+
+    public static class NoOpJob implements Job {
+        public void execute(JobExecutionContext context) {
+            if (jobMillis > 0) {
+                try {
+                    Thread.sleep(jobMillis);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            FIRES.increment();
+        }
+    }
+
+    static class BenchmarkShellFactory implements JobRunShellFactory {
+
+        private final boolean listenerShells;
+
+        private Scheduler scheduler;
+
+        BenchmarkShellFactory(boolean listenerShells) {
+            this.listenerShells = listenerShells;
+        }
+
+        public void initialize(Scheduler sched) {
+            this.scheduler = sched;
+        }
+
+        public JobRunShell createJobRunShell(TriggerFiredBundle bndle) throws SchedulerException {
+            return listenerShells ? new ListenerShell(scheduler, bndle) : new JobRunShell(scheduler, bndle);
+        }
+    }
+
+    /**
+     * A shell that registers itself as an internal scheduler listener while
+     * it runs, as all of them used to.
+     */
+    static class ListenerShell extends JobRunShell {
+
+        ListenerShell(Scheduler scheduler, TriggerFiredBundle bndle) {
+            super(scheduler, bndle);
+        }
+
+        @Override
+        public void run() {
+            QuartzScheduler sched = qs;
+            sched.addInternalSchedulerListener(this);
+            try {
+                super.run();
+            } finally {
+                sched.removeInternalSchedulerListener(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SchedulerListener;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.DefaultThreadExecutor;
+import org.quartz.impl.StdScheduler;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.TriggerFiredBundle;
+
+import junit.framework.TestCase;
+
+/**
+ * Running <code>JobRunShell</code>s are told about the scheduler shutting
+ * down without being registered as scheduler listeners.
+ */
+public class JobRunShellRegistryTest extends TestCase {
+
+    static final CountDownLatch started = new CountDownLatch(1);
+
+    static final CountDownLatch release = new CountDownLatch(1);
+
+    public void testRunningShellsAreAskedToStopOnShutdown() throws Exception {
+        SimpleThreadPool threadPool = new SimpleThreadPool(2, Thread.NORM_PRIORITY);
+        threadPool.setInstanceName("JobRunShellRegistryTest");
+        threadPool.initialize();
+        RAMJobStore jobStore = new RAMJobStore();
+        final List<JobRunShell> shells = new CopyOnWriteArrayList<JobRunShell>();
+        JobRunShellFactory shellFactory = new JobRunShellFactory() {
+            private Scheduler scheduler;
+
+            public void initialize(Scheduler sched) {
+                this.scheduler = sched;
+            }
+
+            public JobRunShell createJobRunShell(TriggerFiredBundle bndle) throws SchedulerException {
+                JobRunShell shell = new JobRunShell(scheduler, bndle);
+                shells.add(shell);
+                return shell;
+            }
+        };
+
+        QuartzSchedulerResources qrs = new QuartzSchedulerResources();
+        qrs.setName("JobRunShellRegistryTest");
+        qrs.setInstanceId("NON_CLUSTERED");
+        qrs.setJobRunShellFactory(shellFactory);
+        qrs.setThreadPool(threadPool);
+        qrs.setThreadExecutor(new DefaultThreadExecutor());
+        qrs.setJobStore(jobStore);
+        qrs.setRMIRegistryPort(-1);
+        QuartzScheduler qs = new QuartzScheduler(qrs, -1, -1);
+        CascadingClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        jobStore.initialize(loadHelper, qs.getSchedulerSignaler());
+        Scheduler scheduler = new StdScheduler(qs);
+        shellFactory.initialize(scheduler);
+        qs.initialize();
+
+        scheduler.scheduleJob(JobBuilder.newJob(BlockingJob.class).build(),
+                TriggerBuilder.newTrigger().startNow().build());
+        scheduler.start();
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (SchedulerListener listener : qs.getInternalSchedulerListeners()) {
+                assertFalse(listener instanceof JobRunShell);
+            }
+            assertEquals(1, shells.size());
+            assertFalse(shells.get(0).shutdownRequested);
+
+            scheduler.shutdown(false);
+            assertTrue(shells.get(0).shutdownRequested);
+        } finally {
+            release.countDown();
+            scheduler.shutdown(true);
+        }
+    }
+
+    public static class BlockingJob implements Job {
+        public void execute(JobExecutionContext context) {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.AsyncListener;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerListener;
+import org.quartz.core.ListenerDispatcher.OverflowPolicy;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.listeners.JobListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the asynchronous delivery of the notifications of listeners
+ * marked with <code>{@link AsyncListener}</code>.
+ */
+public class ListenerDispatcherTest extends TestCase {
+
+    public void testUnmarkedListenersAreNotWrapped() {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 1, 10, 10, OverflowPolicy.BLOCK, true);
+        JobListener listener = new JobListenerSupport() {
+            public String getName() {
+                return "sync";
+            }
+        };
+        assertSame(listener, dispatcher.decorate(listener));
+        assertNotSame(new RecordingJobListener(), dispatcher.decorate(new RecordingJobListener()));
+        dispatcher.shutdown();
+    }
+
+    public void testNotificationsAreDeliveredInOrderOnADispatchThread() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 2, 1000, 8, OverflowPolicy.BLOCK, true);
+        RecordingJobListener listener = new RecordingJobListener();
+        JobListener async = dispatcher.decorate(listener);
+        for (int i = 0; i < 100; i++) {
+            async.jobToBeExecuted(null);
+        }
+        async.jobWasExecuted(null, null);
+        assertTrue(listener.executed.await(10, TimeUnit.SECONDS));
+        assertEquals(100, listener.events.size());
+        assertEquals(1, listener.threads.size());
+        assertTrue(listener.threads.get(0).startsWith("test_ListenerDispatcher-"));
+        dispatcher.shutdown();
+    }
+
+    public void testVetoStaysSynchronous() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 1, 10, 10, OverflowPolicy.BLOCK, true);
+        final VetoingTriggerListener listener = new VetoingTriggerListener();
+        TriggerListener async = dispatcher.decorate(listener);
+        assertNotSame(listener, async);
+        async.triggerFired(null, null);
+        assertEquals(Thread.currentThread().getName(), listener.firedOn);
+        assertTrue(async.vetoJobExecution(null, null));
+        dispatcher.shutdown();
+    }
+
+    public void testDropPolicy() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 1, 2, 1, OverflowPolicy.DROP, true);
+        BlockingJobListener listener = new BlockingJobListener();
+        JobListener async = dispatcher.decorate(listener);
+        async.jobToBeExecuted(null);
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+        // two fit in the queue, the rest is dropped
+        for (int i = 0; i < 5; i++) {
+            async.jobToBeExecuted(null);
+        }
+        assertEquals(3, dispatcher.getDroppedCount());
+        listener.release.countDown();
+        dispatcher.shutdown();
+        assertEquals(3, listener.count);
+    }
+
+    public void testCallerRunsPolicy() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 1, 1, 1, OverflowPolicy.CALLER_RUNS, true);
+        BlockingJobListener listener = new BlockingJobListener();
+        JobListener async = dispatcher.decorate(listener);
+        async.jobToBeExecuted(null);
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+        async.jobToBeExecuted(null);
+        assertEquals(1, dispatcher.getQueuedCount());
+        releaseLater(listener);
+        // the queue is full, so this one is delivered right here
+        async.jobToBeExecuted(null);
+        assertTrue(listener.threads.contains(Thread.currentThread().getName()));
+        dispatcher.shutdown();
+        assertEquals(0, dispatcher.getDroppedCount());
+        assertEquals(3, listener.count);
+    }
+
+    public void testBlockPolicyWaitsForRoom() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test", 1, 1, 1, OverflowPolicy.BLOCK, true);
+        BlockingJobListener listener = new BlockingJobListener();
+        JobListener async = dispatcher.decorate(listener);
+        async.jobToBeExecuted(null);
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+        async.jobToBeExecuted(null);
+        releaseLater(listener);
+        long start = System.nanoTime();
+        async.jobToBeExecuted(null);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100L));
+        dispatcher.shutdown();
+        assertEquals(3, listener.count);
+        assertFalse(listener.threads.contains(Thread.currentThread().getName()));
+    }
+
+    public void testNothingIsLostOnShutdown() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            ListenerDispatcher dispatcher = new ListenerDispatcher("test", 2, 16, 4, OverflowPolicy.BLOCK, true);
+            final CountingJobListener listener = new CountingJobListener();
+            final JobListener async = dispatcher.decorate(listener);
+            final CountDownLatch go = new CountDownLatch(1);
+            Thread[] callers = new Thread[4];
+            for (int i = 0; i < callers.length; i++) {
+                callers[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            go.await();
+                        } catch (InterruptedException ignore) {
+                        }
+                        for (int j = 0; j < 500; j++) {
+                            async.jobToBeExecuted(null);
+                        }
+                    }
+                };
+                callers[i].start();
+            }
+            go.countDown();
+            Thread.sleep(1L);
+            dispatcher.shutdown();
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            assertEquals(callers.length * 500, listener.count.get());
+        }
+    }
+
+    public void testSlowListenerDoesNotDelayJobs() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.instanceName", "ListenerDispatcherTest");
+        config.setProperty("org.quartz.threadPool.threadCount", "2");
+        config.setProperty("org.quartz.scheduler.listenerDispatch.overflowPolicy", "block");
+        Scheduler scheduler = new StdSchedulerFactory(config).getScheduler();
+        try {
+            BlockingJobListener listener = new BlockingJobListener();
+            scheduler.getListenerManager().addJobListener(listener);
+            scheduler.scheduleJob(JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build(),
+                    TriggerBuilder.newTrigger().startNow().build());
+            scheduler.start();
+            assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+            // the listener is stuck, yet the job runs and can run again
+            assertTrue(CountingJob.ran.await(10, TimeUnit.SECONDS));
+            Trigger again = TriggerBuilder.newTrigger().forJob("job").startNow().build();
+            CountingJob.ran = new CountDownLatch(1);
+            scheduler.scheduleJob(again);
+            assertTrue(CountingJob.ran.await(10, TimeUnit.SECONDS));
+            listener.release.countDown();
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    private static void releaseLater(final BlockingJobListener listener) {
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignore) {
+                }
+                listener.release.countDown();
+            }
+        }.start();
+    }
+
+    public static class CountingJob implements Job {
+        static volatile CountDownLatch ran = new CountDownLatch(1);
+
+        public void execute(JobExecutionContext context) {
+            ran.countDown();
+        }
+    }
+
+    @AsyncListener
+    static class RecordingJobListener extends JobListenerSupport {
+        final List<Object> events = new CopyOnWriteArrayList<Object>();
+
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+
+        final CountDownLatch executed = new CountDownLatch(1);
+
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+            events.add(events.size());
+            if (!threads.contains(Thread.currentThread().getName())) {
+                threads.add(Thread.currentThread().getName());
+            }
+        }
+
+        @Override
+        public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+            executed.countDown();
+        }
+    }
+
+    @AsyncListener
+    static class CountingJobListener extends JobListenerSupport {
+        final AtomicInteger count = new AtomicInteger();
+
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+            count.incrementAndGet();
+        }
+    }
+
+    @AsyncListener
+    static class BlockingJobListener extends JobListenerSupport {
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+
+        volatile int count;
+
+        public String getName() {
+            return "blocking";
+        }
+
+        @Override
+        public void jobToBeExecuted(JobExecutionContext context) {
+            threads.add(Thread.currentThread().getName());
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) {
+            }
+            count++;
+        }
+    }
+
+    @AsyncListener
+    static class VetoingTriggerListener extends TriggerListenerSupport {
+        volatile String firedOn;
+
+        public String getName() {
+            return "vetoing";
+        }
+
+        @Override
+        public void triggerFired(Trigger trigger, JobExecutionContext context) {
+            firedOn = Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+            return true;
+        }
+    }
+}
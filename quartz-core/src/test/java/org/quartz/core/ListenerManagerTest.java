@@ -19,15 +19,20 @@ import static org.quartz.impl.matchers.GroupMatcher.jobGroupEquals;
 import static org.quartz.impl.matchers.GroupMatcher.triggerGroupEquals;
 import static org.quartz.impl.matchers.NameMatcher.jobNameContains;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import junit.framework.TestCase;
 
+import org.quartz.JobKey;
 import org.quartz.JobListener;
+import org.quartz.Matcher;
 import org.quartz.SchedulerListener;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.matchers.NameMatcher;
 import org.quartz.listeners.JobListenerSupport;
 import org.quartz.listeners.SchedulerListenerSupport;
@@ -192,4 +197,58 @@ public class ListenerManagerTest extends TestCase {
         } 
     }
 
+    public void testJobListenerSnapshotMatchesLikeTheMatchers() throws Exception {
+        ListenerManagerImpl manager = new ListenerManagerImpl();
+        manager.addJobListener(new TestJobListener("all"));
+        manager.addJobListener(new TestJobListener("groups"), jobGroupEquals("a"));
+        manager.addJobListenerMatcher("groups", jobGroupEquals("b"));
+        manager.addJobListener(new TestJobListener("name"), jobNameContains("foo"));
+        manager.addJobListener(new TestJobListener("anyGroup"), GroupMatcher.anyJobGroup());
+        manager.addJobListener(new TestJobListener("none"), jobGroupEquals("a"));
+        manager.removeJobListenerMatcher("none", jobGroupEquals("a"));
+
+        ListenerSnapshot<JobListener, JobKey> snapshot = manager.getJobListenerSnapshot();
+        assertEquals(5, snapshot.size());
+        for (JobKey key : new JobKey[] {new JobKey("foo1", "a"), new JobKey("bar", "b"), new JobKey("x", "c")}) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                JobListener listener = snapshot.listener(i);
+                boolean expected = false;
+                for (Matcher<JobKey> matcher : manager.getJobListenerMatchers(listener.getName())) {
+                    expected |= matcher.isMatch(key);
+                }
+                assertEquals(listener.getName() + " for " + key, expected, snapshot.isMatch(i, key));
+            }
+        }
+
+        // a snapshot does not change, a new one is published instead
+        manager.removeJobListener("all");
+        assertEquals(5, snapshot.size());
+        assertEquals(4, manager.getJobListenerSnapshot().size());
+        assertEquals(4, manager.getJobListeners().size());
+    }
+
+    public void testInternalListenersUseTheMatchersOfTheirName() throws Exception {
+        ListenerManagerImpl manager = new ListenerManagerImpl();
+        manager.addTriggerListener(new TestTriggerListener("shared"), triggerGroupEquals("a"));
+
+        Map<String, TriggerListener> internal = new LinkedHashMap<String, TriggerListener>();
+        internal.put("shared", new TestTriggerListener("shared"));
+        internal.put("own", new TestTriggerListener("own"));
+        ListenerSnapshot<TriggerListener, TriggerKey> snapshot =
+                manager.getTriggerListenerSnapshot().withInternal(internal,
+                        new ListenerSnapshot.Decorator<TriggerListener>() {
+                            public TriggerListener decorate(TriggerListener listener) {
+                                return listener;
+                            }
+                        });
+
+        assertEquals(3, snapshot.size());
+        assertSame(manager.getTriggerListenerSnapshot(), snapshot.source);
+        TriggerKey inB = new TriggerKey("t", "b");
+        assertFalse(snapshot.isMatch(0, inB));
+        assertFalse(snapshot.isMatch(1, inB));
+        assertTrue(snapshot.isMatch(2, inB));
+        assertTrue(snapshot.isMatch(1, new TriggerKey("t", "a")));
+    }
+
 }
@@ -0,0 +1,64 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.core;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * The release cost estimate follows the measured latencies.
+ */
+public class ReleaseCostEstimatorTest extends TestCase {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public void testInitialEstimateUntilMeasured() {
+        ReleaseCostEstimator estimator = new ReleaseCostEstimator(70);
+        assertEquals(70, estimator.getEstimatedTimeToReleaseAndAcquireTrigger());
+
+        // a release is taken to cost as much as an acquisition until measured
+        estimator.acquired(4 * MS);
+        assertEquals(8, estimator.getEstimatedTimeToReleaseAndAcquireTrigger());
+
+        estimator.released(MS);
+        assertEquals(5, estimator.getEstimatedTimeToReleaseAndAcquireTrigger());
+        assertEquals(1, estimator.getReleaseCount());
+    }
+
+    public void testFollowsLatencies() {
+        ReleaseCostEstimator estimator = new ReleaseCostEstimator(7);
+        for (int i = 0; i < 100; i++) {
+            estimator.acquired(100 * MS);
+            estimator.released(20 * MS);
+        }
+        assertEquals(120, estimator.getEstimatedTimeToReleaseAndAcquireTrigger());
+
+        // a faster job store is picked up within a few samples
+        for (int i = 0; i < 20; i++) {
+            estimator.acquired(MS);
+            estimator.released(MS);
+        }
+        assertTrue(estimator.getEstimatedTimeToReleaseAndAcquireTrigger() < 5);
+    }
+
+    public void testNeverBelowOneMillisecond() {
+        ReleaseCostEstimator estimator = new ReleaseCostEstimator(7);
+        estimator.acquired(1000);
+        estimator.released(1000);
+        assertEquals(1, estimator.getEstimatedTimeToReleaseAndAcquireTrigger());
+    }
+}
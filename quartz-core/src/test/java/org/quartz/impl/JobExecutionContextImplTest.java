@@ -0,0 +1,83 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl;
+
+import java.util.Date;
+
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.TriggerFiredBundle;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the merged <code>JobDataMap</code> of JobExecutionContextImpl.
+ */
+public class JobExecutionContextImplTest extends TestCase {
+
+    private static JobExecutionContextImpl newContext(JobDataMap jobData, JobDataMap triggerData) {
+        JobDetailImpl job = new JobDetailImpl("job", "group", NoOpJob.class);
+        job.setJobDataMap(jobData);
+        SimpleTriggerImpl trigger = new SimpleTriggerImpl("trigger", "group", new Date());
+        trigger.setJobKey(job.getKey());
+        trigger.setJobDataMap(triggerData);
+        Date now = new Date();
+        TriggerFiredBundle bundle = new TriggerFiredBundle(job, trigger, null, false, now, now, null, null);
+        return new JobExecutionContextImpl(null, bundle, new NoOpJob());
+    }
+
+    public void testMergedMapIsDirtyWhenEitherMapHasEntries() {
+        JobDataMap jobData = new JobDataMap();
+        jobData.put("fromJob", "a");
+        jobData.clearDirtyFlag();
+        assertTrue(newContext(jobData, new JobDataMap()).getMergedJobDataMap().isDirty());
+
+        JobDataMap triggerData = new JobDataMap();
+        triggerData.put("fromTrigger", "b");
+        triggerData.clearDirtyFlag();
+        assertTrue(newContext(new JobDataMap(), triggerData).getMergedJobDataMap().isDirty());
+    }
+
+    public void testMergedMapOfEmptyMapsIsNotDirty() {
+        JobDataMap jobData = new JobDataMap();
+        jobData.put("removed", "a");
+        jobData.remove("removed");
+        assertTrue(jobData.isDirty());
+        assertFalse(newContext(jobData, new JobDataMap()).getMergedJobDataMap().isDirty());
+    }
+
+    public void testTriggerEntriesWinAndJobMapIsUnchanged() {
+        JobDataMap jobData = new JobDataMap();
+        jobData.put("key", "job");
+        jobData.put("fromJob", "a");
+        JobDataMap triggerData = new JobDataMap();
+        triggerData.put("key", "trigger");
+
+        JobDataMap merged = newContext(jobData, triggerData).getMergedJobDataMap();
+        assertEquals("trigger", merged.getString("key"));
+        assertEquals("a", merged.getString("fromJob"));
+        merged.put("added", "c");
+        assertEquals("job", jobData.getString("key"));
+        assertFalse(jobData.containsKey("added"));
+    }
+
+    public static class NoOpJob implements Job {
+        public void execute(JobExecutionContext context) {
+        }
+    }
+}
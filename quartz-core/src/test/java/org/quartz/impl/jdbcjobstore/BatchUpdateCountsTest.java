@@ -0,0 +1,172 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.TriggerKey;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that triggers are only acquired from the <code>WAITING</code>
+ * state when the driver does not report batch update counts.
+ */
+public class BatchUpdateCountsTest extends TestCase {
+
+    private static final TriggerKey WAITING = new TriggerKey("waiting");
+
+    private static final TriggerKey EXECUTING = new TriggerKey("executing");
+
+    private static final TriggerKey PAUSED = new TriggerKey("paused");
+
+    private static final TriggerKey DELETED = new TriggerKey("deleted");
+
+    private static final List<TriggerKey> KEYS = Arrays.asList(WAITING, EXECUTING, PAUSED, DELETED);
+
+    private final Map<TriggerKey, String> states = new HashMap<TriggerKey, String>();
+
+    private StubDelegate delegate;
+
+    private JobStoreTX store;
+
+    private boolean savepoints;
+
+    @Override
+    protected void setUp() throws Exception {
+        states.put(WAITING, Constants.STATE_WAITING);
+        states.put(EXECUTING, Constants.STATE_EXECUTING);
+        states.put(PAUSED, Constants.STATE_PAUSED);
+        delegate = new StubDelegate();
+        store = new JobStoreTX() {
+            @Override
+            protected DriverDelegate getDelegate() {
+                return delegate;
+            }
+        };
+        savepoints = true;
+    }
+
+    public void testUnknownCountsAreCheckedRowByRow() throws Exception {
+        delegate.reportCounts = false;
+        assertEquals(Arrays.toString(new int[]{1, 0, 0, 0}),
+                Arrays.toString(store.updateTriggerStatesToAcquired(newConnection(), KEYS)));
+        assertEquals(Constants.STATE_ACQUIRED, states.get(WAITING));
+        assertEquals(Constants.STATE_EXECUTING, states.get(EXECUTING));
+        assertEquals(Constants.STATE_PAUSED, states.get(PAUSED));
+        assertFalse(states.containsKey(DELETED));
+        assertEquals(1, delegate.batches);
+
+        // no more batches once the driver was found out
+        states.put(WAITING, Constants.STATE_WAITING);
+        assertEquals(Arrays.toString(new int[]{1, 0, 0, 0}),
+                Arrays.toString(store.updateTriggerStatesToAcquired(newConnection(), KEYS)));
+        assertEquals(1, delegate.batches);
+    }
+
+    public void testReportedCountsAreUsed() throws Exception {
+        assertEquals(Arrays.toString(new int[]{1, 0, 0, 0}),
+                Arrays.toString(store.updateTriggerStatesToAcquired(newConnection(), KEYS)));
+        assertEquals(Constants.STATE_ACQUIRED, states.get(WAITING));
+        assertEquals(1, delegate.batches);
+
+        // no more savepoints once the driver reported the counts
+        savepoints = false;
+        states.put(WAITING, Constants.STATE_WAITING);
+        store.updateTriggerStatesToAcquired(newConnection(), KEYS);
+        assertEquals(2, delegate.batches);
+    }
+
+    public void testWithoutSavepointsRowsAreUpdatedOneByOne() throws Exception {
+        savepoints = false;
+        delegate.reportCounts = false;
+        assertEquals(Arrays.toString(new int[]{1, 0, 0, 0}),
+                Arrays.toString(store.updateTriggerStatesToAcquired(newConnection(), KEYS)));
+        assertEquals(Constants.STATE_ACQUIRED, states.get(WAITING));
+        assertEquals(0, delegate.batches);
+    }
+
+    /**
+     * A connection whose savepoints snapshot the trigger states.
+     */
+    private Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    private Map<TriggerKey, String> snapshot;
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        if (method.getName().equals("setSavepoint")) {
+                            if (!savepoints) {
+                                throw new SQLFeatureNotSupportedException("no savepoints");
+                            }
+                            snapshot = new HashMap<TriggerKey, String>(states);
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{Savepoint.class}, this);
+                        }
+                        if (method.getName().equals("rollback") && args != null) {
+                            states.clear();
+                            states.putAll(snapshot);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * A delegate that keeps the trigger states in memory and, unless told
+     * to report them, returns <code>SUCCESS_NO_INFO</code> for batches.
+     */
+    private class StubDelegate extends StdJDBCDelegate {
+
+        boolean reportCounts = true;
+
+        int batches;
+
+        @Override
+        public int updateTriggerStateFromOtherState(Connection conn, TriggerKey triggerKey, String newState,
+                String oldState) {
+            if (!oldState.equals(states.get(triggerKey))) {
+                return 0;
+            }
+            states.put(triggerKey, newState);
+            return 1;
+        }
+
+        @Override
+        public int[] updateTriggerStatesFromOtherState(Connection conn, List<TriggerKey> triggerKeys,
+                String newState, String oldState) {
+            batches++;
+            int[] counts = new int[triggerKeys.size()];
+            for (int i = 0; i < counts.length; i++) {
+                int count = updateTriggerStateFromOtherState(conn, triggerKeys.get(i), newState, oldState);
+                counts[i] = reportCounts ? count : Statement.SUCCESS_NO_INFO;
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class CompactJobDataMapCodecTest extends TestCase {
+
+    private final CompactJobDataMapCodec codec = new CompactJobDataMapCodec();
+
+    private Map<?, ?> roundTrip(Map<?, ?> data) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.encode(data, baos);
+        return codec.decode(new ByteArrayInputStream(baos.toByteArray()));
+    }
+
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("string", "héllo 世界");
+        data.put("empty", "");
+        data.put("null", null);
+        data.put("int", Integer.MIN_VALUE);
+        data.put("smallInt", -3);
+        data.put("long", Long.MAX_VALUE);
+        data.put("boolean", Boolean.TRUE);
+        data.put("double", 3.25d);
+        data.put("float", Float.NaN);
+        data.put("short", (short) -7);
+        data.put("byte", (byte) 0x7f);
+        data.put("char", 'q');
+        data.put("date", new Date(1234567890123L));
+        ArrayList<Object> list = new ArrayList<Object>(Arrays.<Object>asList("a", 1, null, 2L));
+        data.put("list", list);
+        HashSet<Object> set = new HashSet<Object>(Arrays.<Object>asList("x", "y"));
+        data.put("set", set);
+        HashMap<Object, Object> nested = new HashMap<Object, Object>();
+        nested.put(1, list);
+        data.put("map", nested);
+
+        Map<?, ?> decoded = roundTrip(data);
+        assertEquals(data, decoded);
+        assertTrue(decoded.containsKey("null"));
+        assertEquals(Short.class, decoded.get("short").getClass());
+        assertEquals(ArrayList.class, decoded.get("list").getClass());
+    }
+
+    public void testBytes() throws Exception {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("bytes", new byte[] {1, 2, 3, -1});
+
+        byte[] decoded = (byte[]) roundTrip(data).get("bytes");
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3, -1}, decoded));
+    }
+
+    public void testOtherTypesKeepTheirClass() throws Exception {
+        Map<String, Object> data = new HashMap<String, Object>();
+        LinkedList<String> linked = new LinkedList<String>(Arrays.asList("a", "b"));
+        TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+        sorted.put("k", 1);
+        data.put("linked", linked);
+        data.put("sorted", sorted);
+
+        Map<?, ?> decoded = roundTrip(data);
+        assertEquals(LinkedList.class, decoded.get("linked").getClass());
+        assertEquals(linked, decoded.get("linked"));
+        assertEquals(TreeMap.class, decoded.get("sorted").getClass());
+        assertEquals(sorted, decoded.get("sorted"));
+    }
+
+    public void testSmallerThanSerialization() throws Exception {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("id", 42L);
+        data.put("name", "report");
+        data.put("enabled", Boolean.TRUE);
+
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        codec.encode(data, compact);
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(serialized);
+        out.writeObject(data);
+        out.close();
+
+        assertTrue(compact.size() * 4 < serialized.size());
+    }
+
+    public void testNotSerializableValue() throws Exception {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("key", new Object());
+        try {
+            codec.encode(data, new ByteArrayOutputStream());
+            fail();
+        } catch (NotSerializableException expected) {
+        }
+    }
+}
@@ -16,10 +16,21 @@
 package org.quartz.impl.jdbcjobstore;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 import org.quartz.AbstractJobStoreTest;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
 import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.utils.TriggerPartitions;
 
 public class JdbcJobStoreTest extends AbstractJobStoreTest {
 
@@ -29,6 +40,52 @@ public class JdbcJobStoreTest extends AbstractJobStoreTest {
         // nothing
     }
 
+    /**
+     * A partition gets its trigger even when the triggers of another
+     * partition, due before it, fill more than a page of candidates.
+     */
+    public void testPartitionIsNotStarvedByOthers() throws Exception {
+        String name = "testPartitionIsNotStarvedByOthers";
+        JobStoreSupport store = (JobStoreSupport) createJobStore(name);
+        try {
+            ClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+            loadHelper.initialize();
+            store.initialize(loadHelper, new SampleSignaler());
+            store.schedulerStarted();
+
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job").storeDurably().build();
+            store.storeJob(job, false);
+            List<TriggerKey> others = new ArrayList<TriggerKey>();
+            TriggerKey mine = null;
+            for (int i = 0; others.size() < 40 || mine == null; i++) {
+                TriggerKey key = new TriggerKey("trigger" + i);
+                if (TriggerPartitions.partitionOf(key, 2) == 1) {
+                    others.add(key);
+                } else if (mine == null) {
+                    mine = key;
+                }
+            }
+            long start = System.currentTimeMillis() - 1000;
+            for (int i = 0; i < others.size(); i++) {
+                store.storeTrigger(newTrigger(others.get(i), job, start + i), false);
+            }
+            store.storeTrigger(newTrigger(mine, job, start + others.size()), false);
+
+            List<OperableTrigger> acquired = store.acquireNextTriggers(start + 60000, 1, 0L, 0, 2);
+            assertEquals(1, acquired.size());
+            assertEquals(mine, acquired.get(0).getKey());
+        } finally {
+            destroyJobStore(name);
+        }
+    }
+
+    protected static OperableTrigger newTrigger(TriggerKey key, JobDetail job, long startTime) {
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity(key).forJob(job)
+                .startAt(new Date(startTime)).build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
     @Override
     protected JobStore createJobStore(String name) {
         try {
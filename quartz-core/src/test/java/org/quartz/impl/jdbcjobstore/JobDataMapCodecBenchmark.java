@@ -0,0 +1,114 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.util.Date;
+import java.util.Properties;
+
+import org.quartz.JobDataMap;
+import org.quartz.simpl.SimpleClassLoadHelper;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the ways <code>{@link StdJDBCDelegate}</code> can store a
+ * <code>JobDataMap</code>: Java serialization, <code>useProperties</code>,
+ * and <code>{@link CompactJobDataMapCodec}</code> with and without
+ * compression.
+ *
+ * <p>
+ * For each, the size of the encoded data and the time of an encode / decode
+ * round trip are printed, for a small map of Strings (the only kind
+ * <code>useProperties</code> allows) and a larger map of mixed values. This
+ * is not run as part of the test suite; start it with <code>main</code>,
+ * optionally passing the number of round trips per measurement.
+ * </p>
+ */
+public class JobDataMapCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        JobDataMap strings = new JobDataMap();
+        strings.put("reportId", "12345");
+        strings.put("recipient", "ops@example.com");
+        strings.put("format", "pdf");
+
+        JobDataMap mixed = new JobDataMap();
+        for (int i = 0; i < 20; i++) {
+            mixed.put("count" + i, i * 1000);
+            mixed.put("id" + i, 1000000000L + i);
+            mixed.put("name" + i, "customer-" + i);
+            mixed.put("enabled" + i, i % 2 == 0);
+        }
+        mixed.put("since", new Date());
+
+        StdJDBCDelegate serialization = delegate(false, "");
+        StdJDBCDelegate properties = delegate(true, "");
+        StdJDBCDelegate compact = delegate(false, "jobDataMapCodecClass=" + CompactJobDataMapCodec.class.getName());
+        StdJDBCDelegate deflated = delegate(false, "jobDataMapCodecClass=" + CompactJobDataMapCodec.class.getName()
+                + "|jobDataMapCompressionThreshold=256");
+
+        for (int round = 0; round < 2; round++) {
+            // the first round only warms up
+            boolean report = round == 1;
+            measure("serialization", serialization, strings, iterations, report);
+            measure("properties", properties, strings, iterations, report);
+            measure("compact", compact, strings, iterations, report);
+            measure("compact+deflate", deflated, strings, iterations, report);
+            measure("serialization", serialization, mixed, iterations / 10, report);
+            measure("compact", compact, mixed, iterations / 10, report);
+            measure("compact+deflate", deflated, mixed, iterations / 10, report);
+        }
+    }
+
+    private static StdJDBCDelegate delegate(boolean useProperties, String initString) throws Exception {
+        StdJDBCDelegate delegate = new StdJDBCDelegate();
+        delegate.initialize(LoggerFactory.getLogger(JobDataMapCodecBenchmark.class), "QRTZ_", "BENCH", "INSTANCE",
+                new SimpleClassLoadHelper(), useProperties, initString);
+        return delegate;
+    }
+
+    private static void measure(String name, StdJDBCDelegate delegate, JobDataMap data, int iterations,
+            boolean report) throws Exception {
+        int size = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] bytes = delegate.serializeJobData(data).toByteArray();
+            size = bytes.length;
+            Object decoded;
+            if (delegate.canUseProperties()) {
+                Properties props = new Properties();
+                props.load(new ByteArrayInputStream(bytes));
+                decoded = delegate.convertFromProperty(props);
+            } else if (delegate.jobDataMapCodec != null) {
+                decoded = delegate.decodeJobData(new ByteArrayInputStream(bytes));
+            } else {
+                decoded = new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            }
+            if (decoded == null) {
+                throw new AssertionError();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(String.format("%-16s %3d entries: %,6d bytes  %,8d ns/round trip",
+                    name, data.size(), size, nanos / iterations));
+        }
+    }
+}
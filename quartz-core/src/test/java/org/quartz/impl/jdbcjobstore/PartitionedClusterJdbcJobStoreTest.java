@@ -0,0 +1,94 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.TriggerKey;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.utils.TriggerPartitions;
+
+/**
+ * Runs the job store tests with a partitioned cluster of one instance, which
+ * owns every partition.
+ */
+public class PartitionedClusterJdbcJobStoreTest extends JdbcJobStoreTest {
+
+    @Override
+    protected JobStore createJobStore(String name) {
+        JobStoreSupport jdbcJobStore = (JobStoreSupport) super.createJobStore(name);
+        jdbcJobStore.setIsClustered(true);
+        jdbcJobStore.setClusterPartitionCount(8);
+        return jdbcJobStore;
+    }
+
+    /**
+     * An instance gets the trigger of one of its partitions even when the
+     * triggers of the other instance's partitions, due before it, fill more
+     * than a page of candidates.
+     */
+    public void testInstanceIsNotStarvedByOthers() throws Exception {
+        String name = "testInstanceIsNotStarvedByOthers";
+        JobStoreSupport store = (JobStoreSupport) createJobStore(name);
+        try {
+            ClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+            loadHelper.initialize();
+            store.initialize(loadHelper, new SampleSignaler());
+            // as if another instance had checked in, without the cluster manager
+            List<SchedulerStateRecord> states = new ArrayList<SchedulerStateRecord>();
+            for (String instanceId : new String[] {store.getInstanceId(), "OTHER_NODE"}) {
+                SchedulerStateRecord state = new SchedulerStateRecord();
+                state.setSchedulerInstanceId(instanceId);
+                states.add(state);
+            }
+            store.assignClusterPartitions(states, Collections.<SchedulerStateRecord>emptyList());
+            int[] owned = store.getClusterPartitions();
+            assertTrue(owned.length > 0 && owned.length < 8);
+
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job").storeDurably().build();
+            store.storeJob(job, false);
+            List<TriggerKey> others = new ArrayList<TriggerKey>();
+            TriggerKey mine = null;
+            for (int i = 0; others.size() < 40 || mine == null; i++) {
+                TriggerKey key = new TriggerKey("trigger" + i);
+                if (Arrays.binarySearch(owned, TriggerPartitions.clusterPartitionOf(key, 8)) < 0) {
+                    others.add(key);
+                } else if (mine == null) {
+                    mine = key;
+                }
+            }
+            long start = System.currentTimeMillis() - 1000;
+            for (int i = 0; i < others.size(); i++) {
+                store.storeTrigger(newTrigger(others.get(i), job, start + i), false);
+            }
+            store.storeTrigger(newTrigger(mine, job, start + others.size()), false);
+
+            List<OperableTrigger> acquired = store.acquireNextTriggers(start + 60000, 1, 0L);
+            assertEquals(1, acquired.size());
+            assertEquals(mine, acquired.get(0).getKey());
+        } finally {
+            destroyJobStore(name);
+        }
+    }
+}
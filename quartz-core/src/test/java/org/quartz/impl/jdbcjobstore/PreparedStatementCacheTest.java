@@ -0,0 +1,136 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class PreparedStatementCacheTest extends TestCase {
+
+    private final List<String> prepared = new ArrayList<String>();
+
+    private final List<String> calls = new ArrayList<String>();
+
+    private Connection conn;
+
+    @Override
+    protected void setUp() throws Exception {
+        Connection target = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement")) {
+                            prepared.add((String) args[0]);
+                            return newStatement(prepared.size());
+                        }
+                        return null;
+                    }
+                });
+        conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new AttributeRestoringConnectionInvocationHandler(target, true));
+    }
+
+    private PreparedStatement newStatement(final int id) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        calls.add(id + ":" + method.getName());
+                        if (method.getName().equals("executeUpdate")) {
+                            throw new SQLException("failed");
+                        }
+                        if (method.getReturnType() == boolean.class) {
+                            return Boolean.FALSE;
+                        }
+                        if (method.getReturnType() == int.class) {
+                            return 0;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    public void testStatementIsReusedAfterClose() throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("SELECT 1");
+        ps.setString(1, "a");
+        ps.close();
+        assertTrue(ps.isClosed());
+
+        assertSame(ps, conn.prepareStatement("SELECT 1"));
+        assertEquals(1, prepared.size());
+        assertTrue(calls.contains("1:clearParameters"));
+        assertFalse(calls.contains("1:close"));
+    }
+
+    public void testStatementInUseIsNotShared() throws SQLException {
+        PreparedStatement first = conn.prepareStatement("SELECT 1");
+        PreparedStatement second = conn.prepareStatement("SELECT 1");
+
+        assertNotSame(first, second);
+        assertEquals(2, prepared.size());
+    }
+
+    public void testLimitsAndBatchAreReset() throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("SELECT 1");
+        ps.setMaxRows(10);
+        ps.addBatch();
+        ps.close();
+
+        assertTrue(calls.contains("1:setMaxRows"));
+        assertTrue(calls.contains("1:clearBatch"));
+        assertEquals(2, count("1:setMaxRows"));
+    }
+
+    public void testFailedStatementIsClosed() throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("UPDATE X");
+        try {
+            ps.executeUpdate();
+            fail();
+        } catch (SQLException e) {
+            // expected
+        }
+        ps.close();
+        assertTrue(calls.contains("1:close"));
+
+        assertNotSame(ps, conn.prepareStatement("UPDATE X"));
+        assertEquals(2, prepared.size());
+    }
+
+    public void testConnectionCloseClosesStatements() throws SQLException {
+        conn.prepareStatement("SELECT 1").close();
+        conn.prepareStatement("SELECT 2").close();
+        conn.close();
+
+        assertTrue(calls.contains("1:close"));
+        assertTrue(calls.contains("2:close"));
+    }
+
+    private int count(String call) {
+        int n = 0;
+        for (String c : calls) {
+            if (c.equals(call)) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import org.quartz.spi.JobStore;
+
+/**
+ * Runs the job store tests with triggers acquired by the single joined query
+ * and JDBC batches.
+ */
+public class SingleQueryAcquisitionJdbcJobStoreTest extends JdbcJobStoreTest {
+
+    @Override
+    protected JobStore createJobStore(String name) {
+        JobStoreSupport jdbcJobStore = (JobStoreSupport) super.createJobStore(name);
+        jdbcJobStore.setAcquireTriggersInSingleQuery(true);
+        return jdbcJobStore;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.impl.jdbcjobstore;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.quartz.AbstractJobStoreTest.MyJob;
+import org.quartz.AbstractJobStoreTest.SampleSignaler;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.simpl.SimpleClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the <code>SKIP LOCKED</code> query of the PostgreSQL and MySQL
+ * delegates, then runs several job stores ("nodes") against one database
+ * with <code>acquireTriggersSkipLocked</code> set, checking that no trigger
+ * fire is acquired by two nodes, and logging the fires per second for each
+ * number of nodes.
+ *
+ * <p>
+ * Derby has no <code>SKIP LOCKED</code>, so the nodes use a delegate that
+ * selects the candidates without locking them: the acquisitions then only
+ * stay disjoint thanks to the conditional <code>WAITING</code> to
+ * <code>ACQUIRED</code> update, which is what the skip-locked path relies on
+ * as well. Run it against PostgreSQL or MySQL 8 with their own delegate to
+ * see the throughput scale with the number of nodes.
+ * </p>
+ */
+public class SkipLockedAcquisitionTest extends TestCase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SkipLockedAcquisitionTest.class);
+
+    private static final String DB_NAME = "SkipLockedAcquisitionTest";
+
+    private static final int TRIGGERS = 200;
+
+    private static final int FIRES = 500;
+
+    private static final long TIMEOUT_SECONDS = 60L;
+
+    @Override
+    protected void setUp() throws Exception {
+        JdbcQuartzTestUtilities.createDatabase(DB_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        JdbcQuartzTestUtilities.destroyDatabase(DB_NAME);
+    }
+
+    public void testDelegatesSelectWithSkipLocked() throws Exception {
+        assertSkipLockedQuery(new PostgreSQLDelegate());
+        assertSkipLockedQuery(new MySQLDelegate());
+        assertFalse(new StdJDBCDelegate() instanceof SkipLockedAcquisitionDelegate);
+    }
+
+    private void assertSkipLockedQuery(StdJDBCDelegate delegate) throws Exception {
+        assertTrue(delegate instanceof SkipLockedAcquisitionDelegate);
+        delegate.initialize(LOG, "QRTZ_", "TESTSCHED", "INSTANCE", new SimpleClassLoadHelper(), false, "");
+
+        List<String> statements = new ArrayList<String>();
+        assertTrue(delegate.selectTriggerToAcquireSkipLocked(recordingConnection(statements), 1000L, 0L, 5).isEmpty());
+        assertEquals(1, statements.size());
+        String sql = statements.get(0);
+        assertTrue(sql, sql.contains(" FROM QRTZ_TRIGGERS WHERE SCHED_NAME = 'TESTSCHED' "));
+        assertTrue(sql, sql.endsWith(" LIMIT ? FOR UPDATE SKIP LOCKED"));
+    }
+
+    /**
+     * A connection that records the statements it prepares, all of which
+     * return no rows.
+     */
+    private Connection recordingConnection(final List<String> statements) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement")) {
+                            statements.add((String) args[0]);
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class<?>[]{PreparedStatement.class}, this);
+                        }
+                        if (name.equals("executeQuery")) {
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class<?>[]{ResultSet.class}, this);
+                        }
+                        if (name.equals("next")) {
+                            return Boolean.FALSE;
+                        }
+                        if (method.getReturnType() == void.class) {
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    public void testNodesAcquireDisjointTriggers() throws Exception {
+        JobStoreTX[] stores = new JobStoreTX[4];
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = createNode(i);
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < TRIGGERS; i++) {
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job" + i).build();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(1).repeatForever()
+                            .withMisfireHandlingInstructionIgnoreMisfires())
+                    .forJob(job).startAt(new Date(start)).build();
+            trigger.computeFirstFireTime(null);
+            stores[0].storeJobAndTrigger(job, trigger);
+        }
+
+        for (int nodes = 1; nodes <= stores.length; nodes *= 2) {
+            long millis = Math.max(run(stores, nodes), 1L);
+            LOG.info(String.format("%d node(s): %,d fires/s", nodes, FIRES * 1000L / millis));
+        }
+    }
+
+    private JobStoreTX createNode(int node) throws Exception {
+        JobStoreTX store = new JobStoreTX();
+        store.setDataSource(DB_NAME);
+        store.setTablePrefix("QRTZ_");
+        store.setInstanceId("NODE_" + node);
+        store.setInstanceName(DB_NAME);
+        store.setUseDBLocks(true);
+        store.setDriverDelegateClass(UnlockedSkipLockedDelegate.class.getName());
+        store.setAcquireTriggersSkipLocked(true);
+
+        ClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        store.initialize(loadHelper, new SampleSignaler());
+        return store;
+    }
+
+    /**
+     * Fires <code>FIRES</code> triggers with the first <code>nodes</code>
+     * stores, returning how many milliseconds it took.
+     */
+    private long run(JobStoreTX[] stores, int nodes) throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Set<String> fired = ConcurrentHashMap.newKeySet();
+        final CountDownLatch fires = new CountDownLatch(FIRES);
+        final CountDownLatch finished = new CountDownLatch(nodes);
+
+        long start = System.currentTimeMillis();
+        for (int n = 0; n < nodes; n++) {
+            final JobStoreTX store = stores[n];
+            Thread thread = new Thread("node-" + n) {
+                @Override
+                public void run() {
+                    try {
+                        while (running.get()) {
+                            List<OperableTrigger> acquired = store.acquireNextTriggers(
+                                    System.currentTimeMillis() + 30000L, 10, 0L);
+                            List<TriggerFiredBundle> bundles = new ArrayList<TriggerFiredBundle>();
+                            for (TriggerFiredResult result : store.triggersFired(acquired)) {
+                                TriggerFiredBundle bundle = result.getTriggerFiredBundle();
+                                if (bundle == null) {
+                                    continue;
+                                }
+                                TriggerKey key = bundle.getTrigger().getKey();
+                                if (!fired.add(key + "@" + bundle.getScheduledFireTime().getTime())) {
+                                    throw new AssertionError(key + " fired twice for "
+                                            + bundle.getScheduledFireTime());
+                                }
+                                bundles.add(bundle);
+                            }
+                            for (TriggerFiredBundle bundle : bundles) {
+                                store.triggeredJobComplete(bundle.getTrigger(), bundle.getJobDetail(),
+                                        CompletedExecutionInstruction.NOOP);
+                                fires.countDown();
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        // don't wait out the timeout
+                        while (fires.getCount() > 0) {
+                            fires.countDown();
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean done = fires.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long millis = System.currentTimeMillis() - start;
+        running.set(false);
+        finished.await();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue("fewer than " + FIRES + " fires with " + nodes + " node(s)", done);
+        return millis;
+    }
+
+    /**
+     * Stand-in for a <code>SKIP LOCKED</code> capable delegate on Derby.
+     */
+    public static class UnlockedSkipLockedDelegate extends StdJDBCDelegate implements SkipLockedAcquisitionDelegate {
+
+        @Override
+        public List<TriggerKey> selectTriggerToAcquireSkipLocked(Connection conn, long noLaterThan,
+                long noEarlierThan, int maxCount) throws SQLException {
+            return selectTriggerToAcquire(conn, noLaterThan, noEarlierThan, maxCount);
+        }
+    }
+}
@@ -21,6 +21,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.sql.Connection;
@@ -63,6 +65,56 @@ public class StdJDBCDelegateTest extends TestCase {
         }
     }
 
+    public void testJobDataMapCodec() throws Exception {
+        StdJDBCDelegate delegate = new StdJDBCDelegate();
+        delegate.initialize(LoggerFactory.getLogger(getClass()), "QRTZ_", "TESTSCHED", "INSTANCE", new SimpleClassLoadHelper(), false,
+                "jobDataMapCodecClass=" + CompactJobDataMapCodec.class.getName() + "|jobDataMapCompressionThreshold=256");
+
+        JobDataMap jdm = new JobDataMap();
+        jdm.put("key", "value");
+        jdm.put("count", 3);
+        ByteArrayOutputStream small = delegate.serializeJobData(jdm);
+        assertEquals(StdJDBCDelegate.JOB_DATA_CODEC_FORMAT_VERSION, small.toByteArray()[0]);
+        assertEquals(0, small.toByteArray()[1]);
+        assertEquals(jdm.getWrappedMap(), delegate.decodeJobData(new ByteArrayInputStream(small.toByteArray())));
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("repeated ");
+        }
+        jdm.put("text", text.toString());
+        ByteArrayOutputStream large = delegate.serializeJobData(jdm);
+        assertEquals(1, large.toByteArray()[1]);
+        assertTrue(large.size() < text.length());
+        assertEquals(jdm.getWrappedMap(), delegate.decodeJobData(new ByteArrayInputStream(large.toByteArray())));
+
+        // job data stored before the codec was configured
+        ByteArrayOutputStream legacy = delegate.serializeObject(jdm);
+        assertEquals(jdm, delegate.decodeJobData(new ByteArrayInputStream(legacy.toByteArray())));
+
+        jdm.put("bad", new Object());
+        try {
+            delegate.serializeJobData(jdm);
+            fail();
+        } catch (NotSerializableException e) {
+            assertTrue(e.getMessage().indexOf("bad") >= 0);
+        }
+    }
+
+    public void testQueriesAreResolvedAtInitialize() throws NoSuchDelegateException {
+        StdJDBCDelegate delegate = new StdJDBCDelegate();
+        delegate.initialize(LoggerFactory.getLogger(getClass()), "QRTZ_", "TESTSCHED", "INSTANCE", new SimpleClassLoadHelper(), false, "");
+
+        String expected = Util.rtp(StdJDBCConstants.SELECT_TRIGGER, "QRTZ_", "'TESTSCHED'");
+        assertEquals(expected, delegate.rtp(StdJDBCConstants.SELECT_TRIGGER));
+        // resolved once, not on every call
+        assertSame(delegate.rtp(StdJDBCConstants.SELECT_TRIGGER), delegate.rtp(StdJDBCConstants.SELECT_TRIGGER));
+
+        // queries built at run time are still resolved
+        String dynamic = new StringBuilder(StdJDBCConstants.SELECT_TRIGGER).toString();
+        assertEquals(expected, delegate.rtp(dynamic));
+    }
+
     public void testSelectBlobTriggerWithNoBlobContent() throws JobPersistenceException, SQLException, IOException, ClassNotFoundException {
         StdJDBCDelegate jdbcDelegate = new StdJDBCDelegate();
         jdbcDelegate.initialize(LoggerFactory.getLogger(getClass()), "QRTZ_", "TESTSCHED", "INSTANCE", new SimpleClassLoadHelper(), false, "");
@@ -167,6 +167,21 @@ public final class JdbcQuartzDerbyUtilities {
     }
 
     
+    /**
+     * Forget the instances of the given scheduler that checked in, so that a
+     * new cluster does not wait for them to be found failed.
+     */
+    public static void deleteSchedulerStates(String schedulerName) throws SQLException {
+        Connection conn = DriverManager.getConnection(DATABASE_CONNECTION_PREFIX, PROPS);
+        try {
+            PreparedStatement statement = conn.prepareStatement("DELETE FROM QRTZ_SCHEDULER_STATE WHERE SCHED_NAME = ?");
+            statement.setString(1, schedulerName);
+            statement.executeUpdate();
+        } finally {
+            conn.close();
+        }
+    }
+
 	public static int triggersInAcquiredState() throws SQLException {
 		int triggersInAcquiredState = 0;
 		Connection conn = DriverManager.getConnection(DATABASE_CONNECTION_PREFIX, PROPS);
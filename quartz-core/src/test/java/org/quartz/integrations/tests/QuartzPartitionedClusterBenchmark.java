@@ -0,0 +1,52 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.integrations.tests;
+
+/**
+ * Throughput benchmark of a partitioned cluster.
+ *
+ * <p>
+ * Starts the Derby server of the integration tests, then fires a batch of
+ * triggers, all due at once, with clusters of one to the given number of
+ * nodes in this JVM, and prints the fires per second of each. The nodes
+ * share one Derby server, so the figures only hint at how a cluster scales
+ * on a real database. This is not run as part of the test suite; start it
+ * with <code>main</code>, optionally passing the largest number of nodes
+ * and the number of triggers.
+ * </p>
+ */
+public class QuartzPartitionedClusterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int maxNodes = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int triggers = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        QuartzDatabaseTestSupport.initialize();
+        try {
+            QuartzPartitionedClusterTest cluster = new QuartzPartitionedClusterTest();
+            double one = 0;
+            for (int nodes = 1; nodes <= maxNodes; nodes++) {
+                double fires = cluster.drain(nodes, triggers);
+                if (nodes == 1) {
+                    one = fires;
+                }
+                System.out.println(String.format("%d node(s): %,10.0f fires/s (x%.2f)", nodes, fires, fires / one));
+            }
+        } finally {
+            QuartzDatabaseTestSupport.shutdownDb();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.integrations.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
+
+/**
+ * Integration test of a partitioned cluster: several clustered schedulers
+ * in this JVM sharing the Derby database, each acquiring the triggers of its
+ * own partitions.
+ */
+public class QuartzPartitionedClusterTest extends QuartzDatabaseTestSupport {
+
+    private static final String CLUSTER_NAME = "PartitionedCluster";
+
+    private static final Map<String, AtomicInteger> FIRES = new ConcurrentHashMap<String, AtomicInteger>();
+
+    private static final Map<String, AtomicInteger> FIRES_BY_NODE = new ConcurrentHashMap<String, AtomicInteger>();
+
+    private static final AtomicInteger TOTAL = new AtomicInteger();
+
+    /**
+     * A job store that keeps the name of the cluster whatever the name of
+     * its scheduler, so that the nodes of the cluster can live in one JVM,
+     * where scheduler names are unique.
+     */
+    public static class ClusterNodeJobStore extends JobStoreTX {
+        @Override
+        public void setInstanceName(String instanceName) {
+            super.setInstanceName(CLUSTER_NAME);
+        }
+    }
+
+    public static class CountingJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            String trigger = context.getTrigger().getKey().getName();
+            FIRES.putIfAbsent(trigger, new AtomicInteger());
+            FIRES.get(trigger).incrementAndGet();
+            try {
+                String node = context.getScheduler().getSchedulerName();
+                FIRES_BY_NODE.putIfAbsent(node, new AtomicInteger());
+                FIRES_BY_NODE.get(node).incrementAndGet();
+            } catch (SchedulerException e) {
+                throw new JobExecutionException(e);
+            }
+            TOTAL.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected void afterSchedulerInit() throws Exception {
+        // the scheduler of the support class is not part of the cluster
+    }
+
+    @Test
+    public void testEachTriggerFiresOnceAcrossNodes() throws Exception {
+        List<Scheduler> nodes = startNodes(3);
+        try {
+            schedule(nodes.get(0), 300, System.currentTimeMillis() + 2000);
+            awaitFires(300, 60000);
+            // leave time for a trigger to fire twice
+            Thread.sleep(2000);
+
+            assertEquals(300, FIRES.size());
+            for (Map.Entry<String, AtomicInteger> entry : FIRES.entrySet()) {
+                assertEquals(entry.getKey(), 1, entry.getValue().get());
+            }
+            for (Scheduler node : nodes) {
+                AtomicInteger count = FIRES_BY_NODE.get(node.getSchedulerName());
+                assertTrue(node.getSchedulerName() + " fired nothing", count != null && count.get() > 0);
+            }
+        } finally {
+            shutdown(nodes);
+        }
+    }
+
+    /**
+     * Fire the given number of triggers, all due at once, with the given
+     * number of nodes; see <code>QuartzPartitionedClusterBenchmark</code>.
+     *
+     * @return the fires per second
+     */
+    double drain(int nodeCount, int triggerCount) throws Exception {
+        List<Scheduler> nodes = startNodes(nodeCount);
+        try {
+            // far enough to store the triggers before they are due
+            long start = System.currentTimeMillis() + 5000;
+            schedule(nodes.get(0), triggerCount, start);
+            awaitFires(triggerCount, 120000);
+            return triggerCount * 1000.0 / Math.max(1, System.currentTimeMillis() - start);
+        } finally {
+            shutdown(nodes);
+        }
+    }
+
+    private List<Scheduler> startNodes(int count) throws Exception {
+        FIRES.clear();
+        FIRES_BY_NODE.clear();
+        TOTAL.set(0);
+        JdbcQuartzDerbyUtilities.deleteSchedulerStates(CLUSTER_NAME);
+        List<Scheduler> nodes = new ArrayList<Scheduler>();
+        for (int i = 0; i < count; i++) {
+            Properties properties = createSchedulerProperties();
+            properties.put("org.quartz.scheduler.instanceName", "node" + i);
+            properties.put("org.quartz.scheduler.instanceId", "node" + i);
+            properties.put("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "10");
+            properties.put("org.quartz.threadPool.threadCount", "10");
+            properties.put("org.quartz.jobStore.class", ClusterNodeJobStore.class.getName());
+            properties.put("org.quartz.jobStore.isClustered", "true");
+            properties.put("org.quartz.jobStore.clusterCheckinInterval", "1000");
+            properties.put("org.quartz.jobStore.clusterPartitionCount", "32");
+            properties.put("org.quartz.dataSource.myDS.maxConnections", "14");
+            nodes.add(new StdSchedulerFactory(properties).getScheduler());
+        }
+        nodes.get(0).clear();
+        for (Scheduler node : nodes) {
+            node.start();
+        }
+        // let the nodes see each other
+        Thread.sleep(2500);
+        return nodes;
+    }
+
+    private static void schedule(Scheduler scheduler, int count, long startTime) throws SchedulerException {
+        JobDetail job = JobBuilder.newJob(CountingJob.class).withIdentity("job").storeDurably().build();
+        scheduler.addJob(job, true);
+        for (int i = 0; i < count; i++) {
+            Trigger trigger = TriggerBuilder.newTrigger()
+                    .withIdentity("trigger" + i)
+                    .forJob(job)
+                    .startAt(new Date(startTime))
+                    .build();
+            scheduler.scheduleJob(trigger);
+        }
+    }
+
+    private static void awaitFires(int count, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (TOTAL.get() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, TOTAL.get());
+    }
+
+    private static void shutdown(List<Scheduler> nodes) throws SchedulerException {
+        for (Scheduler node : nodes) {
+            node.shutdown(true);
+        }
+    }
+}
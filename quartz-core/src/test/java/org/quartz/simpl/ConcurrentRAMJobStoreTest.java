@@ -0,0 +1,278 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.quartz.AbstractJobStoreTest;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.quartz.utils.TriggerPartitions;
+
+public class ConcurrentRAMJobStoreTest extends AbstractJobStoreTest {
+
+    @DisallowConcurrentExecution
+    public static class NonConcurrentJob extends MyJob {
+    }
+
+    @Override
+    protected JobStore createJobStore(String name) {
+        return new ConcurrentRAMJobStore();
+    }
+
+    @Override
+    protected void destroyJobStore(String name) {
+
+    }
+
+    /**
+     * Several threads acquire, fire and complete the same set of triggers;
+     * no trigger may be handed out twice for the same fire time.
+     */
+    public void testConcurrentAcquireFireComplete() throws Exception {
+        final ConcurrentRAMJobStore store = new ConcurrentRAMJobStore();
+        store.initialize(null, new SampleSignaler());
+
+        final long start = System.currentTimeMillis() - 1000L;
+        for (int i = 0; i < 50; i++) {
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job" + i).build();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .withSchedule(SimpleScheduleBuilder.repeatSecondlyForTotalCount(20)).forJob(job)
+                    .startAt(new Date(start)).build();
+            trigger.computeFirstFireTime(null);
+            store.storeJobAndTrigger(job, trigger);
+        }
+
+        final Set<String> fired = ConcurrentHashMap.newKeySet();
+        final AtomicReference<String> duplicate = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        List<OperableTrigger> acquired;
+                        while (!(acquired = store.acquireNextTriggers(start + 60000L, 5, 60000L)).isEmpty()) {
+                            for (TriggerFiredResult result : store.triggersFired(acquired)) {
+                                TriggerFiredBundle bundle = result.getTriggerFiredBundle();
+                                String id = bundle.getTrigger().getKey() + "@" + bundle.getScheduledFireTime().getTime();
+                                if (!fired.add(id)) {
+                                    duplicate.set(id);
+                                }
+                                store.triggeredJobComplete(bundle.getTrigger(), bundle.getJobDetail(),
+                                        CompletedExecutionInstruction.NOOP);
+                            }
+                        }
+                    } catch (Exception e) {
+                        duplicate.set(e.toString());
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+
+        assertNull(duplicate.get());
+        assertEquals(50 * 20, fired.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.checkExists(JobKey.jobKey("job" + i)));
+        }
+    }
+
+    /**
+     * Each partition hands out only its own triggers, and together they hand
+     * out all of them.
+     */
+    public void testAcquirePartitions() throws Exception {
+        ConcurrentRAMJobStore store = new ConcurrentRAMJobStore();
+        store.initialize(null, new SampleSignaler());
+
+        long start = System.currentTimeMillis() - 1000L;
+        for (int i = 0; i < 40; i++) {
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job" + i).build();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .forJob(job).startAt(new Date(start + i)).build();
+            trigger.computeFirstFireTime(null);
+            store.storeJobAndTrigger(job, trigger);
+        }
+
+        Set<TriggerKey> acquired = ConcurrentHashMap.newKeySet();
+        for (int partition = 0; partition < 3; partition++) {
+            for (OperableTrigger trigger : store.acquireNextTriggers(start + 60000L, 40, 60000L, partition, 3)) {
+                assertEquals(partition, TriggerPartitions.partitionOf(trigger.getKey(), 3));
+                assertTrue(acquired.add(trigger.getKey()));
+            }
+        }
+        assertEquals(40, acquired.size());
+    }
+
+    /**
+     * Acquiring sets the fire instance id on the triggers handed out, not on
+     * the stored trigger, which readers see without the lock.
+     */
+    public void testAcquireLeavesStoredTriggerUnchanged() throws Exception {
+        ConcurrentRAMJobStore store = new ConcurrentRAMJobStore();
+        store.initialize(null, new SampleSignaler());
+
+        JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job").build();
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger")
+                .forJob(job).startAt(new Date(System.currentTimeMillis() - 1000L)).build();
+        trigger.computeFirstFireTime(null);
+        store.storeJobAndTrigger(job, trigger);
+
+        List<OperableTrigger> acquired = store.acquireNextTriggers(System.currentTimeMillis() + 1000L, 1, 0L);
+        assertEquals(1, acquired.size());
+        assertNotNull(acquired.get(0).getFireInstanceId());
+        assertNull(store.retrieveTrigger(trigger.getKey()).getFireInstanceId());
+    }
+
+    /**
+     * Firing a trigger of a job that disallows concurrent execution blocks
+     * the job's other triggers, including one already acquired in another
+     * batch, which then does not fire until the job completes.
+     */
+    public void testFiringBlocksAcquiredSiblings() throws Exception {
+        ConcurrentRAMJobStore store = new ConcurrentRAMJobStore();
+        store.initialize(null, new SampleSignaler());
+
+        long start = System.currentTimeMillis() - 1000L;
+        JobDetail job = JobBuilder.newJob(NonConcurrentJob.class).withIdentity("job").storeDurably().build();
+        store.storeJob(job, false);
+        for (int i = 0; i < 2; i++) {
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .forJob(job).startAt(new Date(start + i)).build();
+            trigger.computeFirstFireTime(null);
+            store.storeTrigger(trigger, false);
+        }
+
+        // two batches, as a pipelined scheduler thread acquires them
+        List<OperableTrigger> first = store.acquireNextTriggers(start + 60000L, 1, 0L);
+        List<OperableTrigger> second = store.acquireNextTriggers(start + 60000L, 1, 0L);
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+
+        List<TriggerFiredResult> fired = store.triggersFired(first);
+        assertEquals(1, fired.size());
+        assertEquals(TriggerState.BLOCKED, store.getTriggerState(second.get(0).getKey()));
+        assertTrue(store.triggersFired(second).isEmpty());
+
+        TriggerFiredBundle bundle = fired.get(0).getTriggerFiredBundle();
+        store.triggeredJobComplete(bundle.getTrigger(), bundle.getJobDetail(), CompletedExecutionInstruction.NOOP);
+        assertEquals(TriggerState.NORMAL, store.getTriggerState(second.get(0).getKey()));
+        assertEquals(1, store.acquireNextTriggers(start + 60000L, 1, 0L).size());
+    }
+
+    /**
+     * A trigger referencing a calendar cannot be stored while the calendar
+     * is being removed: removeCalendar() either sees it or runs first.
+     */
+    public void testRemoveCalendarExcludesStoreTrigger() throws Exception {
+        final ConcurrentRAMJobStore store = new ConcurrentRAMJobStore();
+        store.initialize(null, new SampleSignaler());
+
+        final JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job").storeDurably().build();
+        store.storeJob(job, false);
+        store.storeCalendar("calendar", new BaseCalendar(), false, false);
+        // holds removeCalendar() up while it looks through the triggers
+        InspectedTrigger inspected = new InspectedTrigger();
+        inspected.setKey(new TriggerKey("inspected"));
+        inspected.setJobKey(job.getKey());
+        inspected.setStartTime(new Date(System.currentTimeMillis() + 60000L));
+        inspected.computeFirstFireTime(null);
+        store.storeTrigger(inspected, false);
+
+        InspectedTrigger.inspecting = new CountDownLatch(1);
+        InspectedTrigger.release = new CountDownLatch(1);
+        final AtomicReference<Object> removed = new AtomicReference<Object>();
+        Thread removing = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    removed.set(store.removeCalendar("calendar"));
+                } catch (JobPersistenceException e) {
+                    removed.set(e);
+                }
+            }
+        };
+        removing.start();
+        assertTrue(InspectedTrigger.inspecting.await(10, TimeUnit.SECONDS));
+
+        final OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger")
+                .forJob(job).modifiedByCalendar("calendar")
+                .startAt(new Date(System.currentTimeMillis() + 60000L)).build();
+        trigger.computeFirstFireTime(null);
+        Thread storing = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    store.storeTrigger(trigger, false);
+                } catch (JobPersistenceException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        storing.start();
+        storing.join(200L);
+        boolean storedWhileRemoving = !storing.isAlive();
+        InspectedTrigger.release.countDown();
+        removing.join();
+        storing.join();
+
+        assertFalse("stored while the calendar was being removed", storedWhileRemoving);
+        assertEquals(Boolean.TRUE, removed.get());
+    }
+
+    public static class InspectedTrigger extends SimpleTriggerImpl {
+        static volatile CountDownLatch inspecting;
+
+        static volatile CountDownLatch release;
+
+        @Override
+        public String getCalendarName() {
+            CountDownLatch latch = inspecting;
+            if (latch != null) {
+                inspecting = null;
+                latch.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            return super.getCalendarName();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.quartz.AbstractJobStoreTest;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.PersistJobDataAfterExecution;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.calendar.WeeklyCalendar;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredResult;
+
+public class DurableRAMJobStoreTest extends AbstractJobStoreTest {
+
+    @PersistJobDataAfterExecution
+    public static class CountingJob extends AbstractJobStoreTest.MyJob {
+    }
+
+    // some tests create more stores than the one of setUp()
+    private final List<DurableRAMJobStore> stores = new ArrayList<DurableRAMJobStore>();
+
+    private final List<File> directories = new ArrayList<File>();
+
+    @Override
+    protected JobStore createJobStore(String name) {
+        File directory = newDirectory();
+        directories.add(directory);
+        DurableRAMJobStore store = newStore(directory, 16 * 1024 * 1024);
+        stores.add(store);
+        return store;
+    }
+
+    @Override
+    protected void destroyJobStore(String name) {
+        for (DurableRAMJobStore store : stores) {
+            store.shutdown();
+        }
+        stores.clear();
+        for (File directory : directories) {
+            delete(directory);
+        }
+        directories.clear();
+    }
+
+    public void testRecovery() throws Exception {
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore first = start(dir, 16 * 1024 * 1024);
+            long now = System.currentTimeMillis();
+
+            JobDetailImpl job = new JobDetailImpl("job", "group", CountingJob.class);
+            job.getJobDataMap().put("count", 0);
+            OperableTrigger trigger = newTrigger("trigger", "group", job, new Date(now - 1000));
+            first.storeJobAndTrigger(job, trigger);
+            first.storeCalendar("weekly", new WeeklyCalendar(), false, false);
+
+            JobDetailImpl other = new JobDetailImpl("other", "paused", AbstractJobStoreTest.MyJob.class);
+            other.setDurability(true);
+            first.storeJob(other, false);
+            first.storeTrigger(newTrigger("other", "paused", other, new Date(now + 60000)), false);
+            first.pauseJobs(GroupMatcher.jobGroupEquals("paused"));
+
+            JobDetailImpl removed = new JobDetailImpl("removed", "group", AbstractJobStoreTest.MyJob.class);
+            removed.setDurability(true);
+            first.storeJob(removed, false);
+            first.removeJob(removed.getKey());
+
+            // fire the trigger, then complete the job with changed data
+            List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+            assertEquals(1, acquired.size());
+            List<TriggerFiredResult> fired = first.triggersFired(acquired);
+            Date nextFireTime = fired.get(0).getTriggerFiredBundle().getTrigger().getNextFireTime();
+            JobDetail firedJob = fired.get(0).getTriggerFiredBundle().getJobDetail();
+            firedJob.getJobDataMap().put("count", 1);
+            first.triggeredJobComplete(acquired.get(0), firedJob, CompletedExecutionInstruction.NOOP);
+            first.shutdown();
+
+            DurableRAMJobStore second = start(dir, 16 * 1024 * 1024);
+            try {
+                assertEquals(2, second.getNumberOfJobs());
+                assertNull(second.retrieveJob(removed.getKey()));
+                assertEquals(1, second.retrieveJob(job.getKey()).getJobDataMap().getInt("count"));
+                assertNotNull(second.retrieveCalendar("weekly"));
+                assertEquals(nextFireTime,
+                        second.retrieveTrigger(new TriggerKey("trigger", "group")).getNextFireTime());
+                assertEquals(TriggerState.NORMAL, second.getTriggerState(new TriggerKey("trigger", "group")));
+                assertEquals(TriggerState.PAUSED, second.getTriggerState(new TriggerKey("other", "paused")));
+                assertTrue(second.getPausedTriggerGroups().isEmpty());
+                // the job group is still paused
+                JobDetailImpl added = new JobDetailImpl("added", "paused", AbstractJobStoreTest.MyJob.class);
+                second.storeJobAndTrigger(added, newTrigger("added", "paused", added, new Date(now)));
+                assertEquals(TriggerState.PAUSED, second.getTriggerState(new TriggerKey("added", "paused")));
+            } finally {
+                second.shutdown();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testCompletedTriggerIsRemovedOnRecovery() throws Exception {
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore first = start(dir, 16 * 1024 * 1024);
+            long now = System.currentTimeMillis();
+
+            JobDetailImpl job = new JobDetailImpl("job", "group", AbstractJobStoreTest.MyJob.class);
+            SimpleTriggerImpl trigger = new SimpleTriggerImpl("trigger", "group", new Date(now - 1000));
+            trigger.setJobKey(job.getKey());
+            trigger.computeFirstFireTime(null);
+            first.storeJobAndTrigger(job, trigger);
+
+            // fire the trigger for the last time, and stop while the job runs
+            List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+            assertEquals(1, acquired.size());
+            assertEquals(1, first.triggersFired(acquired).size());
+            first.shutdown();
+
+            DurableRAMJobStore second = start(dir, 16 * 1024 * 1024);
+            try {
+                assertNull(second.retrieveTrigger(trigger.getKey()));
+                assertNull(second.retrieveJob(job.getKey()));
+                second.storeJobAndTrigger(job, newTrigger("trigger", "group", job, new Date(now)));
+                assertEquals(TriggerState.NORMAL, second.getTriggerState(trigger.getKey()));
+            } finally {
+                second.shutdown();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testSnapshotAfterSegmentFills() throws Exception {
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore first = start(dir, 4096);
+            for (int i = 0; i < 200; i++) {
+                JobDetailImpl job = new JobDetailImpl("job" + i, "group", AbstractJobStoreTest.MyJob.class);
+                job.setDurability(true);
+                job.getJobDataMap().put("index", i);
+                first.storeJob(job, false);
+                if (i % 2 == 0) {
+                    first.removeJob(new JobKey("job" + (i / 2), "group"));
+                }
+            }
+            first.shutdown();
+
+            WriteAheadLog log = new WriteAheadLog(dir, 4096, true);
+            List<Long> snapshots = log.generations(WriteAheadLog.SNAPSHOT_SUFFIX);
+            List<Long> segments = log.generations(WriteAheadLog.LOG_SUFFIX);
+            assertEquals(1, snapshots.size());
+            assertTrue(snapshots.get(0) > 1);
+            assertEquals(snapshots.get(0), segments.get(0));
+
+            DurableRAMJobStore second = start(dir, 4096);
+            try {
+                assertEquals(100, second.getNumberOfJobs());
+                assertNull(second.retrieveJob(new JobKey("job99", "group")));
+                assertEquals(150, second.retrieveJob(new JobKey("job150", "group")).getJobDataMap().getInt("index"));
+            } finally {
+                second.shutdown();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testTornRecordEndsTheLog() throws Exception {
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore first = start(dir, 16 * 1024 * 1024);
+            for (int i = 0; i < 3; i++) {
+                JobDetailImpl job = new JobDetailImpl("job" + i, "group", AbstractJobStoreTest.MyJob.class);
+                job.setDurability(true);
+                first.storeJob(job, false);
+            }
+            first.shutdown();
+
+            // damage the last record, as a crash while writing it would
+            WriteAheadLog log = new WriteAheadLog(dir, 16 * 1024 * 1024, true);
+            List<Long> segments = log.generations(WriteAheadLog.LOG_SUFFIX);
+            final long[] end = new long[1];
+            final int[] last = new int[1];
+            log.read(segments.get(segments.size() - 1), new WriteAheadLog.RecordHandler() {
+                public void record(byte[] data) {
+                    end[0] += 8 + data.length;
+                    last[0] = data.length;
+                }
+            });
+            RandomAccessFile raf = new RandomAccessFile(log.logFile(segments.get(segments.size() - 1)), "rw");
+            try {
+                raf.seek(16 + end[0] - last[0] / 2);
+                raf.write(~raf.read());
+            } finally {
+                raf.close();
+            }
+
+            DurableRAMJobStore second = start(dir, 16 * 1024 * 1024);
+            try {
+                assertEquals(2, second.getNumberOfJobs());
+                assertNull(second.retrieveJob(new JobKey("job2", "group")));
+            } finally {
+                second.shutdown();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testChangeThatCannotBeLoggedIsNotMade() throws Exception {
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore store = start(dir, 4096);
+            try {
+                // the next segment cannot be created
+                delete(dir);
+                int stored = 0;
+                JobKey failed = null;
+                for (int i = 0; i < 200 && failed == null; i++) {
+                    JobDetailImpl job = new JobDetailImpl("job" + i, "group", AbstractJobStoreTest.MyJob.class);
+                    job.setDurability(true);
+                    try {
+                        store.storeJob(job, false);
+                        stored++;
+                    } catch (IllegalStateException e) {
+                        // storeJob() declares no JobPersistenceException
+                        failed = job.getKey();
+                    }
+                }
+                assertNotNull(failed);
+                assertNull(store.retrieveJob(failed));
+                assertEquals(stored, store.getNumberOfJobs());
+            } finally {
+                store.shutdown();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    public void testShutdownReleasesTheLog() throws Exception {
+        File maps = new File("/proc/self/maps");
+        if (!maps.canRead()) {
+            return;
+        }
+        File dir = newDirectory();
+        try {
+            DurableRAMJobStore store = start(dir, 4096);
+            JobDetailImpl job = new JobDetailImpl("job", "group", AbstractJobStoreTest.MyJob.class);
+            job.setDurability(true);
+            store.storeJob(job, false);
+            assertTrue(isMapped(maps, dir));
+            store.shutdown();
+            assertFalse(isMapped(maps, dir));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static boolean isMapped(File maps, File dir) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(maps));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(dir.getPath())) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static OperableTrigger newTrigger(String name, String group, JobDetail job, Date startTime) {
+        SimpleTriggerImpl trigger = new SimpleTriggerImpl(name, group, startTime, null, 10, 60000L);
+        trigger.setJobKey(job.getKey());
+        trigger.setJobDataMap(new JobDataMap());
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private static DurableRAMJobStore newStore(File dir, int segmentSize) {
+        DurableRAMJobStore store = new DurableRAMJobStore();
+        store.setDirectory(dir.getPath());
+        store.setLogSegmentSize(segmentSize);
+        return store;
+    }
+
+    private static DurableRAMJobStore start(File dir, int segmentSize) throws Exception {
+        ClassLoadHelper loadHelper = new CascadingClassLoadHelper();
+        loadHelper.initialize();
+        DurableRAMJobStore store = newStore(dir, segmentSize);
+        store.initialize(loadHelper, new AbstractJobStoreTest.SampleSignaler());
+        store.schedulerStarted();
+        return store;
+    }
+
+    private static File newDirectory() {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "quartz-durable-" + System.nanoTime());
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
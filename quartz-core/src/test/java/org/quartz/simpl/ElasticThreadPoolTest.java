@@ -0,0 +1,184 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.Scheduler;
+import org.quartz.impl.StdSchedulerFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ElasticThreadPool.
+ */
+public class ElasticThreadPoolTest extends TestCase {
+
+    private ElasticThreadPool pool;
+
+    private volatile long releaseAt;
+
+    @Override
+    protected void setUp() throws Exception {
+        pool = new ElasticThreadPool(1, 4, Thread.NORM_PRIORITY);
+        pool.setInstanceName("ElasticThreadPoolTest");
+        pool.setKeepAliveMillis(200L);
+        pool.initialize();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.shutdown(true);
+    }
+
+    public void testStartsWithCoreThreads() {
+        assertEquals(1, pool.getCurrentThreadCount());
+        assertEquals(4, pool.getPoolSize());
+        assertEquals(4, pool.blockForAvailableThreads());
+    }
+
+    public void testGrowsToThreadCountAndRetiresIdleThreads() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pool.runInThread(blocking(started, release)));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(4, pool.getCurrentThreadCount());
+        assertEquals(4, pool.getBusyThreadCount());
+
+        release.countDown();
+        assertTrue(pool.blockForAvailableThreads() > 0);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (pool.getCurrentThreadCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+        assertEquals(1, pool.getCurrentThreadCount());
+    }
+
+    public void testBlockForAvailableThreadsWakesUpWhenAThreadFreesUp() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            pool.runInThread(blocking(started, release));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException ignore) {
+                }
+                releaseAt = System.nanoTime();
+                release.countDown();
+            }
+        }.start();
+        assertTrue(pool.blockForAvailableThreads() > 0);
+        long woken = System.nanoTime();
+        // SimpleThreadPool would take up to 500ms to notice
+        assertTrue("woke up after " + (woken - releaseAt) / 1000000L + "ms",
+                woken - releaseAt < TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    public void testRunsEverythingUnderContention() throws Exception {
+        final int tasks = 20000;
+        final AtomicInteger ran = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(tasks);
+        Thread[] submitters = new Thread[3];
+        for (int s = 0; s < submitters.length; s++) {
+            submitters[s] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < tasks / 4; i++) {
+                        pool.runInThread(counting(ran, done));
+                    }
+                }
+            };
+            submitters[s].start();
+        }
+        for (int i = 0; i < tasks - 3 * (tasks / 4); i++) {
+            pool.blockForAvailableThreads();
+            pool.runInThread(counting(ran, done));
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(tasks, ran.get());
+        assertTrue(pool.getCurrentThreadCount() <= 4);
+    }
+
+    public void testShutdownWaitsForRunningJobs() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger finished = new AtomicInteger();
+        pool.runInThread(new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignore) {
+                }
+                finished.incrementAndGet();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pool.shutdown(true);
+        assertEquals(1, finished.get());
+        assertEquals(0, pool.getCurrentThreadCount());
+    }
+
+    public void testSelectableThroughSchedulerFactory() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.instanceName", "ElasticThreadPoolTest");
+        config.setProperty("org.quartz.threadPool.class", ElasticThreadPool.class.getName());
+        config.setProperty("org.quartz.threadPool.threadCount", "8");
+        config.setProperty("org.quartz.threadPool.coreThreadCount", "2");
+        config.setProperty("org.quartz.threadPool.keepAliveMillis", "1000");
+        Scheduler scheduler = new StdSchedulerFactory(config).getScheduler();
+        try {
+            assertEquals(ElasticThreadPool.class, scheduler.getMetaData().getThreadPoolClass());
+            assertEquals(8, scheduler.getMetaData().getThreadPoolSize());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static Runnable blocking(final CountDownLatch started, final CountDownLatch release) {
+        return new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        };
+    }
+
+    private static Runnable counting(final AtomicInteger ran, final CountDownLatch done) {
+        return new Runnable() {
+            public void run() {
+                ran.incrementAndGet();
+                done.countDown();
+            }
+        };
+    }
+}
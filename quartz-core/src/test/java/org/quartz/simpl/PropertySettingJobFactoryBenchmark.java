@@ -0,0 +1,152 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+
+import org.quartz.JobDataMap;
+
+/**
+ * Benchmark of <code>PropertySettingJobFactory.setBeanProps()</code>, which
+ * uses the cached {@link JobPropertyInjector}, against the introspection it
+ * used to do for every job instance: <code>Introspector.getBeanInfo()</code>,
+ * a linear search of the property descriptors per entry and
+ * <code>Method.invoke()</code>.
+ *
+ * <p>
+ * A bean with 20 properties is given a <code>JobDataMap</code> with a value
+ * for each, half of them strings to convert; the instances set per second
+ * are printed for each path, after a warm-up. This is not run as part of the
+ * test suite; start it with <code>main</code>, optionally passing the number
+ * of seconds per run.
+ * </p>
+ */
+public class PropertySettingJobFactoryBenchmark {
+
+    static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+        JobDataMap data = new JobDataMap();
+        for (int i = 0; i < 5; i++) {
+            data.put("int" + i, i % 2 == 0 ? (Object) Integer.valueOf(i) : String.valueOf(i));
+            data.put("long" + i, i % 2 == 0 ? (Object) Long.valueOf(i) : String.valueOf(i));
+            data.put("flag" + i, i % 2 == 0 ? (Object) Boolean.TRUE : "true");
+            data.put("text" + i, "value" + i);
+        }
+
+        PropertySettingJobFactory factory = new PropertySettingJobFactory();
+        factory.setThrowIfPropertyNotFound(true);
+
+        for (int round = 0; round < 2; round++) {
+            run("injector", factory, null, data, seconds);
+            run("introspection", null, new IntrospectingSetter(), data, seconds);
+        }
+    }
+
+    private static void run(String name, PropertySettingJobFactory factory, IntrospectingSetter introspecting,
+            JobDataMap data, int seconds) throws Exception {
+        long end = System.nanoTime() + seconds * 1000000000L;
+        long count = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) {
+                TwentyProperties bean = new TwentyProperties();
+                if (factory != null) {
+                    factory.setBeanProps(bean, data);
+                } else {
+                    introspecting.setBeanProps(bean, data);
+                }
+                sink = bean;
+            }
+            count += 100;
+        }
+        System.out.println(String.format("%-14s %,12d instances/s", name, count / seconds));
+    }
+
+    /**
+     * What <code>setBeanProps()</code> used to do, for the types used here.
+     */
+    static class IntrospectingSetter {
+
+        void setBeanProps(Object obj, JobDataMap data) throws Exception {
+            BeanInfo bi = Introspector.getBeanInfo(obj.getClass());
+            PropertyDescriptor[] propDescs = bi.getPropertyDescriptors();
+            for (Map.Entry<String, Object> entry : data.getWrappedMap().entrySet()) {
+                String name = entry.getKey();
+                String methName = "set" + name.substring(0, 1).toUpperCase(Locale.US) + name.substring(1);
+                Method setMeth = null;
+                for (PropertyDescriptor propDesc : propDescs) {
+                    Method wMeth = propDesc.getWriteMethod();
+                    if (wMeth != null && wMeth.getParameterTypes().length == 1 && wMeth.getName().equals(methName)) {
+                        setMeth = wMeth;
+                        break;
+                    }
+                }
+                Class<?> paramType = setMeth.getParameterTypes()[0];
+                Object o = entry.getValue();
+                Object parm = o;
+                if (paramType.equals(int.class) && o instanceof String) {
+                    parm = Integer.valueOf((String) o);
+                } else if (paramType.equals(long.class) && o instanceof String) {
+                    parm = Long.valueOf((String) o);
+                } else if (paramType.equals(boolean.class) && o instanceof String) {
+                    parm = Boolean.valueOf((String) o);
+                }
+                setMeth.invoke(obj, new Object[] {parm});
+            }
+        }
+    }
+
+    public static class TwentyProperties {
+        private int int0, int1, int2, int3, int4;
+        private long long0, long1, long2, long3, long4;
+        private boolean flag0, flag1, flag2, flag3, flag4;
+        private String text0, text1, text2, text3, text4;
+
+        public void setInt0(int value) { int0 = value; }
+        public void setInt1(int value) { int1 = value; }
+        public void setInt2(int value) { int2 = value; }
+        public void setInt3(int value) { int3 = value; }
+        public void setInt4(int value) { int4 = value; }
+        public void setLong0(long value) { long0 = value; }
+        public void setLong1(long value) { long1 = value; }
+        public void setLong2(long value) { long2 = value; }
+        public void setLong3(long value) { long3 = value; }
+        public void setLong4(long value) { long4 = value; }
+        public void setFlag0(boolean value) { flag0 = value; }
+        public void setFlag1(boolean value) { flag1 = value; }
+        public void setFlag2(boolean value) { flag2 = value; }
+        public void setFlag3(boolean value) { flag3 = value; }
+        public void setFlag4(boolean value) { flag4 = value; }
+        public void setText0(String value) { text0 = value; }
+        public void setText1(String value) { text1 = value; }
+        public void setText2(String value) { text2 = value; }
+        public void setText3(String value) { text3 = value; }
+        public void setText4(String value) { text4 = value; }
+
+        @Override
+        public String toString() {
+            return "" + int0 + int1 + int2 + int3 + int4 + long0 + long1 + long2 + long3 + long4
+                    + flag0 + flag1 + flag2 + flag3 + flag4 + text0 + text1 + text2 + text3 + text4;
+        }
+    }
+}
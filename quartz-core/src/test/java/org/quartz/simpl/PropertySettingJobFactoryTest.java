@@ -162,6 +162,40 @@ public class PropertySettingJobFactoryTest extends TestCase {
         assertEquals((byte)6, myBean.getByteValue());
     }
 
+    public void testInjectorIsBuiltOncePerClass() throws SchedulerException {
+        assertSame(JobPropertyInjector.forClass(TestBean.class), JobPropertyInjector.forClass(TestBean.class));
+        assertNull(JobPropertyInjector.forClass(TestBean.class).getSetter("bogusValue"));
+        assertSame(JobPropertyInjector.forClass(TestBean.class).getSetter("intValue"),
+                JobPropertyInjector.forClass(TestBean.class).getSetter("intValue"));
+
+        // and still sets each instance
+        for (int i = 0; i < 3; i++) {
+            JobDataMap jobDataMap = new JobDataMap();
+            jobDataMap.put("intValue", i);
+            TestBean myBean = new TestBean();
+            factory.setBeanProps(myBean, jobDataMap);
+            assertEquals(i, myBean.getIntValue());
+        }
+    }
+
+    public void testSetterThrowing() {
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put("value", "x");
+        try {
+            factory.setBeanProps(new ThrowingBean(), jobDataMap);
+            fail();
+        } catch (SchedulerException e) {
+            assertTrue(e.getMessage().contains("could not be invoked"));
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public static final class ThrowingBean {
+        public void setValue(String value) {
+            throw new IllegalStateException(value);
+        }
+    }
+
     private static final class TestBean {
         private int intValue;
         private long longValue;
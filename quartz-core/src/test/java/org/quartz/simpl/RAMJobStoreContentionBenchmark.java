@@ -0,0 +1,200 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.AbstractJobStoreTest.MyJob;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+
+/**
+ * Contention benchmark comparing {@link RAMJobStore} with
+ * {@link ConcurrentRAMJobStore}.
+ *
+ * <p>
+ * A number of "scheduler" threads run the acquire / fire / complete cycle in
+ * a loop, while "worker" threads complete jobs and "dashboard" threads poll
+ * the store with read-only calls. The throughput of each kind of operation is
+ * printed per store. This is not run as part of the test suite; start it with
+ * <code>main</code>, optionally passing the number of seconds per run, the
+ * number of reader threads and the number of triggers.
+ * </p>
+ */
+public class RAMJobStoreContentionBenchmark {
+
+    private static final int ACQUIRE_THREADS = 2;
+
+    private static final int WORKER_THREADS = 64;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int triggers = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        // warm up both stores once before measuring
+        run(new RAMJobStore(), 2, readers, triggers, false);
+        run(new ConcurrentRAMJobStore(), 2, readers, triggers, false);
+
+        run(new RAMJobStore(), seconds, readers, triggers, true);
+        run(new ConcurrentRAMJobStore(), seconds, readers, triggers, true);
+    }
+
+    private static void run(final JobStore store, int seconds, int readers, final int triggers, boolean report)
+            throws Exception {
+        store.initialize(null, new NoOpSignaler());
+
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < triggers; i++) {
+            JobDetail job = JobBuilder.newJob(MyJob.class).withIdentity("job" + i).build();
+            OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity("trigger" + i)
+                    .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(1).repeatForever()
+                            .withMisfireHandlingInstructionIgnoreMisfires())
+                    .forJob(job).startAt(new Date(start)).build();
+            trigger.computeFirstFireTime(null);
+            store.storeJobAndTrigger(job, trigger);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final LongAdder acquired = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder reads = new LongAdder();
+        final LinkedBlockingQueue<TriggerFiredBundle> toComplete =
+                new LinkedBlockingQueue<TriggerFiredBundle>();
+
+        int threadCount = ACQUIRE_THREADS + WORKER_THREADS + readers;
+        final CountDownLatch finished = new CountDownLatch(threadCount);
+
+        for (int t = 0; t < ACQUIRE_THREADS; t++) {
+            start(finished, new Runnable() {
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            List<OperableTrigger> batch = store.acquireNextTriggers(
+                                    System.currentTimeMillis() + 30000L, 10, 30000L);
+                            acquired.add(batch.size());
+                            for (TriggerFiredResult result : store.triggersFired(batch)) {
+                                toComplete.offer(result.getTriggerFiredBundle());
+                            }
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int t = 0; t < WORKER_THREADS; t++) {
+            start(finished, new Runnable() {
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            TriggerFiredBundle bundle = toComplete.poll(10, TimeUnit.MILLISECONDS);
+                            if (bundle != null) {
+                                store.triggeredJobComplete(bundle.getTrigger(), bundle.getJobDetail(),
+                                        CompletedExecutionInstruction.NOOP);
+                                completed.increment();
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int t = 0; t < readers; t++) {
+            final int seed = t;
+            start(finished, new Runnable() {
+                public void run() {
+                    int i = seed;
+                    while (running.get()) {
+                        try {
+                            int n = (i++ * 31) % triggers;
+                            store.checkExists(JobKey.jobKey("job" + n));
+                            store.retrieveJob(JobKey.jobKey("job" + n));
+                            store.getTriggerState(TriggerKey.triggerKey("trigger" + n));
+                            reads.add(3);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            });
+        }
+
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        finished.await();
+
+        if (report) {
+            System.out.println(String.format("%-22s acquired/s: %,10d  completed/s: %,10d  reads/s: %,12d",
+                    store.getClass().getSimpleName(), acquired.sum() / seconds, completed.sum() / seconds,
+                    reads.sum() / seconds));
+        }
+    }
+
+    private static void start(final CountDownLatch finished, final Runnable task) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static class NoOpSignaler implements SchedulerSignaler {
+
+        public void notifyTriggerListenersMisfired(Trigger trigger) {
+        }
+
+        public void notifySchedulerListenersFinalized(Trigger trigger) {
+        }
+
+        public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+        }
+
+        public void signalSchedulingChange(long candidateNewNextFireTime) {
+        }
+
+        public void notifySchedulerListenersError(String string, SchedulerException jpe) {
+        }
+    }
+}
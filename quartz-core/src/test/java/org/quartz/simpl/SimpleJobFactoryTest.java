@@ -0,0 +1,267 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.ReusableJobInstance;
+import org.quartz.ReusableJobInstance.Scope;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the reuse of job instances by SimpleJobFactory.
+ */
+public class SimpleJobFactoryTest extends TestCase {
+
+    private SimpleJobFactory factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        factory = new SimpleJobFactory();
+    }
+
+    public void testNewInstanceForUnmarkedJobs() throws SchedulerException {
+        JobDetail job = JobBuilder.newJob(PlainJob.class).withIdentity("plain").build();
+        assertNotSame(factory.newJob(bundle(job), null), factory.newJob(bundle(job), null));
+    }
+
+    public void testOneInstancePerJob() throws SchedulerException {
+        JobDetail a = JobBuilder.newJob(PerJob.class).withIdentity("a").usingJobData("x", "1").build();
+        JobDetail b = JobBuilder.newJob(PerJob.class).withIdentity("b").usingJobData("x", "1").build();
+        Job first = factory.newJob(bundle(a), null);
+        assertSame(first, factory.newJob(bundle(a), null));
+        // a copy of the same definition, as the job stores hand out
+        assertSame(first, factory.newJob(bundle((JobDetail) a.clone()), null));
+        assertNotSame(first, factory.newJob(bundle(b), null));
+    }
+
+    public void testOneInstancePerClass() throws SchedulerException {
+        JobDetail a = JobBuilder.newJob(PerClass.class).withIdentity("a").usingJobData("x", "1").build();
+        JobDetail b = JobBuilder.newJob(PerClass.class).withIdentity("b").usingJobData("x", "2").build();
+        assertSame(factory.newJob(bundle(a), null), factory.newJob(bundle(b), null));
+    }
+
+    public void testReplacedJobGetsNewInstance() throws SchedulerException {
+        JobDetail job = JobBuilder.newJob(PerJob.class).withIdentity("a").usingJobData("x", "1").build();
+        Job first = factory.newJob(bundle(job), null);
+
+        JobDetail replaced = JobBuilder.newJob(PerJob.class).withIdentity("a").usingJobData("x", "2").build();
+        Job second = factory.newJob(bundle(replaced), null);
+        assertNotSame(first, second);
+        assertSame(second, factory.newJob(bundle(replaced), null));
+
+        JobDetail described = replaced.getJobBuilder().withDescription("now described").build();
+        assertNotSame(second, factory.newJob(bundle(described), null));
+
+        JobDetail otherClass = JobBuilder.newJob(PlainJob.class).withIdentity("a").usingJobData("x", "2").build();
+        assertTrue(factory.newJob(bundle(otherClass), null) instanceof PlainJob);
+    }
+
+    public void testNotThreadSafeOnlyKeptForNonConcurrentJobs() throws SchedulerException {
+        JobDetail concurrent = JobBuilder.newJob(NotThreadSafe.class).withIdentity("a").build();
+        assertNotSame(factory.newJob(bundle(concurrent), null), factory.newJob(bundle(concurrent), null));
+
+        JobDetail nonConcurrent = JobBuilder.newJob(NotThreadSafeNonConcurrent.class).withIdentity("b").build();
+        assertSame(factory.newJob(bundle(nonConcurrent), null), factory.newJob(bundle(nonConcurrent), null));
+
+        // the jobs of the class may run at the same time
+        JobDetail perClass = JobBuilder.newJob(NotThreadSafePerClass.class).withIdentity("c").build();
+        assertNotSame(factory.newJob(bundle(perClass), null), factory.newJob(bundle(perClass), null));
+        assertEquals(1, factory.getReusableInstances().size());
+    }
+
+    /**
+     * Fires a job from the threads of the pool, with and without bean
+     * properties to set: no instance is executed by two threads at once
+     * unless thread-safe, and none has its properties changed while it runs.
+     */
+    public void testFiresFromPoolThreads() throws Exception {
+        PropertySettingJobFactory factory = new PropertySettingJobFactory();
+        Scheduler scheduler = newScheduler("testFiresFromPoolThreads", factory);
+        try {
+            Overlapping.executions = new CountDownLatch(90);
+            Overlapping.failures.set(0);
+            scheduler.addJob(JobBuilder.newJob(NotThreadSafeNonConcurrent.class).withIdentity("nonConcurrent")
+                    .storeDurably().build(), false);
+            scheduler.addJob(JobBuilder.newJob(NotThreadSafe.class).withIdentity("notThreadSafe")
+                    .storeDurably().build(), false);
+            scheduler.addJob(JobBuilder.newJob(WithProperty.class).withIdentity("withProperty")
+                    .storeDurably().build(), false);
+            scheduler.start();
+            for (int i = 0; i < 30; i++) {
+                scheduler.triggerJob(JobKey.jobKey("nonConcurrent"));
+                scheduler.triggerJob(JobKey.jobKey("notThreadSafe"));
+                JobDataMap data = new JobDataMap();
+                data.put("value", i);
+                scheduler.triggerJob(JobKey.jobKey("withProperty"), data);
+            }
+            assertTrue(Overlapping.executions.await(30, TimeUnit.SECONDS));
+            assertEquals(0, Overlapping.failures.get());
+            // only the instance of the job that disallows concurrent execution is kept
+            assertEquals(1, factory.getReusableInstances().size());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public void testDeletedJobIsDropped() throws Exception {
+        SimpleJobFactory factory = new SimpleJobFactory();
+        Scheduler scheduler = newScheduler("testDeletedJobIsDropped", factory);
+        try {
+            Overlapping.executions = new CountDownLatch(2);
+            scheduler.addJob(JobBuilder.newJob(NotThreadSafeNonConcurrent.class).withIdentity("durable")
+                    .storeDurably().build(), false);
+            scheduler.scheduleJob(JobBuilder.newJob(NotThreadSafeNonConcurrent.class).withIdentity("oneShot").build(),
+                    TriggerBuilder.newTrigger().startNow().build());
+            scheduler.start();
+            scheduler.triggerJob(JobKey.jobKey("durable"));
+            assertTrue(Overlapping.executions.await(10, TimeUnit.SECONDS));
+            // the one-shot job goes with its trigger
+            long end = System.currentTimeMillis() + 10000;
+            while (factory.getReusableInstances().size() > 1 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, factory.getReusableInstances().size());
+
+            scheduler.deleteJob(JobKey.jobKey("durable"));
+            assertEquals(0, factory.getReusableInstances().size());
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    public void testMaxReusableInstances() throws SchedulerException {
+        factory.setMaxReusableInstances(1);
+        JobDetail a = JobBuilder.newJob(PerJob.class).withIdentity("a").build();
+        JobDetail b = JobBuilder.newJob(PerJob.class).withIdentity("b").build();
+        assertSame(factory.newJob(bundle(a), null), factory.newJob(bundle(a), null));
+        assertNotSame(factory.newJob(bundle(b), null), factory.newJob(bundle(b), null));
+        assertEquals(1, factory.getReusableInstances().size());
+    }
+
+    private static Scheduler newScheduler(String name, SimpleJobFactory factory) throws SchedulerException {
+        Properties config = new Properties();
+        config.setProperty("org.quartz.scheduler.instanceName", name);
+        config.setProperty("org.quartz.threadPool.threadCount", "10");
+        Scheduler scheduler = new StdSchedulerFactory(config).getScheduler();
+        scheduler.setJobFactory(factory);
+        return scheduler;
+    }
+
+    private static TriggerFiredBundle bundle(JobDetail job) {
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(job).build();
+        Date now = new Date();
+        return new TriggerFiredBundle(job, trigger, null, false, now, now, null, null);
+    }
+
+    public static class PlainJob implements Job {
+        public void execute(JobExecutionContext context) {
+        }
+    }
+
+    @ReusableJobInstance
+    public static class PerJob implements Job {
+        public void execute(JobExecutionContext context) {
+        }
+    }
+
+    @ReusableJobInstance(scope = Scope.CLASS)
+    public static class PerClass implements Job {
+        public void execute(JobExecutionContext context) {
+        }
+    }
+
+    /**
+     * Counts the executions, and the ones that overlapped with another on
+     * the same instance or saw their property change.
+     */
+    public static class Overlapping implements Job {
+        static volatile CountDownLatch executions;
+
+        static final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            if (running.incrementAndGet() > 1) {
+                failures.incrementAndGet();
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            } finally {
+                running.decrementAndGet();
+                executions.countDown();
+            }
+        }
+    }
+
+    @ReusableJobInstance(threadSafe = false)
+    public static class NotThreadSafe extends Overlapping {
+    }
+
+    @ReusableJobInstance(threadSafe = false)
+    @DisallowConcurrentExecution
+    public static class NotThreadSafeNonConcurrent extends Overlapping {
+    }
+
+    @ReusableJobInstance(threadSafe = false, scope = Scope.CLASS)
+    @DisallowConcurrentExecution
+    public static class NotThreadSafePerClass extends Overlapping {
+    }
+
+    @ReusableJobInstance
+    public static class WithProperty implements Job {
+        private volatile int value;
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new JobExecutionException(e);
+            } finally {
+                if (value != context.getMergedJobDataMap().getInt("value")) {
+                    Overlapping.failures.incrementAndGet();
+                }
+                Overlapping.executions.countDown();
+            }
+        }
+    }
+}
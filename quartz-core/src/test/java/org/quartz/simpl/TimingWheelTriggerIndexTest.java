@@ -0,0 +1,156 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for TimingWheelTriggerIndex, checked against the TreeSet based
+ * index.
+ */
+public class TimingWheelTriggerIndexTest extends TestCase {
+
+    private static TriggerWrapper wrapper(String name, long fireTime, int priority) {
+        SimpleTriggerImpl trigger = new SimpleTriggerImpl();
+        trigger.setName(name);
+        trigger.setJobName("job");
+        trigger.setStartTime(new Date(fireTime));
+        trigger.setNextFireTime(new Date(fireTime));
+        trigger.setPriority(priority);
+        return new TriggerWrapper(trigger);
+    }
+
+    public void testPriorityOrderWithinTick() {
+        long now = System.currentTimeMillis();
+        TimingWheelTriggerIndex index = new TimingWheelTriggerIndex(100);
+
+        TriggerWrapper low = wrapper("low", now + 5000, 1);
+        TriggerWrapper high = wrapper("high", now + 5000, 10);
+        TriggerWrapper earlier = wrapper("earlier", now + 4990, 1);
+        index.add(low);
+        index.add(high);
+        index.add(earlier);
+
+        assertSame(earlier, index.first(Long.MAX_VALUE));
+        index.remove(earlier);
+        assertSame(high, index.first(Long.MAX_VALUE));
+        index.remove(high);
+        assertSame(low, index.first(Long.MAX_VALUE));
+        index.remove(low);
+        assertNull(index.first(Long.MAX_VALUE));
+        assertTrue(index.isEmpty());
+    }
+
+    public void testAddAndRemoveAreIdempotent() {
+        TimingWheelTriggerIndex index = new TimingWheelTriggerIndex(1);
+        TriggerWrapper tw = wrapper("t", System.currentTimeMillis() + 60000, 5);
+
+        assertTrue(index.add(tw));
+        assertFalse(index.add(tw));
+        assertEquals(1, index.size());
+        assertTrue(index.remove(tw));
+        assertFalse(index.remove(tw));
+        assertEquals(0, index.size());
+    }
+
+    public void testHorizon() {
+        long now = System.currentTimeMillis();
+        TimingWheelTriggerIndex index = new TimingWheelTriggerIndex(1);
+        TriggerWrapper later = wrapper("later", now + 3600000L, 5);
+        index.add(later);
+
+        assertNull(index.first(now + 30000L));
+        // a trigger added behind the cursor must still come out first
+        TriggerWrapper sooner = wrapper("sooner", now + 1000L, 5);
+        index.add(sooner);
+        assertSame(sooner, index.first(now + 30000L));
+        index.remove(sooner);
+        assertSame(later, index.first(Long.MAX_VALUE));
+    }
+
+    public void testPeekKeepsTheHorizon() {
+        long now = System.currentTimeMillis();
+        TimingWheelTriggerIndex index = new TimingWheelTriggerIndex(1);
+        TriggerWrapper later = wrapper("later", now + 3600000L, 5);
+        TriggerWrapper latest = wrapper("latest", now + 3600000L, 1);
+        index.add(latest);
+        index.add(later);
+
+        assertSame(later, index.peek());
+        // the cursor did not move up to the trigger
+        assertNull(index.first(now + 30000L));
+        assertSame(later, index.peek());
+        assertSame(later, index.first(Long.MAX_VALUE));
+        assertSame(later, index.peek());
+        index.remove(later);
+        assertSame(latest, index.peek());
+        index.remove(latest);
+        assertNull(index.peek());
+    }
+
+    public void testMatchesTreeSetIndex() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        TimingWheelTriggerIndex wheel = new TimingWheelTriggerIndex(7);
+        TreeSetTriggerIndex tree = new TreeSetTriggerIndex();
+        List<TriggerWrapper> wheelIndexed = new ArrayList<TriggerWrapper>();
+        List<TriggerWrapper> treeIndexed = new ArrayList<TriggerWrapper>();
+
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 5 || wheelIndexed.isEmpty()) {
+                // spread fire times from the past to a few years ahead
+                long fireTime = now - 60000L + (long) (Math.pow(random.nextDouble(), 4) * 100000000000L);
+                int priority = random.nextInt(4);
+                TriggerWrapper a = wrapper("t" + i, fireTime, priority);
+                TriggerWrapper b = wrapper("t" + i, fireTime, priority);
+                assertEquals(tree.add(b), wheel.add(a));
+                wheelIndexed.add(a);
+                treeIndexed.add(b);
+            } else if (op < 7) {
+                int n = random.nextInt(wheelIndexed.size());
+                assertEquals(tree.remove(treeIndexed.remove(n)), wheel.remove(wheelIndexed.remove(n)));
+            } else if (op < 8) {
+                assertEquals(tree.peek().key, wheel.peek().key);
+            } else {
+                TriggerWrapper expected = tree.first(Long.MAX_VALUE);
+                TriggerWrapper actual = wheel.first(Long.MAX_VALUE);
+                assertEquals(expected.key, actual.key);
+                tree.remove(expected);
+                wheel.remove(actual);
+                treeIndexed.remove(expected);
+                wheelIndexed.remove(actual);
+            }
+            assertEquals(tree.size(), wheel.size());
+        }
+
+        while (!tree.isEmpty()) {
+            TriggerWrapper expected = tree.first(Long.MAX_VALUE);
+            TriggerWrapper actual = wheel.first(Long.MAX_VALUE);
+            assertEquals(expected.key, actual.key);
+            tree.remove(expected);
+            wheel.remove(actual);
+        }
+        assertTrue(wheel.isEmpty());
+    }
+}
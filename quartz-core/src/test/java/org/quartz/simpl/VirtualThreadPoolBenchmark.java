@@ -0,0 +1,94 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+import org.quartz.spi.ThreadPool;
+
+/**
+ * Benchmark comparing {@link VirtualThreadPool} with
+ * {@link SimpleThreadPool} on I/O-bound jobs.
+ *
+ * <p>
+ * A number of jobs that just sleep (10,000 of 1 second by default) are handed
+ * to each pool the way <code>QuartzSchedulerThread</code> does it, with
+ * <code>blockForAvailableThreads()</code> then <code>runInThread()</code>,
+ * and the time until the last one completes is printed, with the peak number
+ * of platform threads and the heap in use. This is not run as part of the
+ * test suite; start it with <code>main</code>, optionally passing the number
+ * of jobs, the sleep in milliseconds and the size of the
+ * <code>SimpleThreadPool</code> (500 by default). It needs Java 21 for the
+ * virtual threads.
+ * </p>
+ */
+public class VirtualThreadPoolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long sleep = args.length > 1 ? Long.parseLong(args[1]) : 1000L;
+        int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        SimpleThreadPool simple = new SimpleThreadPool(platformThreads, Thread.NORM_PRIORITY);
+        simple.setInstanceName("Simple");
+        run("SimpleThreadPool(" + platformThreads + ")", simple, jobs, sleep);
+
+        if (!VirtualThreadPool.isSupported()) {
+            System.out.println("VirtualThreadPool: no virtual threads on Java " + System.getProperty("java.version"));
+            return;
+        }
+        VirtualThreadPool virtual = new VirtualThreadPool(jobs);
+        virtual.setInstanceName("Virtual");
+        run("VirtualThreadPool(" + jobs + ")", virtual, jobs, sleep);
+    }
+
+    private static void run(String name, ThreadPool pool, int jobs, final long sleep) throws Exception {
+        System.gc();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        pool.initialize();
+        final CountDownLatch done = new CountDownLatch(jobs);
+        long start = System.nanoTime();
+        long peakHeap = 0;
+        for (int i = 0; i < jobs; i++) {
+            pool.blockForAvailableThreads();
+            pool.runInThread(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException ignore) {
+                    }
+                    done.countDown();
+                }
+            });
+            if (i % 1000 == 999) {
+                peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown(true);
+
+        System.out.println(String.format("%-26s %,6d jobs of %,dms: %,7dms, peak %,5d platform threads, +%,d KB heap",
+                name, jobs, sleep, elapsed / 1000000L, threadBean.getPeakThreadCount(),
+                Math.max(peakHeap - heapBefore, 0) / 1024));
+    }
+}
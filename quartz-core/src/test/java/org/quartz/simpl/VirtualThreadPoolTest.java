@@ -0,0 +1,96 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.simpl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.SchedulerConfigException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for VirtualThreadPool; on a JVM without virtual threads, only
+ * checks that it refuses to initialize.
+ */
+public class VirtualThreadPoolTest extends TestCase {
+
+    public void testRequiresVirtualThreads() throws Exception {
+        if (VirtualThreadPool.isSupported()) {
+            return;
+        }
+        VirtualThreadPool pool = new VirtualThreadPool(10);
+        try {
+            pool.initialize();
+            fail("initialized without virtual threads");
+        } catch (SchedulerConfigException expected) {
+        }
+    }
+
+    public void testCapsConcurrentRunnables() throws Exception {
+        if (!VirtualThreadPool.isSupported()) {
+            return;
+        }
+        final VirtualThreadPool pool = new VirtualThreadPool(3);
+        pool.setInstanceName("VirtualThreadPoolTest");
+        pool.initialize();
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(3);
+            final AtomicInteger virtual = new AtomicInteger();
+            for (int i = 0; i < 3; i++) {
+                pool.runInThread(new Runnable() {
+                    public void run() {
+                        if (Thread.currentThread().getName().startsWith("VirtualThreadPoolTest_VirtualWorker-")) {
+                            virtual.incrementAndGet();
+                        }
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException ignore) {
+                        }
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(3, virtual.get());
+            assertEquals(3, pool.getBusyThreadCount());
+
+            final CountDownLatch fourth = new CountDownLatch(1);
+            Thread submitter = new Thread() {
+                @Override
+                public void run() {
+                    pool.runInThread(new Runnable() {
+                        public void run() {
+                            fourth.countDown();
+                        }
+                    });
+                }
+            };
+            submitter.start();
+            assertFalse("ran beyond the cap", fourth.await(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertTrue(fourth.await(5, TimeUnit.SECONDS));
+            submitter.join();
+            assertTrue(pool.blockForAvailableThreads() > 0);
+        } finally {
+            pool.shutdown(true);
+        }
+        assertEquals(0, pool.getBusyThreadCount());
+    }
+}
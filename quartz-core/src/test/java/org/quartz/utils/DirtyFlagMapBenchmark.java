@@ -0,0 +1,100 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.quartz.JobDataMap;
+
+/**
+ * Benchmark of what a fire does to the data maps: clone the job's
+ * <code>JobDataMap</code>, as the job store does when handing out the
+ * <code>JobDetail</code>, then clone it again and merge the trigger's map
+ * of 2 entries into it, as <code>JobExecutionContextImpl</code> does.
+ *
+ * <p>
+ * This is run against <code>JobDataMap</code>, whose entries are shared
+ * between clones, and against the <code>HashMap</code> copies it used to
+ * make, for job maps of 1, 10 and 1000 entries; the time per fire is
+ * printed for each, after a warm-up. This is not run as part of the test
+ * suite; start it with <code>main</code>, optionally passing the number of
+ * seconds per run.
+ * </p>
+ */
+public class DirtyFlagMapBenchmark {
+
+    static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+
+        JobDataMap triggerData = new JobDataMap();
+        triggerData.put("trigger0", "value");
+        triggerData.put("trigger1", 1);
+
+        for (int round = 0; round < 2; round++) {
+            for (int size : new int[] {1, 10, 1000}) {
+                JobDataMap jobData = new JobDataMap();
+                for (int i = 0; i < size; i++) {
+                    jobData.put("job" + i, "value" + i);
+                }
+                runShared(size, jobData, triggerData, seconds);
+                runCopied(size, new HashMap<String, Object>(jobData), new HashMap<String, Object>(triggerData),
+                        seconds);
+            }
+        }
+    }
+
+    private static void runShared(int size, JobDataMap jobData, JobDataMap triggerData, int seconds) {
+        long end = System.nanoTime() + seconds * 1000000000L;
+        long count = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) {
+                JobDataMap retrieved = (JobDataMap) jobData.clone();
+                JobDataMap merged = (JobDataMap) retrieved.clone();
+                merged.putAll(triggerData);
+                sink = merged;
+            }
+            count += 100;
+        }
+        report("shared", size, System.nanoTime() - start, count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void runCopied(int size, HashMap<String, Object> jobData, Map<String, Object> triggerData,
+            int seconds) {
+        long end = System.nanoTime() + seconds * 1000000000L;
+        long count = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) {
+                HashMap<String, Object> retrieved = (HashMap<String, Object>) jobData.clone();
+                HashMap<String, Object> merged = new HashMap<String, Object>();
+                merged.putAll(retrieved);
+                merged.putAll(triggerData);
+                sink = merged;
+            }
+            count += 100;
+        }
+        report("copied", size, System.nanoTime() - start, count);
+    }
+
+    private static void report(String name, int size, long nanos, long count) {
+        System.out.println(String.format("%-7s %5d entries %,12.1f ns/fire", name, size, (double) nanos / count));
+    }
+}
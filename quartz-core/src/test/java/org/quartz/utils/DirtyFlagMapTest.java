@@ -188,4 +188,64 @@ public class DirtyFlagMapTest extends TestCase {
         assertTrue(dirtyFlagMap.isDirty());
         assertEquals(0, dirtyFlagMap.size());
     }    
+
+    @SuppressWarnings("unchecked")
+    public void testCloneIsIndependent() {
+        DirtyFlagMap<String, String> dirtyFlagMap = new DirtyFlagMap<String, String>();
+        dirtyFlagMap.put("a", "A");
+        dirtyFlagMap.put("b", "B");
+        dirtyFlagMap.clearDirtyFlag();
+
+        DirtyFlagMap<String, String> clone = (DirtyFlagMap<String, String>) dirtyFlagMap.clone();
+        assertEquals(dirtyFlagMap, clone);
+        assertFalse(clone.isDirty());
+
+        clone.put("a", "X");
+        clone.remove("b");
+        assertTrue(clone.isDirty());
+        assertFalse(dirtyFlagMap.isDirty());
+        assertEquals("A", dirtyFlagMap.get("a"));
+        assertEquals("B", dirtyFlagMap.get("b"));
+
+        dirtyFlagMap.put("c", "C");
+        assertFalse(clone.containsKey("c"));
+        assertEquals(1, clone.size());
+        assertEquals(3, dirtyFlagMap.size());
+
+        dirtyFlagMap.getWrappedMap().put("d", "D");
+        assertFalse(clone.containsKey("d"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCloneViewsAfterClone() {
+        DirtyFlagMap<String, String> dirtyFlagMap = new DirtyFlagMap<String, String>();
+        dirtyFlagMap.put("a", "A");
+        dirtyFlagMap.put("b", "B");
+        DirtyFlagMap<String, String> clone = (DirtyFlagMap<String, String>) dirtyFlagMap.clone();
+
+        // the iterator and the entry were created while the map was shared
+        Iterator<Map.Entry<String, String>> entryIter = clone.entrySet().iterator();
+        Map.Entry<String, String> entry = entryIter.next();
+        String key = entry.getKey();
+        assertEquals(key.toUpperCase(), entry.setValue("X"));
+        assertEquals("X", entry.getValue());
+        assertEquals("X", clone.get(key));
+        assertEquals(key.toUpperCase(), dirtyFlagMap.get(key));
+
+        entryIter.remove();
+        assertFalse(clone.containsKey(key));
+        assertTrue(dirtyFlagMap.containsKey(key));
+
+        clone = (DirtyFlagMap<String, String>) dirtyFlagMap.clone();
+        clone.keySet().remove("a");
+        clone.values().remove("B");
+        assertTrue(clone.isEmpty());
+        assertEquals(2, dirtyFlagMap.size());
+
+        Set<String> keys = dirtyFlagMap.keySet();
+        clone = (DirtyFlagMap<String, String>) dirtyFlagMap.clone();
+        keys.clear();
+        assertEquals(0, dirtyFlagMap.size());
+        assertEquals(2, clone.size());
+    }
 }
@@ -0,0 +1,193 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for HashTrieMap, checked against a <code>HashMap</code>.
+ */
+public class HashTrieMapTest extends TestCase {
+
+    /**
+     * A key whose hash only depends on <code>hash</code>, to make keys collide.
+     */
+    static final class Key {
+        final int hash;
+
+        final int id;
+
+        Key(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).hash == hash && ((Key) obj).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return hash + "/" + id;
+        }
+    }
+
+    public void testSmallAndLarge() {
+        HashTrieMap<String, Integer> map = new HashTrieMap<String, Integer>();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            assertNull(map.put("key" + i, i));
+            expected.put("key" + i, i);
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(Integer.valueOf(7), map.put("key7", 70));
+        assertEquals(Integer.valueOf(70), map.get("key7"));
+
+        for (int i = 0; i < 1000; i++) {
+            map.remove("key" + i);
+        }
+        assertTrue(map.isEmpty());
+        assertNull(map.get("key1"));
+    }
+
+    public void testNullKeyAndValue() {
+        HashTrieMap<String, String> map = new HashTrieMap<String, String>();
+        map.put(null, "a");
+        map.put("b", null);
+        assertEquals("a", map.get(null));
+        assertTrue(map.containsKey("b"));
+        assertNull(map.get("b"));
+        assertEquals("a", map.remove(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    public void testForkIsIndependent() {
+        HashTrieMap<String, Integer> map = new HashTrieMap<String, Integer>();
+        for (int i = 0; i < 100; i++) {
+            map.put("key" + i, i);
+        }
+        HashTrieMap<String, Integer> fork = map.fork();
+        fork.put("key1", -1);
+        fork.remove("key2");
+        fork.put("new", 0);
+        map.put("key3", -3);
+
+        assertEquals(Integer.valueOf(1), map.get("key1"));
+        assertEquals(Integer.valueOf(2), map.get("key2"));
+        assertFalse(map.containsKey("new"));
+        assertEquals(100, map.size());
+        assertEquals(Integer.valueOf(-1), fork.get("key1"));
+        assertFalse(fork.containsKey("key2"));
+        assertEquals(Integer.valueOf(3), fork.get("key3"));
+        assertEquals(100, fork.size());
+    }
+
+    public void testModifyWhileIterating() {
+        HashTrieMap<String, Integer> map = new HashTrieMap<String, Integer>();
+        for (int i = 0; i < 50; i++) {
+            map.put("key" + i, i);
+        }
+        int seen = 0;
+        for (Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Integer> entry = it.next();
+            seen++;
+            if (entry.getValue() % 2 == 0) {
+                it.remove();
+            } else {
+                entry.setValue(-entry.getValue());
+            }
+            map.put("added" + seen, seen);
+        }
+        assertEquals(50, seen);
+        assertEquals(75, map.size());
+        assertEquals(Integer.valueOf(-1), map.get("key1"));
+        assertFalse(map.containsKey("key2"));
+    }
+
+    /**
+     * Keys that collide on a fragment and differ on the next one, where one
+     * of them has the fragment 31, whose bit is the sign bit.
+     */
+    public void testLastFragment() {
+        int[] hashes = {0, 31, 31 << 5, 1 | 31 << 5, 31 << 10, 31 << 25, 3 << 30, -1};
+        for (int a : hashes) {
+            for (int b : hashes) {
+                if (a == b) {
+                    continue;
+                }
+                HashTrieMap<Key, Integer> map = new HashTrieMap<Key, Integer>();
+                // enough entries for the map to be a trie
+                for (int i = 1; i <= HashTrieMap.SMALL_MAX; i++) {
+                    map.put(new Key(i, 1), 0);
+                }
+                map.put(new Key(a, 0), 1);
+                map.put(new Key(b, 0), 2);
+                assertEquals(a + " and " + b, Integer.valueOf(1), map.get(new Key(a, 0)));
+                assertEquals(a + " and " + b, Integer.valueOf(2), map.get(new Key(b, 0)));
+                assertEquals(Integer.valueOf(1), map.remove(new Key(a, 0)));
+                assertEquals(Integer.valueOf(2), map.get(new Key(b, 0)));
+                assertEquals(HashTrieMap.SMALL_MAX + 1, map.size());
+            }
+        }
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random(42);
+        List<HashTrieMap<Key, Integer>> maps = new ArrayList<HashTrieMap<Key, Integer>>();
+        List<Map<Key, Integer>> expected = new ArrayList<Map<Key, Integer>>();
+        maps.add(new HashTrieMap<Key, Integer>());
+        expected.add(new HashMap<Key, Integer>());
+
+        for (int step = 0; step < 20000; step++) {
+            int m = random.nextInt(maps.size());
+            HashTrieMap<Key, Integer> map = maps.get(m);
+            Map<Key, Integer> exp = expected.get(m);
+            // few distinct hashes, so that many keys collide
+            Key key = new Key(random.nextInt(64) * (random.nextBoolean() ? 1 : 0x10001), random.nextInt(4));
+            int op = random.nextInt(10);
+            if (op < 5) {
+                assertEquals(exp.put(key, step), map.put(key, step));
+            } else if (op < 8) {
+                assertEquals(exp.remove(key), map.remove(key));
+            } else if (op < 9 && maps.size() < 8) {
+                maps.add(map.fork());
+                expected.add(new HashMap<Key, Integer>(exp));
+            } else {
+                assertEquals(exp.get(key), map.get(key));
+                assertEquals(exp.containsKey(key), map.containsKey(key));
+            }
+            assertEquals(exp.size(), map.size());
+        }
+        for (int m = 0; m < maps.size(); m++) {
+            assertEquals(expected.get(m), maps.get(m));
+            assertEquals(expected.get(m).hashCode(), maps.get(m).hashCode());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for LatencyHistogram.
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsCoverEveryLatency() {
+        for (long micros = 0; micros < 100000; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue(micros > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertBetween(500, 625, histogram.getPercentileMicros(50));
+        assertBetween(990, 1000, histogram.getPercentileMicros(99));
+        assertEquals(1000, histogram.getPercentileMicros(100));
+    }
+
+    public void testEarlyCountsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5000);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    private static void assertBetween(long low, long high, long actual) {
+        assertTrue(actual + " not in [" + low + ", " + high + "]", actual >= low && actual <= high);
+    }
+}
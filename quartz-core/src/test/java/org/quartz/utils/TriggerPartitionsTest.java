@@ -0,0 +1,129 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.quartz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.quartz.TriggerKey;
+
+/**
+ * Unit test for TriggerPartitions.
+ */
+public class TriggerPartitionsTest extends TestCase {
+
+    public void testPartitionOf() {
+        for (int i = 0; i < 1000; i++) {
+            TriggerKey key = new TriggerKey("trigger" + i, "group");
+            int partition = TriggerPartitions.partitionOf(key, 7);
+            assertTrue(partition >= 0 && partition < 7);
+            assertEquals(partition, TriggerPartitions.partitionOf(new TriggerKey("trigger" + i, "group"), 7));
+            assertEquals(0, TriggerPartitions.partitionOf(key, 1));
+        }
+    }
+
+    public void testClusterPartitionOf() {
+        for (int i = 0; i < 1000; i++) {
+            TriggerKey key = new TriggerKey("trigger" + i, "group");
+            int partition = TriggerPartitions.clusterPartitionOf(key, 7);
+            assertTrue(partition >= 0 && partition < 7);
+            assertEquals(partition, TriggerPartitions.clusterPartitionOf(new TriggerKey("trigger" + i, "group"), 7));
+            assertEquals(0, TriggerPartitions.clusterPartitionOf(key, 1));
+        }
+    }
+
+    public void testThreadsOfAClusterPartitionAllGetTriggers() {
+        // 2 threads, 4 cluster partitions: each cluster partition feeds both threads
+        int[][] counts = new int[4][2];
+        for (int i = 0; i < 4000; i++) {
+            TriggerKey key = new TriggerKey("trigger" + i, "group");
+            counts[TriggerPartitions.clusterPartitionOf(key, 4)][TriggerPartitions.partitionOf(key, 2)]++;
+        }
+        for (int partition = 0; partition < 4; partition++) {
+            for (int thread = 0; thread < 2; thread++) {
+                assertTrue("cluster partition " + partition + ", thread " + thread + ": " + counts[partition][thread],
+                        counts[partition][thread] > 300);
+            }
+        }
+    }
+
+    public void testEachPartitionHasOneOwner() {
+        List<String> instances = instances(5);
+        int[] owners = owners(instances, 64);
+        for (int partition = 0; partition < 64; partition++) {
+            assertTrue("partition " + partition + " has " + owners[partition] + " owners", owners[partition] == 1);
+        }
+    }
+
+    public void testOwnInstanceIsCounted() {
+        List<String> others = instances(3);
+        int[] alone = TriggerPartitions.assign(new ArrayList<String>(), "node", 16);
+        assertEquals(16, alone.length);
+
+        List<String> all = new ArrayList<String>(others);
+        all.add("node");
+        assertTrue(Arrays.equals(TriggerPartitions.assign(all, "node", 16),
+                TriggerPartitions.assign(others, "node", 16)));
+    }
+
+    public void testOnlyTheFailedInstancesPartitionsMove() {
+        List<String> instances = instances(4);
+        List<String> remaining = new ArrayList<String>(instances);
+        String failed = remaining.remove(2);
+        int[] lost = TriggerPartitions.assign(instances, failed, 64);
+
+        for (String instance : remaining) {
+            int[] before = TriggerPartitions.assign(instances, instance, 64);
+            int[] after = TriggerPartitions.assign(remaining, instance, 64);
+            // keeps its partitions, and only takes some of the failed instance's
+            for (int partition : before) {
+                assertTrue(Arrays.binarySearch(after, partition) >= 0);
+            }
+            for (int partition : after) {
+                assertTrue(Arrays.binarySearch(before, partition) >= 0 || Arrays.binarySearch(lost, partition) >= 0);
+            }
+        }
+    }
+
+    public void testPartitionsAreSpread() {
+        List<String> instances = instances(4);
+        for (String instance : instances) {
+            int owned = TriggerPartitions.assign(instances, instance, 256).length;
+            assertTrue(instance + " owns " + owned, owned > 256 / 4 / 2 && owned < 256 / 4 * 2);
+        }
+    }
+
+    private static List<String> instances(int count) {
+        List<String> instances = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            instances.add("host" + i + ".example.com" + (1500000000000L + i * 7919));
+        }
+        return instances;
+    }
+
+    private static int[] owners(List<String> instances, int partitionCount) {
+        int[] owners = new int[partitionCount];
+        for (String instance : instances) {
+            for (int partition : TriggerPartitions.assign(instances, instance, partitionCount)) {
+                owners[partition]++;
+            }
+        }
+        return owners;
+    }
+}